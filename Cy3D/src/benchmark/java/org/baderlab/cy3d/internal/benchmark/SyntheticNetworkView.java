@@ -0,0 +1,461 @@
+package org.baderlab.cy3d.internal.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.cytoscape.model.CyEdge;
+import org.cytoscape.model.CyIdentifiable;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.view.model.CyNetworkViewListener;
+import org.cytoscape.view.model.CyNetworkViewSnapshot;
+import org.cytoscape.view.model.SnapshotEdgeInfo;
+import org.cytoscape.view.model.SnapshotNodeInfo;
+import org.cytoscape.view.model.View;
+import org.cytoscape.view.model.VisualProperty;
+import org.cytoscape.view.presentation.property.BasicVisualLexicon;
+
+/**
+ * A stand-in for a network view that can be used to benchmark the geometry code without
+ * Cytoscape. The snapshot, node and edge views are plain classes that implement the methods
+ * used by Cy3D, any other method throws UnsupportedOperationException. Reading a visual
+ * property is a field read or a map lookup, so the stubs don't add to what is measured.
+ *
+ * Nodes are placed uniformly at random in a cube whose volume grows with the number of nodes.
+ * Edges connect random pairs of nodes, about 5% of them are parallel to the previous edge and
+ * 1% are self edges. Visual properties that have not been set return their default value.
+ *
+ * @author mkucera
+ */
+public class SyntheticNetworkView {
+
+	/** Average distance between nodes, in Cytoscape coordinates. */
+	private static final double NODE_SPACING = 100;
+
+	private final List<View<CyNode>> nodeViews;
+	private final List<View<CyEdge>> edgeViews;
+	private final Map<Long,NodeView> nodeViewsBySUID;
+	private final Random random;
+	private final double size;
+	private long nextSUID = 1;
+
+
+	public SyntheticNetworkView(int nodeCount, int edgeCount, long seed) {
+		random = new Random(seed);
+		size = Math.cbrt(nodeCount) * NODE_SPACING;
+
+		nodeViews = new ArrayList<>(nodeCount);
+		nodeViewsBySUID = new HashMap<>(nodeCount * 2);
+		for(int i = 0; i < nodeCount; i++) {
+			NodeView nodeView = new NodeView(nextSUID++);
+			nodeView.x = randomCoordinate();
+			nodeView.y = randomCoordinate();
+			nodeView.z = randomCoordinate();
+			nodeViews.add(nodeView);
+			nodeViewsBySUID.put(nodeView.suid, nodeView);
+		}
+
+		edgeViews = new ArrayList<>(edgeCount);
+		EdgeView previous = null;
+		for(int i = 0; i < edgeCount; i++) {
+			EdgeView edgeView = new EdgeView(nextSUID++);
+			double r = random.nextDouble();
+			if(previous != null && r < 0.05) {
+				edgeView.source = previous.source;
+				edgeView.target = previous.target;
+			} else {
+				edgeView.source = randomNode();
+				edgeView.target = r < 0.06 ? edgeView.source : randomNode();
+			}
+			edgeView.source.adjacentEdges.add(edgeView);
+			if(edgeView.target != edgeView.source) {
+				edgeView.target.adjacentEdges.add(edgeView);
+			}
+			edgeViews.add(edgeView);
+			previous = edgeView;
+		}
+	}
+
+	private double randomCoordinate() {
+		return (random.nextDouble() - 0.5) * size;
+	}
+
+	private NodeView randomNode() {
+		return (NodeView) nodeViews.get(random.nextInt(nodeViews.size()));
+	}
+
+
+	public List<View<CyNode>> getNodeViews() {
+		return nodeViews;
+	}
+
+	public List<View<CyEdge>> getEdgeViews() {
+		return edgeViews;
+	}
+
+	/**
+	 * Returns a new snapshot of the network view. Like in Cytoscape a new snapshot instance is
+	 * returned every time, the snapshots share the node and edge views.
+	 */
+	public CyNetworkViewSnapshot snapshot() {
+		return new Snapshot();
+	}
+
+	/**
+	 * Moves the given number of random nodes to new random locations.
+	 */
+	public void moveNodes(int count) {
+		for(int i = 0; i < count; i++) {
+			NodeView nodeView = randomNode();
+			nodeView.x = randomCoordinate();
+			nodeView.y = randomCoordinate();
+			nodeView.z = randomCoordinate();
+		}
+	}
+
+	/**
+	 * Splits the nodes into the given number of partitions of about the same size.
+	 */
+	public Collection<Collection<View<CyNode>>> partition(int partitionCount) {
+		List<Collection<View<CyNode>>> partitions = new ArrayList<>(partitionCount);
+		for(int p = 0; p < partitionCount; p++) {
+			partitions.add(new ArrayList<>(nodeViews.size() / partitionCount + 1));
+		}
+		for(int i = 0; i < nodeViews.size(); i++) {
+			partitions.get(i % partitionCount).add(nodeViews.get(i));
+		}
+		return partitions;
+	}
+
+
+	private static UnsupportedOperationException unsupported() {
+		return new UnsupportedOperationException("Not supported by the synthetic network view");
+	}
+
+
+	/**
+	 * The visual properties of a view are stored in a map that is only created when one is set.
+	 */
+	private static abstract class SyntheticView<S> implements View<S> {
+
+		final long suid;
+		private Map<VisualProperty<?>,Object> values;
+
+		SyntheticView(long suid) {
+			this.suid = suid;
+		}
+
+		@Override
+		public Long getSUID() {
+			return suid;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public <T> T getVisualProperty(VisualProperty<T> vp) {
+			Object value = values == null ? null : values.get(vp);
+			return value == null ? vp.getDefault() : (T) value;
+		}
+
+		@Override
+		public <T, V extends T> void setVisualProperty(VisualProperty<? extends T> vp, V value) {
+			if(values == null)
+				values = new HashMap<>();
+			values.put(vp, value);
+		}
+
+		@Override
+		public boolean isSet(VisualProperty<?> vp) {
+			return values != null && values.containsKey(vp);
+		}
+
+		@Override
+		public <T, V extends T> void setLockedValue(VisualProperty<? extends T> vp, V value) {
+			throw unsupported();
+		}
+
+		@Override
+		public boolean isValueLocked(VisualProperty<?> vp) {
+			return false;
+		}
+
+		@Override
+		public boolean isDirectlyLocked(VisualProperty<?> vp) {
+			return false;
+		}
+
+		@Override
+		public void clearValueLock(VisualProperty<?> vp) {
+		}
+
+		@Override
+		public S getModel() {
+			throw unsupported();
+		}
+
+		@Override
+		public String toString() {
+			return getClass().getSimpleName() + " " + suid;
+		}
+	}
+
+
+	/**
+	 * The node location is stored in fields.
+	 */
+	private static class NodeView extends SyntheticView<CyNode> implements SnapshotNodeInfo {
+
+		double x, y, z;
+		final List<View<CyEdge>> adjacentEdges = new ArrayList<>(4);
+
+		NodeView(long suid) {
+			super(suid);
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public <T> T getVisualProperty(VisualProperty<T> vp) {
+			if(vp == BasicVisualLexicon.NODE_X_LOCATION)
+				return (T) Double.valueOf(x);
+			if(vp == BasicVisualLexicon.NODE_Y_LOCATION)
+				return (T) Double.valueOf(y);
+			if(vp == BasicVisualLexicon.NODE_Z_LOCATION)
+				return (T) Double.valueOf(z);
+			return super.getVisualProperty(vp);
+		}
+
+		@Override
+		public <T, V extends T> void setVisualProperty(VisualProperty<? extends T> vp, V value) {
+			if(vp == BasicVisualLexicon.NODE_X_LOCATION)
+				x = ((Number) value).doubleValue();
+			else if(vp == BasicVisualLexicon.NODE_Y_LOCATION)
+				y = ((Number) value).doubleValue();
+			else if(vp == BasicVisualLexicon.NODE_Z_LOCATION)
+				z = ((Number) value).doubleValue();
+			else
+				super.setVisualProperty(vp, value);
+		}
+
+		@Override
+		public long getModelSUID() {
+			return suid;
+		}
+
+		@Override
+		public View<CyNode> getNodeView() {
+			return this;
+		}
+	}
+
+
+	private static class EdgeView extends SyntheticView<CyEdge> implements SnapshotEdgeInfo {
+
+		NodeView source, target;
+
+		EdgeView(long suid) {
+			super(suid);
+		}
+
+		@Override
+		public long getModelSUID() {
+			return suid;
+		}
+
+		@Override
+		public View<CyEdge> getEdgeView() {
+			return this;
+		}
+
+		@Override
+		public long getSourceViewSUID() {
+			return source.suid;
+		}
+
+		@Override
+		public long getTargetViewSUID() {
+			return target.suid;
+		}
+
+		@Override
+		public View<CyNode> getSourceNodeView() {
+			return source;
+		}
+
+		@Override
+		public View<CyNode> getTargetNodeView() {
+			return target;
+		}
+
+		@Override
+		public boolean isDirected() {
+			return true;
+		}
+	}
+
+
+	/**
+	 * The network visual properties always have their default values.
+	 */
+	private class Snapshot extends SyntheticView<CyNetwork> implements CyNetworkViewSnapshot {
+
+		Snapshot() {
+			super(0);
+		}
+
+		@Override
+		public Collection<View<CyNode>> getNodeViews() {
+			return nodeViews;
+		}
+
+		@Override
+		public Collection<View<CyEdge>> getEdgeViews() {
+			return edgeViews;
+		}
+
+		@Override
+		public int getNodeCount() {
+			return nodeViews.size();
+		}
+
+		@Override
+		public int getEdgeCount() {
+			return edgeViews.size();
+		}
+
+		@Override
+		public View<CyNode> getNodeView(long suid) {
+			return nodeViewsBySUID.get(suid);
+		}
+
+		@Override
+		public SnapshotNodeInfo getNodeInfo(View<CyNode> nodeView) {
+			return (NodeView) nodeView;
+		}
+
+		@Override
+		public SnapshotEdgeInfo getEdgeInfo(View<CyEdge> edgeView) {
+			return (EdgeView) edgeView;
+		}
+
+		@Override
+		public Iterable<View<CyEdge>> getAdjacentEdgeIterable(View<CyNode> nodeView) {
+			return ((NodeView) nodeView).adjacentEdges;
+		}
+
+		@Override
+		public Iterable<View<CyEdge>> getAdjacentEdgeIterable(long nodeSuid) {
+			NodeView nodeView = nodeViewsBySUID.get(nodeSuid);
+			return nodeView == null ? Collections.emptyList() : nodeView.adjacentEdges;
+		}
+
+		@Override
+		public <T, V extends T> void setVisualProperty(VisualProperty<? extends T> vp, V value) {
+			throw unsupported();
+		}
+
+		@Override
+		public View<CyEdge> getEdgeView(long suid) {
+			throw unsupported();
+		}
+
+		@Override
+		public CyNetworkView getMutableNetworkView() {
+			throw unsupported();
+		}
+
+		@Override
+		public View<CyNode> getMutableNodeView(long suid) {
+			throw unsupported();
+		}
+
+		@Override
+		public View<CyEdge> getMutableEdgeView(long suid) {
+			throw unsupported();
+		}
+
+		@Override
+		public Collection<View<CyNode>> getTrackedNodes(Object key) {
+			throw unsupported();
+		}
+
+		@Override
+		public int getTrackedNodeCount(Object key) {
+			throw unsupported();
+		}
+
+		@Override
+		public View<CyNode> getNodeView(CyNode node) {
+			throw unsupported();
+		}
+
+		@Override
+		public View<CyEdge> getEdgeView(CyEdge edge) {
+			throw unsupported();
+		}
+
+		@Override
+		public Collection<View<? extends CyIdentifiable>> getAllViews() {
+			throw unsupported();
+		}
+
+		@Override
+		public void fitContent() {
+			throw unsupported();
+		}
+
+		@Override
+		public void fitSelected() {
+			throw unsupported();
+		}
+
+		@Override
+		public void updateView() {
+			throw unsupported();
+		}
+
+		@Override
+		public <T, V extends T> void setViewDefault(VisualProperty<? extends T> vp, V defaultValue) {
+			throw unsupported();
+		}
+
+		@Override
+		public void addNetworkViewListener(CyNetworkViewListener listener) {
+			throw unsupported();
+		}
+
+		@Override
+		public void removeNetworkViewListener(CyNetworkViewListener listener) {
+			throw unsupported();
+		}
+
+		@Override
+		public String getRendererId() {
+			throw unsupported();
+		}
+
+		@Override
+		public CyNetworkViewSnapshot createSnapshot() {
+			return this;
+		}
+
+		@Override
+		public boolean isDirty() {
+			return false;
+		}
+
+		@Override
+		public boolean dirty(boolean clear) {
+			return false;
+		}
+
+		@Override
+		public void dispose() {
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package org.baderlab.cy3d.internal.cytoscape.edges;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import org.baderlab.cy3d.internal.benchmark.SyntheticNetworkView;
+import org.baderlab.cy3d.internal.data.GraphicsData;
+import org.baderlab.cy3d.internal.data.NodeRenderBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Edge analysis of a network with 1.5 edges per node.
+ * The node buffer of each snapshot is read in the measured code, like RenderData does once per snapshot.
+ * 
+ * @author mkucera
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+@State(Scope.Thread)
+public class EdgeAnalyserBenchmark {
+
+	@Param({"1000", "10000", "100000", "1000000"})
+	public int nodeCount;
+	
+	/** Whether the edge coordinates are generated on the fork/join pool. */
+	@Param({"true", "false"})
+	public boolean parallel;
+	
+	private SyntheticNetworkView network;
+	private EdgeAnalyser analyser;
+	
+	@Setup(Level.Trial)
+	public void setup() {
+		network = new SyntheticNetworkView(nodeCount, nodeCount * 3 / 2, 42);
+		analyser = new EdgeAnalyser(parallel);
+		analyser.getAnalyzedEdges(new NodeRenderBuffer(network.snapshot()), GraphicsData.DISTANCE_SCALE);
+	}
+	
+	/** All edges are analyzed, as when a network view is first shown. */
+	@Benchmark
+	public Collection<AugmentedEdgeContainer> analyzeAll() {
+		return new EdgeAnalyser(parallel).getAnalyzedEdges(new NodeRenderBuffer(network.snapshot()), GraphicsData.DISTANCE_SCALE);
+	}
+	
+	/** A new snapshot where nothing has moved, the cached edges are reused. */
+	@Benchmark
+	public Collection<AugmentedEdgeContainer> reanalyzeUnchanged() {
+		return analyser.getAnalyzedEdges(new NodeRenderBuffer(network.snapshot()), GraphicsData.DISTANCE_SCALE);
+	}
+	
+	/** A new snapshot where 1% of the nodes have moved, as during an animated layout. */
+	@Benchmark
+	public Collection<AugmentedEdgeContainer> reanalyzeMoved() {
+		network.moveNodes(Math.max(1, nodeCount / 100));
+		return analyser.getAnalyzedEdges(new NodeRenderBuffer(network.snapshot()), GraphicsData.DISTANCE_SCALE);
+	}
+}
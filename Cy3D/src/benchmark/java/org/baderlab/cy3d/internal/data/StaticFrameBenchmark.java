@@ -0,0 +1,134 @@
+package org.baderlab.cy3d.internal.data;
+
+import java.util.concurrent.TimeUnit;
+
+import org.baderlab.cy3d.internal.benchmark.SyntheticNetworkView;
+import org.baderlab.cy3d.internal.camera.OriginOrbitCamera;
+import org.baderlab.cy3d.internal.cytoscape.edges.AugmentedEdgeContainer;
+import org.baderlab.cy3d.internal.geometric.Vector3;
+import org.baderlab.cy3d.internal.rendering.EdgeCuller;
+import org.baderlab.cy3d.internal.rendering.LevelOfDetail;
+import org.baderlab.cy3d.internal.rendering.NodeCuller;
+import org.baderlab.cy3d.internal.rendering.text.LabelCuller;
+import org.baderlab.cy3d.internal.tools.GeometryToolkit;
+import org.cytoscape.view.model.CyNetworkViewSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The CPU side of drawing a frame of a scene that doesn't change: the snapshot and the camera
+ * are the same in every frame. The nodes and edges are culled, the level of detail of the visible
+ * nodes and edges is chosen and the labels of the visible nodes are placed, like the renderers do
+ * before issuing the GL calls.
+ *
+ * Nothing should be allocated, run with the GC profiler and check that gc.alloc.rate.norm is about 0:
+ * <pre>java -jar target/benchmarks.jar StaticFrameBenchmark -prof gc</pre>
+ *
+ * The camera doesn't move so its viewing volume is calculated once in the setup.
+ *
+ * @author mkucera
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Thread)
+public class StaticFrameBenchmark {
+
+	private static final int SCREEN_WIDTH = 1600;
+	private static final int SCREEN_HEIGHT = 1000;
+	private static final int LABEL_WIDTH = 60;
+	private static final int LABEL_HEIGHT = 12;
+
+	@Param({"1000", "10000", "100000"})
+	public int nodeCount;
+
+	private CyNetworkViewSnapshot snapshot;
+	private GraphicsData graphicsData;
+	private final NodeCuller nodeCuller = new NodeCuller();
+	private final EdgeCuller edgeCuller = new EdgeCuller();
+	private final LabelCuller labelCuller = new LabelCuller();
+
+	private final double[] modelView = new double[16];
+	private final double[] projection = new double[16];
+	private final int[] viewport = { 0, 0, SCREEN_WIDTH, SCREEN_HEIGHT };
+
+
+	@Setup(Level.Trial)
+	public void setup() {
+		SyntheticNetworkView network = new SyntheticNetworkView(nodeCount, nodeCount * 3 / 2, 42);
+		snapshot = network.snapshot();
+
+		graphicsData = new GraphicsData(null, null, new RenderData(null), null, null);
+		graphicsData.setNetworkSnapshot(snapshot);
+		graphicsData.setScreenWidth(SCREEN_WIDTH);
+		graphicsData.setScreenHeight(SCREEN_HEIGHT);
+
+		// far enough back to see most of the network
+		OriginOrbitCamera camera = graphicsData.getCamera();
+		double size = Math.cbrt(nodeCount) * 100 / GraphicsData.DISTANCE_SCALE;
+		camera.moveTo(new Vector3(0, 0, size), null);
+		graphicsData.getViewingVolume().calculateViewingVolume(camera.getPosition(), camera.getDirection(), camera.getUp(),
+				GraphicsData.NEAR_Z, GraphicsData.FAR_Z, GraphicsData.VERTICAL_VOF,
+				2 * GeometryToolkit.findHorizontalFieldOfView(GraphicsData.VERTICAL_VOF, SCREEN_WIDTH, SCREEN_HEIGHT));
+
+		// gluLookAt down the negative z axis and gluPerspective, column major
+		modelView[0] = modelView[5] = modelView[10] = modelView[15] = 1;
+		modelView[14] = -size;
+		double f = 1 / Math.tan(Math.toRadians(GraphicsData.VERTICAL_VOF) / 2);
+		double near = GraphicsData.NEAR_Z, far = GraphicsData.FAR_Z;
+		projection[0] = f * SCREEN_HEIGHT / SCREEN_WIDTH;
+		projection[5] = f;
+		projection[10] = (far + near) / (near - far);
+		projection[11] = -1;
+		projection[14] = 2 * far * near / (near - far);
+
+		// the first frame builds the culling grids
+		frame();
+	}
+
+	@Benchmark
+	public int frame() {
+		graphicsData.setNetworkSnapshot(snapshot);
+		LevelOfDetail levelOfDetail = graphicsData.getLevelOfDetail();
+		levelOfDetail.beginFrame(graphicsData.getCamera(), SCREEN_HEIGHT);
+		NodeRenderBuffer nodes = graphicsData.getNodeBuffer();
+
+		int drawn = 0;
+		int nodeCount = nodeCuller.cull(graphicsData);
+		for(int i = 0; i < nodeCount; i++) {
+			int node = nodeCuller.getVisibleIndex(i);
+			double screenRadius = levelOfDetail.projectedRadius(nodes.getSceneX(node), nodes.getSceneY(node), nodes.getSceneZ(node), nodes.getBoundingRadius(node));
+			if(levelOfDetail.isPoint(screenRadius) || levelOfDetail.getDetail(screenRadius) != null) {
+				drawn++;
+			}
+		}
+
+		int edgeCount = edgeCuller.cull(graphicsData);
+		for(int i = 0; i < edgeCount; i++) {
+			AugmentedEdgeContainer container = edgeCuller.getVisible(i);
+			float[] points = container.getCoordinates();
+			if(!levelOfDetail.isLine(levelOfDetail.projectedRadius(points[0], points[1], points[2], container.getRadiusFactor()))) {
+				drawn++;
+			}
+		}
+
+		labelCuller.begin(modelView, projection, viewport);
+		for(int i = 0; i < nodeCount; i++) {
+			int node = nodeCuller.getVisibleIndex(i);
+			labelCuller.add(node, nodes.getSceneX(node), nodes.getSceneY(node), nodes.getSceneZ(node), LABEL_WIDTH, LABEL_HEIGHT, nodes.isSelected(node));
+		}
+		return drawn + labelCuller.place();
+	}
+}
@@ -0,0 +1,88 @@
+package org.baderlab.cy3d.internal.layouts;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.baderlab.cy3d.internal.benchmark.SyntheticNetworkView;
+import org.baderlab.cy3d.internal.tools.LayoutToolkit;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.view.model.View;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The spherical, grid and box layouts, each arranges the partitions in parallel and then arranges
+ * them with {@link LayoutToolkit#arrangePartitions(int[], LayoutToolkit.Bounds[], double[], double[], double[])},
+ * like {@link AbstractPartitionLayoutTask} does. Partitioning the network is done by Cytoscape's
+ * PartitionUtil which needs a real network, the partitions are made up instead.
+ * 
+ * The 10000 partitions case is a network with many small components, the partition count is
+ * capped at the node count so no partition is empty.
+ * 
+ * @author mkucera
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Thread)
+public class LayoutBenchmark {
+
+	@Param({"1000", "10000", "100000", "1000000"})
+	public int nodeCount;
+	
+	@Param({"1", "100", "10000"})
+	public int partitionCount;
+	
+	private Collection<Collection<View<CyNode>>> partitions;
+	private List<View<CyNode>> nodeViews;
+	private int[] nodeOffsets;
+	
+	@Setup(Level.Trial)
+	public void setup() {
+		partitions = new SyntheticNetworkView(nodeCount, 0, 42).partition(Math.min(partitionCount, nodeCount));
+		
+		nodeViews = new ArrayList<>(nodeCount);
+		nodeOffsets = new int[partitions.size() + 1];
+		int count = 0;
+		for (Collection<View<CyNode>> partition : partitions) {
+			nodeViews.addAll(partition);
+			nodeOffsets[++count] = nodeViews.size();
+		}
+	}
+	
+	@Benchmark
+	public void spherical() {
+		AbstractPartitionLayoutTask.layOut(nodeViews, nodeOffsets, SphericalLayoutAlgorithmTask::arrangeAsSphere, () -> false);
+	}
+	
+	@Benchmark
+	public void grid() {
+		AbstractPartitionLayoutTask.layOut(nodeViews, nodeOffsets,
+				(x, y, z, start, end) -> GridLayoutAlgorithmTask.arrangeAsGrid(x, y, z, start, end, GridLayoutAlgorithmTask.SPACING), () -> false);
+	}
+	
+	@Benchmark
+	public void box() {
+		AbstractPartitionLayoutTask.layOut(nodeViews, nodeOffsets,
+				(x, y, z, start, end) -> BoxLayoutAlgorithmTask.arrangeAsBox(x, y, z, start, end, BoxLayoutAlgorithmTask.SPACING), () -> false);
+	}
+	
+	@Benchmark
+	public void arrangePartitions() {
+		LayoutToolkit.arrangePartitions(partitions);
+	}
+}
@@ -0,0 +1,91 @@
+package org.baderlab.cy3d.internal.spatial;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.baderlab.cy3d.internal.data.GraphicsData;
+import org.baderlab.cy3d.internal.geometric.Vector3;
+import org.baderlab.cy3d.internal.geometric.ViewingVolume;
+import org.baderlab.cy3d.internal.tools.GeometryToolkit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * View frustum culling of node spheres with the {@link CullingGrid}, compared to testing every
+ * node against the {@link ViewingVolume}. The camera is inside the network looking along the
+ * negative z axis, so a fraction of the nodes is visible.
+ * 
+ * @author mkucera
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Thread)
+public class CullingGridBenchmark {
+
+	private static final double RADIUS = 0.322;
+	
+	@Param({"1000", "10000", "100000", "1000000"})
+	public int nodeCount;
+	
+	private double[] centers;
+	private CullingGrid grid;
+	private ViewingVolume volume;
+	
+	@Setup(Level.Trial)
+	public void setup() {
+		// Same density of nodes as SyntheticNetworkView, in OpenGL coordinates
+		double size = Math.cbrt(nodeCount) * 100 / GraphicsData.DISTANCE_SCALE;
+		Random random = new Random(42);
+		centers = new double[nodeCount * 3];
+		for (int i = 0; i < centers.length; i++) {
+			centers[i] = (random.nextDouble() - 0.5) * size;
+		}
+		
+		grid = new CullingGrid();
+		buildGrid();
+		
+		volume = new ViewingVolume();
+		volume.calculateViewingVolume(new Vector3(0, 0, size / 4), new Vector3(0, 0, -1), new Vector3(0, 1, 0),
+				GraphicsData.NEAR_Z, GraphicsData.FAR_Z, GraphicsData.VERTICAL_VOF, 
+				2 * GeometryToolkit.findHorizontalFieldOfView(GraphicsData.VERTICAL_VOF, 1600, 1000));
+	}
+	
+	@Benchmark
+	public int buildGrid() {
+		grid.clear();
+		for (int i = 0; i < centers.length; i += 3) {
+			grid.addSphere(centers[i], centers[i+1], centers[i+2], RADIUS);
+		}
+		grid.build();
+		return grid.size();
+	}
+	
+	@Benchmark
+	public int cullGrid() {
+		return grid.cull(volume);
+	}
+	
+	@Benchmark
+	public int cullBruteForce() {
+		int visible = 0;
+		for (int i = 0; i < centers.length; i += 3) {
+			if (volume.inside(centers[i], centers[i+1], centers[i+2], RADIUS)) {
+				visible++;
+			}
+		}
+		return visible;
+	}
+}
@@ -0,0 +1,80 @@
+package org.baderlab.cy3d.internal.tools;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.baderlab.cy3d.internal.geometric.Vector3;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Generation of the points along edges, the time is per edge.
+ * 
+ * @author mkucera
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EdgeCoordinateCalculatorBenchmark {
+
+	private static final int EDGES = 1024;
+	
+	// Same values as EdgeAnalyser
+	private static final int NUM_SEGMENTS = 8;
+	private static final double DASHED_EDGE_SPACING = 0.07;
+	
+	private final Vector3[] starts = new Vector3[EDGES];
+	private final Vector3[] ends = new Vector3[EDGES];
+	private final Vector3[] centers = new Vector3[EDGES];
+	
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		for (int i = 0; i < EDGES; i++) {
+			starts[i] = new Vector3(random.nextDouble() * 4, random.nextDouble() * 4, random.nextDouble() * 4);
+			ends[i] = new Vector3(random.nextDouble() * 4, random.nextDouble() * 4, random.nextDouble() * 4);
+			
+			// A circle through both ends, the center is offset sideways from the middle of the edge
+			Vector3 offset = ends[i].subtract(starts[i]);
+			Vector3 side = offset.cross(Vector3.POSITIVE_Z_DIRECTION).normalize();
+			centers[i] = starts[i].towards(ends[i], 0.5).plus(side.multiply(offset.magnitude()));
+		}
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(EDGES)
+	public void straight(Blackhole blackhole) {
+		for (int i = 0; i < EDGES; i++) {
+			blackhole.consume(EdgeCoordinateCalculator.generateStraightEdgeCoordinates(starts[i], ends[i], 1));
+		}
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(EDGES)
+	public void arc(Blackhole blackhole) {
+		for (int i = 0; i < EDGES; i++) {
+			blackhole.consume(EdgeCoordinateCalculator.generateArcEdgeCoordinates(starts[i], ends[i], centers[i], NUM_SEGMENTS, false));
+		}
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(EDGES)
+	public void arcSparse(Blackhole blackhole) {
+		for (int i = 0; i < EDGES; i++) {
+			blackhole.consume(EdgeCoordinateCalculator.generateArcEdgeSparseCoordinates(starts[i], ends[i], centers[i], DASHED_EDGE_SPACING, false));
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package org.baderlab.cy3d.internal.tools;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Counting the edges between each pair of nodes, as done by EdgeAnalyser for every new snapshot.
+ * Compares a HashMap keyed by PairIdentifier with PairCountMap. Run with "-prof gc" to also 
+ * compare the allocation rates.
+ * 
+ * @author mkucera
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Thread)
+public class PairCountMapBenchmark {
+
+	@Param({"10000", "1000000"})
+	public int edgeCount;
+	
+	private long[] sources;
+	private long[] targets;
+	private final PairCountMap reusedMap = new PairCountMap();
+	
+	@Setup
+	public void setup() {
+		// 1.5 edges per node, 5% of the edges are parallel to the previous one
+		Random random = new Random(42);
+		int nodeCount = edgeCount * 2 / 3;
+		sources = new long[edgeCount];
+		targets = new long[edgeCount];
+		for(int i = 0; i < edgeCount; i++) {
+			if(i > 0 && random.nextDouble() < 0.05) {
+				sources[i] = targets[i-1];
+				targets[i] = sources[i-1];
+			} else {
+				sources[i] = 1 + random.nextInt(nodeCount);
+				targets[i] = 1 + random.nextInt(nodeCount);
+			}
+		}
+	}
+	
+	/** The map and the boxing used by EdgeAnalyser before PairCountMap. */
+	@Benchmark
+	public int hashMap() {
+		Map<PairIdentifier, Integer> counts = new HashMap<>();
+		int max = 0;
+		for(int i = 0; i < edgeCount; i++) {
+			PairIdentifier identifier = new PairIdentifier(sources[i], targets[i]);
+			Integer count = counts.get(identifier);
+			int edgeNumber = count == null ? 1 : count + 1;
+			counts.put(identifier, edgeNumber);
+			max = Math.max(max, edgeNumber);
+		}
+		return max;
+	}
+	
+	/** A new map for every count. */
+	@Benchmark
+	public int pairCountMap() {
+		return count(new PairCountMap(edgeCount));
+	}
+	
+	/** One map cleared before every count, as EdgeAnalyser does. */
+	@Benchmark
+	public int reusedPairCountMap() {
+		reusedMap.clear(edgeCount);
+		return count(reusedMap);
+	}
+	
+	private int count(PairCountMap counts) {
+		int max = 0;
+		for(int i = 0; i < edgeCount; i++) {
+			max = Math.max(max, counts.increment(sources[i], targets[i]));
+		}
+		return max;
+	}
+}
@@ -20,7 +20,7 @@ public class Cy3DNetworkViewListener implements CyNetworkViewListener {
 	
 	@Override
 	public void handleFitContent() {
-		var snapshot = netView.createSnapshot();
+		var snapshot = graphicsData.getRenderData().getSnapshot();
 		if(snapshot != null) {
 			fire(new FitInViewEvent(snapshot.getNodeViews()));
 		}
@@ -29,7 +29,7 @@ public class Cy3DNetworkViewListener implements CyNetworkViewListener {
 	
 	@Override
 	public void handleFitSelected() {
-		var snapshot = netView.createSnapshot();
+		var snapshot = graphicsData.getRenderData().getSnapshot();
 		if(snapshot != null) {
 			var selectedNodes = snapshot.getTrackedNodes(Cy3DVisualLexicon.CONFIG_PROP_SELECTED_NODES);
 			if(!selectedNodes.isEmpty()) {
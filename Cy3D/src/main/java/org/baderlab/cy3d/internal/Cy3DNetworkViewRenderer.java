@@ -19,14 +19,17 @@ public class Cy3DNetworkViewRenderer implements NetworkViewRenderer {
 	private final CyNetworkViewFactory networkViewFactory;
 	private final RenderingEngineFactory<CyNetwork> mainFactory;
 	private final RenderingEngineFactory<CyNetwork> birdsEyeFactory;
+	private final RenderingEngineFactory<CyNetwork> offscreenFactory;
 	
 	public Cy3DNetworkViewRenderer(CyNetworkViewFactory networkViewFactory, 
 			                       RenderingEngineFactory<CyNetwork> mainFactory, 
-			                       RenderingEngineFactory<CyNetwork> birdsEyeFactory) {
+			                       RenderingEngineFactory<CyNetwork> birdsEyeFactory,
+			                       RenderingEngineFactory<CyNetwork> offscreenFactory) {
 		
 		this.networkViewFactory = networkViewFactory;
 		this.mainFactory = mainFactory;
 		this.birdsEyeFactory = birdsEyeFactory;
+		this.offscreenFactory = offscreenFactory;
 	}
 	
 	
@@ -45,8 +48,8 @@ public class Cy3DNetworkViewRenderer implements NetworkViewRenderer {
 		switch(context) {
 			case DEFAULT_CONTEXT: return mainFactory;
 			case BIRDS_EYE_CONTEXT: return birdsEyeFactory;
-			case THUMBNAIL_CONTEXT: return null;
-			case VISUAL_STYLE_PREVIEW_CONTEXT: return null;
+			case THUMBNAIL_CONTEXT: return offscreenFactory;
+			case VISUAL_STYLE_PREVIEW_CONTEXT: return offscreenFactory;
 			default: return null;
 		}
 	}
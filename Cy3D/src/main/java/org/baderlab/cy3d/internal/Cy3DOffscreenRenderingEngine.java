@@ -0,0 +1,239 @@
+package org.baderlab.cy3d.internal;
+
+import java.awt.BorderLayout;
+import java.awt.Graphics;
+import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.print.Printable;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.swing.Icon;
+import javax.swing.JComponent;
+
+import org.baderlab.cy3d.internal.data.GraphicsData;
+import org.baderlab.cy3d.internal.data.RenderData;
+import org.baderlab.cy3d.internal.data.RenderDataProvider;
+import org.baderlab.cy3d.internal.eventbus.EventBusProvider;
+import org.baderlab.cy3d.internal.graphics.GraphicsConfiguration;
+import org.baderlab.cy3d.internal.graphics.OffscreenRenderer;
+import org.baderlab.cy3d.internal.graphics.RenderEventListener;
+import org.baderlab.cy3d.internal.graphics.RepaintScheduler;
+import org.cytoscape.ding.icon.VisualPropertyIconFactory;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.view.model.View;
+import org.cytoscape.view.model.VisualLexicon;
+import org.cytoscape.view.model.VisualProperty;
+import org.cytoscape.view.presentation.RenderingEngine;
+
+/** 
+ * A rendering engine for network thumbnails and visual style previews. The network is rendered 
+ * offscreen by an {@link OffscreenRenderer} and the image is cached until the view model changes 
+ * or a different size is requested.
+ * 
+ * If the engine is given a container a component that shows the image is added to it, the
+ * component is repainted by the {@link RepaintScheduler} when the view model changes. Rendering
+ * and reading back the image can take a while, so the component never renders on the EDT. It
+ * paints the cached image and asks a background thread to render a new one, and is repainted
+ * again when the new image is ready.
+ * 
+ * @author mkucera
+ */
+class Cy3DOffscreenRenderingEngine implements RenderingEngine<CyNetwork> {
+	
+	/** Previews don't need to keep up with changes as fast as the main view. */
+	private static final int PREVIEW_MAX_FRAME_RATE = 10;
+	
+	private final CyNetworkView networkView;
+	private final VisualLexicon visualLexicon;
+	private final Properties props = new Properties();
+	
+	private final RenderDataProvider renderDataProvider;
+	private final RenderData renderData;
+	private final OffscreenRenderer renderer;
+	private RepaintScheduler.Registration repaintRegistration;
+	
+	private BufferedImage cachedImage;
+	private long cachedVersion = -1;
+	
+	// renders the images shown by the preview panel
+	private final ExecutorService previewExecutor;
+	private boolean previewRenderPending = false;
+	private boolean disposed = false;
+	
+	
+	public Cy3DOffscreenRenderingEngine(
+			Object container,
+			CyNetworkView viewModel, 
+			VisualLexicon visualLexicon, 
+			EventBusProvider eventBusProvider, 
+			RenderDataProvider renderDataProvider,
+			RepaintScheduler repaintScheduler,
+			GraphicsConfiguration configuration) {
+		
+		this.networkView = viewModel;
+		this.visualLexicon = visualLexicon;
+		this.renderDataProvider = renderDataProvider;
+		
+		PreviewPanel previewPanel = container instanceof JComponent ? new PreviewPanel() : null;
+		previewExecutor = previewPanel == null ? null : Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "Cy3D Preview Renderer");
+			thread.setDaemon(true);
+			return thread;
+		});
+		
+		renderData = renderDataProvider.acquire(networkView);
+		GraphicsData graphicsData = new GraphicsData(visualLexicon, eventBusProvider.getEventBus(networkView), renderData, previewPanel, previewPanel);
+		renderer = new OffscreenRenderer(new RenderEventListener(networkView, configuration, graphicsData));
+		
+		if(previewPanel != null) {
+			JComponent component = (JComponent) container;
+			component.setLayout(new BorderLayout());
+			component.add(previewPanel, BorderLayout.CENTER);
+			configuration.initializeFrame(component, previewPanel);
+			repaintRegistration = repaintScheduler.register(previewPanel, renderData, PREVIEW_MAX_FRAME_RATE);
+		}
+	}
+	
+	
+	/**
+	 * Returns the cached image if the view model hasn't changed and the size is the same, otherwise renders a new one.
+	 * Returns null if offscreen rendering is not supported.
+	 * 
+	 * Only one image is rendered at a time, the cache is not locked while rendering so that the preview panel
+	 * can paint the old image in the meantime.
+	 */
+	private BufferedImage renderImage(int width, int height) {
+		width  = Math.max(1, width);
+		height = Math.max(1, height);
+		synchronized(renderer) {
+			long version;
+			synchronized(this) {
+				if(disposed)
+					return null;
+				version = renderData.pollVersion();
+				if(cachedImage != null && cachedVersion == version && cachedImage.getWidth() == width && cachedImage.getHeight() == height)
+					return cachedImage;
+			}
+			BufferedImage image = renderer.render(width, height);
+			synchronized(this) {
+				if(!disposed) {
+					cachedImage = image;
+					cachedVersion = version;
+				}
+			}
+			return image;
+		}
+	}
+	
+	
+	/**
+	 * Shows the cached offscreen image in the container. If the image is out of date a new one is 
+	 * rendered in the background, the panel is repainted when it is ready.
+	 */
+	@SuppressWarnings("serial")
+	private class PreviewPanel extends JComponent {
+		@Override
+		protected void paintComponent(Graphics g) {
+			int width  = Math.max(1, getWidth());
+			int height = Math.max(1, getHeight());
+			BufferedImage image;
+			synchronized(Cy3DOffscreenRenderingEngine.this) {
+				image = cachedImage;
+				boolean stale = image == null || image.getWidth() != width || image.getHeight() != height || cachedVersion != renderData.pollVersion();
+				if(stale && !previewRenderPending && !previewExecutor.isShutdown()) {
+					previewRenderPending = true;
+					previewExecutor.execute(() -> renderPreview(width, height));
+				}
+			}
+			if(image != null) {
+				g.drawImage(image, 0, 0, null);
+			}
+		}
+		
+		private void renderPreview(int width, int height) {
+			BufferedImage image = null;
+			try {
+				image = renderImage(width, height);
+			} catch(Exception e) {
+				e.printStackTrace();
+			} finally {
+				synchronized(Cy3DOffscreenRenderingEngine.this) {
+					previewRenderPending = false;
+				}
+			}
+			// if offscreen rendering isn't supported there is nothing new to show
+			if(image != null) {
+				repaint();
+			}
+		}
+	}
+	
+	
+	@Override
+	public View<CyNetwork> getViewModel() {
+		return networkView;
+	}
+
+	@Override
+	public VisualLexicon getVisualLexicon() {
+		return visualLexicon;
+	}
+
+	@Override
+	public Properties getProperties() {
+		return props;
+	}
+	
+	@Override
+	public Printable createPrintable() {
+		return null;
+	}
+
+	@Override
+	public Image createImage(int width, int height) {
+		BufferedImage image = renderImage(width, height);
+		if(image == null) {
+			// offscreen rendering isn't available, return a blank image rather than null
+			return new BufferedImage(Math.max(1, width), Math.max(1, height), BufferedImage.TYPE_INT_ARGB_PRE);
+		}
+		return image;
+	}
+
+	@Override
+	public <V> Icon createIcon(VisualProperty<V> vp, V value, int w, int h) {
+		return VisualPropertyIconFactory.createIcon(value, w, h);
+	}
+
+	@Override
+	public void printCanvas(Graphics printCanvas) {
+		Rectangle bounds = printCanvas.getClipBounds();
+		if(bounds != null) {
+			printCanvas.drawImage(createImage(bounds.width, bounds.height), bounds.x, bounds.y, null);
+		}
+	}
+	
+	@Override
+	public String getRendererId() {
+		return Cy3DNetworkViewRenderer.ID;
+	}
+	
+	@Override
+	public void dispose() {
+		synchronized(this) {
+			disposed = true;
+			cachedImage = null;
+		}
+		if(repaintRegistration != null) {
+			repaintRegistration.unregister();
+		}
+		if(previewExecutor != null) {
+			previewExecutor.shutdown();
+		}
+		renderer.dispose();
+		renderDataProvider.release(renderData);
+	}
+}
@@ -0,0 +1,58 @@
+package org.baderlab.cy3d.internal;
+
+import org.baderlab.cy3d.internal.data.RenderDataProvider;
+import org.baderlab.cy3d.internal.eventbus.EventBusProvider;
+import org.baderlab.cy3d.internal.graphics.GraphicsConfigurationFactory;
+import org.baderlab.cy3d.internal.graphics.RepaintScheduler;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.view.model.View;
+import org.cytoscape.view.model.VisualLexicon;
+import org.cytoscape.view.presentation.RenderingEngine;
+import org.cytoscape.view.presentation.RenderingEngineFactory;
+
+/** 
+ * The RenderingEngineFactory for the thumbnail and visual style preview contexts, 
+ * creates a {@link Cy3DOffscreenRenderingEngine}.
+ * 
+ * @author mkucera
+ */
+public class Cy3DOffscreenRenderingEngineFactory implements RenderingEngineFactory<CyNetwork> {
+	
+	private final VisualLexicon visualLexicon;
+	private final EventBusProvider eventBusProvider;
+	private final RenderDataProvider renderDataProvider;
+	private final RepaintScheduler repaintScheduler;
+	
+	
+	public Cy3DOffscreenRenderingEngineFactory(
+			VisualLexicon lexicon,
+			EventBusProvider eventBusProvider,
+			RenderDataProvider renderDataProvider,
+			RepaintScheduler repaintScheduler) {
+		
+		this.visualLexicon = lexicon;
+		this.eventBusProvider = eventBusProvider;
+		this.renderDataProvider = renderDataProvider;
+		this.repaintScheduler = repaintScheduler;
+	}
+	
+	
+	/**
+	 * The container may be null when only images are needed.
+	 * 
+	 * @throws ClassCastException if the viewModel is not an instance of CyNetworkView
+	 */
+	@Override
+	public RenderingEngine<CyNetwork> createRenderingEngine(Object container, View<CyNetwork> viewModel) {
+		CyNetworkView networkView = (CyNetworkView) viewModel;
+		return new Cy3DOffscreenRenderingEngine(container, networkView, visualLexicon, eventBusProvider, renderDataProvider, 
+				repaintScheduler, GraphicsConfigurationFactory.THUMBNAIL_FACTORY.createGraphicsConfiguration());
+	}
+	
+	
+	@Override
+	public VisualLexicon getVisualLexicon() {
+		return visualLexicon;
+	}
+}
@@ -8,19 +8,20 @@ import java.awt.Image;
 import java.awt.image.BufferedImage;
 import java.awt.print.Printable;
 import java.util.Properties;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 
 import javax.swing.Icon;
 import javax.swing.JComponent;
 import javax.swing.RootPaneContainer;
 
 import org.baderlab.cy3d.internal.data.GraphicsData;
+import org.baderlab.cy3d.internal.data.RenderData;
+import org.baderlab.cy3d.internal.data.RenderDataProvider;
 import org.baderlab.cy3d.internal.eventbus.EventBusProvider;
 import org.baderlab.cy3d.internal.eventbus.UpdateNetworkViewEvent;
 import org.baderlab.cy3d.internal.graphics.GraphicsConfiguration;
 import org.baderlab.cy3d.internal.graphics.RenderEventListener;
+import org.baderlab.cy3d.internal.graphics.RepaintScheduler;
+import org.baderlab.cy3d.internal.graphics.TiledImageRenderer;
 import org.baderlab.cy3d.internal.task.TaskFactoryListener;
 import org.cytoscape.ding.icon.VisualPropertyIconFactory;
 import org.cytoscape.model.CyNetwork;
@@ -51,7 +52,11 @@ class Cy3DRenderingEngine implements RenderingEngine<CyNetwork> {
 	private GLJPanel panel;
 	private Properties props;
 	
-	private ScheduledExecutorService scheduler;
+	private RenderDataProvider renderDataProvider;
+	private RenderData renderData;
+	private GraphicsData graphicsData;
+	private String rendererName;
+	private RepaintScheduler.Registration repaintRegistration;
 	
 	
 	public Cy3DRenderingEngine(
@@ -60,6 +65,8 @@ class Cy3DRenderingEngine implements RenderingEngine<CyNetwork> {
 			CyNetworkView viewModel, 
 			VisualLexicon visualLexicon, 
 			EventBusProvider eventBusProvider, 
+			RenderDataProvider renderDataProvider,
+			RepaintScheduler repaintScheduler,
 			GraphicsConfiguration configuration,
 			TaskFactoryListener taskFactoryListener, 
 			DialogTaskManager taskManager) {
@@ -67,8 +74,9 @@ class Cy3DRenderingEngine implements RenderingEngine<CyNetwork> {
 		this.networkView = viewModel;
 		this.visualLexicon = visualLexicon;
 		this.props = new Properties();
+		this.renderDataProvider = renderDataProvider;
 		
-		setUpCanvas(component, inputComponent, configuration, eventBusProvider, taskFactoryListener, taskManager);
+		setUpCanvas(component, inputComponent, configuration, eventBusProvider, repaintScheduler, taskFactoryListener, taskManager);
 	}
 	
 	
@@ -79,7 +87,7 @@ class Cy3DRenderingEngine implements RenderingEngine<CyNetwork> {
 	 * the rendered results
 	 */
 	private void setUpCanvas(JComponent container, JComponent inputComponent, 
-			                 GraphicsConfiguration configuration, EventBusProvider eventBusProvider, 
+			                 GraphicsConfiguration configuration, EventBusProvider eventBusProvider, RepaintScheduler repaintScheduler,
 			                 TaskFactoryListener taskFactoryListener, DialogTaskManager taskManager) {
 		
 		GLProfile profile = GLProfile.getDefault(); // Use the system's default version of OpenGL
@@ -93,10 +101,16 @@ class Cy3DRenderingEngine implements RenderingEngine<CyNetwork> {
 		
 		EventBus eventBus = eventBusProvider.getEventBus(networkView);
 		
-		GraphicsData graphicsData = new GraphicsData(visualLexicon, eventBus, panel, inputComponent);
+		// The snapshot and edge geometry are shared with the other renderers for the same view
+		renderData = renderDataProvider.acquire(networkView);
+		
+		graphicsData = new GraphicsData(visualLexicon, eventBus, renderData, panel, inputComponent);
 		graphicsData.setTaskFactoryListener(taskFactoryListener);
 		graphicsData.setTaskManager(taskManager);
 		
+		rendererName = configuration.toString();
+		renderData.addMetrics(rendererName, graphicsData.getFrameMetrics());
+		
 		var renderEventListener = new RenderEventListener(networkView, configuration, graphicsData);
 		panel.addGLEventListener(renderEventListener);
 		
@@ -112,19 +126,14 @@ class Cy3DRenderingEngine implements RenderingEngine<CyNetwork> {
 		
 		configuration.initializeFrame(container, inputComponent);
 		
-		// Check if the view model has changed approximately 60 times per second
-		scheduler = Executors.newScheduledThreadPool(1);
-		scheduler.scheduleAtFixedRate(() -> {
-			if(networkView.dirty(true)) {
-				panel.repaint();
-			}
-		}, 0, 20, TimeUnit.MILLISECONDS);
+		// The shared scheduler repaints the panel when the view model is dirty
+		repaintRegistration = repaintScheduler.register(panel, renderData, RepaintScheduler.getDefaultMaxFrameRate());
 		
 		// Also update the panel if the renderer's internal state changes, eg on mouse input
 		eventBus.register(new Object() {
 			@Subscribe
 			public void handleUpdateNetworkViewEvent(UpdateNetworkViewEvent e) {
-				panel.repaint();
+				repaintRegistration.requestRepaint();
 			}
 		});
 		
@@ -153,8 +162,26 @@ class Cy3DRenderingEngine implements RenderingEngine<CyNetwork> {
 		return null;
 	}
 
+	/**
+	 * The image is rendered offscreen in tiles, so it can be larger than the maximum framebuffer 
+	 * size and the panel on screen isn't disturbed. Falls back to painting the panel if offscreen 
+	 * rendering is not supported.
+	 */
 	@Override
 	public Image createImage(int width, int height) {
+		TiledImageRenderer imageRenderer = new TiledImageRenderer(networkView, visualLexicon, renderData, graphicsData);
+		try {
+			BufferedImage image = imageRenderer.render(width, height);
+			if(image != null) {
+				return image;
+			}
+		} finally {
+			imageRenderer.dispose();
+		}
+		return createPanelImage(width, height);
+	}
+	
+	private Image createPanelImage(int width, int height) {
 		Image image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);		
 
 		Dimension panelSize = panel.getSize();
@@ -196,11 +223,8 @@ class Cy3DRenderingEngine implements RenderingEngine<CyNetwork> {
 	@Override
 	public void dispose() {
 		System.out.println("Cy3DRenderingEngine.dispose()");
-		try {
-			scheduler.shutdownNow();
-			scheduler.awaitTermination(10, TimeUnit.SECONDS);
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		}
+		repaintRegistration.unregister();
+		renderData.removeMetrics(rendererName);
+		renderDataProvider.release(renderData);
 	}
 }
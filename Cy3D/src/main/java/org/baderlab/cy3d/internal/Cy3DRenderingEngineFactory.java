@@ -4,9 +4,11 @@ import java.awt.Container;
 
 import javax.swing.JComponent;
 
+import org.baderlab.cy3d.internal.data.RenderDataProvider;
 import org.baderlab.cy3d.internal.eventbus.EventBusProvider;
 import org.baderlab.cy3d.internal.graphics.GraphicsConfiguration;
 import org.baderlab.cy3d.internal.graphics.GraphicsConfigurationFactory;
+import org.baderlab.cy3d.internal.graphics.RepaintScheduler;
 import org.baderlab.cy3d.internal.task.TaskFactoryListener;
 import org.cytoscape.model.CyNetwork;
 import org.cytoscape.view.model.CyNetworkView;
@@ -28,6 +30,8 @@ public class Cy3DRenderingEngineFactory implements RenderingEngineFactory<CyNetw
 	private final TaskFactoryListener taskFactoryListener;
 	private final DialogTaskManager taskManager;
 	private final EventBusProvider eventBusProvider;
+	private final RenderDataProvider renderDataProvider;
+	private final RepaintScheduler repaintScheduler;
 	
 	private final GraphicsConfigurationFactory graphicsConfigFactory;
 	
@@ -38,6 +42,8 @@ public class Cy3DRenderingEngineFactory implements RenderingEngineFactory<CyNetw
 			TaskFactoryListener taskFactoryListener,
 			DialogTaskManager taskManager,
 			EventBusProvider eventBusFactory,
+			RenderDataProvider renderDataProvider,
+			RepaintScheduler repaintScheduler,
 			GraphicsConfigurationFactory graphicsConfigFactory) {	
 		
 		this.renderingEngineManager = renderingEngineManager;
@@ -45,6 +51,8 @@ public class Cy3DRenderingEngineFactory implements RenderingEngineFactory<CyNetw
 		this.taskFactoryListener = taskFactoryListener;
 		this.taskManager = taskManager;
 		this.eventBusProvider = eventBusFactory;
+		this.renderDataProvider = renderDataProvider;
+		this.repaintScheduler = repaintScheduler;
 		this.graphicsConfigFactory = graphicsConfigFactory;
 	}
 	
@@ -69,7 +77,7 @@ public class Cy3DRenderingEngineFactory implements RenderingEngineFactory<CyNetw
 		if(inputComponent == null)
 			inputComponent = component; // happens for birds-eye-view
 		
-		Cy3DRenderingEngine engine = new Cy3DRenderingEngine(component, inputComponent, cy3dViewModel, visualLexicon, eventBusProvider,
+		Cy3DRenderingEngine engine = new Cy3DRenderingEngine(component, inputComponent, cy3dViewModel, visualLexicon, eventBusProvider, renderDataProvider, repaintScheduler,
 				                                             configuration, taskFactoryListener, taskManager);
 		
 		return engine;
@@ -13,15 +13,21 @@ import java.io.IOException;
 import java.util.Properties;
 
 import org.baderlab.cy3d.internal.command.GetDefaultRendererCommandTaskFactory;
+import org.baderlab.cy3d.internal.command.GetMetricsCommandTaskFactory;
+import org.baderlab.cy3d.internal.command.SetMetricsOverlayCommandTaskFactory;
 import org.baderlab.cy3d.internal.command.SetDefaultRendererCommandTaskFactory;
 import org.baderlab.cy3d.internal.cytoscape.view.Cy3DVisualLexicon;
+import org.baderlab.cy3d.internal.data.RenderDataProvider;
 import org.baderlab.cy3d.internal.eventbus.EventBusProvider;
 import org.baderlab.cy3d.internal.graphics.GraphicsConfigurationFactory;
+import org.baderlab.cy3d.internal.graphics.RepaintScheduler;
+import org.baderlab.cy3d.internal.layouts.BarnesHutLayoutAlgorithm;
 import org.baderlab.cy3d.internal.layouts.BoxLayoutAlgorithm;
 import org.baderlab.cy3d.internal.layouts.CenterLayoutAlgorithm;
 import org.baderlab.cy3d.internal.layouts.CyLayoutAlgorithmAdapter;
 import org.baderlab.cy3d.internal.layouts.FlattenLayoutAlgorithm;
 import org.baderlab.cy3d.internal.layouts.GridLayoutAlgorithm;
+import org.baderlab.cy3d.internal.layouts.MultilevelLayoutAlgorithm;
 import org.baderlab.cy3d.internal.layouts.SphericalLayoutAlgorithm;
 import org.baderlab.cy3d.internal.task.TaskFactoryListener;
 import org.cytoscape.application.CyApplicationManager;
@@ -81,6 +87,8 @@ public class CyActivator extends AbstractCyActivator {
 
 		// Cy3D NetworkView factory
 		EventBusProvider eventBusProvider = new EventBusProvider();
+		RenderDataProvider renderDataProvider = new RenderDataProvider();
+		RepaintScheduler repaintScheduler = new RepaintScheduler();
 		
 		CyNetworkViewFactoryProvider netViewFactoryFactory = getService(bc, CyNetworkViewFactoryProvider.class);
 		CyNetworkViewFactoryConfig config = netViewFactoryFactory.createConfig(cy3dVisualLexicon);
@@ -96,16 +104,20 @@ public class CyActivator extends AbstractCyActivator {
 		// Main RenderingEngine factory
 		GraphicsConfigurationFactory mainFactory = GraphicsConfigurationFactory.MAIN_FACTORY;
 		Cy3DRenderingEngineFactory cy3dMainRenderingEngineFactory = new Cy3DRenderingEngineFactory(
-				renderingEngineManager, cy3dVisualLexicon, taskFactoryListener, dialogTaskManager, eventBusProvider, mainFactory);
+				renderingEngineManager, cy3dVisualLexicon, taskFactoryListener, dialogTaskManager, eventBusProvider, renderDataProvider, repaintScheduler, mainFactory);
 		
 		// Bird's Eye RenderingEngine factory
 		GraphicsConfigurationFactory birdsEyeFactory = GraphicsConfigurationFactory.BIRDS_EYE_FACTORY;
 		Cy3DRenderingEngineFactory cy3dBirdsEyeRenderingEngineFactory = new Cy3DRenderingEngineFactory(
-				renderingEngineManager, cy3dVisualLexicon, taskFactoryListener, dialogTaskManager, eventBusProvider, birdsEyeFactory);
+				renderingEngineManager, cy3dVisualLexicon, taskFactoryListener, dialogTaskManager, eventBusProvider, renderDataProvider, repaintScheduler, birdsEyeFactory);
 
 		
+		// Thumbnails and visual style previews are rendered offscreen
+		Cy3DOffscreenRenderingEngineFactory cy3dOffscreenRenderingEngineFactory = new Cy3DOffscreenRenderingEngineFactory(
+				cy3dVisualLexicon, eventBusProvider, renderDataProvider, repaintScheduler);
+		
 		// NetworkViewRenderer, this is the main entry point that Cytoscape will call into
-		Cy3DNetworkViewRenderer networkViewRenderer = new Cy3DNetworkViewRenderer(netViewFactory, cy3dMainRenderingEngineFactory, cy3dBirdsEyeRenderingEngineFactory);
+		Cy3DNetworkViewRenderer networkViewRenderer = new Cy3DNetworkViewRenderer(netViewFactory, cy3dMainRenderingEngineFactory, cy3dBirdsEyeRenderingEngineFactory, cy3dOffscreenRenderingEngineFactory);
 		registerService(bc, networkViewRenderer, NetworkViewRenderer.class, new Properties());
 		
 		// Still need to register the rendering engine factory directly
@@ -119,6 +131,8 @@ public class CyActivator extends AbstractCyActivator {
 		
 		registerLayoutAlgorithms(bc,
 				fr3DAlgorithm,
+				new BarnesHutLayoutAlgorithm(undoSupport),
+				new MultilevelLayoutAlgorithm(undoSupport),
 				new SphericalLayoutAlgorithm(undoSupport),
 				new GridLayoutAlgorithm(undoSupport),
 				new BoxLayoutAlgorithm(undoSupport),
@@ -146,6 +160,20 @@ public class CyActivator extends AbstractCyActivator {
 			props.put(COMMAND_LONG_DESCRIPTION, "Returns the renderer ID for the current default renderer.");
 			registerService(bc, new GetDefaultRendererCommandTaskFactory(applicationManager), TaskFactory.class, props);
 		}
+		{
+			Properties props = new Properties();
+			props.put(COMMAND, "get metrics");
+			props.put(COMMAND_NAMESPACE, "cy3d");
+			props.put(COMMAND_LONG_DESCRIPTION, "Returns frame timings, draw calls, visible node and edge counts and picking cache hits for the Cy3D renderers of the current network view, optionally clearing them.");
+			registerService(bc, new GetMetricsCommandTaskFactory(applicationManager, renderDataProvider), TaskFactory.class, props);
+		}
+		{
+			Properties props = new Properties();
+			props.put(COMMAND, "set metrics overlay");
+			props.put(COMMAND_NAMESPACE, "cy3d");
+			props.put(COMMAND_LONG_DESCRIPTION, "Shows or hides the performance metrics overlay in the Cy3D renderers of the current network view.");
+			registerService(bc, new SetMetricsOverlayCommandTaskFactory(applicationManager, renderDataProvider), TaskFactory.class, props);
+		}
 		
 		
 		// Special handling for JOGL library
@@ -0,0 +1,65 @@
+package org.baderlab.cy3d.internal.command;
+
+import java.util.Map;
+
+import org.baderlab.cy3d.internal.data.RenderData;
+import org.baderlab.cy3d.internal.data.RenderDataProvider;
+import org.baderlab.cy3d.internal.metrics.FrameMetrics;
+import org.cytoscape.application.CyApplicationManager;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.work.AbstractTask;
+import org.cytoscape.work.ObservableTask;
+import org.cytoscape.work.TaskMonitor;
+import org.cytoscape.work.Tunable;
+
+public class GetMetricsCommandTask extends AbstractTask implements ObservableTask {
+	
+	@Tunable(description="If true the timers and counters are cleared after they are reported.")
+	public boolean reset = false;
+	
+	private final CyApplicationManager applicationManager;
+	private final RenderDataProvider renderDataProvider;
+	
+	private String result;
+	
+	
+	public GetMetricsCommandTask(CyApplicationManager applicationManager, RenderDataProvider renderDataProvider) {
+		this.applicationManager = applicationManager;
+		this.renderDataProvider = renderDataProvider;
+	}
+	
+
+	@Override
+	public void run(TaskMonitor tm) {
+		CyNetworkView networkView = applicationManager.getCurrentNetworkView();
+		if(networkView == null)
+			throw new IllegalArgumentException("There is no current network view.");
+		
+		RenderData renderData = renderDataProvider.get(networkView);
+		if(renderData == null)
+			throw new IllegalArgumentException("The current network view is not rendered by Cy3D.");
+		
+		StringBuilder sb = new StringBuilder();
+		for(Map.Entry<String,FrameMetrics> entry : renderData.getMetrics().entrySet()) {
+			sb.append(entry.getKey()).append('\n');
+			for(String line : entry.getValue().getReport()) {
+				sb.append("  ").append(line).append('\n');
+			}
+			if(reset) {
+				entry.getValue().reset();
+			}
+		}
+		result = sb.toString();
+		System.out.println(result);
+	}
+
+
+	@Override
+	public <R> R getResults(Class<? extends R> type) {
+		if(String.class.equals(type)) {
+			return type.cast(result);
+		}
+		return null;
+	}
+	
+}
@@ -0,0 +1,23 @@
+package org.baderlab.cy3d.internal.command;
+
+import org.baderlab.cy3d.internal.data.RenderDataProvider;
+import org.cytoscape.application.CyApplicationManager;
+import org.cytoscape.work.AbstractTaskFactory;
+import org.cytoscape.work.TaskIterator;
+
+public class GetMetricsCommandTaskFactory extends AbstractTaskFactory {
+
+	private final CyApplicationManager applicationManager;
+	private final RenderDataProvider renderDataProvider;
+	
+	public GetMetricsCommandTaskFactory(CyApplicationManager applicationManager, RenderDataProvider renderDataProvider) {
+		this.applicationManager = applicationManager;
+		this.renderDataProvider = renderDataProvider;
+	}
+	
+	@Override
+	public TaskIterator createTaskIterator() {
+		return new TaskIterator(new GetMetricsCommandTask(applicationManager, renderDataProvider));
+	}
+
+}
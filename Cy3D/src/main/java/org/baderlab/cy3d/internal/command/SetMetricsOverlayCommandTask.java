@@ -0,0 +1,43 @@
+package org.baderlab.cy3d.internal.command;
+
+import org.baderlab.cy3d.internal.data.RenderData;
+import org.baderlab.cy3d.internal.data.RenderDataProvider;
+import org.baderlab.cy3d.internal.metrics.FrameMetrics;
+import org.cytoscape.application.CyApplicationManager;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.work.AbstractTask;
+import org.cytoscape.work.TaskMonitor;
+import org.cytoscape.work.Tunable;
+
+public class SetMetricsOverlayCommandTask extends AbstractTask {
+
+	@Tunable(description="If true the performance metrics are drawn on top of the network view.")
+	public boolean visible = true;
+	
+	
+	private final CyApplicationManager applicationManager;
+	private final RenderDataProvider renderDataProvider;
+	
+	public SetMetricsOverlayCommandTask(CyApplicationManager applicationManager, RenderDataProvider renderDataProvider) {
+		this.applicationManager = applicationManager;
+		this.renderDataProvider = renderDataProvider;
+	}
+	
+
+	@Override
+	public void run(TaskMonitor tm) {
+		CyNetworkView networkView = applicationManager.getCurrentNetworkView();
+		if(networkView == null)
+			throw new IllegalArgumentException("There is no current network view.");
+		
+		RenderData renderData = renderDataProvider.get(networkView);
+		if(renderData == null)
+			throw new IllegalArgumentException("The current network view is not rendered by Cy3D.");
+		
+		for(FrameMetrics metrics : renderData.getMetrics().values()) {
+			metrics.setOverlayVisible(visible);
+		}
+		renderData.invalidate();
+	}
+
+}
@@ -1,9 +1,9 @@
 package org.baderlab.cy3d.internal.cytoscape.edges;
 
 import org.baderlab.cy3d.internal.geometric.Vector3;
-import org.baderlab.cy3d.internal.tools.PairIdentifier;
 import org.cytoscape.model.CyEdge;
 import org.cytoscape.view.model.View;
+import org.cytoscape.view.presentation.property.values.LineType;
 
 /**
  * A container class for View<CyEdge> objects that also contains extra information about the edge,
@@ -11,10 +11,11 @@ import org.cytoscape.view.model.View;
  * edge coordinates that are used for rendering segmented edges.
  */
 public class AugmentedEdgeContainer {
-	private final View<CyEdge> edgeView;
+	private View<CyEdge> edgeView;
 	
-	// Identifies the pair of nodes that the edge connects
-	private PairIdentifier pairIdentifier = null;
+	// The SUIDs of the node views that the edge connects
+	private long sourceSUID;
+	private long targetSUID;
 	
 	// The index of this edge compared to all the other edges that connect the same pair
 	// of nodes. If this is the first of 7 edges that connect the same pair of nodes, its
@@ -36,7 +37,15 @@ public class AugmentedEdgeContainer {
 	private Vector3 start;
 	private Vector3 end;
 	
-	private Vector3[] coordinates;
+	private LineType lineType;
+	
+	// The points along the edge packed as x, y, z floats, null when they need to be recalculated
+	private float[] coordinates;
+	
+	// The style the edge is drawn with, read from the snapshot by the EdgeAnalyser
+	private boolean visible;
+	private double radiusFactor = 1.0;
+	private int color;
 
 	public AugmentedEdgeContainer(View<CyEdge> edgeView) {
 		this.edgeView = edgeView;
@@ -45,13 +54,22 @@ public class AugmentedEdgeContainer {
 	public View<CyEdge> getEdgeView() {
 		return edgeView;
 	}
+	
+	public void setEdgeView(View<CyEdge> edgeView) {
+		this.edgeView = edgeView;
+	}
 
-	public PairIdentifier getPairIdentifier() {
-		return pairIdentifier;
+	public long getSourceSUID() {
+		return sourceSUID;
+	}
+	
+	public long getTargetSUID() {
+		return targetSUID;
 	}
 
-	public void setPairIdentifier(PairIdentifier pairIdentifier) {
-		this.pairIdentifier = pairIdentifier;
+	public void setNodeSUIDs(long sourceSUID, long targetSUID) {
+		this.sourceSUID = sourceSUID;
+		this.targetSUID = targetSUID;
 	}
 
 	public int getEdgeNumber() {
@@ -94,14 +112,56 @@ public class AugmentedEdgeContainer {
 		return sufficientLength;
 	}
 	
-	public Vector3[] getCoordinates() {
+	public LineType getLineType() {
+		return lineType;
+	}
+
+	public void setLineType(LineType lineType) {
+		this.lineType = lineType;
+	}
+	
+	/**
+	 * Returns the points along the edge as an array of x, y, z values, 3 floats per point.
+	 * Null if the coordinates need to be recalculated.
+	 */
+	public float[] getCoordinates() {
 		return coordinates;
 	}
 
-	public void setCoordinates(Vector3[] coordinates) {
+	public void setCoordinates(float[] coordinates) {
 		this.coordinates = coordinates;
 	}
 	
+	/**
+	 * Sets the style the edge is drawn with.
+	 * @return true if it differs from the previous style
+	 */
+	public boolean setStyle(boolean visible, double radiusFactor, int color) {
+		boolean changed = visible != this.visible || radiusFactor != this.radiusFactor || color != this.color;
+		this.visible = visible;
+		this.radiusFactor = radiusFactor;
+		this.color = color;
+		return changed;
+	}
+	
+	public boolean isVisible() {
+		return visible;
+	}
+	
+	/**
+	 * Half the EDGE_WIDTH, the edge shapes are scaled by this factor.
+	 */
+	public double getRadiusFactor() {
+		return radiusFactor;
+	}
+	
+	/**
+	 * The color of the edge as packed RGB, with the selection applied.
+	 */
+	public int getColor() {
+		return color;
+	}
+	
 	public void setStart(Vector3 start) {
 		this.start = start;
 	}
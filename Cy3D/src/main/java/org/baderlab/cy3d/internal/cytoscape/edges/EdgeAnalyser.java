@@ -1,27 +1,46 @@
 package org.baderlab.cy3d.internal.cytoscape.edges;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
+import org.baderlab.cy3d.internal.data.NodeRenderBuffer;
 import org.baderlab.cy3d.internal.geometric.Vector3;
+import org.baderlab.cy3d.internal.rendering.RenderArcEdgesProcedure;
+import org.baderlab.cy3d.internal.rendering.shapes.EdgeMesh;
 import org.baderlab.cy3d.internal.tools.EdgeCoordinateCalculator;
 import org.baderlab.cy3d.internal.tools.GeometryToolkit;
-import org.baderlab.cy3d.internal.tools.NetworkToolkit;
-import org.baderlab.cy3d.internal.tools.PairIdentifier;
+import org.baderlab.cy3d.internal.tools.LongIntMap;
+import org.baderlab.cy3d.internal.tools.PairCountMap;
+import org.baderlab.cy3d.internal.tools.RenderColor;
 import org.cytoscape.model.CyEdge;
-import org.cytoscape.view.model.CyNetworkView;
 import org.cytoscape.view.model.CyNetworkViewSnapshot;
 import org.cytoscape.view.model.SnapshotEdgeInfo;
 import org.cytoscape.view.model.View;
 import org.cytoscape.view.presentation.property.BasicVisualLexicon;
 import org.cytoscape.view.presentation.property.LineTypeVisualProperty;
+import org.cytoscape.view.presentation.property.values.LineType;
 
 /**
  * This class is responsible for analyzing the current set of edges in the network and
  * generate edge coordinate data for use with rendering the edges.
+ * 
+ * One instance is shared by all the renderers of a network view (see RenderData), the generated
+ * edge data is cached between frames so that frames where only the camera moves do not
+ * recalculate any edge geometry.
+ * 
+ * The edge properties and parallel edge numbering are found in one sequential pass, then the 
+ * coordinates of the stale edges are generated in parallel on the common fork/join pool. 
+ * Each edge only depends on its own container so the order doesn't matter.
+ * 
+ * The node locations are read from the {@link NodeRenderBuffer} of the snapshot. When the buffer
+ * follows the one of the previous analysis only the endpoints of the edges of the changed nodes
+ * are compared. The style the edges are drawn with is read once here for all the renderers, and
+ * the edges whose coordinates or style changed are recorded in the {@link EdgeAnalysis}.
  */
 public class EdgeAnalyser {
 	
@@ -40,40 +59,160 @@ public class EdgeAnalyser {
 	 */
 	private static final int NUM_SEGMENTS = 8;
 	
+	/**
+	 * Fewer stale edges than this are generated on the calling thread, the fork/join overhead isn't worth it.
+	 */
+	private static final int PARALLEL_THRESHOLD = 4096;
+	
+	/**
+	 * Number of edges generated by one fork/join task.
+	 */
+	private static final int CHUNK_SIZE = 1024;
+	
+	private final boolean parallel;
+	
 	/** 
-	 * A set of {@link AugmentedEdgeContainer} objects containing extra generated data relating to each
-	 * edge as well as a reference to the edge it contains
+	 * The analyzed edges from the previous call and their index by edge view SUID. An entry is only
+	 * recalculated when its endpoints, line type or parallel edge numbering change. The index of the
+	 * current call is built in the second map and the two are swapped, so neither is reallocated.
 	 */
+	private List<AugmentedEdgeContainer> cachedEdges = Collections.emptyList();
+	private LongIntMap cachedEdgeIndices = new LongIntMap();
+	private LongIntMap edgeIndices = new LongIntMap();
+	
+	/** The result of the last call, returned as-is when the same snapshot is analyzed again. */
+	private EdgeAnalysis lastResult = new EdgeAnalysis(Collections.emptyList(), -1, -1, true, new int[0], 0);
+	private CyNetworkViewSnapshot lastSnapshot;
+	private double lastDistanceScale;
+	private long lastNodeVersion = -1;
+	
+	/** The edges of the current analysis that are new or whose style changed, and the changed edges. */
+	private boolean[] changedFlags = new boolean[0];
+	private int[] changed = new int[0];
+	private int changedCount;
+	private final RenderColor color = new RenderColor();
+	
+	/** Maps each pair of nodes to the number of edges between them, reused between calls. */
+	private final PairCountMap pairCoincidenceCount = new PairCountMap();
+	
+	/** Number of times the edges were analyzed and the duration of the last analysis, for metrics. */
+	private volatile long analysisCount = 0;
+	private volatile long lastAnalysisNanos = 0;
+	
+	
+	public EdgeAnalyser() {
+		this(true);
+	}
+	
+	/**
+	 * @param parallel If false the edge coordinates are always generated on the calling thread
+	 */
+	public EdgeAnalyser(boolean parallel) {
+		this.parallel = parallel;
+	}
+	
 
 	/**
 	 * Return a set of analyzed edges containing edge coordinates to be used for rendering. If an up-to-date
-	 * data set is available, the set is returned. Otherwise, calculations will be done to re-analyze the current edges.
+	 * data set is available, the set is returned. Otherwise, calculations will be done to re-analyze the
+	 * edges that have changed since the last call.
+	 * 
+	 * The returned coordinates are in OpenGL space (Y pointing up) and must not be modified by the caller.
 	 * 
-	 * @param networkView The {@link CyNetworkView} containing the edges to be analyzed
+	 * @param nodes The node buffer of the snapshot containing the edges to be analyzed
 	 * @param distanceScale The amount of scaling when converting between Cytoscape coordinates and OpenGL coordinates
-	 * @param currentFrame The current frame of rendering.
 	 * @return An up-to-date set of analyzed edge data to be used for rendering.
 	 */
-	public static Collection<AugmentedEdgeContainer> getAnalyzedEdges(CyNetworkViewSnapshot networkView, double distanceScale/*, long currentFrame*/) {
-		List<AugmentedEdgeContainer> edgeContainers = calculateEdgeProperties(networkView, distanceScale);
+	public Collection<AugmentedEdgeContainer> getAnalyzedEdges(NodeRenderBuffer nodes, double distanceScale) {
+		return analyze(nodes, distanceScale).getEdges();
+	}
+	
+	/**
+	 * Same as {@link #getAnalyzedEdges}, but also returns which edges changed since the previous analysis.
+	 */
+	public synchronized EdgeAnalysis analyze(NodeRenderBuffer nodes, double distanceScale) {
+		CyNetworkViewSnapshot networkView = nodes.getSnapshot();
+		// The drawing and picking procedures analyze the same snapshot during a frame
+		if(networkView == lastSnapshot && distanceScale == lastDistanceScale) {
+			return lastResult;
+		}
+		
+		// Only the edges of the changed nodes can have moved if the node buffer follows the last one
+		boolean checkAllEndpoints = distanceScale != lastDistanceScale || nodes.isStructureChanged() || nodes.getBaseVersion() != lastNodeVersion;
+		if(distanceScale != lastDistanceScale) {
+			cachedEdges = Collections.emptyList();
+			cachedEdgeIndices.clear(0);
+		}
+		
+		long start = System.nanoTime();
+		List<AugmentedEdgeContainer> edgeContainers = calculateEdgeProperties(nodes, distanceScale, checkAllEndpoints);
 		calculateEdgeCoordinates(edgeContainers);
-		return edgeContainers;		
-	}	
+		lastAnalysisNanos = System.nanoTime() - start;
+		analysisCount++;
+		
+		List<AugmentedEdgeContainer> previous = lastResult.getEdges();
+		boolean structureChanged = previous.size() != edgeContainers.size();
+		for(int i = 0; i < edgeContainers.size() && !structureChanged; i++) {
+			structureChanged = previous.get(i) != edgeContainers.get(i);
+		}
+		
+		lastSnapshot = networkView;
+		lastDistanceScale = distanceScale;
+		lastNodeVersion = nodes.getVersion();
+		lastResult = new EdgeAnalysis(Collections.unmodifiableList(edgeContainers), lastResult.getVersion() + 1, lastResult.getVersion(), 
+				structureChanged, Arrays.copyOf(changed, changedCount), changedCount);
+		return lastResult;
+	}
+	
+	public long getAnalysisCount() {
+		return analysisCount;
+	}
+	
+	public long getLastAnalysisNanos() {
+		return lastAnalysisNanos;
+	}
+	
+	/**
+	 * Returns the container of the edge from the previous call, null if the edge is new.
+	 */
+	private AugmentedEdgeContainer getCachedEdge(long edgeViewSUID) {
+		int index = cachedEdgeIndices.get(edgeViewSUID);
+		return index < 0 ? null : cachedEdges.get(index);
+	}
 	
-	private static List<AugmentedEdgeContainer> calculateEdgeProperties(CyNetworkViewSnapshot networkView, double distanceScale) {
+	private List<AugmentedEdgeContainer> calculateEdgeProperties(NodeRenderBuffer nodes, double distanceScale, boolean checkAllEndpoints) {
+		CyNetworkViewSnapshot networkView = nodes.getSnapshot();
 		List<AugmentedEdgeContainer> edgeContainers = new ArrayList<>(networkView.getEdgeCount());
+		edgeIndices.clear(networkView.getEdgeCount());
+		
+		pairCoincidenceCount.clear(networkView.getEdgeCount());
+		if (changedFlags.length < networkView.getEdgeCount()) {
+			changedFlags = new boolean[networkView.getEdgeCount()];
+		}
+		changedCount = 0;
 		
-		// This map maps each node-pair identifier to the number of edges between that pair of nodes
-		// The identifier is: max(sourceIndex, targetIndex) * nodeCount + min(sourceIndex, targetIndex)
-		Map<PairIdentifier, Integer> pairCoincidenceCount = new HashMap<>();
+		if (!checkAllEndpoints && nodes.isGeometryChanged()) {
+			updateChangedNodeEdges(nodes, distanceScale);
+		}
 		
-		PairIdentifier identifier;
 		long sourceIndex, targetIndex;
 		int edgeNumber;
 		
 		for (View<CyEdge> edgeView : networkView.getEdgeViews()) {
 			
-			AugmentedEdgeContainer edgeContainer = new AugmentedEdgeContainer(edgeView);
+			AugmentedEdgeContainer edgeContainer = getCachedEdge(edgeView.getSUID());
+			boolean created = edgeContainer == null;
+			if (created) {
+				edgeContainer = new AugmentedEdgeContainer(edgeView);
+			} else {
+				// Visual properties must be read from the current snapshot
+				edgeContainer.setEdgeView(edgeView);
+			}
+			if (edgeContainers.size() == changedFlags.length) {
+				changedFlags = Arrays.copyOf(changedFlags, changedFlags.length * 2 + 16);
+			}
+			changedFlags[edgeContainers.size()] = readStyle(edgeContainer, edgeView) || created;
+			edgeIndices.put(edgeView.getSUID(), edgeContainers.size());
 			edgeContainers.add(edgeContainer);
 			
 			SnapshotEdgeInfo edgeInfo = networkView.getEdgeInfo(edgeView);
@@ -81,62 +220,132 @@ public class EdgeAnalyser {
 			sourceIndex = edgeInfo.getSourceViewSUID();
 			targetIndex = edgeInfo.getTargetViewSUID();
 			
-			// Assign an identifier to each pair of nodes
-			
-			identifier = new PairIdentifier(sourceIndex, targetIndex);
-			
 			// Assign a value that represents how many edges have been found between this pair
-			if (!pairCoincidenceCount.containsKey(identifier)) {
-				edgeNumber = 1;
-			} else {
-				edgeNumber = pairCoincidenceCount.get(identifier) + 1;
-			}
+			edgeNumber = pairCoincidenceCount.increment(sourceIndex, targetIndex);
 			
-			edgeContainer.setPairIdentifier(identifier);
-			edgeContainer.setEdgeNumber(edgeNumber);
-			pairCoincidenceCount.put(identifier, edgeNumber);
+			if (edgeNumber != edgeContainer.getEdgeNumber()) {
+				edgeContainer.setEdgeNumber(edgeNumber);
+				edgeContainer.setCoordinates(null);
+			}
+			edgeContainer.setNodeSUIDs(sourceIndex, targetIndex);
 			
 			// Check if the edge leads from a node to itself
-			if (sourceIndex == targetIndex) {
-				edgeContainer.setSelfEdge(true);
-			} else {
-				edgeContainer.setSelfEdge(false);
+			edgeContainer.setSelfEdge(sourceIndex == targetIndex);
+			
+			// Find edge start and end points, only replace them if the nodes have moved
+			if (checkAllEndpoints || created) {
+				updateEndpoints(edgeContainer, nodes, distanceScale);
 			}
 			
-			// Find edge start and end points
-			edgeContainer.setStart(NetworkToolkit.obtainNodeCoordinates(edgeInfo.getSourceNodeView(), networkView, distanceScale));
-			edgeContainer.setEnd  (NetworkToolkit.obtainNodeCoordinates(edgeInfo.getTargetNodeView(), networkView, distanceScale));
+			LineType lineType = edgeView.getVisualProperty(BasicVisualLexicon.EDGE_LINE_TYPE);
+			if (lineType != edgeContainer.getLineType()) {
+				edgeContainer.setLineType(lineType);
+				edgeContainer.setCoordinates(null);
+			}
 			
 			// Determine if edge has sufficient length to be drawn
-			if (edgeContainer.getStart() != null && edgeContainer.getEnd() != null && 
-					(edgeContainer.getEnd().distance(edgeContainer.getStart()) >= MIN_LENGTH || edgeContainer.isSelfEdge())) {
-				edgeContainer.setSufficientLength(true);
-			} else {
-				edgeContainer.setSufficientLength(false);
+			boolean sufficientLength = edgeContainer.getStart() != null && edgeContainer.getEnd() != null && 
+					(edgeContainer.getEnd().distance(edgeContainer.getStart()) >= MIN_LENGTH || edgeContainer.isSelfEdge());
+			if (sufficientLength != edgeContainer.isSufficientLength()) {
+				edgeContainer.setSufficientLength(sufficientLength);
+				changedFlags[edgeContainers.size() - 1] = true;
 			}
 		}
 		
 		// Update the value for the total number of edges between this pair of nodes
-		for (AugmentedEdgeContainer edgeContainer : edgeContainers) {
+		for (int i = 0; i < edgeContainers.size(); i++) {
+			AugmentedEdgeContainer edgeContainer = edgeContainers.get(i);
 			
-			PairIdentifier pairIdentifier = edgeContainer.getPairIdentifier();
-			Integer totalCoincidentEdgesCount = pairCoincidenceCount.get(pairIdentifier);
+			int totalCoincidentEdgesCount = pairCoincidenceCount.get(edgeContainer.getSourceSUID(), edgeContainer.getTargetSUID());
 		
-			if (totalCoincidentEdgesCount != null) {
+			if (totalCoincidentEdgesCount != edgeContainer.getTotalCoincidentEdges()) {
 				
 				edgeContainer.setTotalCoincidentEdges(totalCoincidentEdgesCount);
+				edgeContainer.setCoordinates(null);
+			}
 			
-				// If there was only 1 edge for that pair of nodes, make it a straight edge
-				if (edgeContainer.getTotalCoincidentEdges() == 1 && !edgeContainer.isSelfEdge()) {
-					edgeContainer.setStraightEdge(true);
-				}
+			// If there was only 1 edge for that pair of nodes, make it a straight edge
+			edgeContainer.setStraightEdge(edgeContainer.getTotalCoincidentEdges() == 1 && !edgeContainer.isSelfEdge());
 			
+			// Stale coordinates are recalculated after this, edges that are too short to be drawn have none
+			if (changedFlags[i] || (edgeContainer.isSufficientLength() && edgeContainer.getCoordinates() == null)) {
+				if (changedCount == changed.length) {
+					changed = Arrays.copyOf(changed, Math.max(64, changedCount * 2));
+				}
+				changed[changedCount++] = i;
 			}
 		}
 		
+		LongIntMap previousIndices = cachedEdgeIndices;
+		cachedEdgeIndices = edgeIndices;
+		edgeIndices = previousIndices;
+		cachedEdges = edgeContainers;
 		return edgeContainers;
 	}
 	
+	/**
+	 * Updates the endpoints of the edges of the nodes that changed since the last analysis,
+	 * the edges that are new in this snapshot are updated when they are created.
+	 */
+	private void updateChangedNodeEdges(NodeRenderBuffer nodes, double distanceScale) {
+		CyNetworkViewSnapshot networkView = nodes.getSnapshot();
+		for (int k = 0; k < nodes.getChangedCount(); k++) {
+			for (View<CyEdge> edgeView : networkView.getAdjacentEdgeIterable(nodes.getViewSUID(nodes.getChanged(k)))) {
+				AugmentedEdgeContainer edgeContainer = getCachedEdge(edgeView.getSUID());
+				if (edgeContainer != null) {
+					updateEndpoints(edgeContainer, nodes, distanceScale);
+				}
+			}
+		}
+	}
+	
+	private static void updateEndpoints(AugmentedEdgeContainer edgeContainer, NodeRenderBuffer nodes, double distanceScale) {
+		int source = nodes.indexOf(edgeContainer.getSourceSUID());
+		int target = nodes.indexOf(edgeContainer.getTargetSUID());
+		if (updateEndpoint(edgeContainer, edgeContainer.getStart(), nodes, source, distanceScale)) {
+			edgeContainer.setStart(obtainNodeCoordinates(nodes, source, distanceScale));
+		}
+		if (updateEndpoint(edgeContainer, edgeContainer.getEnd(), nodes, target, distanceScale)) {
+			edgeContainer.setEnd(obtainNodeCoordinates(nodes, target, distanceScale));
+		}
+	}
+	
+	/**
+	 * Reads the style the edge is drawn with.
+	 * @return true if it changed
+	 */
+	private boolean readStyle(AugmentedEdgeContainer edgeContainer, View<CyEdge> edgeView) {
+		Boolean visible = edgeView.getVisualProperty(BasicVisualLexicon.EDGE_VISIBLE);
+		Number edgeWidth = edgeView.getVisualProperty(BasicVisualLexicon.EDGE_WIDTH);
+		RenderArcEdgesProcedure.chooseColor(color, edgeView);
+		return edgeContainer.setStyle(Boolean.TRUE.equals(visible), edgeWidth == null ? 1.0 : edgeWidth.doubleValue() / 2, EdgeMesh.packColor(color));
+	}
+	
+	/**
+	 * Returns true if the endpoint does not match the current location of the node, 
+	 * in which case the coordinates of the edge are invalidated.
+	 */
+	private static boolean updateEndpoint(AugmentedEdgeContainer edgeContainer, Vector3 endpoint, NodeRenderBuffer nodes, int node, double distanceScale) {
+		if (endpoint != null && node >= 0
+				&& endpoint.x() == nodes.getX(node) / distanceScale
+				&& endpoint.y() == nodes.getY(node) / distanceScale
+				&& endpoint.z() == nodes.getZ(node) / distanceScale) {
+			return false;
+		}
+		edgeContainer.setCoordinates(null);
+		return true;
+	}
+	
+	/**
+	 * Returns the location of the node in Cytoscape coordinates divided by the distance scale, 
+	 * null if the node is not in the buffer.
+	 */
+	private static Vector3 obtainNodeCoordinates(NodeRenderBuffer nodes, int node, double distanceScale) {
+		if (node < 0)
+			return null;
+		return new Vector3(nodes.getX(node) / distanceScale, nodes.getY(node) / distanceScale, nodes.getZ(node) / distanceScale);
+	}
+	
 	
 	/**
 	 * Return a 2-tuple containing the appropriate radius for the circular edge arc, as well
@@ -234,72 +443,110 @@ public class EdgeAnalyser {
 		}
 	}
 	
-	private static void calculateEdgeCoordinates(List<AugmentedEdgeContainer> edgeContainers) {
+	private void calculateEdgeCoordinates(List<AugmentedEdgeContainer> edgeContainers) {
+		// Only perform coordinate calculations if the edge has sufficient length and the cached coordinates are stale
+		List<AugmentedEdgeContainer> staleContainers = new ArrayList<>();
+		for (AugmentedEdgeContainer edgeContainer : edgeContainers) {
+			if (edgeContainer.isSufficientLength() && edgeContainer.getCoordinates() == null) {
+				staleContainers.add(edgeContainer);
+			}
+		}
 		
-		boolean selfEdge;
-		Vector3 start, end;
+		if (parallel && staleContainers.size() >= PARALLEL_THRESHOLD) {
+			ForkJoinPool.commonPool().invoke(new CoordinatesTask(staleContainers, 0, staleContainers.size()));
+		} else {
+			for (AugmentedEdgeContainer edgeContainer : staleContainers) {
+				calculateEdgeCoordinates(edgeContainer);
+			}
+		}
+	}
+	
+	/**
+	 * Generates the coordinates of a range of edges, split in halves until the range is at most CHUNK_SIZE.
+	 */
+	@SuppressWarnings("serial")
+	private static class CoordinatesTask extends RecursiveAction {
 		
-		for (AugmentedEdgeContainer edgeContainer : edgeContainers) {
+		private final List<AugmentedEdgeContainer> edgeContainers;
+		private final int start, end;
+		
+		CoordinatesTask(List<AugmentedEdgeContainer> edgeContainers, int start, int end) {
+			this.edgeContainers = edgeContainers;
+			this.start = start;
+			this.end = end;
+		}
+		
+		@Override
+		protected void compute() {
+			if (end - start <= CHUNK_SIZE) {
+				for (int i = start; i < end; i++) {
+					calculateEdgeCoordinates(edgeContainers.get(i));
+				}
+			} else {
+				int middle = (start + end) >>> 1;
+				invokeAll(new CoordinatesTask(edgeContainers, start, middle), new CoordinatesTask(edgeContainers, middle, end));
+			}
+		}
+	}
+	
+	private static void calculateEdgeCoordinates(AugmentedEdgeContainer edgeContainer) {
+		
+		View<CyEdge> edgeView = edgeContainer.getEdgeView();
+		
+		Vector3 start = edgeContainer.getStart();
+		Vector3 end = edgeContainer.getEnd();
+		boolean selfEdge = edgeContainer.isSelfEdge();
+		
+		// General points along the arc
+		Vector3[] points;
+		
+		if (edgeContainer.isStraightEdge()) {
 			
-			// Only perform coordinate calculations if the edge has sufficient length
-			if (edgeContainer.isSufficientLength()) {
-				
-				View<CyEdge> edgeView = edgeContainer.getEdgeView();
-				
-				start = edgeContainer.getStart();
-				end = edgeContainer.getEnd();
-				selfEdge = edgeContainer.isSelfEdge();
+			// Draw the correct type of edge depending on the visual property
+			if (edgeView.getVisualProperty(BasicVisualLexicon.EDGE_LINE_TYPE)
+					== LineTypeVisualProperty.EQUAL_DASH) {
+				points = EdgeCoordinateCalculator.generateStraightEdgeSparseCoordinates(
+						start, end, DASHED_EDGE_SPACING);
+			
+			} else if (edgeView.getVisualProperty(BasicVisualLexicon.EDGE_LINE_TYPE)
+					== LineTypeVisualProperty.DOT) {
+				points = EdgeCoordinateCalculator.generateStraightEdgeSparseCoordinates(
+						start, end, DOTTED_EDGE_SPACING);
+		
 				
-				// General points along the arc
-				Vector3[] points;
+			// Draw regular edges for the catch-all case
+			} else {
+				points = EdgeCoordinateCalculator.generateStraightEdgeCoordinates(
+						start, end, 1);
 				
-				if (edgeContainer.isStraightEdge()) {
-					
-					// Draw the correct type of edge depending on the visual property
-					if (edgeView.getVisualProperty(BasicVisualLexicon.EDGE_LINE_TYPE)
-							== LineTypeVisualProperty.EQUAL_DASH) {
-						points = EdgeCoordinateCalculator.generateStraightEdgeSparseCoordinates(
-								start, end, DASHED_EDGE_SPACING);
-					
-					} else if (edgeView.getVisualProperty(BasicVisualLexicon.EDGE_LINE_TYPE)
-							== LineTypeVisualProperty.DOT) {
-						points = EdgeCoordinateCalculator.generateStraightEdgeSparseCoordinates(
-								start, end, DOTTED_EDGE_SPACING);
+			}
+			
+		} else {
+			// Find the arc circle's center
+			Vector3 circleCenter = findCircleCenter(edgeContainer);
+			
+			// Draw the correct type of edge depending on the visual property
+			if (edgeView.getVisualProperty(BasicVisualLexicon.EDGE_LINE_TYPE)
+					== LineTypeVisualProperty.EQUAL_DASH) {
+				points = EdgeCoordinateCalculator.generateArcEdgeSparseCoordinates(
+						start, end, circleCenter, DASHED_EDGE_SPACING, selfEdge);
+			
+			} else if (edgeView.getVisualProperty(BasicVisualLexicon.EDGE_LINE_TYPE)
+					== LineTypeVisualProperty.DOT) {
+				points = EdgeCoordinateCalculator.generateArcEdgeSparseCoordinates(
+						start, end, circleCenter, DOTTED_EDGE_SPACING, selfEdge);
+			
 				
-						
-					// Draw regular edges for the catch-all case
-					} else {
-						points = EdgeCoordinateCalculator.generateStraightEdgeCoordinates(
-								start, end, 1);
-						
-					}
-					
-				} else {
-					// Find the arc circle's center
-					Vector3 circleCenter = findCircleCenter(edgeContainer);
-					
-					// Draw the correct type of edge depending on the visual property
-					if (edgeView.getVisualProperty(BasicVisualLexicon.EDGE_LINE_TYPE)
-							== LineTypeVisualProperty.EQUAL_DASH) {
-						points = EdgeCoordinateCalculator.generateArcEdgeSparseCoordinates(
-								start, end, circleCenter, DASHED_EDGE_SPACING, selfEdge);
-					
-					} else if (edgeView.getVisualProperty(BasicVisualLexicon.EDGE_LINE_TYPE)
-							== LineTypeVisualProperty.DOT) {
-						points = EdgeCoordinateCalculator.generateArcEdgeSparseCoordinates(
-								start, end, circleCenter, DOTTED_EDGE_SPACING, selfEdge);
-					
-						
-					// Draw regular edges for the catch-all case
-					} else {
-						points = EdgeCoordinateCalculator.generateArcEdgeCoordinates(
-								start, end, circleCenter, NUM_SEGMENTS, selfEdge);
-						
-					}
-				}
+			// Draw regular edges for the catch-all case
+			} else {
+				points = EdgeCoordinateCalculator.generateArcEdgeCoordinates(
+						start, end, circleCenter, NUM_SEGMENTS, selfEdge);
 				
-				edgeContainer.setCoordinates(points);
 			}
 		}
+		
+		// Cytoscape measures Y down from the top, OpenGL measures Y up from the bottom
+		GeometryToolkit.negateYCoords(points);
+		edgeContainer.setCoordinates(GeometryToolkit.pack(points));
 	}
 }
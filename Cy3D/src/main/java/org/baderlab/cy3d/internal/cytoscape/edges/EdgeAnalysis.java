@@ -0,0 +1,79 @@
+package org.baderlab.cy3d.internal.cytoscape.edges;
+
+import java.util.List;
+
+/**
+ * The result of one call to {@link EdgeAnalyser#analyze}, the analyzed edges and which of them
+ * differ from the previous analysis.
+ *
+ * An edge is changed if its coordinates were recalculated (one of its nodes moved, or its line
+ * type or parallel edge numbering changed), or if the style it is drawn with changed. Consumers
+ * that have processed the analysis with the base version only need to update the changed edges.
+ * If edges were added, removed or reordered the structure is reported as changed and the
+ * consumers must start over.
+ *
+ * @author mkucera
+ */
+public class EdgeAnalysis {
+
+	private final List<AugmentedEdgeContainer> edges;
+	private final long version;
+	private final long baseVersion;
+	private final boolean structureChanged;
+	private final int[] changed;
+	private final int changedCount;
+
+
+	EdgeAnalysis(List<AugmentedEdgeContainer> edges, long version, long baseVersion, boolean structureChanged, int[] changed, int changedCount) {
+		this.edges = edges;
+		this.version = version;
+		this.baseVersion = baseVersion;
+		this.structureChanged = structureChanged;
+		this.changed = changed;
+		this.changedCount = structureChanged ? 0 : changedCount;
+	}
+
+	/**
+	 * The analyzed edges, must not be modified.
+	 */
+	public List<AugmentedEdgeContainer> getEdges() {
+		return edges;
+	}
+
+	/**
+	 * Incremented for every analysis, consumers can remember the version they have
+	 * processed to find out if they can apply the changes of the next analysis.
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * The version of the analysis the changes are relative to, -1 if there is none.
+	 */
+	public long getBaseVersion() {
+		return baseVersion;
+	}
+
+	/**
+	 * Returns true if edges were added, removed or reordered since the base version,
+	 * in which case the changed edges are not recorded.
+	 */
+	public boolean isStructureChanged() {
+		return structureChanged;
+	}
+
+	/**
+	 * Number of edges that changed since the base version, only valid if the structure didn't change.
+	 */
+	public int getChangedCount() {
+		return changedCount;
+	}
+
+	/**
+	 * Returns the index into {@link #getEdges()} of the k-th changed edge.
+	 */
+	public int getChanged(int k) {
+		return changed[k];
+	}
+}
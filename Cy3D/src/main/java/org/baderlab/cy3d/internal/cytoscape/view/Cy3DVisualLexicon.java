@@ -1,6 +1,7 @@
 package org.baderlab.cy3d.internal.cytoscape.view;
 
 import static java.util.Arrays.asList;
+import static org.baderlab.cy3d.internal.cytoscape.view.DetailLevelVisualProperty.DETAIL_AUTO;
 import static org.baderlab.cy3d.internal.cytoscape.view.DetailLevelVisualProperty.DETAIL_HIGH;
 import static org.baderlab.cy3d.internal.cytoscape.view.DetailLevelVisualProperty.DETAIL_LOW;
 import static org.baderlab.cy3d.internal.cytoscape.view.DetailLevelVisualProperty.DETAIL_MED;
@@ -103,7 +104,7 @@ public class Cy3DVisualLexicon extends BasicVisualLexicon {
 		
 		supportedValuesMap.put(NODE_SHAPE, asList(RECTANGLE, ELLIPSE, TRIANGLE));
 		supportedValuesMap.put(EDGE_LINE_TYPE, asList(SOLID, DOT, EQUAL_DASH));
-		supportedValuesMap.put(DETAIL_LEVEL, asList(DETAIL_LOW, DETAIL_MED, DETAIL_HIGH));
+		supportedValuesMap.put(DETAIL_LEVEL, asList(DETAIL_LOW, DETAIL_MED, DETAIL_HIGH, DETAIL_AUTO));
 	}
 	
 	@Override
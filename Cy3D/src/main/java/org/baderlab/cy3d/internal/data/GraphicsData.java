@@ -6,6 +6,8 @@ import javax.swing.JComponent;
 import org.baderlab.cy3d.internal.camera.OriginOrbitCamera;
 import org.baderlab.cy3d.internal.cytoscape.edges.EdgeAnalyser;
 import org.baderlab.cy3d.internal.geometric.ViewingVolume;
+import org.baderlab.cy3d.internal.metrics.FrameMetrics;
+import org.baderlab.cy3d.internal.rendering.LevelOfDetail;
 import org.baderlab.cy3d.internal.task.TaskFactoryListener;
 import org.cytoscape.view.model.CyNetworkViewSnapshot;
 import org.cytoscape.view.model.VisualLexicon;
@@ -40,12 +42,20 @@ public class GraphicsData {
 	private final EventBus eventBus;
 	private final OriginOrbitCamera camera;
 	private final VisualLexicon visualLexicon;
+	private final RenderData renderData;
 	
 	// updated on every frame
 	private GL2 glContext;
 	private CyNetworkViewSnapshot networkSnapshot;
+	private int snapshotVersion;
+	private NodeRenderBuffer nodeBuffer;
 	
 	private ViewingVolume viewingVolume;
+	private LevelOfDetail levelOfDetail;
+	private final FrameMetrics frameMetrics = new FrameMetrics();
+	
+	// Only set when exporting an image in tiles, null when rendering the whole view
+	private ImageTile imageTile;
 	
 	private int mouseCurrentX;
 	private int mouseCurrentY;
@@ -65,9 +75,10 @@ public class GraphicsData {
 	private boolean showLabels = false;
 	
 	
-	public GraphicsData(VisualLexicon visualLexicon, EventBus eventBus, JComponent container, JComponent inputComponent) {
+	public GraphicsData(VisualLexicon visualLexicon, EventBus eventBus, RenderData renderData, JComponent container, JComponent inputComponent) {
 		this.eventBus = eventBus;
 		this.visualLexicon = visualLexicon;
+		this.renderData = renderData;
 		this.container = container;
 		this.inputComponent = inputComponent;
 		
@@ -75,7 +86,8 @@ public class GraphicsData {
 		pickingData = new PickingData();
 		camera = new OriginOrbitCamera();
 		viewingVolume = new ViewingVolume();
-		edgeAnalyser = new EdgeAnalyser();
+		levelOfDetail = new LevelOfDetail();
+		edgeAnalyser = renderData.getEdgeAnalyser();
 	}
 	
 	
@@ -84,6 +96,10 @@ public class GraphicsData {
 	}
 	
 	public void setNetworkSnapshot(CyNetworkViewSnapshot networkView) {
+		if(networkView != networkSnapshot) {
+			snapshotVersion++;
+			nodeBuffer = null;
+		}
 		this.networkSnapshot = networkView;
 	}
 	
@@ -102,6 +118,25 @@ public class GraphicsData {
 	public CyNetworkViewSnapshot getNetworkSnapshot() {
 		return networkSnapshot;
 	}
+	
+	/**
+	 * Returns the node visual properties of the current snapshot, the buffer is shared with
+	 * the other renderers of the view.
+	 */
+	public NodeRenderBuffer getNodeBuffer() {
+		if(nodeBuffer == null) {
+			nodeBuffer = renderData.getNodeBuffer(networkSnapshot);
+		}
+		return nodeBuffer;
+	}
+	
+	/**
+	 * Incremented every time a different snapshot is set. Can be used to tell
+	 * if anything derived from the snapshot needs to be recomputed.
+	 */
+	public int getSnapshotVersion() {
+		return snapshotVersion;
+	}
 
 	public OriginOrbitCamera getCamera() {
 		return camera;
@@ -143,6 +178,22 @@ public class GraphicsData {
 		return viewingVolume;
 	}
 
+	public LevelOfDetail getLevelOfDetail() {
+		return levelOfDetail;
+	}
+	
+	public FrameMetrics getFrameMetrics() {
+		return frameMetrics;
+	}
+	
+	public ImageTile getImageTile() {
+		return imageTile;
+	}
+	
+	public void setImageTile(ImageTile imageTile) {
+		this.imageTile = imageTile;
+	}
+
 	public JComponent getContainer() {
 		return container;
 	}
@@ -159,6 +210,13 @@ public class GraphicsData {
 		return taskManager;
 	}
 
+	/**
+	 * Render data shared with the other renderers attached to the same network view.
+	 */
+	public RenderData getRenderData() {
+		return renderData;
+	}
+
 	public EdgeAnalyser getEdgeAnalyser() {
 		return edgeAnalyser;
 	}
@@ -0,0 +1,101 @@
+package org.baderlab.cy3d.internal.data;
+
+import java.util.Arrays;
+
+import com.jogamp.opengl.GL2;
+
+/**
+ * A rectangle of a larger image that is rendered on its own, used to export images 
+ * that are larger than the maximum framebuffer size.
+ * 
+ * The tile is drawn with a frustum that is the part of the frustum of the whole image
+ * covered by the tile, so the tiles can be stitched together without seams.
+ * The tile coordinates are in pixels, measured from the top left corner of the image.
+ * 
+ * @author mkucera
+ */
+public class ImageTile {
+
+	private final int x, y, width, height;
+	private final int imageWidth, imageHeight;
+	
+	
+	public ImageTile(int x, int y, int width, int height, int imageWidth, int imageHeight) {
+		this.x = x;
+		this.y = y;
+		this.width = width;
+		this.height = height;
+		this.imageWidth = imageWidth;
+		this.imageHeight = imageHeight;
+	}
+	
+	
+	/**
+	 * Replaces the projection matrix with the frustum of this tile, leaves the matrix mode as GL_MODELVIEW.
+	 */
+	public void loadProjection(GL2 gl) {
+		// Same frustum as gluPerspective() for the whole image
+		double top = GraphicsData.NEAR_Z * Math.tan(Math.toRadians(GraphicsData.VERTICAL_VOF) / 2);
+		double right = top * imageWidth / imageHeight;
+		
+		// GL measures Y up from the bottom
+		double tileLeft   = -right + 2 * right * x / imageWidth;
+		double tileRight  = -right + 2 * right * (x + width) / imageWidth;
+		double tileTop    = top - 2 * top * y / imageHeight;
+		double tileBottom = top - 2 * top * (y + height) / imageHeight;
+		
+		gl.glMatrixMode(GL2.GL_PROJECTION);
+		gl.glLoadIdentity();
+		gl.glFrustum(tileLeft, tileRight, tileBottom, tileTop, GraphicsData.NEAR_Z, GraphicsData.FAR_Z);
+		gl.glMatrixMode(GL2.GL_MODELVIEW);
+	}
+	
+	/**
+	 * Writes the projection matrix of the whole image into the given array, in column major order.
+	 * Same matrix as gluPerspective() with the aspect ratio of the image.
+	 */
+	public void getImageProjection(double[] matrix) {
+		double top = GraphicsData.NEAR_Z * Math.tan(Math.toRadians(GraphicsData.VERTICAL_VOF) / 2);
+		double right = top * imageWidth / imageHeight;
+		double near = GraphicsData.NEAR_Z, far = GraphicsData.FAR_Z;
+		
+		Arrays.fill(matrix, 0, 16, 0);
+		matrix[0]  = near / right;
+		matrix[5]  = near / top;
+		matrix[10] = -(far + near) / (far - near);
+		matrix[11] = -1;
+		matrix[14] = -2 * far * near / (far - near);
+	}
+	
+	/**
+	 * The first tile of an image is drawn before the others. State that has to be the same 
+	 * for the whole image, like the label placement, is computed when drawing the first tile.
+	 */
+	public boolean isFirst() {
+		return x == 0 && y == 0;
+	}
+	
+	public int getX() {
+		return x;
+	}
+	
+	public int getY() {
+		return y;
+	}
+	
+	public int getWidth() {
+		return width;
+	}
+	
+	public int getHeight() {
+		return height;
+	}
+	
+	public int getImageWidth() {
+		return imageWidth;
+	}
+	
+	public int getImageHeight() {
+		return imageHeight;
+	}
+}
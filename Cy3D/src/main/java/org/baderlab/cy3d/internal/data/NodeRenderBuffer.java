@@ -0,0 +1,377 @@
+package org.baderlab.cy3d.internal.data;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Paint;
+import java.util.Arrays;
+import java.util.Objects;
+
+import org.baderlab.cy3d.internal.rendering.RenderNodesProcedure;
+import org.baderlab.cy3d.internal.rendering.shapes.ScalableShapeDrawer;
+import org.baderlab.cy3d.internal.rendering.shapes.ScalableShapeDrawer.Shape;
+import org.baderlab.cy3d.internal.tools.LongIntMap;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.view.model.CyNetworkViewSnapshot;
+import org.cytoscape.view.model.View;
+import org.cytoscape.view.presentation.property.BasicVisualLexicon;
+
+/**
+ * The node visual properties that are needed to draw and pick the nodes, read from a network
+ * snapshot once and stored in primitive arrays indexed by a dense node index.
+ *
+ * Reading a visual property from a snapshot view is a map lookup, the rendering and picking
+ * procedures read the same properties of every node on every frame. The buffer is created once
+ * per snapshot and shared by all the renderers of the view (see {@link RenderData#getNodeBuffer}),
+ * it is not modified after construction.
+ *
+ * Locations are stored in Cytoscape coordinates, the getSceneX/Y/Z methods convert them
+ * to OpenGL coordinates the same way the procedures used to.
+ * 
+ * When created from the buffer of the previous snapshot the new buffer also records which
+ * nodes differ from it, so that consumers that have processed the previous buffer only need
+ * to update those nodes. The view model doesn't say what changed between two snapshots, 
+ * so the values are compared as they are read. If nodes were added, removed or reordered 
+ * the structure is reported as changed and the consumers must start over.
+ *
+ * @author mkucera
+ */
+public class NodeRenderBuffer {
+
+	private static final byte VISIBLE = 1;
+	private static final byte SELECTED = 1 << 1;
+	private static final byte HAS_FILL_COLOR = 1 << 2;
+
+	private static final Shape[] SHAPES = Shape.values();
+
+	private final CyNetworkViewSnapshot snapshot;
+	private final int count;
+	private final long version;
+	private final long baseVersion;
+	private final LongIntMap indices;
+
+	private final View<CyNode>[] views;
+	private final long[] viewSUIDs;
+	private final long[] modelSUIDs;
+	private final double[] x;
+	private final double[] y;
+	private final double[] z;
+	private final float[] width;
+	private final float[] height;
+	private final float[] depth;
+	private final float[] boundingRadius;
+	private final int[] fillColor;
+	private final byte[] shape;
+	private final byte[] flags;
+
+	// only set for visible nodes that have a label
+	private final String[] labelText;
+	private final Font[] labelFontFace;
+	private final float[] labelFontSize;
+	private final Color[] labelColor;
+
+	// the difference from the buffer with the base version
+	private boolean structureChanged;
+	private boolean geometryChanged;
+	private int[] changed = new int[0];
+	private int changedCount = 0;
+
+
+	public NodeRenderBuffer(CyNetworkViewSnapshot snapshot) {
+		this(snapshot, null);
+	}
+
+	/**
+	 * @param previous The buffer of the previous snapshot of the same view, may be null. 
+	 * It is only read during construction.
+	 */
+	@SuppressWarnings("unchecked")
+	public NodeRenderBuffer(CyNetworkViewSnapshot snapshot, NodeRenderBuffer previous) {
+		this.snapshot = snapshot;
+		this.version = previous == null ? 0 : previous.version + 1;
+		this.baseVersion = previous == null ? -1 : previous.version;
+		this.structureChanged = previous == null;
+
+		int capacity = snapshot.getNodeCount();
+		indices = new LongIntMap(capacity);
+		views = new View[capacity];
+		viewSUIDs = new long[capacity];
+		modelSUIDs = new long[capacity];
+		x = new double[capacity];
+		y = new double[capacity];
+		z = new double[capacity];
+		width = new float[capacity];
+		height = new float[capacity];
+		depth = new float[capacity];
+		boundingRadius = new float[capacity];
+		fillColor = new int[capacity];
+		shape = new byte[capacity];
+		flags = new byte[capacity];
+		labelText = new String[capacity];
+		labelFontFace = new Font[capacity];
+		labelFontSize = new float[capacity];
+		labelColor = new Color[capacity];
+
+		int i = 0;
+		for(View<CyNode> nodeView : snapshot.getNodeViews()) {
+			if(nodeView == null || i == capacity)
+				continue;
+			read(i, nodeView);
+			if(!structureChanged) {
+				if(i >= previous.count || previous.viewSUIDs[i] != viewSUIDs[i])
+					structureChanged = true;
+				else
+					compare(i, previous);
+			}
+			i++;
+		}
+		count = i;
+		
+		if(previous != null && count != previous.count)
+			structureChanged = true;
+		if(structureChanged) {
+			geometryChanged = true;
+			changedCount = 0;
+		}
+	}
+
+	private void read(int i, View<CyNode> nodeView) {
+		views[i] = nodeView;
+		viewSUIDs[i] = nodeView.getSUID();
+		modelSUIDs[i] = snapshot.getNodeInfo(nodeView).getModelSUID();
+		indices.put(viewSUIDs[i], i);
+
+		x[i] = nodeView.getVisualProperty(BasicVisualLexicon.NODE_X_LOCATION);
+		y[i] = nodeView.getVisualProperty(BasicVisualLexicon.NODE_Y_LOCATION);
+		z[i] = nodeView.getVisualProperty(BasicVisualLexicon.NODE_Z_LOCATION);
+
+		Double w = nodeView.getVisualProperty(BasicVisualLexicon.NODE_WIDTH);
+		Double h = nodeView.getVisualProperty(BasicVisualLexicon.NODE_HEIGHT);
+		Double d = nodeView.getVisualProperty(BasicVisualLexicon.NODE_DEPTH);
+		if(w == null || h == null) {
+			// the unit shape is drawn unscaled
+			width[i] = height[i] = depth[i] = RenderNodesProcedure.NODE_SIZE_SCALE;
+		} else {
+			width[i] = w.floatValue();
+			height[i] = h.floatValue();
+			// Avoid flat pancake nodes
+			depth[i] = d == null || d.doubleValue() == 0.0 ? w.floatValue() : d.floatValue();
+		}
+		boundingRadius[i] = computeBoundingRadius(width[i], height[i], depth[i]);
+
+		byte f = 0;
+		Paint fill = nodeView.getVisualProperty(BasicVisualLexicon.NODE_FILL_COLOR);
+		if(fill instanceof Color) {
+			fillColor[i] = ((Color) fill).getRGB();
+			f |= HAS_FILL_COLOR;
+		}
+		shape[i] = (byte) RenderNodesProcedure.mapNodeShape(nodeView.getVisualProperty(BasicVisualLexicon.NODE_SHAPE)).ordinal();
+
+		if(Boolean.TRUE.equals(nodeView.getVisualProperty(BasicVisualLexicon.NODE_SELECTED)))
+			f |= SELECTED;
+		if(Boolean.TRUE.equals(nodeView.getVisualProperty(BasicVisualLexicon.NODE_VISIBLE))) {
+			f |= VISIBLE;
+			String text = nodeView.getVisualProperty(BasicVisualLexicon.NODE_LABEL);
+			if(text != null && !text.isEmpty()) {
+				labelText[i] = text;
+				labelFontFace[i] = nodeView.getVisualProperty(BasicVisualLexicon.NODE_LABEL_FONT_FACE);
+				Number fontSize = nodeView.getVisualProperty(BasicVisualLexicon.NODE_LABEL_FONT_SIZE);
+				labelFontSize[i] = fontSize == null ? Float.NaN : fontSize.floatValue();
+				Paint textPaint = nodeView.getVisualProperty(BasicVisualLexicon.NODE_LABEL_COLOR);
+				labelColor[i] = textPaint instanceof Color ? (Color) textPaint : null;
+			}
+		}
+		flags[i] = f;
+	}
+
+	/**
+	 * Records the node if any of its values differ from the same node in the previous buffer.
+	 */
+	private void compare(int i, NodeRenderBuffer previous) {
+		boolean geometry = x[i] != previous.x[i] || y[i] != previous.y[i] || z[i] != previous.z[i]
+				|| width[i] != previous.width[i] || height[i] != previous.height[i] || depth[i] != previous.depth[i]
+				|| isVisible(i) != previous.isVisible(i);
+		boolean style = flags[i] != previous.flags[i] || fillColor[i] != previous.fillColor[i] || shape[i] != previous.shape[i]
+				|| !Objects.equals(labelText[i], previous.labelText[i])
+				|| !Objects.equals(labelFontFace[i], previous.labelFontFace[i])
+				|| Float.compare(labelFontSize[i], previous.labelFontSize[i]) != 0
+				|| !Objects.equals(labelColor[i], previous.labelColor[i]);
+
+		if(geometry || style) {
+			geometryChanged |= geometry;
+			if(changedCount == changed.length) {
+				changed = Arrays.copyOf(changed, Math.max(64, changedCount * 2));
+			}
+			changed[changedCount++] = i;
+		}
+	}
+
+
+	public CyNetworkViewSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * Incremented for every buffer of the view, consumers can remember the version they have
+	 * processed to find out if they can apply the difference of the next buffer.
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * The version of the buffer the changes are relative to, -1 if there is none.
+	 */
+	public long getBaseVersion() {
+		return baseVersion;
+	}
+
+	/**
+	 * Returns true if nodes were added, removed or reordered since the base version,
+	 * in which case the changed nodes are not recorded.
+	 */
+	public boolean isStructureChanged() {
+		return structureChanged;
+	}
+
+	/**
+	 * Returns true if the location, size or visibility of any node changed since the base version.
+	 */
+	public boolean isGeometryChanged() {
+		return geometryChanged;
+	}
+
+	/**
+	 * Number of nodes whose values changed since the base version, only valid if the structure didn't change.
+	 */
+	public int getChangedCount() {
+		return changedCount;
+	}
+
+	/**
+	 * Returns the index of the k-th changed node.
+	 */
+	public int getChanged(int k) {
+		return changed[k];
+	}
+
+	/**
+	 * Returns the index of the node with the given view SUID, -1 if the snapshot doesn't contain the node.
+	 */
+	public int indexOf(long viewSUID) {
+		return indices.get(viewSUID);
+	}
+
+	public View<CyNode> getView(int i) {
+		return views[i];
+	}
+
+	public long getViewSUID(int i) {
+		return viewSUIDs[i];
+	}
+
+	public long getModelSUID(int i) {
+		return modelSUIDs[i];
+	}
+
+	/** Location in Cytoscape coordinates */
+	public double getX(int i) {
+		return x[i];
+	}
+
+	public double getY(int i) {
+		return y[i];
+	}
+
+	public double getZ(int i) {
+		return z[i];
+	}
+
+	/** Location in OpenGL coordinates */
+	public float getSceneX(int i) {
+		return (float) x[i] / GraphicsData.DISTANCE_SCALE;
+	}
+
+	/** Cytoscape measures Y down from the top, OpenGL measures Y up from the bottom */
+	public float getSceneY(int i) {
+		return -(float) y[i] / GraphicsData.DISTANCE_SCALE;
+	}
+
+	public float getSceneZ(int i) {
+		return (float) z[i] / GraphicsData.DISTANCE_SCALE;
+	}
+
+	/** Node size from the visual style, the depth is the width if it isn't set */
+	public float getWidth(int i) {
+		return width[i];
+	}
+
+	public float getHeight(int i) {
+		return height[i];
+	}
+
+	public float getDepth(int i) {
+		return depth[i];
+	}
+
+	/**
+	 * Returns the radius of a sphere around the node's center that contains the drawn shape, in OpenGL
+	 * coordinates. Sphere shaped nodes of equal width, height and depth are drawn with exactly this radius.
+	 */
+	public float getBoundingRadius(int i) {
+		return boundingRadius[i];
+	}
+
+	/**
+	 * The bounding radius of a node with the given size, see {@link #getBoundingRadius(int)}.
+	 */
+	public static float computeBoundingRadius(float width, float height, float depth) {
+		// the unit shapes fit inside a sphere of radius UNIT_SHAPE_RADIUS that is scaled by NODE_SIZE_RADIUS
+		float size = Math.max(width, Math.max(height, depth));
+		return ScalableShapeDrawer.UNIT_SHAPE_RADIUS * RenderNodesProcedure.NODE_SIZE_RADIUS * size / RenderNodesProcedure.NODE_SIZE_SCALE;
+	}
+
+	public boolean hasFillColor(int i) {
+		return (flags[i] & HAS_FILL_COLOR) != 0;
+	}
+
+	/** The fill color as packed ARGB, only valid if {@link #hasFillColor(int)} */
+	public int getFillColor(int i) {
+		return fillColor[i];
+	}
+
+	public Shape getShape(int i) {
+		return SHAPES[shape[i]];
+	}
+
+	public boolean isVisible(int i) {
+		return (flags[i] & VISIBLE) != 0;
+	}
+
+	public boolean isSelected(int i) {
+		return (flags[i] & SELECTED) != 0;
+	}
+
+	/** The label text, null if the node is not visible or doesn't have a label */
+	public String getLabelText(int i) {
+		return labelText[i];
+	}
+
+	/** May be null */
+	public Font getLabelFontFace(int i) {
+		return labelFontFace[i];
+	}
+
+	/** NaN if not set */
+	public float getLabelFontSize(int i) {
+		return labelFontSize[i];
+	}
+
+	/** Null if not set or not a Color */
+	public Color getLabelColor(int i) {
+		return labelColor[i];
+	}
+}
@@ -0,0 +1,115 @@
+package org.baderlab.cy3d.internal.data;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.baderlab.cy3d.internal.cytoscape.edges.EdgeAnalyser;
+import org.baderlab.cy3d.internal.metrics.FrameMetrics;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.view.model.CyNetworkViewSnapshot;
+
+/**
+ * Render data shared by all the renderers attached to the same network view,
+ * for example the main view and the bird's eye view.
+ * 
+ * The view model is snapshotted once per change, every renderer that asks for the snapshot
+ * before the view model changes again gets the same instance, and therefore also shares
+ * the edge geometry that the {@link EdgeAnalyser} caches for that snapshot and the
+ * {@link NodeRenderBuffer} read from it.
+ * 
+ * Obtained from {@link RenderDataProvider}.
+ * 
+ * @author mkucera
+ */
+public class RenderData {
+
+	private final CyNetworkView networkView;
+	private final EdgeAnalyser edgeAnalyser = new EdgeAnalyser();
+	
+	private long version = 0;
+	private long snapshotVersion = -1;
+	private CyNetworkViewSnapshot snapshot;
+	private NodeRenderBuffer nodeBuffer;
+	
+	private final Map<String,FrameMetrics> metrics = new LinkedHashMap<>();
+	
+	int refCount = 0;
+	
+	
+	RenderData(CyNetworkView networkView) {
+		this.networkView = networkView;
+	}
+	
+	
+	public CyNetworkView getNetworkView() {
+		return networkView;
+	}
+	
+	public EdgeAnalyser getEdgeAnalyser() {
+		return edgeAnalyser;
+	}
+	
+	/**
+	 * Checks if the view model has changed and returns its version, the version is incremented on every change.
+	 * 
+	 * This is the only place the dirty flag of the view model is cleared, the renderers must use this 
+	 * instead of calling CyNetworkView.dirty(true) themselves so that no renderer misses a change.
+	 */
+	public synchronized long pollVersion() {
+		if(networkView.dirty(true)) {
+			version++;
+		}
+		return version;
+	}
+	
+	/**
+	 * Increments the version so that all the renderers of the view repaint, even though the view model hasn't changed.
+	 */
+	public synchronized void invalidate() {
+		version++;
+	}
+	
+	/**
+	 * Returns a snapshot of the current state of the view model, a new snapshot is only created if 
+	 * the view model has changed since the last call.
+	 */
+	public synchronized CyNetworkViewSnapshot getSnapshot() {
+		// clear the dirty flag before creating the snapshot so that changes made while creating it are not lost
+		long currentVersion = pollVersion();
+		if(snapshot == null || currentVersion != snapshotVersion) {
+			snapshot = networkView.createSnapshot();
+			snapshotVersion = currentVersion;
+		}
+		return snapshot;
+	}
+	
+	/**
+	 * Returns the node visual properties of the given snapshot, they are only read once per snapshot.
+	 */
+	public synchronized NodeRenderBuffer getNodeBuffer(CyNetworkViewSnapshot snapshot) {
+		if(nodeBuffer == null || nodeBuffer.getSnapshot() != snapshot) {
+			// diff against the previous buffer so that the renderers only update the nodes that changed
+			nodeBuffer = new NodeRenderBuffer(snapshot, nodeBuffer);
+		}
+		return nodeBuffer;
+	}
+	
+	
+	/**
+	 * Registers the frame metrics of a renderer attached to this view, so that they can be reported by command.
+	 */
+	public synchronized void addMetrics(String rendererName, FrameMetrics frameMetrics) {
+		metrics.put(rendererName, frameMetrics);
+	}
+	
+	public synchronized void removeMetrics(String rendererName) {
+		metrics.remove(rendererName);
+	}
+	
+	/**
+	 * Returns the frame metrics of every renderer attached to this view, keyed by renderer name.
+	 */
+	public synchronized Map<String,FrameMetrics> getMetrics() {
+		return new LinkedHashMap<>(metrics);
+	}
+}
@@ -0,0 +1,48 @@
+package org.baderlab.cy3d.internal.data;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.cytoscape.view.model.CyNetworkView;
+
+/**
+ * Acts as a single point for accessing the {@link RenderData} for a network view, 
+ * keyed by view SUID the same way as {@link org.baderlab.cy3d.internal.eventbus.EventBusProvider}.
+ * 
+ * The render data is reference counted, it is discarded when the last renderer attached 
+ * to the view releases it.
+ * 
+ * @author mkucera
+ */
+public class RenderDataProvider {
+
+	private final Map<Long,RenderData> renderDataMap = new HashMap<>();
+	
+	
+	public synchronized RenderData acquire(CyNetworkView networkView) {
+		Long suid = checkNotNull(networkView).getSUID();
+		RenderData renderData = renderDataMap.get(suid);
+		if(renderData == null) {
+			renderData = new RenderData(networkView);
+			renderDataMap.put(suid, renderData);
+		}
+		renderData.refCount++;
+		return renderData;
+	}
+	
+	/**
+	 * Returns the render data of a view without acquiring it, or null if no renderer is attached to the view.
+	 */
+	public synchronized RenderData get(CyNetworkView networkView) {
+		return renderDataMap.get(checkNotNull(networkView).getSUID());
+	}
+	
+	public synchronized void release(RenderData renderData) {
+		if(--renderData.refCount <= 0) {
+			renderDataMap.remove(renderData.getNetworkView().getSUID());
+		}
+	}
+	
+}
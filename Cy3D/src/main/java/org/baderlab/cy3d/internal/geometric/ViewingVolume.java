@@ -7,6 +7,11 @@ package org.baderlab.cy3d.internal.geometric;
  */
 public class ViewingVolume {
 	
+	/** Results of {@link #classifyBox} */
+	public static final int OUTSIDE = 0;
+	public static final int INTERSECTS = 1;
+	public static final int INSIDE = 2;
+	
 	/**
 	 * A class representing a plane, stored in the format Ax + By + Cz + D = 0.
 	 * The parameters A, B, C are represented by the normal vector.
@@ -31,6 +36,8 @@ public class ViewingVolume {
 	private Plane top, bottom;
 	private Plane left, right;
 	
+	private final Plane[] planes;
+	
 	public ViewingVolume() {
 		near = new Plane();
 		far = new Plane();
@@ -38,6 +45,7 @@ public class ViewingVolume {
 		bottom = new Plane();
 		left = new Plane();
 		right = new Plane();
+		planes = new Plane[] { near, far, top, bottom, left, right };
 	}
 	
 	/**
@@ -83,6 +91,43 @@ public class ViewingVolume {
 			}
 	}
 	
+	/**
+	 * Same as {@link #inside(Vector3, double)} but does not require a Vector3 to be allocated.
+	 */
+	public boolean inside(double x, double y, double z, double distance) {
+		for(Plane plane : planes) {
+			Vector3 n = plane.normal;
+			if(n.x() * x + n.y() * y + n.z() * z + plane.parameterD > distance) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Tests an axis aligned box against the viewing volume. The test is conservative, a box near a 
+	 * corner of the volume may be reported as intersecting even though it is outside.
+	 * 
+	 * @return {@link #OUTSIDE} if the box is completely outside, {@link #INSIDE} if it is completely
+	 * inside, {@link #INTERSECTS} otherwise.
+	 */
+	public int classifyBox(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+		int result = INSIDE;
+		for(Plane plane : planes) {
+			Vector3 n = plane.normal;
+			// the corners of the box furthest inside and furthest outside of the plane
+			double inner = n.x() * (n.x() > 0 ? minX : maxX) + n.y() * (n.y() > 0 ? minY : maxY) + n.z() * (n.z() > 0 ? minZ : maxZ) + plane.parameterD;
+			if(inner > 0) {
+				return OUTSIDE;
+			}
+			double outer = n.x() * (n.x() > 0 ? maxX : minX) + n.y() * (n.y() > 0 ? maxY : minY) + n.z() * (n.z() > 0 ? maxZ : minZ) + plane.parameterD;
+			if(outer > 0) {
+				result = INTERSECTS;
+			}
+		}
+		return result;
+	}
+	
 	/**
 	 * Checks if a point is inside the given plane, that is, it lies on the opposite side of the normal.
 	 * 
@@ -169,8 +214,8 @@ public class ViewingVolume {
 		
 		// Calculate right plane
 		
-		// Rotate 90 degrees past the right plane to obtain the normal
-		Vector3 rightNormal = cameraDirection.rotate(cameraUp, Math.toRadians(horizontalFieldOfView / 2 + 90));
+		// Rotate 90 degrees past the right plane to obtain the normal, in the opposite direction to the left plane
+		Vector3 rightNormal = cameraDirection.rotate(cameraUp, -Math.toRadians(horizontalFieldOfView / 2 + 90));
 		
 		// Find a point on the plane to find the D parameter
 		Vector3 rightSamplePosition = cameraLeft.multiply(Math.tan(Math.toRadians(horizontalFieldOfView) / 2) * -zNear).plus(nearCenterPoint);
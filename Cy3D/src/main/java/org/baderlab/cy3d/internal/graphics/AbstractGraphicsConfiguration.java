@@ -8,6 +8,7 @@ import com.jogamp.opengl.GL2;
 import javax.swing.JComponent;
 
 import org.baderlab.cy3d.internal.data.GraphicsData;
+import org.baderlab.cy3d.internal.metrics.FrameMetrics;
 import org.baderlab.cy3d.internal.rendering.GraphicsProcedure;
 
 public abstract class AbstractGraphicsConfiguration implements GraphicsConfiguration {
@@ -53,8 +54,13 @@ public abstract class AbstractGraphicsConfiguration implements GraphicsConfigura
 	
 	@Override
 	public void drawScene() {
+		GL2 gl = graphicsData.getGlContext();
+		FrameMetrics metrics = graphicsData.getFrameMetrics();
 		for (GraphicsProcedure proc : renderProcedures) {
+			String stage = proc.getClass().getSimpleName();
+			metrics.begin(stage, gl);
 			proc.execute(graphicsData);
+			metrics.end(stage, gl);
 		}
 	}
 	
@@ -5,9 +5,7 @@ import javax.swing.JComponent;
 import org.baderlab.cy3d.internal.data.GraphicsData;
 import org.baderlab.cy3d.internal.input.handler.BirdsEyeEventBusListener;
 import org.baderlab.cy3d.internal.rendering.PositionCameraProcedure;
-import org.baderlab.cy3d.internal.rendering.RenderArcEdgesProcedure;
 import org.baderlab.cy3d.internal.rendering.RenderBoundingBoxProcedure;
-import org.baderlab.cy3d.internal.rendering.RenderNodesProcedure;
 import org.baderlab.cy3d.internal.rendering.ResetSceneProcedure;
 
 import com.google.common.eventbus.EventBus;
@@ -26,10 +24,14 @@ public class BirdsEyeGraphicsConfiguration extends AbstractGraphicsConfiguration
 	private RenderBoundingBoxProcedure boundingBoxProc;
 	
 	public BirdsEyeGraphicsConfiguration() {
+		this(NodeRenderMode.getDefault(), EdgeRenderMode.getDefault());
+	}
+	
+	public BirdsEyeGraphicsConfiguration(NodeRenderMode nodeRenderMode, EdgeRenderMode edgeRenderMode) {
 		add(new ResetSceneProcedure());
 		add(new PositionCameraProcedure());
-		add(new RenderNodesProcedure());
-		add(new RenderArcEdgesProcedure());
+		add(nodeRenderMode.createProcedure());
+		add(edgeRenderMode.createProcedure());
 		add(boundingBoxProc = new RenderBoundingBoxProcedure());	
 	}
 	
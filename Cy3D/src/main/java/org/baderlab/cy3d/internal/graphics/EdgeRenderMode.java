@@ -0,0 +1,40 @@
+package org.baderlab.cy3d.internal.graphics;
+
+import org.baderlab.cy3d.internal.rendering.BatchedRenderArcEdgesProcedure;
+import org.baderlab.cy3d.internal.rendering.GraphicsProcedure;
+import org.baderlab.cy3d.internal.rendering.RenderArcEdgesProcedure;
+import org.baderlab.cy3d.internal.tools.PropertyToolkit;
+
+/**
+ * Selects the procedure used to render edges.
+ *
+ * The default can be changed by starting Cytoscape with -Dcy3d.edgeRenderMode=DISPLAY_LIST
+ *
+ * @author mkucera
+ */
+public enum EdgeRenderMode {
+
+	/** Each edge segment is drawn with its own transformation and display list call. */
+	DISPLAY_LIST {
+		public GraphicsProcedure createProcedure() {
+			return new RenderArcEdgesProcedure();
+		}
+	},
+
+	/** All edges of the same line type are drawn from one vertex buffer with a single draw call. */
+	BATCHED {
+		public GraphicsProcedure createProcedure() {
+			return new BatchedRenderArcEdgesProcedure();
+		}
+	};
+
+	public static final String PROPERTY_NAME = "cy3d.edgeRenderMode";
+
+
+	public abstract GraphicsProcedure createProcedure();
+
+
+	public static EdgeRenderMode getDefault() {
+		return PropertyToolkit.fromProperty(PROPERTY_NAME, EdgeRenderMode.class, BATCHED);
+	}
+}
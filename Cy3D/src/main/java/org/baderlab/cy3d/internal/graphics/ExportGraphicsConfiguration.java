@@ -0,0 +1,38 @@
+package org.baderlab.cy3d.internal.graphics;
+
+import javax.swing.JComponent;
+
+import org.baderlab.cy3d.internal.rendering.PositionCameraProcedure;
+import org.baderlab.cy3d.internal.rendering.ResetSceneProcedure;
+
+/**
+ * A {@link GraphicsConfiguration} used to export images of the main view offscreen, 
+ * see {@link TiledImageRenderer}. Draws the same nodes, edges and labels as the 
+ * {@link MainGraphicsConfiguration} but without picking, input handling, the selection box
+ * or the metrics overlay.
+ * 
+ * @author mkucera
+ */
+public class ExportGraphicsConfiguration extends AbstractGraphicsConfiguration {
+	
+	public ExportGraphicsConfiguration() {
+		this(NodeRenderMode.getDefault(), EdgeRenderMode.getDefault(), LabelRenderMode.getDefault());
+	}
+	
+	public ExportGraphicsConfiguration(NodeRenderMode nodeRenderMode, EdgeRenderMode edgeRenderMode, LabelRenderMode labelRenderMode) {
+		add(new ResetSceneProcedure());
+		add(new PositionCameraProcedure());
+		add(nodeRenderMode.createProcedure());
+		add(edgeRenderMode.createProcedure());
+		add(labelRenderMode.createProcedure());
+	}
+	
+	@Override
+	public void initializeFrame(JComponent frame, JComponent inputComponent) {
+	}
+	
+	@Override
+	public String toString() {
+		return "ExportGraphicsConfiguration";
+	}
+}
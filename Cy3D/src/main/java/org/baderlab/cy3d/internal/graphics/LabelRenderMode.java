@@ -0,0 +1,40 @@
+package org.baderlab.cy3d.internal.graphics;
+
+import org.baderlab.cy3d.internal.rendering.AtlasRenderNodeLabelsProcedure;
+import org.baderlab.cy3d.internal.rendering.GraphicsProcedure;
+import org.baderlab.cy3d.internal.rendering.RenderNodeLabelsProcedure;
+import org.baderlab.cy3d.internal.tools.PropertyToolkit;
+
+/**
+ * Selects the procedure used to render node labels.
+ *
+ * The default can be changed by starting Cytoscape with -Dcy3d.labelRenderMode=TEXT_RENDERER
+ *
+ * @author mkucera
+ */
+public enum LabelRenderMode {
+
+	/** Labels are drawn with the AWT based JOGL TextRenderer. */
+	TEXT_RENDERER {
+		public GraphicsProcedure createProcedure() {
+			return new RenderNodeLabelsProcedure();
+		}
+	},
+
+	/** Labels are drawn as textured quads from a glyph atlas, one draw call per font. */
+	GLYPH_ATLAS {
+		public GraphicsProcedure createProcedure() {
+			return new AtlasRenderNodeLabelsProcedure();
+		}
+	};
+
+	public static final String PROPERTY_NAME = "cy3d.labelRenderMode";
+
+
+	public abstract GraphicsProcedure createProcedure();
+
+
+	public static LabelRenderMode getDefault() {
+		return PropertyToolkit.fromProperty(PROPERTY_NAME, LabelRenderMode.class, GLYPH_ATLAS);
+	}
+}
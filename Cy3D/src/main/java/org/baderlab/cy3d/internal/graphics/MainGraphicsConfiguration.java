@@ -15,12 +15,10 @@ import org.baderlab.cy3d.internal.input.handler.MainEventBusListener;
 import org.baderlab.cy3d.internal.input.handler.MainInputEventListener;
 import org.baderlab.cy3d.internal.input.handler.MouseZoneInputListener;
 import org.baderlab.cy3d.internal.input.handler.ToolPanel;
-import org.baderlab.cy3d.internal.picking.DefaultShapePickingProcessor;
-import org.baderlab.cy3d.internal.picking.ShapePickingProcessor;
+import org.baderlab.cy3d.internal.metrics.FrameMetrics;
+import org.baderlab.cy3d.internal.picking.CachingShapePickingProcessor;
 import org.baderlab.cy3d.internal.rendering.PositionCameraProcedure;
-import org.baderlab.cy3d.internal.rendering.RenderArcEdgesProcedure;
-import org.baderlab.cy3d.internal.rendering.RenderNodeLabelsProcedure;
-import org.baderlab.cy3d.internal.rendering.RenderNodesProcedure;
+import org.baderlab.cy3d.internal.rendering.RenderMetricsOverlayProcedure;
 import org.baderlab.cy3d.internal.rendering.RenderSelectionBoxProcedure;
 import org.baderlab.cy3d.internal.rendering.ResetSceneProcedure;
 import org.cytoscape.model.CyNode;
@@ -37,7 +35,7 @@ import com.google.common.eventbus.EventBus;
  */
 public class MainGraphicsConfiguration extends AbstractGraphicsConfiguration {
 	
-	private final ShapePickingProcessor shapePickingProcessor;
+	private final CachingShapePickingProcessor shapePickingProcessor;
 	
 	private JComponent frame;
 	private InputEventListener inputHandler;
@@ -45,15 +43,20 @@ public class MainGraphicsConfiguration extends AbstractGraphicsConfiguration {
 			
 	
 	public MainGraphicsConfiguration() {
-		shapePickingProcessor = new DefaultShapePickingProcessor(new RenderNodesProcedure(), new RenderArcEdgesProcedure());
+		this(NodeRenderMode.getDefault(), EdgeRenderMode.getDefault(), PickingMode.getDefault(), LabelRenderMode.getDefault());
+	}
+	
+	public MainGraphicsConfiguration(NodeRenderMode nodeRenderMode, EdgeRenderMode edgeRenderMode, PickingMode pickingMode, LabelRenderMode labelRenderMode) {
+		shapePickingProcessor = new CachingShapePickingProcessor(pickingMode.createProcessor());
 		
 		add(new ResetSceneProcedure());
 		add(new PositionCameraProcedure());
 		
-		add(new RenderNodesProcedure());
-		add(new RenderArcEdgesProcedure());
+		add(nodeRenderMode.createProcedure());
+		add(edgeRenderMode.createProcedure());
 		add(new RenderSelectionBoxProcedure());
-		add(new RenderNodeLabelsProcedure());
+		add(labelRenderMode.createProcedure());
+		add(new RenderMetricsOverlayProcedure());
 	}
 	
 	@Override
@@ -108,9 +111,13 @@ public class MainGraphicsConfiguration extends AbstractGraphicsConfiguration {
 	@Override
 	public void update() {
 		updateCameraOrigin();
+		FrameMetrics metrics = graphicsData.getFrameMetrics();
+		metrics.begin(FrameMetrics.PICKING, graphicsData.getGlContext());
 		shapePickingProcessor.processPicking(graphicsData);
+		metrics.end(FrameMetrics.PICKING, graphicsData.getGlContext());
+		metrics.addPickingCacheCounts(shapePickingProcessor.getHitCount(), shapePickingProcessor.getMissCount());
+		shapePickingProcessor.resetCounts();
 	}
-
 	
 	@Override
 	public void dispose() {
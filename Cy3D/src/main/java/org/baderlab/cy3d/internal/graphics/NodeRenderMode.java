@@ -0,0 +1,40 @@
+package org.baderlab.cy3d.internal.graphics;
+
+import org.baderlab.cy3d.internal.rendering.GraphicsProcedure;
+import org.baderlab.cy3d.internal.rendering.InstancedRenderNodesProcedure;
+import org.baderlab.cy3d.internal.rendering.RenderNodesProcedure;
+import org.baderlab.cy3d.internal.tools.PropertyToolkit;
+
+/**
+ * Selects the procedure used to render nodes.
+ *
+ * The default can be changed by starting Cytoscape with -Dcy3d.nodeRenderMode=INSTANCED
+ *
+ * @author mkucera
+ */
+public enum NodeRenderMode {
+
+	/** Each node is drawn with its own display list call. */
+	DISPLAY_LIST {
+		public GraphicsProcedure createProcedure() {
+			return new RenderNodesProcedure();
+		}
+	},
+
+	/** All nodes of the same shape are drawn with a single instanced draw call. */
+	INSTANCED {
+		public GraphicsProcedure createProcedure() {
+			return new InstancedRenderNodesProcedure();
+		}
+	};
+
+	public static final String PROPERTY_NAME = "cy3d.nodeRenderMode";
+
+
+	public abstract GraphicsProcedure createProcedure();
+
+
+	public static NodeRenderMode getDefault() {
+		return PropertyToolkit.fromProperty(PROPERTY_NAME, NodeRenderMode.class, DISPLAY_LIST);
+	}
+}
@@ -0,0 +1,130 @@
+package org.baderlab.cy3d.internal.graphics;
+
+import java.awt.image.BufferedImage;
+
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GLAutoDrawable;
+import com.jogamp.opengl.GLCapabilities;
+import com.jogamp.opengl.GLDrawableFactory;
+import com.jogamp.opengl.GLEventListener;
+import com.jogamp.opengl.GLException;
+import com.jogamp.opengl.GLOffscreenAutoDrawable;
+import com.jogamp.opengl.GLProfile;
+import com.jogamp.opengl.util.awt.AWTGLReadBufferUtil;
+
+/**
+ * Renders a {@link RenderEventListener} into an offscreen drawable and reads the result back 
+ * into a BufferedImage. 
+ * 
+ * JOGL chooses an FBO or a pbuffer depending on what the driver supports. If no hardware 
+ * accelerated offscreen drawable can be created, for example on a headless machine without a GPU, 
+ * a software renderer is requested instead (eg Mesa llvmpipe with LIBGL_ALWAYS_SOFTWARE=1).
+ * 
+ * The drawable is created on the first call to {@link #render(int, int)} and resized as needed,
+ * rendering happens on the calling thread.
+ * 
+ * @author mkucera
+ */
+public class OffscreenRenderer {
+
+	private final GLEventListener renderListener;
+	private final CaptureListener captureListener = new CaptureListener();
+	private GLOffscreenAutoDrawable drawable;
+	private boolean failed = false;
+	
+	
+	public OffscreenRenderer(GLEventListener renderListener) {
+		this.renderListener = renderListener;
+	}
+	
+	
+	/**
+	 * Renders a frame of the given size.
+	 * @return the frame, or null if an offscreen drawable is not supported on this machine
+	 */
+	public synchronized BufferedImage render(int width, int height) {
+		if(failed)
+			return null;
+		
+		if(drawable == null) {
+			drawable = createDrawable(width, height);
+			if(drawable == null) {
+				failed = true;
+				return null;
+			}
+			drawable.addGLEventListener(renderListener);
+			drawable.addGLEventListener(captureListener);
+		} else if(drawable.getSurfaceWidth() != width || drawable.getSurfaceHeight() != height) {
+			drawable.setSurfaceSize(width, height);
+		}
+		
+		drawable.display();
+		BufferedImage image = captureListener.image;
+		captureListener.image = null;
+		return image;
+	}
+	
+	
+	private static GLOffscreenAutoDrawable createDrawable(int width, int height) {
+		GLProfile profile = GLProfile.getDefault();
+		GLDrawableFactory factory = GLDrawableFactory.getFactory(profile);
+		
+		GLCapabilities capabilities = new GLCapabilities(profile);
+		capabilities.setOnscreen(false);
+		capabilities.setDoubleBuffered(false);
+		capabilities.setAlphaBits(8);
+		capabilities.setDepthBits(24);
+		
+		try {
+			return factory.createOffscreenAutoDrawable(null, capabilities, null, width, height);
+		} catch(GLException e) {
+			System.err.println("Cy3D: hardware offscreen rendering is not available, trying a software renderer: " + e.getMessage());
+		}
+		try {
+			capabilities.setHardwareAccelerated(false);
+			return factory.createOffscreenAutoDrawable(null, capabilities, null, width, height);
+		} catch(GLException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+	
+	
+	public synchronized void dispose() {
+		if(drawable != null) {
+			drawable.destroy();
+			drawable = null;
+		}
+	}
+	
+	
+	/**
+	 * Reads back the frame after the render listener has drawn it.
+	 */
+	private static class CaptureListener implements GLEventListener {
+		
+		private AWTGLReadBufferUtil readBufferUtil;
+		private BufferedImage image;
+		
+		@Override
+		public void init(GLAutoDrawable drawable) {
+			readBufferUtil = new AWTGLReadBufferUtil(drawable.getGLProfile(), true);
+		}
+		
+		@Override
+		public void display(GLAutoDrawable drawable) {
+			GL gl = drawable.getGL();
+			gl.glFinish();
+			image = readBufferUtil.readPixelsToBufferedImage(gl, true);
+		}
+		
+		@Override
+		public void reshape(GLAutoDrawable drawable, int x, int y, int width, int height) {
+		}
+		
+		@Override
+		public void dispose(GLAutoDrawable drawable) {
+			readBufferUtil.dispose(drawable.getGL());
+		}
+	}
+}
@@ -0,0 +1,50 @@
+package org.baderlab.cy3d.internal.graphics;
+
+import org.baderlab.cy3d.internal.picking.ColorShapePickingProcessor;
+import org.baderlab.cy3d.internal.picking.DefaultShapePickingProcessor;
+import org.baderlab.cy3d.internal.picking.ShapePickingProcessor;
+import org.baderlab.cy3d.internal.picking.SpatialShapePickingProcessor;
+import org.baderlab.cy3d.internal.rendering.RenderArcEdgesProcedure;
+import org.baderlab.cy3d.internal.rendering.RenderNodesProcedure;
+import org.baderlab.cy3d.internal.tools.PropertyToolkit;
+
+/**
+ * Selects the {@link ShapePickingProcessor} used by the main view.
+ *
+ * The default can be changed by starting Cytoscape with -Dcy3d.pickingMode=GL_SELECT
+ *
+ * @author mkucera
+ */
+public enum PickingMode {
+
+	/** Uses the deprecated GL_SELECT render mode. */
+	GL_SELECT {
+		public ShapePickingProcessor createProcessor() {
+			return new DefaultShapePickingProcessor(new RenderNodesProcedure(), new RenderArcEdgesProcedure());
+		}
+	},
+
+	/** Draws the shapes with unique colors into an offscreen framebuffer, drag selection uses the spatial index. */
+	COLOR {
+		public ShapePickingProcessor createProcessor() {
+			return new ColorShapePickingProcessor();
+		}
+	},
+
+	/** Tests a ray or the selection volume against a spatial index on the CPU, no render pass. */
+	CPU {
+		public ShapePickingProcessor createProcessor() {
+			return new SpatialShapePickingProcessor();
+		}
+	};
+
+	public static final String PROPERTY_NAME = "cy3d.pickingMode";
+
+
+	public abstract ShapePickingProcessor createProcessor();
+
+
+	public static PickingMode getDefault() {
+		return PropertyToolkit.fromProperty(PROPERTY_NAME, PickingMode.class, COLOR);
+	}
+}
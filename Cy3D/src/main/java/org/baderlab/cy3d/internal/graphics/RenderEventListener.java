@@ -16,7 +16,9 @@ import com.jogamp.opengl.glu.GLU;
 
 import org.baderlab.cy3d.internal.camera.CameraPosition;
 import org.baderlab.cy3d.internal.data.GraphicsData;
+import org.baderlab.cy3d.internal.data.ImageTile;
 import org.baderlab.cy3d.internal.data.PixelConverter;
+import org.baderlab.cy3d.internal.metrics.FrameMetrics;
 import org.baderlab.cy3d.internal.tools.GeometryToolkit;
 import org.cytoscape.model.CyNode;
 import org.cytoscape.view.model.CyNetworkView;
@@ -85,7 +87,7 @@ public class RenderEventListener implements GLEventListener {
 		
 		graphicsData.setGlContext(gl);
 		graphicsData.setPixelConverter(new PixelConverter(drawable.getNativeSurface()));
-		graphicsData.setNetworkSnapshot(networkView.createSnapshot());
+		graphicsData.setNetworkSnapshot(graphicsData.getRenderData().getSnapshot());
 		
 		configuration.initialize(graphicsData);
 		
@@ -109,9 +111,23 @@ public class RenderEventListener implements GLEventListener {
 //		System.out.println("RenderEventListener.display() " + System.currentTimeMillis());
 		GL2 gl = drawable.getGL().getGL2();
 		graphicsData.setGlContext(gl);
-		graphicsData.setNetworkSnapshot(networkView.createSnapshot());
+		FrameMetrics metrics = graphicsData.getFrameMetrics();
+		metrics.beginFrame();
 		
-		// Re-calculate the viewing volume
+		// The snapshot is shared with the other renderers of the view and only changes when the view model does
+		metrics.begin(FrameMetrics.SNAPSHOT);
+		graphicsData.setNetworkSnapshot(graphicsData.getRenderData().getSnapshot());
+		metrics.end(FrameMetrics.SNAPSHOT);
+		
+		// When drawing a tile of a larger image the culling and level of detail are based on the whole image
+		ImageTile tile = graphicsData.getImageTile();
+		int viewWidth  = tile == null ? graphicsData.getScreenWidth()  : tile.getImageWidth();
+		int viewHeight = tile == null ? graphicsData.getScreenHeight() : tile.getImageHeight();
+		if(tile != null) {
+			tile.loadProjection(gl);
+		}
+		
+		// Re-calculate the viewing volume, used for culling
 		CameraPosition camera = graphicsData.getCamera();
 		graphicsData.getViewingVolume().calculateViewingVolume(
 				camera.getPosition(), 
@@ -120,15 +136,21 @@ public class RenderEventListener implements GLEventListener {
 				GraphicsData.NEAR_Z, 
 				GraphicsData.FAR_Z, 
 				GraphicsData.VERTICAL_VOF, 
-				GeometryToolkit.findHorizontalFieldOfView(GraphicsData.DISTANCE_SCALE, 
-						graphicsData.getScreenWidth(), graphicsData.getScreenHeight()));
+				2 * GeometryToolkit.findHorizontalFieldOfView(GraphicsData.VERTICAL_VOF, 
+						viewWidth, viewHeight));
 		
 		
 		// Doesn't really need to be split into two methods, but it allows GrapicsConfigurations to 
 		// only override update() and leave the drawing to AbstractGraphicsConfiguration.
 		
+		graphicsData.getLevelOfDetail().beginFrame(camera, viewHeight);
 		configuration.update();
 		configuration.drawScene();
+		// The bias stays the same for all the tiles of an image, otherwise the tiles would not match
+		if(tile == null) {
+			graphicsData.getLevelOfDetail().endFrame();
+		}
+		metrics.endFrame(graphicsData.getEdgeAnalyser());
 		
 		int errorCode = gl.glGetError();
 		if(errorCode != GL2.GL_NO_ERROR) {
@@ -166,6 +188,7 @@ public class RenderEventListener implements GLEventListener {
 	public void dispose(GLAutoDrawable autoDrawable) {
 		System.out.println("RenderEventListener.dispose()");
 		configuration.dispose();
+		graphicsData.getFrameMetrics().dispose(autoDrawable.getGL().getGL2());
 	}
 	
 	@Override
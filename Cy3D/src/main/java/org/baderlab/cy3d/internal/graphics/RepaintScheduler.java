@@ -0,0 +1,187 @@
+package org.baderlab.cy3d.internal.graphics;
+
+import java.awt.Frame;
+import java.awt.Window;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.JComponent;
+import javax.swing.JInternalFrame;
+import javax.swing.SwingUtilities;
+
+import org.baderlab.cy3d.internal.data.RenderData;
+
+/**
+ * Schedules repaints for all the Cy3D rendering engines from a single daemon thread.
+ *
+ * Repaints are requested explicitly with {@link Registration#requestRepaint()} (for example
+ * on input or when the renderer's internal state changes), or implicitly when the version
+ * of the view model in the {@link RenderData} changes. Any number of requests between two
+ * frames result in a single repaint.
+ *
+ * Each view is limited to its own maximum frame rate, and views that are not showing
+ * (hidden or minimized) are not repainted until they become visible again.
+ *
+ * The thread is started when the first view is registered and stops when the last view
+ * is unregistered.
+ *
+ * @author mkucera
+ */
+public class RepaintScheduler {
+
+	public static final int DEFAULT_MAX_FRAME_RATE = 60;
+
+	/** How often the view models are polled for changes when there are no explicit requests. */
+	private static final long POLL_INTERVAL_MILLIS = 16;
+
+	private final List<Registration> registrations = new CopyOnWriteArrayList<>();
+	private final Object lock = new Object();
+	private Thread thread;
+	private boolean signalled = false;
+
+
+	/**
+	 * A view that has been registered with the scheduler.
+	 */
+	public class Registration {
+		private final JComponent panel;
+		private final RenderData renderData;
+		private volatile long minFrameIntervalNanos;
+		private long lastVersion = -1;
+
+		private volatile boolean requested = true;
+		private boolean pending = false;
+		private long lastFrameNanos = 0;
+
+		private Registration(JComponent panel, RenderData renderData, int maxFrameRate) {
+			this.panel = panel;
+			this.renderData = renderData;
+			setMaxFrameRate(maxFrameRate);
+		}
+
+		/**
+		 * Requests a repaint of the view, may be called from any thread.
+		 */
+		public void requestRepaint() {
+			requested = true;
+			signal();
+		}
+
+		public void setMaxFrameRate(int maxFrameRate) {
+			minFrameIntervalNanos = maxFrameRate <= 0 ? 0 : TimeUnit.SECONDS.toNanos(1) / maxFrameRate;
+		}
+
+		public void unregister() {
+			registrations.remove(this);
+			signal();
+		}
+
+		/**
+		 * Returns the number of nanoseconds until the view may be repainted, 0 if it was repainted now
+		 * and Long.MAX_VALUE if there is nothing to do.
+		 */
+		private long update(long now) {
+			if(requested) {
+				requested = false;
+				pending = true;
+			}
+			long version = renderData.pollVersion();
+			if(version != lastVersion) {
+				lastVersion = version;
+				pending = true;
+			}
+			if(!pending || !isVisible(panel)) {
+				return Long.MAX_VALUE;
+			}
+			long wait = lastFrameNanos + minFrameIntervalNanos - now;
+			if(wait > 0) {
+				return wait;
+			}
+			pending = false;
+			lastFrameNanos = now;
+			panel.repaint();
+			return 0;
+		}
+	}
+
+
+	/**
+	 * Registers a view so that it is repainted when requested or when the view model changes.
+	 */
+	public Registration register(JComponent panel, RenderData renderData, int maxFrameRate) {
+		Registration registration = new Registration(panel, renderData, maxFrameRate);
+		registrations.add(registration);
+		synchronized(lock) {
+			if(thread == null) {
+				thread = new Thread(this::run, "Cy3D Repaint Scheduler");
+				thread.setDaemon(true);
+				thread.start();
+			}
+		}
+		signal();
+		return registration;
+	}
+
+
+	/**
+	 * The maximum frame rate can be set with the system property "cy3d.maxFrameRate", 0 means uncapped.
+	 */
+	public static int getDefaultMaxFrameRate() {
+		return Integer.getInteger("cy3d.maxFrameRate", DEFAULT_MAX_FRAME_RATE);
+	}
+
+
+	private void signal() {
+		synchronized(lock) {
+			signalled = true;
+			lock.notifyAll();
+		}
+	}
+
+	private void run() {
+		try {
+			while(true) {
+				long now = System.nanoTime();
+				long wait = TimeUnit.MILLISECONDS.toNanos(POLL_INTERVAL_MILLIS);
+				for(Registration registration : registrations) {
+					wait = Math.min(wait, registration.update(now));
+				}
+
+				synchronized(lock) {
+					if(registrations.isEmpty()) {
+						thread = null;
+						return;
+					}
+					if(!signalled && wait > 0) {
+						TimeUnit.NANOSECONDS.timedWait(lock, wait);
+					}
+					signalled = false;
+				}
+			}
+		} catch(InterruptedException e) {
+			synchronized(lock) {
+				thread = null;
+			}
+		}
+	}
+
+
+	/**
+	 * Returns false if the panel is not showing or its window or internal frame is minimized.
+	 */
+	private static boolean isVisible(JComponent panel) {
+		if(!panel.isShowing() || panel.getWidth() <= 0 || panel.getHeight() <= 0)
+			return false;
+
+		JInternalFrame internalFrame = (JInternalFrame) SwingUtilities.getAncestorOfClass(JInternalFrame.class, panel);
+		if(internalFrame != null && internalFrame.isIcon())
+			return false;
+
+		Window window = SwingUtilities.getWindowAncestor(panel);
+		if(window instanceof Frame && (((Frame)window).getExtendedState() & Frame.ICONIFIED) != 0)
+			return false;
+
+		return true;
+	}
+}
@@ -0,0 +1,48 @@
+package org.baderlab.cy3d.internal.graphics;
+
+import javax.swing.JComponent;
+
+import org.baderlab.cy3d.internal.data.GraphicsData;
+import org.baderlab.cy3d.internal.rendering.PositionCameraProcedure;
+import org.baderlab.cy3d.internal.rendering.RenderNodesProcedure;
+import org.baderlab.cy3d.internal.rendering.RenderSimplifiedEdgesProcedure;
+import org.baderlab.cy3d.internal.rendering.ResetSceneProcedure;
+import org.baderlab.cy3d.internal.tools.NetworkToolkit;
+
+/**
+ * A {@link GraphicsConfiguration} for thumbnails and visual style previews that are rendered 
+ * offscreen. Like the bird's eye view there is no input handling or picking, there are no labels 
+ * and edges are drawn as straight lines. The camera is fit to the network whenever it changes.
+ * 
+ * The node procedure doesn't use shaders so that it also works with software renderers.
+ * 
+ * @author mkucera
+ */
+public class ThumbnailGraphicsConfiguration extends AbstractGraphicsConfiguration {
+	
+	private int snapshotVersion = -1;
+	
+	public ThumbnailGraphicsConfiguration() {
+		add(new ResetSceneProcedure());
+		add(new PositionCameraProcedure());
+		add(new RenderNodesProcedure());
+		add(new RenderSimplifiedEdgesProcedure());
+	}
+	
+	@Override
+	public void initializeFrame(JComponent frame, JComponent inputComponent) {
+	}
+	
+	@Override
+	public void update() {
+		if(snapshotVersion != graphicsData.getSnapshotVersion()) {
+			snapshotVersion = graphicsData.getSnapshotVersion();
+			NetworkToolkit.fitInView(graphicsData.getCamera(), graphicsData.getNetworkSnapshot().getNodeViews(), GraphicsData.DISTANCE_SCALE, 3.0, 5.0);
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return "ThumbnailGraphicsConfiguration";
+	}
+}
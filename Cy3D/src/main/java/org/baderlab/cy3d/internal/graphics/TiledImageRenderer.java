@@ -0,0 +1,90 @@
+package org.baderlab.cy3d.internal.graphics;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import org.baderlab.cy3d.internal.camera.OriginOrbitCamera;
+import org.baderlab.cy3d.internal.data.GraphicsData;
+import org.baderlab.cy3d.internal.data.ImageTile;
+import org.baderlab.cy3d.internal.data.RenderData;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.view.model.VisualLexicon;
+
+import com.google.common.eventbus.EventBus;
+
+/**
+ * Renders an image of a network view offscreen, in tiles that are stitched together, so that 
+ * the size of the image isn't limited by the maximum framebuffer size and the on-screen panel 
+ * isn't touched.
+ * 
+ * The camera and the label setting are copied from the view when the renderer is created. Each tile
+ * is drawn with its part of the frustum of the whole image, see {@link ImageTile}. The level of detail
+ * is not adjusted between tiles and the labels are placed once on the whole image, so labels that
+ * cross the border between two tiles are drawn in both.
+ * 
+ * The tile size can be set with the system property "cy3d.exportTileSize".
+ * 
+ * @author mkucera
+ */
+public class TiledImageRenderer {
+
+	public static final int DEFAULT_TILE_SIZE = 2048;
+	
+	private final GraphicsData graphicsData;
+	private final OffscreenRenderer renderer;
+	private final int tileSize;
+	
+	
+	public TiledImageRenderer(CyNetworkView networkView, VisualLexicon visualLexicon, RenderData renderData, GraphicsData viewGraphicsData) {
+		// A private event bus, the export must not react to or post events of the view
+		graphicsData = new GraphicsData(visualLexicon, new EventBus(), renderData, null, null);
+		graphicsData.setShowLabels(viewGraphicsData.getShowLabels());
+		
+		OriginOrbitCamera viewCamera = viewGraphicsData.getCamera();
+		OriginOrbitCamera camera = graphicsData.getCamera();
+		camera.setTarget(viewCamera.getTarget());
+		camera.moveTo(viewCamera.getPosition(), viewCamera.getUp());
+		
+		renderer = new OffscreenRenderer(new RenderEventListener(networkView, new ExportGraphicsConfiguration(), graphicsData));
+		tileSize = Math.max(64, Integer.getInteger("cy3d.exportTileSize", DEFAULT_TILE_SIZE));
+	}
+	
+	
+	/**
+	 * Renders the image, on the calling thread.
+	 * @return the image, or null if offscreen rendering is not supported on this machine
+	 */
+	public BufferedImage render(int width, int height) {
+		width  = Math.max(1, width);
+		height = Math.max(1, height);
+		
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = image.createGraphics();
+		g.setComposite(AlphaComposite.Src);
+		try {
+			for(int y = 0; y < height; y += tileSize) {
+				for(int x = 0; x < width; x += tileSize) {
+					int tileWidth  = Math.min(tileSize, width - x);
+					int tileHeight = Math.min(tileSize, height - y);
+					
+					graphicsData.setImageTile(new ImageTile(x, y, tileWidth, tileHeight, width, height));
+					BufferedImage tile = renderer.render(tileWidth, tileHeight);
+					if(tile == null)
+						return null;
+					
+					g.drawImage(tile, x, y, null);
+				}
+			}
+		} finally {
+			g.dispose();
+			graphicsData.setImageTile(null);
+		}
+		return image;
+	}
+	
+	
+	public void dispose() {
+		renderer.dispose();
+	}
+}
@@ -0,0 +1,172 @@
+package org.baderlab.cy3d.internal.layouts;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BooleanSupplier;
+
+import org.baderlab.cy3d.internal.tools.LayoutToolkit;
+import org.baderlab.cy3d.internal.tools.LayoutToolkit.Bounds;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.view.layout.AbstractLayoutTask;
+import org.cytoscape.view.layout.LayoutNode;
+import org.cytoscape.view.layout.LayoutPartition;
+import org.cytoscape.view.layout.PartitionUtil;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.view.model.View;
+import org.cytoscape.view.presentation.property.BasicVisualLexicon;
+import org.cytoscape.work.TaskMonitor;
+import org.cytoscape.work.undo.UndoSupport;
+
+/**
+ * Base of the layouts that arrange every partition (connected component) of the network
+ * on its own and then arrange the partitions in a grid with {@link LayoutToolkit#arrangePartitions}.
+ *
+ * The node positions are read from the views into arrays once, the nodes of a partition are
+ * next to each other in the arrays. The partitions don't share any nodes, so they are arranged
+ * in parallel on the common fork/join pool, whose parallelism bounds the number of threads.
+ * The tasks only work on the arrays, the views are written once on the calling thread when
+ * all partitions are in place.
+ *
+ * @author mkucera
+ */
+public abstract class AbstractPartitionLayoutTask extends AbstractLayoutTask {
+
+	/**
+	 * Networks with fewer nodes than this are arranged on the calling thread.
+	 */
+	private static final int PARALLEL_THRESHOLD = 2048;
+
+	/**
+	 * Number of nodes a fork/join task arranges at least, unless it has only one partition.
+	 */
+	private static final int CHUNK_SIZE = 512;
+
+
+	/**
+	 * Arranges the nodes at the indices start to end of the position arrays around their current average position.
+	 */
+	interface Arrangement {
+		void arrange(double[] x, double[] y, double[] z, int start, int end);
+	}
+
+
+	public AbstractPartitionLayoutTask(String name, CyNetworkView networkView, Set<View<CyNode>> nodesToLayOut, String layoutAttribute, UndoSupport undo) {
+		super(name, networkView, nodesToLayOut, layoutAttribute, undo);
+	}
+
+	/**
+	 * Arranges the nodes of one partition, see {@link Arrangement}.
+	 * Called concurrently for different partitions.
+	 */
+	protected abstract void arrangePartition(double[] x, double[] y, double[] z, int start, int end);
+
+	@Override
+	protected void doLayout(TaskMonitor taskMonitor) {
+
+		// Break graph into partitions
+		List<LayoutPartition> layoutPartitions = PartitionUtil.partition(networkView, false, null);
+
+		List<View<CyNode>> nodeViews = new ArrayList<>();
+		int[] nodeOffsets = new int[layoutPartitions.size() + 1];
+
+		int count = 0;
+		for (LayoutPartition partition : layoutPartitions) {
+			for (LayoutNode layoutNode : partition.getNodeList()) {
+				nodeViews.add(layoutNode.getNodeView());
+			}
+			nodeOffsets[++count] = nodeViews.size();
+		}
+
+		layOut(nodeViews, nodeOffsets, this::arrangePartition, () -> cancelled);
+	}
+
+	/**
+	 * Arranges the partitions with the given arrangement and then arranges the partitions in a grid.
+	 * The nodes of partition i are nodeViews[nodeOffsets[i]] to nodeViews[nodeOffsets[i+1]].
+	 * Nothing is written to the views if the layout is cancelled.
+	 */
+	static void layOut(List<View<CyNode>> nodeViews, int[] nodeOffsets, Arrangement arrangement, BooleanSupplier cancelled) {
+		int partitionCount = nodeOffsets.length - 1;
+		if (partitionCount < 1)
+			return;
+
+		int nodeCount = nodeViews.size();
+		double[] x = new double[nodeCount];
+		double[] y = new double[nodeCount];
+		double[] z = new double[nodeCount];
+		for (int i = 0; i < nodeCount; i++) {
+			View<CyNode> nodeView = nodeViews.get(i);
+			x[i] = nodeView.getVisualProperty(BasicVisualLexicon.NODE_X_LOCATION);
+			y[i] = nodeView.getVisualProperty(BasicVisualLexicon.NODE_Y_LOCATION);
+			z[i] = nodeView.getVisualProperty(BasicVisualLexicon.NODE_Z_LOCATION);
+		}
+
+		PartitionTask task = new PartitionTask(arrangement, cancelled, x, y, z, nodeOffsets, new Bounds[partitionCount], 0, partitionCount);
+		if (nodeCount >= PARALLEL_THRESHOLD && partitionCount > 1) {
+			ForkJoinPool.commonPool().invoke(task);
+		} else {
+			task.arrangePartitions();
+		}
+
+		if (cancelled.getAsBoolean())
+			return;
+
+		LayoutToolkit.arrangePartitions(nodeOffsets, task.bounds, x, y, z);
+
+		for (int i = 0; i < nodeCount; i++) {
+			View<CyNode> nodeView = nodeViews.get(i);
+			nodeView.setVisualProperty(BasicVisualLexicon.NODE_X_LOCATION, x[i]);
+			nodeView.setVisualProperty(BasicVisualLexicon.NODE_Y_LOCATION, y[i]);
+			nodeView.setVisualProperty(BasicVisualLexicon.NODE_Z_LOCATION, z[i]);
+		}
+	}
+
+
+	/**
+	 * Arranges a range of partitions and finds their bounds, split in halves until the range has
+	 * at most CHUNK_SIZE nodes or one partition.
+	 */
+	@SuppressWarnings("serial")
+	private static class PartitionTask extends RecursiveAction {
+
+		private final Arrangement arrangement;
+		private final BooleanSupplier cancelled;
+		private final double[] x, y, z;
+		private final int[] nodeOffsets;
+		private final Bounds[] bounds;
+		private final int start, end;
+
+		PartitionTask(Arrangement arrangement, BooleanSupplier cancelled, double[] x, double[] y, double[] z, int[] nodeOffsets, Bounds[] bounds, int start, int end) {
+			this.arrangement = arrangement;
+			this.cancelled = cancelled;
+			this.x = x;
+			this.y = y;
+			this.z = z;
+			this.nodeOffsets = nodeOffsets;
+			this.bounds = bounds;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - start <= 1 || nodeOffsets[end] - nodeOffsets[start] <= CHUNK_SIZE) {
+				arrangePartitions();
+			} else {
+				int middle = (start + end) >>> 1;
+				invokeAll(new PartitionTask(arrangement, cancelled, x, y, z, nodeOffsets, bounds, start, middle),
+						new PartitionTask(arrangement, cancelled, x, y, z, nodeOffsets, bounds, middle, end));
+			}
+		}
+
+		void arrangePartitions() {
+			for (int i = start; i < end && !cancelled.getAsBoolean(); i++) {
+				arrangement.arrange(x, y, z, nodeOffsets[i], nodeOffsets[i + 1]);
+				bounds[i] = LayoutToolkit.findBounds(x, y, z, nodeOffsets[i], nodeOffsets[i + 1]);
+			}
+		}
+	}
+}
@@ -0,0 +1,216 @@
+package org.baderlab.cy3d.internal.layouts;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.cytoscape.work.TaskMonitor;
+
+/**
+ * Fruchterman-Reingold style force layout in 3D. Neighbors attract each other with
+ * d^2 / k and all nodes repel each other with k^2 / d, where k is the spring length.
+ * On weighted graphs the repulsion is multiplied by the mass of the other node and the
+ * attraction by the edge weight divided by the mass of the node.
+ * The repulsion is approximated with a {@link BarnesHutOctree} that is rebuilt on
+ * every iteration. The displacement of a node is limited by a temperature that
+ * cools down linearly to zero over the iterations.
+ *
+ * The forces of an iteration only depend on the positions from the previous iteration,
+ * so they are calculated in parallel on the common fork/join pool.
+ *
+ * Nodes at the same position don't repel each other, there is no direction to push them in.
+ * Such a node is pushed in a random direction instead. The direction only depends on the node
+ * and a seed drawn from the given Random once per iteration, so the layout is the same no
+ * matter which thread calculates which node.
+ *
+ * @author mkucera
+ */
+class BarnesHutForceLayout {
+
+	/**
+	 * Fewer nodes than this are calculated on the calling thread, the fork/join overhead isn't worth it.
+	 */
+	private static final int PARALLEL_THRESHOLD = 2048;
+
+	/**
+	 * Number of nodes calculated by one fork/join task.
+	 */
+	private static final int CHUNK_SIZE = 512;
+
+	private final double theta;
+	private final BarnesHutOctree tree = new BarnesHutOctree();
+
+	private volatile boolean cancelled = false;
+
+	// displacement of every node in the current iteration
+	private double[] dispX = new double[0];
+	private double[] dispY = new double[0];
+	private double[] dispZ = new double[0];
+
+	// seed of the directions coincident nodes are pushed in, in the current iteration
+	private long jitterSeed;
+
+
+	/**
+	 * @param theta Barnes-Hut accuracy, 0 calculates the exact forces, larger is faster but less accurate
+	 */
+	BarnesHutForceLayout(double theta) {
+		this.theta = theta;
+	}
+
+	void cancel() {
+		cancelled = true;
+	}
+
+	boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * A starting temperature that lets the nodes of the graph spread out to their natural size.
+	 */
+	static double getInitialTemperature(LayoutGraph graph, double springLength) {
+		return springLength * Math.max(1, Math.cbrt(graph.nodeCount));
+	}
+
+	/**
+	 * Runs the iterations on the graph, the positions are updated in place.
+	 * @param springLength The ideal distance between neighbors, in Cytoscape coordinates
+	 * @param progressFrom progress reported before the first iteration
+	 * @param progressTo progress reported after the last iteration
+	 * @param random the source of the directions coincident nodes are pushed in
+	 * @return false if cancelled
+	 */
+	boolean run(LayoutGraph graph, double springLength, int iterations, double initialTemperature, TaskMonitor taskMonitor, double progressFrom, double progressTo, Random random) {
+		int n = graph.nodeCount;
+		if(dispX.length < n) {
+			dispX = new double[n];
+			dispY = new double[n];
+			dispZ = new double[n];
+		}
+
+		int reported = -1;
+		for(int iteration = 0; iteration < iterations; iteration++) {
+			if(cancelled)
+				return false;
+
+			tree.build(graph.x, graph.y, graph.z, graph.mass, n);
+			jitterSeed = random.nextLong();
+			if(n >= PARALLEL_THRESHOLD) {
+				ForkJoinPool.commonPool().invoke(new ForceTask(graph, springLength, 0, n));
+			} else {
+				calculateForces(graph, springLength, 0, n);
+			}
+
+			double temperature = initialTemperature * (1 - (double) iteration / iterations);
+			move(graph, temperature);
+
+			int percent = (int) (100.0 * (iteration + 1) / iterations);
+			if(percent != reported) {
+				reported = percent;
+				taskMonitor.setProgress(progressFrom + (progressTo - progressFrom) * (iteration + 1) / iterations);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Calculates the displacement of the nodes in the range from the current positions.
+	 */
+	private void calculateForces(LayoutGraph graph, double springLength, int start, int end) {
+		double k = springLength;
+		double k2 = k * k;
+		int[] stack = new int[BarnesHutOctree.STACK_SIZE];
+		double[] force = new double[3];
+
+		for(int i = start; i < end; i++) {
+			double px = graph.x[i], py = graph.y[i], pz = graph.z[i];
+			force[0] = force[1] = force[2] = 0;
+			double coincidentMass = tree.addRepulsion(px, py, pz, theta, stack, force) - graph.mass[i];
+			if(coincidentMass > 1e-9) {
+				// as if the coincident nodes were at the minimum distance in a random direction
+				addJitter(jitterSeed, i, coincidentMass / BarnesHutOctree.MIN_DISTANCE, force);
+			}
+			double ax = 0, ay = 0, az = 0;
+
+			// attraction d^2 / k along the edge is the offset times d / k
+			for(int e = graph.offsets[i]; e < graph.offsets[i + 1]; e++) {
+				int j = graph.neighbors[e];
+				double dx = px - graph.x[j];
+				double dy = py - graph.y[j];
+				double dz = pz - graph.z[j];
+				double f = Math.sqrt(dx * dx + dy * dy + dz * dz) / k * graph.getEdgeWeight(e);
+				ax -= dx * f;
+				ay -= dy * f;
+				az -= dz * f;
+			}
+
+			// the springs of heavier nodes (merged nodes of a coarse graph) are shared by more nodes
+			double mass = graph.mass[i];
+			dispX[i] = force[0] * k2 + ax / mass;
+			dispY[i] = force[1] * k2 + ay / mass;
+			dispZ[i] = force[2] * k2 + az / mass;
+		}
+	}
+
+	/**
+	 * Adds a force of the given magnitude in a direction that only depends on the seed and the node.
+	 */
+	static void addJitter(long seed, int node, double magnitude, double[] force) {
+		// SplitMix64 of the seed and the node, two 26 bit uniform numbers from the halves
+		long h = seed + (node + 1) * 0x9E3779B97F4A7C15L;
+		h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+		h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+		h = h ^ (h >>> 31);
+		double u = (h >>> 38) / (double) (1L << 26);
+		double v = ((h >>> 6) & ((1L << 26) - 1)) / (double) (1L << 26);
+
+		// uniform on the unit sphere
+		double z = 2 * u - 1;
+		double r = Math.sqrt(1 - z * z);
+		double phi = 2 * Math.PI * v;
+		force[0] += magnitude * r * Math.cos(phi);
+		force[1] += magnitude * r * Math.sin(phi);
+		force[2] += magnitude * z;
+	}
+
+	private void move(LayoutGraph graph, double temperature) {
+		for(int i = 0; i < graph.nodeCount; i++) {
+			double length = Math.sqrt(dispX[i] * dispX[i] + dispY[i] * dispY[i] + dispZ[i] * dispZ[i]);
+			if(length > 0) {
+				double scale = Math.min(length, temperature) / length;
+				graph.x[i] += dispX[i] * scale;
+				graph.y[i] += dispY[i] * scale;
+				graph.z[i] += dispZ[i] * scale;
+			}
+		}
+	}
+
+	/**
+	 * Calculates the forces of a range of nodes, split in halves until the range is at most CHUNK_SIZE.
+	 */
+	@SuppressWarnings("serial")
+	private class ForceTask extends RecursiveAction {
+
+		private final LayoutGraph graph;
+		private final double springLength;
+		private final int start, end;
+
+		ForceTask(LayoutGraph graph, double springLength, int start, int end) {
+			this.graph = graph;
+			this.springLength = springLength;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute() {
+			if(end - start <= CHUNK_SIZE) {
+				calculateForces(graph, springLength, start, end);
+			} else {
+				int middle = (start + end) >>> 1;
+				invokeAll(new ForceTask(graph, springLength, start, middle), new ForceTask(graph, springLength, middle, end));
+			}
+		}
+	}
+}
@@ -0,0 +1,33 @@
+package org.baderlab.cy3d.internal.layouts;
+
+import java.util.Set;
+
+import org.cytoscape.model.CyNode;
+import org.cytoscape.view.layout.AbstractLayoutAlgorithm;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.view.model.View;
+import org.cytoscape.work.TaskIterator;
+import org.cytoscape.work.undo.UndoSupport;
+
+/**
+ * Force directed 3D layout that approximates the repulsion with an octree (Barnes-Hut),
+ * O(n log n) per iteration instead of O(n^2) like the 3D mode of the BioLayout algorithm.
+ *
+ * @author mkucera
+ */
+public class BarnesHutLayoutAlgorithm extends AbstractLayoutAlgorithm {
+
+	public BarnesHutLayoutAlgorithm(UndoSupport undo) {
+		super("barnes-hut-3D", "3D Force directed (Barnes-Hut)", undo);
+	}
+
+	@Override
+	public Object createLayoutContext() {
+		return new BarnesHutLayoutContext();
+	}
+
+	@Override
+	public TaskIterator createTaskIterator(CyNetworkView networkView, Object context, Set<View<CyNode>> nodesToLayOut, String layoutAttribute) {
+		return new TaskIterator(new BarnesHutLayoutAlgorithmTask(getName(), networkView, nodesToLayOut, layoutAttribute, undoSupport, (BarnesHutLayoutContext) context));
+	}
+}
@@ -0,0 +1,50 @@
+package org.baderlab.cy3d.internal.layouts;
+
+import java.util.Collection;
+import java.util.Random;
+import java.util.Set;
+
+import org.cytoscape.model.CyNode;
+import org.cytoscape.view.layout.AbstractLayoutTask;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.view.model.View;
+import org.cytoscape.work.TaskMonitor;
+import org.cytoscape.work.undo.UndoSupport;
+
+public class BarnesHutLayoutAlgorithmTask extends AbstractLayoutTask {
+
+	private static final long SEED = 42;
+
+	private final BarnesHutLayoutContext context;
+	private final BarnesHutForceLayout layout;
+
+
+	public BarnesHutLayoutAlgorithmTask(String name, CyNetworkView networkView, Set<View<CyNode>> nodesToLayOut, String layoutAttribute, UndoSupport undo, BarnesHutLayoutContext context) {
+		super(name, networkView, nodesToLayOut, layoutAttribute, undo);
+		this.context = context;
+		this.layout = new BarnesHutForceLayout(context.theta);
+	}
+
+	@Override
+	protected void doLayout(TaskMonitor taskMonitor) {
+		taskMonitor.setTitle("3D Force directed (Barnes-Hut) layout");
+		taskMonitor.setStatusMessage("Reading the network");
+
+		Collection<View<CyNode>> nodeViews = nodesToLayOut.isEmpty() ? networkView.getNodeViews() : nodesToLayOut;
+		LayoutGraph graph = LayoutGraph.fromView(nodeViews, networkView.getModel());
+		graph.unflatten(context.springLength, SEED);
+
+		taskMonitor.setStatusMessage("Laying out " + graph.getNodeCount() + " nodes");
+		double temperature = BarnesHutForceLayout.getInitialTemperature(graph, context.springLength);
+		if(!layout.run(graph, context.springLength, context.iterations, temperature, taskMonitor, 0.0, 1.0, new Random(SEED)))
+			return;
+
+		graph.writePositions();
+	}
+
+	@Override
+	public void cancel() {
+		super.cancel();
+		layout.cancel();
+	}
+}
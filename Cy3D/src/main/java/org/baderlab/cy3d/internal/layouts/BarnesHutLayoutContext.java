@@ -0,0 +1,21 @@
+package org.baderlab.cy3d.internal.layouts;
+
+import org.cytoscape.work.Tunable;
+
+/**
+ * Settings of the {@link BarnesHutLayoutAlgorithm}.
+ *
+ * @author mkucera
+ */
+public class BarnesHutLayoutContext {
+
+	@Tunable(description="Number of iterations")
+	public int iterations = 300;
+
+	@Tunable(description="Spring length (ideal distance between connected nodes)")
+	public double springLength = 80;
+
+	@Tunable(description="Barnes-Hut theta (larger is faster but less accurate)")
+	public double theta = 0.8;
+
+}
@@ -0,0 +1,219 @@
+package org.baderlab.cy3d.internal.layouts;
+
+import java.util.Arrays;
+
+/**
+ * An octree over weighted points for the Barnes-Hut approximation of the repulsive forces.
+ * A cell that is small compared to its distance from a point acts on the point as a single
+ * body at its center of mass, so the force on a point is found in O(log n) instead of O(n).
+ *
+ * Cells are stored in primitive arrays and the arrays are kept when the tree is rebuilt,
+ * so rebuilding it on every iteration of a layout doesn't allocate. The values of a cell that
+ * are read when calculating forces are interleaved in one array to keep them in one cache line.
+ * Points that are closer together than the maximum depth can separate share a leaf.
+ *
+ * @author mkucera
+ */
+class BarnesHutOctree {
+
+	static final int MAX_DEPTH = 24;
+
+	/** Size of the stack needed by {@link #addRepulsion} */
+	static final int STACK_SIZE = 8 * (MAX_DEPTH + 1);
+
+	private static final int EMPTY = -1;
+	private static final int INTERNAL = -2;
+
+	/** Bodies closer than this to a point have no direction to push the point in. */
+	static final double MIN_DISTANCE = 1e-3;
+	private static final double MIN_DISTANCE_SQUARED = MIN_DISTANCE * MIN_DISTANCE;
+
+	// offsets of the values of a cell in the data array
+	private static final int COM_X = 0, COM_Y = 1, COM_Z = 2, MASS = 3;
+	private static final int CENTER_X = 4, CENTER_Y = 5, CENTER_Z = 6, HALF_SIZE = 7;
+	private static final int STRIDE = 8;
+
+	private int capacity = 0;
+	private int cellCount = 0;
+	private int[] children; // 8 per cell, 0 if there is no child (the root is never a child)
+	private int[] body;     // the point in a leaf, EMPTY or INTERNAL
+	private double[] data;  // STRIDE values per cell, the center of mass is a weighted sum until the tree is built
+
+
+	/**
+	 * Rebuilds the tree from the first n points.
+	 */
+	void build(double[] x, double[] y, double[] z, double[] m, int n) {
+		double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY, minZ = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
+		for(int i = 0; i < n; i++) {
+			minX = Math.min(minX, x[i]);
+			minY = Math.min(minY, y[i]);
+			minZ = Math.min(minZ, z[i]);
+			maxX = Math.max(maxX, x[i]);
+			maxY = Math.max(maxY, y[i]);
+			maxZ = Math.max(maxZ, z[i]);
+		}
+		double half = Math.max(maxX - minX, Math.max(maxY - minY, maxZ - minZ)) / 2 + 1;
+
+		ensureCapacity(2 * n + 1);
+		cellCount = 0;
+		newCell((minX + maxX) / 2, (minY + maxY) / 2, (minZ + maxZ) / 2, half);
+
+		for(int i = 0; i < n; i++) {
+			insert(i, x, y, z, m);
+		}
+
+		// the sums become the centers of mass
+		for(int c = 0; c < cellCount * STRIDE; c += STRIDE) {
+			double mass = data[c + MASS];
+			if(mass > 0) {
+				data[c + COM_X] /= mass;
+				data[c + COM_Y] /= mass;
+				data[c + COM_Z] /= mass;
+			}
+		}
+	}
+
+	private void insert(int i, double[] x, double[] y, double[] z, double[] m) {
+		int cell = 0;
+		int depth = 0;
+		while(true) {
+			addMass(cell, x[i], y[i], z[i], m[i]);
+			int b = body[cell];
+			if(b == EMPTY) {
+				body[cell] = i;
+				return;
+			}
+			if(b >= 0) {
+				if(depth == MAX_DEPTH)
+					return; // coincident points share the leaf
+				// move the point in the leaf down one level
+				body[cell] = INTERNAL;
+				int child = newChild(cell, octant(cell, x[b], y[b], z[b]));
+				body[child] = b;
+				addMass(child, x[b], y[b], z[b], m[b]);
+			}
+			int octant = octant(cell, x[i], y[i], z[i]);
+			int child = children[cell * 8 + octant];
+			if(child == 0) {
+				child = newChild(cell, octant);
+				body[child] = i;
+				addMass(child, x[i], y[i], z[i], m[i]);
+				return;
+			}
+			cell = child;
+			depth++;
+		}
+	}
+
+	private void addMass(int cell, double x, double y, double z, double m) {
+		int c = cell * STRIDE;
+		data[c + MASS]  += m;
+		data[c + COM_X] += x * m;
+		data[c + COM_Y] += y * m;
+		data[c + COM_Z] += z * m;
+	}
+
+	private int octant(int cell, double x, double y, double z) {
+		int c = cell * STRIDE;
+		return (x >= data[c + CENTER_X] ? 1 : 0) | (y >= data[c + CENTER_Y] ? 2 : 0) | (z >= data[c + CENTER_Z] ? 4 : 0);
+	}
+
+	private int newChild(int cell, int octant) {
+		int c = cell * STRIDE;
+		double quarter = data[c + HALF_SIZE] / 2;
+		int child = newCell(
+				data[c + CENTER_X] + ((octant & 1) != 0 ? quarter : -quarter),
+				data[c + CENTER_Y] + ((octant & 2) != 0 ? quarter : -quarter),
+				data[c + CENTER_Z] + ((octant & 4) != 0 ? quarter : -quarter),
+				quarter);
+		children[cell * 8 + octant] = child;
+		return child;
+	}
+
+	private int newCell(double cx, double cy, double cz, double half) {
+		if(cellCount == capacity) {
+			ensureCapacity(capacity * 2);
+		}
+		int c = cellCount++;
+		Arrays.fill(children, c * 8, c * 8 + 8, 0);
+		body[c] = EMPTY;
+		int d = c * STRIDE;
+		data[d + COM_X] = data[d + COM_Y] = data[d + COM_Z] = data[d + MASS] = 0;
+		data[d + CENTER_X] = cx;
+		data[d + CENTER_Y] = cy;
+		data[d + CENTER_Z] = cz;
+		data[d + HALF_SIZE] = half;
+		return c;
+	}
+
+	private void ensureCapacity(int size) {
+		if(size <= capacity)
+			return;
+		capacity = size;
+		if(children == null) {
+			children = new int[size * 8];
+			body = new int[size];
+			data = new double[size * STRIDE];
+		} else {
+			children = Arrays.copyOf(children, size * 8);
+			body = Arrays.copyOf(body, size);
+			data = Arrays.copyOf(data, size * STRIDE);
+		}
+	}
+
+
+	/**
+	 * Adds the sum of mass / distance^2 along the direction away from each body to the force,
+	 * multiply by k^2 to get the Fruchterman-Reingold repulsion. Safe to call from several
+	 * threads once the tree is built, each thread must use its own stack.
+	 *
+	 * Bodies that are closer than {@link #MIN_DISTANCE} to the point, including the point itself,
+	 * have no direction and are left out of the force. Their mass is returned instead.
+	 *
+	 * @param theta Cells whose size divided by their distance is less than this are not opened
+	 * @param stack at least {@link #STACK_SIZE} long
+	 * @param force the x, y and z components are added to
+	 * @return the mass of the bodies that coincide with the point
+	 */
+	double addRepulsion(double px, double py, double pz, double theta, int[] stack, double[] force) {
+		double theta2 = theta * theta;
+		double fx = 0, fy = 0, fz = 0;
+		double coincidentMass = 0;
+		int top = 0;
+		stack[top++] = 0;
+
+		while(top > 0) {
+			int cell = stack[--top];
+			int c = cell * STRIDE;
+			double dx = px - data[c + COM_X];
+			double dy = py - data[c + COM_Y];
+			double dz = pz - data[c + COM_Z];
+			double d2 = dx * dx + dy * dy + dz * dz;
+			double size = 2 * data[c + HALF_SIZE];
+
+			if(body[cell] >= 0 || size * size < theta2 * d2) {
+				if(d2 > MIN_DISTANCE_SQUARED) {
+					double f = data[c + MASS] / d2;
+					fx += dx * f;
+					fy += dy * f;
+					fz += dz * f;
+				} else {
+					coincidentMass += data[c + MASS];
+				}
+			} else {
+				for(int k = cell * 8; k < cell * 8 + 8; k++) {
+					if(children[k] != 0) {
+						stack[top++] = children[k];
+					}
+				}
+			}
+		}
+
+		force[0] += fx;
+		force[1] += fy;
+		force[2] += fz;
+		return coincidentMass;
+	}
+}
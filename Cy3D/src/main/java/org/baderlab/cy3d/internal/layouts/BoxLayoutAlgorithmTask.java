@@ -1,66 +1,35 @@
 package org.baderlab.cy3d.internal.layouts;
 
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
 
 import org.baderlab.cy3d.internal.geometric.Vector3;
 import org.baderlab.cy3d.internal.tools.LayoutToolkit;
 import org.cytoscape.model.CyNode;
-import org.cytoscape.view.layout.AbstractLayoutTask;
-import org.cytoscape.view.layout.LayoutNode;
-import org.cytoscape.view.layout.LayoutPartition;
-import org.cytoscape.view.layout.PartitionUtil;
 import org.cytoscape.view.model.CyNetworkView;
 import org.cytoscape.view.model.View;
-import org.cytoscape.view.presentation.property.BasicVisualLexicon;
-import org.cytoscape.work.TaskMonitor;
 import org.cytoscape.work.undo.UndoSupport;
 
-public class BoxLayoutAlgorithmTask extends AbstractLayoutTask {
+public class BoxLayoutAlgorithmTask extends AbstractPartitionLayoutTask {
 
+	static final double SPACING = 270;
 	
 	public BoxLayoutAlgorithmTask(String name, CyNetworkView networkView, Set<View<CyNode>> nodesToLayOut, String layoutAttribute, UndoSupport undo) {
 		super(name, networkView, nodesToLayOut, layoutAttribute, undo);
 	}
 
 	@Override
-	protected void doLayout(TaskMonitor taskMonitor) {
-		
-		// Break graph into partitions
-		List<LayoutPartition> layoutPartitions = PartitionUtil.partition(networkView, false, null);
-		
-		Collection<Collection<View<CyNode>>> partitions = new HashSet<Collection<View<CyNode>>>(layoutPartitions.size());
-		
-		Collection<View<CyNode>> partitionNodeViews;
-		
-		for (LayoutPartition partition : layoutPartitions) {
-			partitionNodeViews = new HashSet<View<CyNode>>();
-			
-			for (LayoutNode layoutNode : partition.getNodeList()) {
-				View<CyNode> nodeView = layoutNode.getNodeView();
-				partitionNodeViews.add(nodeView);
-			}
-			
-			partitions.add(partitionNodeViews);
-		}
-		
-		for (Collection<View<CyNode>> partition : partitions) {
-			arrangeAsBox(partition, 270);
-		}
-		
-		LayoutToolkit.arrangePartitions(partitions);
+	protected void arrangePartition(double[] x, double[] y, double[] z, int start, int end) {
+		arrangeAsBox(x, y, z, start, end, SPACING);
 	}
 	
-	private void arrangeAsBox(Collection<View<CyNode>> nodeViews, double nodeSpacing) {		
-		int nodeCount = nodeViews.size();
+	static void arrangeAsBox(double[] nodeX, double[] nodeY, double[] nodeZ, int start, int end, double nodeSpacing) {		
+		int nodeCount = end - start;
 		int nodesPerFace = (int) Math.ceil(nodeCount / 6.0);
 		
 		int sideLength = (int) Math.ceil(Math.sqrt(nodesPerFace));
 		double halfSideLength = sideLength / 2.0;
 		
-		Vector3 center = LayoutToolkit.findCenter(nodeViews);
+		Vector3 center = LayoutToolkit.findCenter(nodeX, nodeY, nodeZ, start, end);
 		
 		// The position of the top-left corner of a face
 		Vector3 faceCorner;
@@ -69,8 +38,8 @@ public class BoxLayoutAlgorithmTask extends AbstractLayoutTask {
 		// A unit vector pointing downwards from the current corner
 		Vector3 faceDown = new Vector3();
 		
-		int count = 0;
-		for (View<CyNode> nodeView : nodeViews) {
+		for (int node = start; node < end; node++) {
+			int count = node - start;
 			int face = count / nodesPerFace;
 		
 			switch (face) {
@@ -132,14 +101,9 @@ public class BoxLayoutAlgorithmTask extends AbstractLayoutTask {
 			// The column that this node belongs to on the current face
 			int column = (count % nodesPerFace) / sideLength + 1;
 			
-			nodeView.setVisualProperty(BasicVisualLexicon.NODE_X_LOCATION, 
-					faceCorner.x() + faceRight.x() * nodeSpacing * column + faceDown.x() * nodeSpacing * row);
-			nodeView.setVisualProperty(BasicVisualLexicon.NODE_Y_LOCATION, 
-					faceCorner.y() + faceRight.y() * nodeSpacing * column + faceDown.y() * nodeSpacing * row);
-			nodeView.setVisualProperty(BasicVisualLexicon.NODE_Z_LOCATION, 
-					faceCorner.z() + faceRight.z() * nodeSpacing * column + faceDown.z() * nodeSpacing * row);
-			
-			count++;
+			nodeX[node] = faceCorner.x() + faceRight.x() * nodeSpacing * column + faceDown.x() * nodeSpacing * row;
+			nodeY[node] = faceCorner.y() + faceRight.y() * nodeSpacing * column + faceDown.y() * nodeSpacing * row;
+			nodeZ[node] = faceCorner.z() + faceRight.z() * nodeSpacing * column + faceDown.z() * nodeSpacing * row;
 		}
 	}
 }
@@ -0,0 +1,155 @@
+package org.baderlab.cy3d.internal.layouts;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Builds the next coarser level of a multilevel layout by merging the nodes of a maximal matching.
+ *
+ * The nodes are visited in random order and each unmatched node is matched with the unmatched
+ * neighbor that has the heaviest edge relative to the masses of the two nodes, so that light nodes
+ * are merged first and the merged nodes stay about the same size. A matching barely shrinks graphs
+ * with many leaves (a hub can only be matched with one of them), so the leaves that are left
+ * unmatched are merged into the node of their neighbor.
+ *
+ * @author mkucera
+ */
+class GraphCoarsener {
+
+	private GraphCoarsener() {}
+
+	/**
+	 * @param parent filled with the index of the coarse node every node of the graph was merged into
+	 * @return the coarse graph, positions are the centers of mass of the merged nodes
+	 */
+	static LayoutGraph coarsen(LayoutGraph graph, int[] parent, Random random) {
+		int n = graph.nodeCount;
+		int[] match = match(graph, random);
+
+		// number the pairs and the unmatched nodes, the leaves are numbered after their neighbor
+		Arrays.fill(parent, 0, n, -1);
+		int coarseCount = 0;
+		for(int i = 0; i < n; i++) {
+			if(parent[i] >= 0 || isMergedLeaf(graph, match, i))
+				continue;
+			parent[i] = coarseCount;
+			if(match[i] != i)
+				parent[match[i]] = coarseCount;
+			coarseCount++;
+		}
+		for(int i = 0; i < n; i++) {
+			if(parent[i] < 0) {
+				parent[i] = parent[graph.neighbors[graph.offsets[i]]];
+			}
+		}
+
+		double[] x = new double[coarseCount];
+		double[] y = new double[coarseCount];
+		double[] z = new double[coarseCount];
+		double[] mass = new double[coarseCount];
+		for(int i = 0; i < n; i++) {
+			int p = parent[i];
+			double m = graph.mass[i];
+			mass[p] += m;
+			x[p] += graph.x[i] * m;
+			y[p] += graph.y[i] * m;
+			z[p] += graph.z[i] * m;
+		}
+		for(int p = 0; p < coarseCount; p++) {
+			x[p] /= mass[p];
+			y[p] /= mass[p];
+			z[p] /= mass[p];
+		}
+
+		// the nodes merged into each coarse node, in compressed sparse row form
+		int[] memberOffsets = new int[coarseCount + 1];
+		for(int i = 0; i < n; i++) {
+			memberOffsets[parent[i] + 1]++;
+		}
+		for(int p = 0; p < coarseCount; p++) {
+			memberOffsets[p + 1] += memberOffsets[p];
+		}
+		int[] members = new int[n];
+		int[] next = Arrays.copyOf(memberOffsets, coarseCount);
+		for(int i = 0; i < n; i++) {
+			members[next[parent[i]]++] = i;
+		}
+
+		// merge the edges, parallel edges become one edge with the sum of their weights
+		int[] offsets = new int[coarseCount + 1];
+		int[] neighbors = new int[graph.neighbors.length];
+		float[] weights = new float[graph.neighbors.length];
+		int[] marker = new int[coarseCount]; // row + 1 of the coarse node the slot is for
+		int[] slot = new int[coarseCount];
+		int edgeCount = 0;
+		for(int p = 0; p < coarseCount; p++) {
+			offsets[p] = edgeCount;
+			for(int m = memberOffsets[p]; m < memberOffsets[p + 1]; m++) {
+				int i = members[m];
+				for(int e = graph.offsets[i]; e < graph.offsets[i + 1]; e++) {
+					int q = parent[graph.neighbors[e]];
+					if(q == p)
+						continue;
+					if(marker[q] != p + 1) {
+						marker[q] = p + 1;
+						slot[q] = edgeCount;
+						neighbors[edgeCount] = q;
+						weights[edgeCount] = 0;
+						edgeCount++;
+					}
+					weights[slot[q]] += graph.getEdgeWeight(e);
+				}
+			}
+		}
+		offsets[coarseCount] = edgeCount;
+
+		return new LayoutGraph(null, x, y, z, mass, offsets,
+				Arrays.copyOf(neighbors, edgeCount), Arrays.copyOf(weights, edgeCount));
+	}
+
+	/**
+	 * @return the node each node is matched with, itself if it is unmatched
+	 */
+	private static int[] match(LayoutGraph graph, Random random) {
+		int n = graph.nodeCount;
+		int[] order = new int[n];
+		for(int i = 0; i < n; i++) {
+			order[i] = i;
+		}
+		for(int i = n - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int t = order[i];
+			order[i] = order[j];
+			order[j] = t;
+		}
+
+		int[] match = new int[n];
+		Arrays.fill(match, -1);
+		for(int u : order) {
+			if(match[u] >= 0)
+				continue;
+			int best = u;
+			double bestScore = 0;
+			for(int e = graph.offsets[u]; e < graph.offsets[u + 1]; e++) {
+				int v = graph.neighbors[e];
+				if(match[v] >= 0)
+					continue;
+				double score = graph.getEdgeWeight(e) / (graph.mass[u] * graph.mass[v]);
+				if(score > bestScore) {
+					bestScore = score;
+					best = v;
+				}
+			}
+			match[u] = best;
+			match[best] = u;
+		}
+		return match;
+	}
+
+	/**
+	 * An unmatched leaf, its neighbor is always matched otherwise the two would have been matched.
+	 */
+	private static boolean isMergedLeaf(LayoutGraph graph, int[] match, int i) {
+		return match[i] == i && graph.getDegree(i) == 1;
+	}
+}
@@ -0,0 +1,170 @@
+package org.baderlab.cy3d.internal.layouts;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+import org.baderlab.cy3d.internal.tools.LongIntMap;
+import org.cytoscape.model.CyEdge;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.view.model.View;
+import org.cytoscape.view.presentation.property.BasicVisualLexicon;
+
+/**
+ * The graph a force layout works on: node positions and masses in primitive arrays
+ * and the adjacency in compressed sparse row form, so that the layout doesn't touch
+ * the view model until the positions are written back.
+ *
+ * The neighbors of node i are neighbors[offsets[i]] to neighbors[offsets[i+1]-1]. Every edge
+ * is stored in both directions, self edges are left out.
+ *
+ * The graphs of the coarser levels of a multilevel layout are not backed by views, their nodes
+ * have the mass of the nodes they were merged from and their edges have the number of edges
+ * they were merged from as weight.
+ *
+ * @author mkucera
+ */
+public class LayoutGraph {
+
+	final int nodeCount;
+	final double[] x;
+	final double[] y;
+	final double[] z;
+	final double[] mass;
+	final int[] offsets;
+	final int[] neighbors;
+	final float[] edgeWeights; // parallel to neighbors, null if all weights are 1
+
+	// the node views the positions were read from, null for graphs that are not backed by views
+	private final List<View<CyNode>> nodeViews;
+
+
+	LayoutGraph(List<View<CyNode>> nodeViews, double[] x, double[] y, double[] z, double[] mass, int[] offsets, int[] neighbors, float[] edgeWeights) {
+		this.nodeViews = nodeViews;
+		this.nodeCount = x.length;
+		this.x = x;
+		this.y = y;
+		this.z = z;
+		this.mass = mass;
+		this.offsets = offsets;
+		this.neighbors = neighbors;
+		this.edgeWeights = edgeWeights;
+	}
+
+	/**
+	 * Reads the positions of the node views and the edges between them.
+	 */
+	public static LayoutGraph fromView(Collection<View<CyNode>> nodeViews, CyNetwork network) {
+		List<View<CyNode>> views = new ArrayList<>(nodeViews);
+		int n = views.size();
+		double[] x = new double[n];
+		double[] y = new double[n];
+		double[] z = new double[n];
+		double[] mass = new double[n];
+
+		LongIntMap indices = new LongIntMap(n);
+		for(int i = 0; i < n; i++) {
+			View<CyNode> nodeView = views.get(i);
+			indices.put(nodeView.getModel().getSUID(), i);
+			x[i] = nodeView.getVisualProperty(BasicVisualLexicon.NODE_X_LOCATION);
+			y[i] = nodeView.getVisualProperty(BasicVisualLexicon.NODE_Y_LOCATION);
+			z[i] = nodeView.getVisualProperty(BasicVisualLexicon.NODE_Z_LOCATION);
+			mass[i] = 1;
+		}
+
+		// count the degrees, then fill the rows
+		List<CyEdge> edges = network.getEdgeList();
+		int[] sources = new int[edges.size()];
+		int[] targets = new int[edges.size()];
+		int edgeCount = 0;
+		int[] offsets = new int[n + 1];
+		for(CyEdge edge : edges) {
+			int source = indices.get(edge.getSource().getSUID());
+			int target = indices.get(edge.getTarget().getSUID());
+			if(source < 0 || target < 0 || source == target)
+				continue;
+			sources[edgeCount] = source;
+			targets[edgeCount] = target;
+			edgeCount++;
+			offsets[source + 1]++;
+			offsets[target + 1]++;
+		}
+		for(int i = 0; i < n; i++) {
+			offsets[i + 1] += offsets[i];
+		}
+
+		int[] neighbors = new int[offsets[n]];
+		int[] next = new int[n];
+		System.arraycopy(offsets, 0, next, 0, n);
+		for(int e = 0; e < edgeCount; e++) {
+			neighbors[next[sources[e]]++] = targets[e];
+			neighbors[next[targets[e]]++] = sources[e];
+		}
+
+		return new LayoutGraph(views, x, y, z, mass, offsets, neighbors, null);
+	}
+
+
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	public int getDegree(int i) {
+		return offsets[i + 1] - offsets[i];
+	}
+
+	public double getEdgeWeight(int e) {
+		return edgeWeights == null ? 1 : edgeWeights[e];
+	}
+
+	/**
+	 * Spreads the nodes along the axes where they all have the same coordinate, for example
+	 * the Z axis of a 2D layout, otherwise the forces have nothing to push them apart with.
+	 */
+	void unflatten(double spread, long seed) {
+		Random random = new Random(seed);
+		for(double[] coords : new double[][] { x, y, z }) {
+			double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+			for(int i = 0; i < nodeCount; i++) {
+				min = Math.min(min, coords[i]);
+				max = Math.max(max, coords[i]);
+			}
+			if(max - min < spread * 1e-3) {
+				for(int i = 0; i < nodeCount; i++) {
+					coords[i] += (random.nextDouble() - 0.5) * spread;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes the positions back to the node views, translated so that the average
+	 * position of the nodes is the same as before the layout.
+	 */
+	public void writePositions() {
+		if(nodeCount == 0)
+			return;
+		double cx = 0, cy = 0, cz = 0, ox = 0, oy = 0, oz = 0;
+		for(int i = 0; i < nodeCount; i++) {
+			View<CyNode> nodeView = nodeViews.get(i);
+			ox += nodeView.getVisualProperty(BasicVisualLexicon.NODE_X_LOCATION);
+			oy += nodeView.getVisualProperty(BasicVisualLexicon.NODE_Y_LOCATION);
+			oz += nodeView.getVisualProperty(BasicVisualLexicon.NODE_Z_LOCATION);
+			cx += x[i];
+			cy += y[i];
+			cz += z[i];
+		}
+		double dx = (ox - cx) / nodeCount;
+		double dy = (oy - cy) / nodeCount;
+		double dz = (oz - cz) / nodeCount;
+
+		for(int i = 0; i < nodeCount; i++) {
+			View<CyNode> nodeView = nodeViews.get(i);
+			nodeView.setVisualProperty(BasicVisualLexicon.NODE_X_LOCATION, x[i] + dx);
+			nodeView.setVisualProperty(BasicVisualLexicon.NODE_Y_LOCATION, y[i] + dy);
+			nodeView.setVisualProperty(BasicVisualLexicon.NODE_Z_LOCATION, z[i] + dz);
+		}
+	}
+}
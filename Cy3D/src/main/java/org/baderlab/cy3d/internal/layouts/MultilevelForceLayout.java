@@ -0,0 +1,133 @@
+package org.baderlab.cy3d.internal.layouts;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.cytoscape.work.TaskMonitor;
+
+/**
+ * Multilevel force layout (Walshaw). The graph is coarsened with {@link GraphCoarsener} until it
+ * is small or stops shrinking, the coarsest graph is laid out with a {@link BarnesHutForceLayout}
+ * from scratch, then the positions are interpolated to the next finer level and refined with a few
+ * cool iterations, down to the original graph. The coarse layouts already have the global shape,
+ * so the large graphs only need the refinement iterations.
+ *
+ * @author mkucera
+ */
+class MultilevelForceLayout {
+
+	/**
+	 * Coarsening stops at this size.
+	 */
+	private static final int MIN_COARSE_NODES = 64;
+
+	/**
+	 * Coarsening stops when a level has more than this fraction of the nodes of the finer level.
+	 */
+	private static final double MIN_REDUCTION = 0.85;
+
+	private static final int MAX_LEVELS = 40;
+
+	/**
+	 * The spring length of a level is this times the spring length of the next finer level,
+	 * the merged nodes take more room (Walshaw uses 1/sqrt(4/7) for 2D).
+	 */
+	private static final double LEVEL_SPRING_FACTOR = 1.3;
+
+	/**
+	 * The initial temperature of a refinement, in spring lengths.
+	 */
+	private static final double REFINE_TEMPERATURE = 2.0;
+
+	private static final double COARSEN_PROGRESS = 0.05;
+
+	private final BarnesHutForceLayout layout;
+	private final long seed;
+
+
+	MultilevelForceLayout(double theta, long seed) {
+		this.layout = new BarnesHutForceLayout(theta);
+		this.seed = seed;
+	}
+
+	void cancel() {
+		layout.cancel();
+	}
+
+	/**
+	 * Lays out the graph, the positions are updated in place.
+	 * @param iterations iterations of the coarsest level
+	 * @param refineIterations iterations of each finer level
+	 * @return false if cancelled
+	 */
+	boolean run(LayoutGraph graph, double springLength, int iterations, int refineIterations, TaskMonitor taskMonitor) {
+		Random random = new Random(seed);
+
+		// levels.get(0) is the graph, parents.get(l) maps the nodes of level l to level l+1
+		taskMonitor.setStatusMessage("Coarsening " + graph.getNodeCount() + " nodes");
+		List<LayoutGraph> levels = new ArrayList<>();
+		List<int[]> parents = new ArrayList<>();
+		levels.add(graph);
+		LayoutGraph level = graph;
+		while(level.nodeCount > MIN_COARSE_NODES && levels.size() < MAX_LEVELS) {
+			if(layout.isCancelled())
+				return false;
+			int[] parent = new int[level.nodeCount];
+			LayoutGraph coarse = GraphCoarsener.coarsen(level, parent, random);
+			if(coarse.nodeCount > level.nodeCount * MIN_REDUCTION)
+				break;
+			parents.add(parent);
+			levels.add(coarse);
+			level = coarse;
+		}
+		taskMonitor.setProgress(COARSEN_PROGRESS);
+
+		// the work of a level is about its node count times its iterations
+		int coarsest = levels.size() - 1;
+		double[] work = new double[levels.size()];
+		double totalWork = 0;
+		for(int l = 0; l <= coarsest; l++) {
+			work[l] = (double) levels.get(l).nodeCount * (l == coarsest ? iterations : refineIterations);
+			totalWork += work[l];
+		}
+
+		double k = springLength * Math.pow(LEVEL_SPRING_FACTOR, coarsest);
+		LayoutGraph coarse = levels.get(coarsest);
+		coarse.unflatten(k * Math.max(1, Math.cbrt(coarse.nodeCount)), seed);
+
+		double progress = COARSEN_PROGRESS;
+		for(int l = coarsest; l >= 0; l--) {
+			LayoutGraph current = levels.get(l);
+			if(l < coarsest) {
+				interpolate(levels.get(l + 1), current, parents.get(l), k, random);
+			}
+			taskMonitor.setStatusMessage("Laying out level " + (l + 1) + " of " + (coarsest + 1) + " (" + current.nodeCount + " nodes)");
+
+			double progressTo = progress + (1 - COARSEN_PROGRESS) * work[l] / totalWork;
+			boolean completed = l == coarsest
+				? layout.run(current, k, iterations, BarnesHutForceLayout.getInitialTemperature(current, k), taskMonitor, progress, progressTo, random)
+				: layout.run(current, k, refineIterations, k * REFINE_TEMPERATURE, taskMonitor, progress, progressTo, random);
+			if(!completed)
+				return false;
+
+			progress = progressTo;
+			k /= LEVEL_SPRING_FACTOR;
+		}
+		return true;
+	}
+
+	/**
+	 * Places the nodes of the finer level around the node of the coarse level they were merged into,
+	 * the nodes that were merged need to be moved apart for the forces to separate them.
+	 */
+	private static void interpolate(LayoutGraph coarse, LayoutGraph fine, int[] parent, double springLength, Random random) {
+		double jitter = springLength * 0.5;
+		for(int i = 0; i < fine.nodeCount; i++) {
+			int p = parent[i];
+			fine.x[i] = coarse.x[p] + (random.nextDouble() - 0.5) * jitter;
+			fine.y[i] = coarse.y[p] + (random.nextDouble() - 0.5) * jitter;
+			fine.z[i] = coarse.z[p] + (random.nextDouble() - 0.5) * jitter;
+		}
+	}
+}
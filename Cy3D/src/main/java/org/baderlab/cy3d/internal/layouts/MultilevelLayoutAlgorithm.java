@@ -0,0 +1,33 @@
+package org.baderlab.cy3d.internal.layouts;
+
+import java.util.Set;
+
+import org.cytoscape.model.CyNode;
+import org.cytoscape.view.layout.AbstractLayoutAlgorithm;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.view.model.View;
+import org.cytoscape.work.TaskIterator;
+import org.cytoscape.work.undo.UndoSupport;
+
+/**
+ * Multilevel force directed 3D layout for very large networks, lays out a coarsened
+ * network first and refines it level by level.
+ *
+ * @author mkucera
+ */
+public class MultilevelLayoutAlgorithm extends AbstractLayoutAlgorithm {
+
+	public MultilevelLayoutAlgorithm(UndoSupport undo) {
+		super("multilevel-3D", "3D Force directed (Multilevel)", undo);
+	}
+
+	@Override
+	public Object createLayoutContext() {
+		return new MultilevelLayoutContext();
+	}
+
+	@Override
+	public TaskIterator createTaskIterator(CyNetworkView networkView, Object context, Set<View<CyNode>> nodesToLayOut, String layoutAttribute) {
+		return new TaskIterator(new MultilevelLayoutAlgorithmTask(getName(), networkView, nodesToLayOut, layoutAttribute, undoSupport, (MultilevelLayoutContext) context));
+	}
+}
@@ -0,0 +1,46 @@
+package org.baderlab.cy3d.internal.layouts;
+
+import java.util.Collection;
+import java.util.Set;
+
+import org.cytoscape.model.CyNode;
+import org.cytoscape.view.layout.AbstractLayoutTask;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.view.model.View;
+import org.cytoscape.work.TaskMonitor;
+import org.cytoscape.work.undo.UndoSupport;
+
+public class MultilevelLayoutAlgorithmTask extends AbstractLayoutTask {
+
+	private static final long SEED = 42;
+
+	private final MultilevelLayoutContext context;
+	private final MultilevelForceLayout layout;
+
+
+	public MultilevelLayoutAlgorithmTask(String name, CyNetworkView networkView, Set<View<CyNode>> nodesToLayOut, String layoutAttribute, UndoSupport undo, MultilevelLayoutContext context) {
+		super(name, networkView, nodesToLayOut, layoutAttribute, undo);
+		this.context = context;
+		this.layout = new MultilevelForceLayout(context.theta, SEED);
+	}
+
+	@Override
+	protected void doLayout(TaskMonitor taskMonitor) {
+		taskMonitor.setTitle("3D Force directed (Multilevel) layout");
+		taskMonitor.setStatusMessage("Reading the network");
+
+		Collection<View<CyNode>> nodeViews = nodesToLayOut.isEmpty() ? networkView.getNodeViews() : nodesToLayOut;
+		LayoutGraph graph = LayoutGraph.fromView(nodeViews, networkView.getModel());
+
+		if(!layout.run(graph, context.springLength, context.iterations, context.refineIterations, taskMonitor))
+			return;
+
+		graph.writePositions();
+	}
+
+	@Override
+	public void cancel() {
+		super.cancel();
+		layout.cancel();
+	}
+}
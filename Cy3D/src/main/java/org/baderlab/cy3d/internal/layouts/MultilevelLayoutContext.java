@@ -0,0 +1,24 @@
+package org.baderlab.cy3d.internal.layouts;
+
+import org.cytoscape.work.Tunable;
+
+/**
+ * Settings of the {@link MultilevelLayoutAlgorithm}.
+ *
+ * @author mkucera
+ */
+public class MultilevelLayoutContext {
+
+	@Tunable(description="Number of iterations on the coarsest level")
+	public int iterations = 300;
+
+	@Tunable(description="Number of iterations on each finer level")
+	public int refineIterations = 30;
+
+	@Tunable(description="Spring length (ideal distance between connected nodes)")
+	public double springLength = 80;
+
+	@Tunable(description="Barnes-Hut theta (larger is faster but less accurate)")
+	public double theta = 1.0;
+
+}
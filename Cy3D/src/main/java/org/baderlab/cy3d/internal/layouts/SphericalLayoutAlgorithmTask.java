@@ -1,24 +1,15 @@
 package org.baderlab.cy3d.internal.layouts;
 
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
 
 import org.baderlab.cy3d.internal.geometric.Vector3;
 import org.baderlab.cy3d.internal.tools.LayoutToolkit;
 import org.cytoscape.model.CyNode;
-import org.cytoscape.view.layout.AbstractLayoutTask;
-import org.cytoscape.view.layout.LayoutNode;
-import org.cytoscape.view.layout.LayoutPartition;
-import org.cytoscape.view.layout.PartitionUtil;
 import org.cytoscape.view.model.CyNetworkView;
 import org.cytoscape.view.model.View;
-import org.cytoscape.view.presentation.property.BasicVisualLexicon;
-import org.cytoscape.work.TaskMonitor;
 import org.cytoscape.work.undo.UndoSupport;
 
-public class SphericalLayoutAlgorithmTask extends AbstractLayoutTask {
+public class SphericalLayoutAlgorithmTask extends AbstractPartitionLayoutTask {
 
 	
 	public SphericalLayoutAlgorithmTask(String name, CyNetworkView networkView, Set<View<CyNode>> nodesToLayOut, String layoutAttribute, UndoSupport undo) {
@@ -26,43 +17,20 @@ public class SphericalLayoutAlgorithmTask extends AbstractLayoutTask {
 	}
 
 	@Override
-	protected void doLayout(TaskMonitor taskMonitor) {
-		
-		// Break graph into partitions
-		List<LayoutPartition> layoutPartitions = PartitionUtil.partition(networkView, false, null);
-		
-		Collection<Collection<View<CyNode>>> partitions = new HashSet<Collection<View<CyNode>>>(layoutPartitions.size());
-		
-		Collection<View<CyNode>> partitionNodeViews;
-		
-		for (LayoutPartition partition : layoutPartitions) {
-			partitionNodeViews = new HashSet<View<CyNode>>();
-			
-			for (LayoutNode layoutNode : partition.getNodeList()) {
-				View<CyNode> nodeView = layoutNode.getNodeView();
-				partitionNodeViews.add(nodeView);
-			}
-			
-			partitions.add(partitionNodeViews);
-		}
-		
-		for (Collection<View<CyNode>> partition : partitions) {
-			arrangeAsSphere(partition);
-		}
-		
-		LayoutToolkit.arrangePartitions(partitions);
+	protected void arrangePartition(double[] nodeX, double[] nodeY, double[] nodeZ, int start, int end) {
+		arrangeAsSphere(nodeX, nodeY, nodeZ, start, end);
 	}
 	
-	private void arrangeAsSphere(Collection<View<CyNode>> nodeViews) {
-		int nodeCount = nodeViews.size();
+	static void arrangeAsSphere(double[] nodeX, double[] nodeY, double[] nodeZ, int start, int end) {
+		int nodeCount = end - start;
 		int current = 0;
 		
 		double sphereRadius = findSphereRadius(nodeCount);
 		double x, y, z;
 		
-		Vector3 sphereCenter = LayoutToolkit.findCenter(nodeViews);
+		Vector3 sphereCenter = LayoutToolkit.findCenter(nodeX, nodeY, nodeZ, start, end);
 		
-		for (View<CyNode> nodeView : nodeViews) {
+		for (int node = start; node < end; node++) {
 			
 			int nodesPerLevel = (int) Math.max(Math.sqrt(nodeCount), 3);
 			
@@ -86,9 +54,9 @@ public class SphericalLayoutAlgorithmTask extends AbstractLayoutTask {
 			y *= sphereRadius;
 			z *= sphereRadius;
 			
-			nodeView.setVisualProperty(BasicVisualLexicon.NODE_X_LOCATION, x + sphereCenter.x());
-			nodeView.setVisualProperty(BasicVisualLexicon.NODE_Y_LOCATION, y + sphereCenter.y());
-			nodeView.setVisualProperty(BasicVisualLexicon.NODE_Z_LOCATION, z + sphereCenter.z());	
+			nodeX[node] = x + sphereCenter.x();
+			nodeY[node] = y + sphereCenter.y();
+			nodeZ[node] = z + sphereCenter.z();
 			
 			current++;
 		}
@@ -98,7 +66,7 @@ public class SphericalLayoutAlgorithmTask extends AbstractLayoutTask {
 	/**
 	 * Find an appropriate sphere size given the number of nodes to arrange
 	 */
-	private double findSphereRadius(int nodeCount) {
+	private static double findSphereRadius(int nodeCount) {
 		return 100 + nodeCount;
 	}
 }
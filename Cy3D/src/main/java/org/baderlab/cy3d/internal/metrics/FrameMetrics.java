@@ -0,0 +1,268 @@
+package org.baderlab.cy3d.internal.metrics;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.baderlab.cy3d.internal.cytoscape.edges.EdgeAnalyser;
+
+import com.jogamp.opengl.GL2;
+
+/**
+ * Frame timing and counters of one renderer. 
+ * 
+ * Every frame is split into named stages (the snapshot, picking, each GraphicsProcedure), each 
+ * stage is timed on the CPU with System.nanoTime() and, when a GL context is given and timer 
+ * queries are supported, on the GPU. The last {@link RollingTimer#DEFAULT_CAPACITY} samples 
+ * of every stage are kept for percentiles.
+ * 
+ * The procedures also report how many draw calls they made and the cullers report how many 
+ * nodes and edges are visible, and the main view reports how often picking was skipped because
+ * nothing changed. Stages can't be nested if they are timed on the GPU.
+ * 
+ * The metrics can be read with the "cy3d get metrics" command and shown on top of the view 
+ * by RenderMetricsOverlayProcedure. The overlay is hidden by default, it can be shown with the
+ * "cy3d set metrics overlay" command or the system property "cy3d.metricsOverlay".
+ * 
+ * @author mkucera
+ */
+public class FrameMetrics {
+
+	public static final String SNAPSHOT = "Snapshot";
+	public static final String EDGE_ANALYSIS = "Edge analysis";
+	public static final String PICKING = "Picking";
+	
+	private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+	
+	/**
+	 * The timers of a stage.
+	 */
+	public static class Stage {
+		private final String name;
+		private final RollingTimer cpu = new RollingTimer();
+		private final RollingTimer gpu = new RollingTimer();
+		private final GpuTimer gpuTimer = new GpuTimer(gpu);
+		private long start;
+		
+		private Stage(String name) {
+			this.name = name;
+		}
+		
+		public String getName() {
+			return name;
+		}
+		
+		public RollingTimer getCpuTimer() {
+			return cpu;
+		}
+		
+		/** Empty if timer queries are not supported. */
+		public RollingTimer getGpuTimer() {
+			return gpu;
+		}
+	}
+	
+	
+	private final Map<String, Stage> stages = new LinkedHashMap<>();
+	private final RollingTimer frameTimer = new RollingTimer();
+	private final RollingTimer frameIntervals = new RollingTimer();
+	
+	private long frameStart = 0;
+	private int drawCalls = 0;
+	private volatile int lastDrawCalls = 0;
+	private volatile int visibleNodeCount = 0;
+	private volatile int visibleEdgeCount = 0;
+	private long edgeAnalysisCount = 0;
+	private long pickingCacheHits = 0;
+	private long pickingCacheMisses = 0;
+	
+	private Boolean gpuTimersSupported;
+	private volatile boolean overlayVisible = Boolean.getBoolean("cy3d.metricsOverlay");
+	
+	
+	public void beginFrame() {
+		long now = System.nanoTime();
+		if(frameStart != 0) {
+			frameIntervals.add(now - frameStart);
+		}
+		frameStart = now;
+		drawCalls = 0;
+	}
+	
+	/**
+	 * Also records the time of the last edge analysis if it ran during the frame, the 
+	 * analysis is shared by all the renderers of a view and may be triggered by any of them.
+	 */
+	public void endFrame(EdgeAnalyser edgeAnalyser) {
+		frameTimer.add(System.nanoTime() - frameStart);
+		lastDrawCalls = drawCalls;
+		
+		long count = edgeAnalyser.getAnalysisCount();
+		if(count != edgeAnalysisCount) {
+			edgeAnalysisCount = count;
+			getStage(EDGE_ANALYSIS).cpu.add(edgeAnalyser.getLastAnalysisNanos());
+		}
+	}
+	
+	
+	/** Starts timing a stage on the CPU. */
+	public void begin(String stageName) {
+		getStage(stageName).start = System.nanoTime();
+	}
+	
+	public void end(String stageName) {
+		Stage stage = getStage(stageName);
+		stage.cpu.add(System.nanoTime() - stage.start);
+	}
+	
+	/** Starts timing a stage on the CPU and the GPU. */
+	public void begin(String stageName, GL2 gl) {
+		Stage stage = getStage(stageName);
+		if(isGpuTimersSupported(gl)) {
+			stage.gpuTimer.begin(gl);
+		}
+		stage.start = System.nanoTime();
+	}
+	
+	public void end(String stageName, GL2 gl) {
+		Stage stage = getStage(stageName);
+		stage.cpu.add(System.nanoTime() - stage.start);
+		if(isGpuTimersSupported(gl)) {
+			stage.gpuTimer.end(gl);
+		}
+	}
+	
+	private boolean isGpuTimersSupported(GL2 gl) {
+		if(gpuTimersSupported == null) {
+			gpuTimersSupported = GpuTimer.isSupported(gl);
+		}
+		return gpuTimersSupported;
+	}
+	
+	private synchronized Stage getStage(String name) {
+		Stage stage = stages.get(name);
+		if(stage == null) {
+			stage = new Stage(name);
+			stages.put(name, stage);
+		}
+		return stage;
+	}
+	
+	
+	public void addDrawCalls(int count) {
+		drawCalls += count;
+	}
+	
+	public void setVisibleNodeCount(int count) {
+		visibleNodeCount = count;
+	}
+	
+	public void setVisibleEdgeCount(int count) {
+		visibleEdgeCount = count;
+	}
+	
+	public synchronized void addPickingCacheCounts(long hits, long misses) {
+		pickingCacheHits += hits;
+		pickingCacheMisses += misses;
+	}
+	
+	public void setOverlayVisible(boolean visible) {
+		overlayVisible = visible;
+	}
+	
+	public boolean isOverlayVisible() {
+		return overlayVisible;
+	}
+	
+	
+	/** Draw calls made during the last complete frame. */
+	public int getDrawCalls() {
+		return lastDrawCalls;
+	}
+	
+	public int getVisibleNodeCount() {
+		return visibleNodeCount;
+	}
+	
+	public int getVisibleEdgeCount() {
+		return visibleEdgeCount;
+	}
+	
+	public synchronized long getPickingCacheHits() {
+		return pickingCacheHits;
+	}
+	
+	public synchronized long getPickingCacheMisses() {
+		return pickingCacheMisses;
+	}
+	
+	/** Frames per second, based on the median time between the start of two frames. */
+	public double getFramesPerSecond() {
+		long interval = frameIntervals.getPercentile(50);
+		return interval == 0 ? 0 : (double) TimeUnit.SECONDS.toNanos(1) / interval;
+	}
+	
+	public RollingTimer getFrameTimer() {
+		return frameTimer;
+	}
+	
+	public synchronized List<Stage> getStages() {
+		return new ArrayList<>(stages.values());
+	}
+	
+	
+	/**
+	 * Returns the metrics as lines of text, times are in milliseconds.
+	 */
+	public List<String> getReport() {
+		List<String> lines = new ArrayList<>();
+		lines.add(String.format("fps: %.1f", getFramesPerSecond()));
+		lines.add(String.format("frame: p50 %.2f, p95 %.2f, p99 %.2f", 
+				millis(frameTimer.getPercentile(50)), millis(frameTimer.getPercentile(95)), millis(frameTimer.getPercentile(99))));
+		lines.add("draw calls: " + getDrawCalls());
+		lines.add("visible nodes: " + getVisibleNodeCount() + ", visible edges: " + getVisibleEdgeCount());
+		long pickingHits = getPickingCacheHits();
+		long pickingMisses = getPickingCacheMisses();
+		if(pickingHits + pickingMisses > 0) {
+			lines.add("picking cache hits: " + pickingHits + ", misses: " + pickingMisses);
+		}
+		for(Stage stage : getStages()) {
+			String line = String.format("%s: cpu p50 %.2f, p95 %.2f", stage.name, millis(stage.cpu.getPercentile(50)), millis(stage.cpu.getPercentile(95)));
+			if(stage.gpu.getCount() > 0) {
+				line += String.format(", gpu p50 %.2f, p95 %.2f", millis(stage.gpu.getPercentile(50)), millis(stage.gpu.getPercentile(95)));
+			}
+			lines.add(line);
+		}
+		return lines;
+	}
+	
+	/**
+	 * Clears the timers and the counters, the visible counts are set again by the next frame.
+	 */
+	public synchronized void reset() {
+		frameTimer.clear();
+		frameIntervals.clear();
+		for(Stage stage : stages.values()) {
+			stage.cpu.clear();
+			stage.gpu.clear();
+		}
+		pickingCacheHits = 0;
+		pickingCacheMisses = 0;
+	}
+	
+	private static double millis(long nanos) {
+		return (double) nanos / MILLIS;
+	}
+	
+	
+	/**
+	 * Frees the GL timer queries, must be called with the renderer's GL context current.
+	 */
+	public synchronized void dispose(GL2 gl) {
+		for(Stage stage : stages.values()) {
+			stage.gpuTimer.dispose(gl);
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package org.baderlab.cy3d.internal.metrics;
+
+import com.jogamp.opengl.GL2;
+
+/**
+ * Measures how long the GPU takes to execute the commands of a stage with GL_TIME_ELAPSED
+ * timer queries. 
+ * 
+ * Query results only become available a few frames later, so each timer cycles through a 
+ * small ring of query objects and collects the results that are ready without stalling the 
+ * pipeline. If all the queries are still in flight the stage is not measured that frame.
+ * 
+ * Timer queries of different stages must not overlap.
+ * 
+ * @author mkucera
+ */
+class GpuTimer {
+
+	private static final int QUERIES = 4;
+	
+	private final RollingTimer timer;
+	private final int[] queries = new int[QUERIES];
+	private final boolean[] pending = new boolean[QUERIES];
+	private final int[] available = new int[1];
+	private final long[] result = new long[1];
+	
+	private boolean initialized = false;
+	private int next = 0;
+	private int active = -1;
+	
+	
+	GpuTimer(RollingTimer timer) {
+		this.timer = timer;
+	}
+	
+	
+	/**
+	 * Returns true if the GL context supports timer queries.
+	 */
+	static boolean isSupported(GL2 gl) {
+		return gl.isFunctionAvailable("glGetQueryObjectui64v") && gl.isFunctionAvailable("glBeginQuery");
+	}
+	
+	
+	void begin(GL2 gl) {
+		if(!initialized) {
+			gl.glGenQueries(QUERIES, queries, 0);
+			initialized = true;
+		}
+		collect(gl);
+		
+		if(pending[next]) {
+			active = -1; // all the queries are in flight
+			return;
+		}
+		active = next;
+		gl.glBeginQuery(GL2.GL_TIME_ELAPSED, queries[active]);
+	}
+	
+	void end(GL2 gl) {
+		if(active < 0)
+			return;
+		gl.glEndQuery(GL2.GL_TIME_ELAPSED);
+		pending[active] = true;
+		next = (active + 1) % QUERIES;
+		active = -1;
+	}
+	
+	/**
+	 * Adds the results of the queries that have finished to the timer, oldest first.
+	 */
+	private void collect(GL2 gl) {
+		for(int i = 0; i < QUERIES; i++) {
+			int q = (next + i) % QUERIES;
+			if(!pending[q])
+				continue;
+			gl.glGetQueryObjectiv(queries[q], GL2.GL_QUERY_RESULT_AVAILABLE, available, 0);
+			if(available[0] == 0)
+				continue;
+			gl.glGetQueryObjectui64v(queries[q], GL2.GL_QUERY_RESULT, result, 0);
+			timer.add(result[0]);
+			pending[q] = false;
+		}
+	}
+	
+	void dispose(GL2 gl) {
+		if(initialized) {
+			gl.glDeleteQueries(QUERIES, queries, 0);
+			initialized = false;
+		}
+	}
+}
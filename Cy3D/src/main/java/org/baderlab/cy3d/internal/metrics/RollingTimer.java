@@ -0,0 +1,84 @@
+package org.baderlab.cy3d.internal.metrics;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the durations of the most recent samples of a stage in a ring buffer
+ * and computes percentiles over them. 
+ * 
+ * Samples are added by the rendering thread and read by other threads (for example
+ * the metrics command), so all methods are synchronized.
+ * 
+ * @author mkucera
+ */
+public class RollingTimer {
+
+	public static final int DEFAULT_CAPACITY = 240;
+	
+	private final long[] samples;
+	private final long[] sorted;
+	private int count = 0;
+	private int next = 0;
+	private long total = 0;
+	
+	
+	public RollingTimer() {
+		this(DEFAULT_CAPACITY);
+	}
+	
+	public RollingTimer(int capacity) {
+		samples = new long[capacity];
+		sorted = new long[capacity];
+	}
+	
+	
+	public synchronized void add(long nanos) {
+		samples[next] = nanos;
+		next = (next + 1) % samples.length;
+		count = Math.min(count + 1, samples.length);
+		total++;
+	}
+	
+	/** Number of samples in the window. */
+	public synchronized int getCount() {
+		return count;
+	}
+	
+	/** Number of samples added since creation, including the ones that have left the window. */
+	public synchronized long getTotalCount() {
+		return total;
+	}
+	
+	public synchronized long getLast() {
+		return count == 0 ? 0 : samples[(next + samples.length - 1) % samples.length];
+	}
+	
+	public synchronized double getMean() {
+		if(count == 0)
+			return 0;
+		long sum = 0;
+		for(int i = 0; i < count; i++) {
+			sum += samples[i];
+		}
+		return (double) sum / count;
+	}
+	
+	/**
+	 * Returns the sample at the given percentile (0 to 100) of the window using the
+	 * nearest rank method, or 0 if there are no samples.
+	 */
+	public synchronized long getPercentile(double percentile) {
+		if(count == 0)
+			return 0;
+		System.arraycopy(samples, 0, sorted, 0, count);
+		Arrays.sort(sorted, 0, count);
+		int rank = (int) Math.ceil(percentile / 100 * count);
+		return sorted[Math.max(0, Math.min(count - 1, rank - 1))];
+	}
+	
+	public synchronized void clear() {
+		count = 0;
+		next = 0;
+		total = 0;
+	}
+}
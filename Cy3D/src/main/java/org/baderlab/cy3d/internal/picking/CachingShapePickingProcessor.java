@@ -0,0 +1,141 @@
+package org.baderlab.cy3d.internal.picking;
+
+import org.baderlab.cy3d.internal.camera.CameraPosition;
+import org.baderlab.cy3d.internal.data.GraphicsData;
+import org.baderlab.cy3d.internal.data.GraphicsSelectionData;
+import org.baderlab.cy3d.internal.geometric.Vector3;
+
+/**
+ * Wraps another {@link ShapePickingProcessor} and only runs it when something that
+ * can change the result of picking has changed since the last time it ran. That is the
+ * mouse position, the camera, the screen size, the selection box or the network snapshot.
+ *
+ * When picking is skipped the {@link org.baderlab.cy3d.internal.data.PickingData} keeps
+ * the results of the last pick, which are still valid.
+ *
+ * @author mkucera
+ */
+public class CachingShapePickingProcessor implements ShapePickingProcessor {
+
+	private final ShapePickingProcessor delegate;
+
+	private boolean valid = false;
+	private int snapshotVersion;
+	private int mouseX;
+	private int mouseY;
+	private int screenWidth;
+	private int screenHeight;
+	private final Vector3 cameraPosition = new Vector3();
+	private final Vector3 cameraTarget = new Vector3();
+	private final Vector3 cameraUp = new Vector3();
+	private boolean dragSelectMode;
+	private int selectTopLeftX;
+	private int selectTopLeftY;
+	private int selectBottomRightX;
+	private int selectBottomRightY;
+
+	private long hitCount = 0;
+	private long missCount = 0;
+
+
+	public CachingShapePickingProcessor(ShapePickingProcessor delegate) {
+		this.delegate = delegate;
+	}
+
+
+	@Override
+	public void initialize(GraphicsData graphicsData) {
+		delegate.initialize(graphicsData);
+		invalidate();
+	}
+
+
+	@Override
+	public void processPicking(GraphicsData graphicsData) {
+		if(valid && isUnchanged(graphicsData)) {
+			hitCount++;
+			return;
+		}
+		missCount++;
+		record(graphicsData);
+		delegate.processPicking(graphicsData);
+		valid = true;
+	}
+
+
+	/**
+	 * Forces the next call to {@link #processPicking(GraphicsData)} to run the wrapped processor.
+	 */
+	public void invalidate() {
+		valid = false;
+	}
+
+
+	private boolean isUnchanged(GraphicsData graphicsData) {
+		GraphicsSelectionData selectionData = graphicsData.getSelectionData();
+		CameraPosition camera = graphicsData.getCamera();
+
+		if(snapshotVersion != graphicsData.getSnapshotVersion()
+				|| mouseX != graphicsData.getMouseCurrentX()
+				|| mouseY != graphicsData.getMouseCurrentY()
+				|| screenWidth != graphicsData.getScreenWidth()
+				|| screenHeight != graphicsData.getScreenHeight()
+				|| dragSelectMode != selectionData.isDragSelectMode())
+			return false;
+
+		if(dragSelectMode) {
+			if(selectTopLeftX != selectionData.getSelectTopLeftX()
+					|| selectTopLeftY != selectionData.getSelectTopLeftY()
+					|| selectBottomRightX != selectionData.getSelectBottomRightX()
+					|| selectBottomRightY != selectionData.getSelectBottomRightY())
+				return false;
+		}
+
+		return cameraPosition.equals(camera.getPosition())
+			&& cameraTarget.equals(camera.getTarget())
+			&& cameraUp.equals(camera.getUp());
+	}
+
+
+	private void record(GraphicsData graphicsData) {
+		GraphicsSelectionData selectionData = graphicsData.getSelectionData();
+		CameraPosition camera = graphicsData.getCamera();
+
+		snapshotVersion = graphicsData.getSnapshotVersion();
+		mouseX = graphicsData.getMouseCurrentX();
+		mouseY = graphicsData.getMouseCurrentY();
+		screenWidth = graphicsData.getScreenWidth();
+		screenHeight = graphicsData.getScreenHeight();
+		dragSelectMode = selectionData.isDragSelectMode();
+		selectTopLeftX = selectionData.getSelectTopLeftX();
+		selectTopLeftY = selectionData.getSelectTopLeftY();
+		selectBottomRightX = selectionData.getSelectBottomRightX();
+		selectBottomRightY = selectionData.getSelectBottomRightY();
+
+		// copy the values, the camera modifies its vectors in place
+		cameraPosition.set(camera.getPosition());
+		cameraTarget.set(camera.getTarget());
+		cameraUp.set(camera.getUp());
+	}
+
+
+	/** Number of times picking was skipped because nothing changed, since the counts were last reset. */
+	public long getHitCount() {
+		return hitCount;
+	}
+
+	/** Number of times the wrapped processor was run, since the counts were last reset. */
+	public long getMissCount() {
+		return missCount;
+	}
+
+	public void resetCounts() {
+		hitCount = 0;
+		missCount = 0;
+	}
+
+	@Override
+	public String toString() {
+		return "CachingShapePickingProcessor(" + delegate + ", hits: " + hitCount + ", misses: " + missCount + ")";
+	}
+}
@@ -0,0 +1,295 @@
+package org.baderlab.cy3d.internal.picking;
+
+import static org.baderlab.cy3d.internal.picking.DefaultShapePickingProcessor.NO_INDEX;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.baderlab.cy3d.internal.camera.CameraPosition;
+import org.baderlab.cy3d.internal.cytoscape.edges.AugmentedEdgeContainer;
+import org.baderlab.cy3d.internal.cytoscape.view.Cy3DVisualLexicon;
+import org.baderlab.cy3d.internal.data.GraphicsData;
+import org.baderlab.cy3d.internal.data.GraphicsSelectionData;
+import org.baderlab.cy3d.internal.data.NodeRenderBuffer;
+import org.baderlab.cy3d.internal.data.PickingData;
+import org.baderlab.cy3d.internal.geometric.Vector3;
+import org.baderlab.cy3d.internal.rendering.EdgeCuller;
+import org.baderlab.cy3d.internal.rendering.NodeCuller;
+import org.baderlab.cy3d.internal.rendering.RenderNodesProcedure;
+import org.baderlab.cy3d.internal.rendering.shapes.ScalableShapeDrawer;
+import org.baderlab.cy3d.internal.rendering.shapes.ScalableShapeDrawer.Detail;
+import org.cytoscape.model.CyEdge;
+import org.cytoscape.view.model.CyNetworkViewSnapshot;
+import org.cytoscape.view.model.View;
+
+import com.jogamp.common.nio.Buffers;
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL2;
+import com.jogamp.opengl.glu.GLU;
+
+/**
+ * Picks nodes and edges by drawing each one in a unique flat color into a small offscreen
+ * framebuffer that covers only the picking region, and then reading the region back with
+ * a single call to glReadPixels(). This avoids GL_SELECT mode, which most drivers emulate
+ * in software.
+ *
+ * The color of each shape is an index into a table of SUIDs that is rebuilt for every pick,
+ * index 0 means that nothing was drawn at that pixel.
+ *
+ * Only single picks under the mouse use the color buffer. A color buffer only has the front-most
+ * shape of every pixel, but drag selection must also pick the shapes hidden behind other shapes,
+ * so it is answered by the frustum query of {@link SpatialShapePickingProcessor}, which fills the
+ * same PickingData without a render pass.
+ *
+ * Everything is delegated to {@link SpatialShapePickingProcessor} if framebuffer objects are not supported.
+ *
+ * @author mkucera
+ */
+public class ColorShapePickingProcessor implements ShapePickingProcessor {
+
+	/** Width of edges in the picking buffer, in pixels. */
+	private static final float EDGE_PICK_WIDTH = 4.0f;
+
+	/** Maximum number of shapes that can be encoded in the 24 bits of an RGB color. */
+	private static final int MAX_ID = 0xFFFFFF;
+
+	private final ScalableShapeDrawer shapeDrawer = new ScalableShapeDrawer();
+	private final NodeCuller nodeCuller = new NodeCuller();
+	private final EdgeCuller edgeCuller = new EdgeCuller();
+	private final ShapePickingProcessor spatialProcessor = new SpatialShapePickingProcessor();
+	private boolean framebufferSupported;
+	private GLU glu;
+	private final int[] viewport = new int[4];
+	private final int[] previousFramebuffer = new int[1];
+
+	private int framebuffer;
+	private int colorBuffer;
+	private int depthBuffer;
+	private int bufferWidth;
+	private int bufferHeight;
+	private ByteBuffer pixels = Buffers.newDirectByteBuffer(0);
+
+	// id -> SUID, ids 1 to nodeCount are nodes and the rest are edges
+	private long[] idTable = new long[1024];
+	private int nodeCount;
+	private int idCount;
+
+
+	@Override
+	public void initialize(GraphicsData graphicsData) {
+		GL2 gl = graphicsData.getGlContext();
+		spatialProcessor.initialize(graphicsData);
+
+		framebufferSupported = gl.isFunctionAvailable("glGenFramebuffers") && gl.isFunctionAvailable("glGenRenderbuffers");
+		if(!framebufferSupported) {
+			System.err.println("Framebuffer objects not available, falling back to spatial index picking");
+			return;
+		}
+
+		glu = GLU.createGLU(gl);
+		shapeDrawer.initialize(gl);
+
+		int[] ids = new int[1];
+		gl.glGenFramebuffers(1, ids, 0);
+		framebuffer = ids[0];
+		gl.glGenRenderbuffers(1, ids, 0);
+		colorBuffer = ids[0];
+		gl.glGenRenderbuffers(1, ids, 0);
+		depthBuffer = ids[0];
+	}
+
+
+	@Override
+	public void processPicking(GraphicsData graphicsData) {
+		GraphicsSelectionData selectionData = graphicsData.getSelectionData();
+
+		if (!framebufferSupported || selectionData.isDragSelectMode()) {
+			spatialProcessor.processPicking(graphicsData);
+		} else {
+			performPick(graphicsData.getMouseCurrentX(), graphicsData.getMouseCurrentY(), 2, 2, graphicsData);
+		}
+	}
+
+
+	private void performPick(int x, int y, int width, int height, GraphicsData graphicsData) {
+		GL2 gl = graphicsData.getGlContext();
+		int screenHeight = graphicsData.getScreenHeight();
+		int screenWidth = graphicsData.getScreenWidth();
+
+		gl.glGetIntegerv(GL.GL_VIEWPORT, viewport, 0);
+		gl.glGetIntegerv(GL.GL_FRAMEBUFFER_BINDING, previousFramebuffer, 0);
+
+		ensureBufferSize(gl, width, height);
+
+		gl.glBindFramebuffer(GL.GL_FRAMEBUFFER, framebuffer);
+		gl.glPushAttrib(GL2.GL_ENABLE_BIT | GL2.GL_COLOR_BUFFER_BIT | GL2.GL_VIEWPORT_BIT | GL2.GL_LINE_BIT | GL2.GL_CURRENT_BIT);
+
+		gl.glViewport(0, 0, width, height);
+		gl.glDisable(GL2.GL_LIGHTING);
+		gl.glDisable(GL.GL_DITHER);
+		gl.glDisable(GL.GL_BLEND);
+		gl.glDisable(GL.GL_MULTISAMPLE);
+		gl.glDisable(GL.GL_LINE_SMOOTH);
+		gl.glEnable(GL.GL_DEPTH_TEST);
+		gl.glClearColor(0, 0, 0, 0);
+		gl.glClear(GL.GL_COLOR_BUFFER_BIT | GL.GL_DEPTH_BUFFER_BIT);
+
+		// Map the picking region of the screen onto the whole framebuffer
+		gl.glMatrixMode(GL2.GL_PROJECTION);
+		gl.glPushMatrix();
+		gl.glLoadIdentity();
+		glu.gluPickMatrix(x, screenHeight - y, width, height, viewport, 0);
+		glu.gluPerspective(GraphicsData.VERTICAL_VOF, screenHeight == 0 ? 1 : (float) screenWidth / screenHeight, GraphicsData.NEAR_Z, GraphicsData.FAR_Z);
+
+		gl.glMatrixMode(GL2.GL_MODELVIEW);
+		gl.glPushMatrix();
+		gl.glLoadIdentity();
+		CameraPosition camera = graphicsData.getCamera();
+		Vector3 position = camera.getPosition();
+		Vector3 target = camera.getTarget();
+		Vector3 up = camera.getUp();
+		glu.gluLookAt(position.x(), position.y(), position.z(), target.x(), target.y(), target.z(), up.x(), up.y(), up.z());
+
+		idCount = 0;
+		drawNodes(gl, graphicsData);
+		nodeCount = idCount;
+		drawEdges(gl, graphicsData);
+
+		pixels.clear();
+		gl.glPixelStorei(GL.GL_PACK_ALIGNMENT, 1);
+		gl.glReadPixels(0, 0, width, height, GL.GL_RGBA, GL.GL_UNSIGNED_BYTE, pixels);
+
+		gl.glPopMatrix();
+		gl.glMatrixMode(GL2.GL_PROJECTION);
+		gl.glPopMatrix();
+		gl.glMatrixMode(GL2.GL_MODELVIEW);
+
+		gl.glPopAttrib();
+		gl.glBindFramebuffer(GL.GL_FRAMEBUFFER, previousFramebuffer[0]);
+
+		parseSingleSelection(width, height, graphicsData.getPickingData());
+	}
+
+
+	private void ensureBufferSize(GL2 gl, int width, int height) {
+		if(width <= bufferWidth && height <= bufferHeight)
+			return;
+
+		bufferWidth  = Math.max(width, bufferWidth);
+		bufferHeight = Math.max(height, bufferHeight);
+
+		gl.glBindRenderbuffer(GL.GL_RENDERBUFFER, colorBuffer);
+		gl.glRenderbufferStorage(GL.GL_RENDERBUFFER, GL.GL_RGBA8, bufferWidth, bufferHeight);
+		gl.glBindRenderbuffer(GL.GL_RENDERBUFFER, depthBuffer);
+		gl.glRenderbufferStorage(GL.GL_RENDERBUFFER, GL.GL_DEPTH_COMPONENT24, bufferWidth, bufferHeight);
+		gl.glBindRenderbuffer(GL.GL_RENDERBUFFER, 0);
+
+		gl.glGetIntegerv(GL.GL_FRAMEBUFFER_BINDING, previousFramebuffer, 0);
+		gl.glBindFramebuffer(GL.GL_FRAMEBUFFER, framebuffer);
+		gl.glFramebufferRenderbuffer(GL.GL_FRAMEBUFFER, GL.GL_COLOR_ATTACHMENT0, GL.GL_RENDERBUFFER, colorBuffer);
+		gl.glFramebufferRenderbuffer(GL.GL_FRAMEBUFFER, GL.GL_DEPTH_ATTACHMENT, GL.GL_RENDERBUFFER, depthBuffer);
+		int status = gl.glCheckFramebufferStatus(GL.GL_FRAMEBUFFER);
+		if(status != GL.GL_FRAMEBUFFER_COMPLETE) {
+			System.err.println("Picking framebuffer incomplete: " + status);
+		}
+		gl.glBindFramebuffer(GL.GL_FRAMEBUFFER, previousFramebuffer[0]);
+
+		pixels = Buffers.newDirectByteBuffer(bufferWidth * bufferHeight * 4);
+	}
+
+
+	private int nextId(long suid) {
+		if(idCount == MAX_ID)
+			return 0;
+		idCount++;
+		if(idCount >= idTable.length) {
+			idTable = Arrays.copyOf(idTable, idTable.length * 2);
+		}
+		idTable[idCount] = suid;
+		return idCount;
+	}
+
+	private static void setIdColor(GL2 gl, int id) {
+		gl.glColor3ub((byte) id, (byte) (id >>> 8), (byte) (id >>> 16));
+	}
+
+
+	private void drawNodes(GL2 gl, GraphicsData graphicsData) {
+		CyNetworkViewSnapshot networkView = graphicsData.getNetworkSnapshot();
+		NodeRenderBuffer nodes = graphicsData.getNodeBuffer();
+		Detail detail = RenderNodesProcedure.mapDetailLevel(networkView.getVisualProperty(Cy3DVisualLexicon.DETAIL_LEVEL));
+
+		int visibleCount = nodeCuller.cull(graphicsData);
+		for (int i = 0; i < visibleCount; i++) {
+			int node = nodeCuller.getVisibleIndex(i);
+
+			int id = nextId(nodes.getModelSUID(node));
+			if (id == 0)
+				return;
+
+			gl.glPushMatrix();
+			gl.glTranslatef(nodes.getSceneX(node), nodes.getSceneY(node), nodes.getSceneZ(node));
+			setIdColor(gl, id);
+			gl.glScalef(RenderNodesProcedure.NODE_SIZE_RADIUS, RenderNodesProcedure.NODE_SIZE_RADIUS, RenderNodesProcedure.NODE_SIZE_RADIUS);
+			gl.glScalef(nodes.getWidth(node)  / RenderNodesProcedure.NODE_SIZE_SCALE,
+					    nodes.getHeight(node) / RenderNodesProcedure.NODE_SIZE_SCALE,
+					    nodes.getDepth(node)  / RenderNodesProcedure.NODE_SIZE_SCALE);
+			shapeDrawer.drawShape(gl, nodes.getShape(node), detail);
+			gl.glPopMatrix();
+		}
+	}
+
+	private void drawEdges(GL2 gl, GraphicsData graphicsData) {
+		CyNetworkViewSnapshot networkView = graphicsData.getNetworkSnapshot();
+		gl.glLineWidth(EDGE_PICK_WIDTH);
+
+		int visibleCount = edgeCuller.cull(graphicsData);
+		for (int i = 0; i < visibleCount; i++) {
+			AugmentedEdgeContainer container = edgeCuller.getVisible(i);
+			View<CyEdge> edgeView = container.getEdgeView();
+			float[] points = container.getCoordinates();
+
+			int id = nextId(networkView.getEdgeInfo(edgeView).getModelSUID());
+			if (id == 0)
+				return;
+
+			setIdColor(gl, id);
+			gl.glBegin(GL.GL_LINE_STRIP);
+			for (int k = 0; k < points.length; k += 3) {
+				gl.glVertex3f(points[k], points[k+1], points[k+2]);
+			}
+			gl.glEnd();
+		}
+	}
+
+
+	private int readId(int pixel) {
+		int i = pixel * 4;
+		int id = (pixels.get(i) & 0xFF) | ((pixels.get(i + 1) & 0xFF) << 8) | ((pixels.get(i + 2) & 0xFF) << 16);
+		return id <= idCount ? id : 0;
+	}
+
+	private void parseSingleSelection(int width, int height, PickingData pickingData) {
+		pickingData.setClosestPickedNodeIndex(NO_INDEX);
+		pickingData.setClosestPickedEdgeIndex(NO_INDEX);
+
+		// Nodes take priority over edges, same as GL_SELECT picking
+		int edgeId = 0;
+		for (int pixel = 0; pixel < width * height; pixel++) {
+			int id = readId(pixel);
+			if (id == 0)
+				continue;
+			if (id <= nodeCount) {
+				pickingData.setClosestPickedNodeIndex(idTable[id]);
+				return;
+			}
+			if (edgeId == 0) {
+				edgeId = id;
+			}
+		}
+		if (edgeId != 0) {
+			pickingData.setClosestPickedEdgeIndex(idTable[edgeId]);
+		}
+	}
+
+}
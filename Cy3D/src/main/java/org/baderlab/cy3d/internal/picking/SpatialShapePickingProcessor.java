@@ -0,0 +1,143 @@
+package org.baderlab.cy3d.internal.picking;
+
+import static org.baderlab.cy3d.internal.picking.DefaultShapePickingProcessor.NO_INDEX;
+
+import org.baderlab.cy3d.internal.camera.CameraPosition;
+import org.baderlab.cy3d.internal.cytoscape.edges.AugmentedEdgeContainer;
+import org.baderlab.cy3d.internal.data.GraphicsData;
+import org.baderlab.cy3d.internal.data.GraphicsSelectionData;
+import org.baderlab.cy3d.internal.data.NodeRenderBuffer;
+import org.baderlab.cy3d.internal.data.PickingData;
+import org.baderlab.cy3d.internal.geometric.Vector3;
+import org.baderlab.cy3d.internal.rendering.RenderArcEdgesProcedure;
+import org.baderlab.cy3d.internal.spatial.Frustum;
+import org.baderlab.cy3d.internal.spatial.SpatialIndex;
+import org.baderlab.cy3d.internal.spatial.SpatialIndex.RayHit;
+import org.baderlab.cy3d.internal.tools.GeometryToolkit;
+import org.cytoscape.model.CyEdge;
+import org.cytoscape.view.model.CyNetworkViewSnapshot;
+import org.cytoscape.view.model.View;
+import org.cytoscape.view.presentation.property.BasicVisualLexicon;
+
+/**
+ * Picks nodes and edges on the CPU using a {@link SpatialIndex}, without a render pass.
+ * Single selection casts a ray from the camera through the mouse position, drag selection
+ * queries the volume visible through the selection box.
+ *
+ * Nodes are approximated by the sphere around their drawn shape ({@link NodeRenderBuffer#getBoundingRadius}),
+ * which is exactly the drawn sphere for sphere shaped nodes, and edges by a capsule around each segment.
+ * The index is rebuilt only when the network snapshot changes.
+ *
+ * @author mkucera
+ */
+public class SpatialShapePickingProcessor implements ShapePickingProcessor {
+
+	/** Edges are very thin, make them a bit easier to hit with the mouse. */
+	private static final double MIN_EDGE_PICK_RADIUS = 0.03;
+
+	private final SpatialIndex index = new SpatialIndex();
+	private CyNetworkViewSnapshot indexedSnapshot;
+
+
+	@Override
+	public void initialize(GraphicsData graphicsData) {
+	}
+
+
+	@Override
+	public void processPicking(GraphicsData graphicsData) {
+		CyNetworkViewSnapshot networkView = graphicsData.getNetworkSnapshot();
+		if(networkView != indexedSnapshot) {
+			buildIndex(graphicsData);
+			indexedSnapshot = networkView;
+		}
+
+		GraphicsSelectionData selectionData = graphicsData.getSelectionData();
+		if (selectionData.isDragSelectMode()) {
+			pickBox(graphicsData, selectionData);
+		} else {
+			pickRay(graphicsData);
+		}
+	}
+
+
+	private void buildIndex(GraphicsData graphicsData) {
+		CyNetworkViewSnapshot networkView = graphicsData.getNetworkSnapshot();
+		float distanceScale = GraphicsData.DISTANCE_SCALE;
+		index.clear();
+
+		NodeRenderBuffer nodes = graphicsData.getNodeBuffer();
+		for (int i = 0; i < nodes.getCount(); i++) {
+			if (!nodes.isVisible(i))
+				continue;
+
+			double x = nodes.getX(i) / distanceScale;
+			double y = nodes.getY(i) / distanceScale;
+			double z = nodes.getZ(i) / distanceScale;
+
+			index.addNode(nodes.getModelSUID(i), x, -y, z, nodes.getBoundingRadius(i));
+		}
+
+		for (AugmentedEdgeContainer container : graphicsData.getEdgeAnalyser().getAnalyzedEdges(graphicsData.getNodeBuffer(), distanceScale)) {
+			if (!container.isSufficientLength() || !container.isVisible())
+				continue;
+
+			float[] points = container.getCoordinates();
+			if (points == null || points.length < 6)
+				continue;
+
+			double radius = Math.max(MIN_EDGE_PICK_RADIUS, RenderArcEdgesProcedure.SEGMENT_RADIUS * container.getRadiusFactor());
+
+			long suid = networkView.getEdgeInfo(container.getEdgeView()).getModelSUID();
+			for (int p = 0; p + 5 < points.length; p += 3) {
+				index.addEdgeSegment(suid, points[p], points[p+1], points[p+2], points[p+3], points[p+4], points[p+5], radius);
+			}
+		}
+
+		index.build();
+	}
+
+
+	private void pickRay(GraphicsData graphicsData) {
+		PickingData pickingData = graphicsData.getPickingData();
+		pickingData.setClosestPickedNodeIndex(NO_INDEX);
+		pickingData.setClosestPickedEdgeIndex(NO_INDEX);
+
+		CameraPosition camera = graphicsData.getCamera();
+		Vector3 origin = camera.getPosition();
+		Vector3 through = GeometryToolkit.convertScreenTo3d(graphicsData.getMouseCurrentX(), graphicsData.getMouseCurrentY(),
+				graphicsData.getScreenWidth(), graphicsData.getScreenHeight(), 1, camera);
+		Vector3 direction = through.subtract(origin);
+
+		// Nodes take priority over edges, same as GL_SELECT picking
+		RayHit hit = index.rayCast(origin, direction, SpatialIndex.NODE);
+		if (hit != null) {
+			pickingData.setClosestPickedNodeIndex(hit.getSuid());
+			return;
+		}
+		hit = index.rayCast(origin, direction, SpatialIndex.EDGE);
+		if (hit != null) {
+			pickingData.setClosestPickedEdgeIndex(hit.getSuid());
+		}
+	}
+
+
+	private void pickBox(GraphicsData graphicsData, GraphicsSelectionData selectionData) {
+		PickingData pickingData = graphicsData.getPickingData();
+		pickingData.getPickedNodeIndices().clear();
+		pickingData.getPickedEdgeIndices().clear();
+
+		int x1 = selectionData.getSelectTopLeftX();
+		int y1 = selectionData.getSelectTopLeftY();
+		int x2 = selectionData.getSelectBottomRightX();
+		int y2 = selectionData.getSelectBottomRightY();
+		if (x1 == x2 || y1 == y2)
+			return;
+
+		Frustum frustum = Frustum.fromScreenRectangle(x1, y1, x2, y2, graphicsData.getScreenWidth(), graphicsData.getScreenHeight(),
+				GraphicsData.NEAR_Z, GraphicsData.FAR_Z, graphicsData.getCamera());
+
+		index.queryFrustum(frustum, pickingData.getPickedNodeIndices(), pickingData.getPickedEdgeIndices());
+	}
+
+}
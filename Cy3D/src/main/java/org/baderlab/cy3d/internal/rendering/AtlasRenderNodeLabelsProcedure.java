@@ -0,0 +1,474 @@
+package org.baderlab.cy3d.internal.rendering;
+
+
+import java.awt.Color;
+import java.awt.Font;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.baderlab.cy3d.internal.data.GraphicsData;
+import org.baderlab.cy3d.internal.data.ImageTile;
+import org.baderlab.cy3d.internal.data.NodeRenderBuffer;
+import org.baderlab.cy3d.internal.rendering.text.DerivedFontCache;
+import org.baderlab.cy3d.internal.rendering.text.GlyphAtlas;
+import org.baderlab.cy3d.internal.rendering.text.GlyphAtlas.Glyph;
+import org.baderlab.cy3d.internal.rendering.text.GlyphAtlasCache;
+import org.baderlab.cy3d.internal.rendering.text.LabelCuller;
+import org.baderlab.cy3d.internal.tools.ShaderToolkit;
+
+import com.google.common.collect.ImmutableMap;
+import com.jogamp.common.nio.Buffers;
+import com.jogamp.opengl.GL2;
+
+/**
+ * Renders node labels from glyph atlas textures. Every label is a set of textured quads
+ * that are anchored at the node's position and offset in screen space by the vertex shader,
+ * so the vertex buffers do not depend on the camera. All labels that use the same font are
+ * drawn with a single draw call.
+ *
+ * The glyph quads are only rebuilt when NODE_LABEL, NODE_LABEL_FONT_FACE, NODE_LABEL_FONT_SIZE,
+ * NODE_LABEL_COLOR or the set of visible labelled nodes changes. When only node positions
+ * change just the anchor buffers are updated.
+ *
+ * Every frame a {@link LabelCuller} chooses which labels to draw, only the indices of the
+ * chosen labels' quads are uploaded. The tiles of an exported image reuse the labels chosen
+ * for the first tile.
+ *
+ * Falls back to {@link RenderNodeLabelsProcedure} if the GL context does not support shaders.
+ *
+ * @author mkucera
+ */
+public class AtlasRenderNodeLabelsProcedure implements GraphicsProcedure {
+
+	private static final Font TEXT_DEFAULT_FONT = new Font("SansSerif", Font.PLAIN, 9);
+	private static final Color TEXT_DEFAULT_COLOR = Color.BLACK;
+
+	private static final int ANCHOR_ATTRIB = 0;
+	private static final int OFFSET_ATTRIB = 1;
+	private static final int TEXCOORD_ATTRIB = 2;
+	private static final int COLOR_ATTRIB = 3;
+
+	/** Offset(2), texture coordinates(2), color(4) */
+	private static final int LAYOUT_FLOATS_PER_VERTEX = 8;
+	private static final int ANCHOR_FLOATS_PER_VERTEX = 3;
+
+	// The anchor is snapped to a pixel so that glyphs are not resampled
+	private static final String VERTEX_SHADER =
+		"#version 120\n" +
+		"attribute vec3 anchor;\n" +
+		"attribute vec2 offset;\n" +
+		"attribute vec2 texCoord;\n" +
+		"attribute vec4 vertexColor;\n" +
+		"uniform vec2 viewportSize;\n" +
+		"varying vec2 uv;\n" +
+		"varying vec4 color;\n" +
+		"void main() {\n" +
+		"  vec4 clip = gl_ModelViewProjectionMatrix * vec4(anchor, 1.0);\n" +
+		"  vec2 screen = floor((clip.xy / clip.w * 0.5 + 0.5) * viewportSize) + offset;\n" +
+		"  clip.xy = (screen / viewportSize * 2.0 - 1.0) * clip.w;\n" +
+		"  gl_Position = clip;\n" +
+		"  uv = texCoord;\n" +
+		"  color = vertexColor;\n" +
+		"}\n";
+
+	private static final String FRAGMENT_SHADER =
+		"#version 120\n" +
+		"uniform sampler2D atlas;\n" +
+		"varying vec2 uv;\n" +
+		"varying vec4 color;\n" +
+		"void main() {\n" +
+		"  gl_FragColor = vec4(color.rgb, color.a * texture2D(atlas, uv).a);\n" +
+		"}\n";
+
+	private static final Map<String,Integer> ATTRIBUTES = ImmutableMap.of(
+		"anchor",      ANCHOR_ATTRIB,
+		"offset",      OFFSET_ATTRIB,
+		"texCoord",    TEXCOORD_ATTRIB,
+		"vertexColor", COLOR_ATTRIB
+	);
+
+
+	/** The properties of a label that require the glyph quads to be rebuilt when they change. */
+	private static class LabelState {
+		final long suid;
+		final String text;
+		final Font font;
+		final Color color;
+
+		LabelState(long suid, String text, Font font, Color color) {
+			this.suid = suid;
+			this.text = text;
+			this.font = font;
+			this.color = color;
+		}
+
+		boolean matches(long suid, String text, Font font, Color color) {
+			return this.suid == suid && this.text.equals(text) && this.font.equals(font) && this.color.equals(color);
+		}
+	}
+
+	/** The quads of all labels that use the same atlas. */
+	private static class LabelBatch {
+		final GlyphAtlas atlas;
+		final int layoutVbo;
+		final int anchorVbo;
+		final int indexVbo;
+		float[] layout = new float[LAYOUT_FLOATS_PER_VERTEX * 256];
+		float[] anchors = new float[ANCHOR_FLOATS_PER_VERTEX * 256];
+		int[] vertexLabels = new int[256]; // vertex -> label index
+		int vertexCount;
+		boolean layoutDirty;
+		int[] indices = new int[256];
+		int indexCount;
+
+		LabelBatch(GlyphAtlas atlas, int layoutVbo, int anchorVbo, int indexVbo) {
+			this.atlas = atlas;
+			this.layoutVbo = layoutVbo;
+			this.anchorVbo = anchorVbo;
+			this.indexVbo = indexVbo;
+		}
+
+		void addQuads(int firstVertex, int count) {
+			if(indexCount + count > indices.length) {
+				indices = Arrays.copyOf(indices, Math.max(indexCount + count, indices.length * 2));
+			}
+			for(int v = firstVertex; v < firstVertex + count; v++) {
+				indices[indexCount++] = v;
+			}
+		}
+
+		void addVertex(int label, float x, float y, float u, float v, Color color) {
+			if(vertexCount == vertexLabels.length) {
+				int capacity = vertexCount * 2;
+				layout = Arrays.copyOf(layout, capacity * LAYOUT_FLOATS_PER_VERTEX);
+				anchors = Arrays.copyOf(anchors, capacity * ANCHOR_FLOATS_PER_VERTEX);
+				vertexLabels = Arrays.copyOf(vertexLabels, capacity);
+			}
+			int i = vertexCount * LAYOUT_FLOATS_PER_VERTEX;
+			layout[i++] = x;
+			layout[i++] = y;
+			layout[i++] = u;
+			layout[i++] = v;
+			layout[i++] = color.getRed()   / 255f;
+			layout[i++] = color.getGreen() / 255f;
+			layout[i++] = color.getBlue()  / 255f;
+			layout[i++] = color.getAlpha() / 255f;
+			vertexLabels[vertexCount++] = label;
+		}
+	}
+
+
+	private RenderNodeLabelsProcedure fallback;
+	private int program;
+	private int viewportSizeLocation;
+	private int atlasLocation;
+
+	private final GlyphAtlasCache atlasCache = new GlyphAtlasCache();
+	private final DerivedFontCache fontCache = new DerivedFontCache();
+	private final Map<GlyphAtlas,LabelBatch> batches = new IdentityHashMap<>();
+
+	private int snapshotVersion = -1;
+	private LabelState[] labelStates = new LabelState[0];
+	private int labelCount = 0;
+	private float[] labelPositions = new float[0];
+	private boolean[] labelSelected = new boolean[0];
+
+	// where the quads of each label are, set when the batches are rebuilt
+	private LabelBatch[] labelBatches = new LabelBatch[0];
+	private int[] labelFirstVertex = new int[0];
+	private int[] labelVertexCount = new int[0];
+	private int[] labelWidths = new int[0];
+	private int[] labelHeights = new int[0];
+
+	private final LabelCuller labelCuller = new LabelCuller();
+
+
+	@Override
+	public void initialize(GraphicsData graphicsData) {
+		GL2 gl = graphicsData.getGlContext();
+
+		if(gl.hasGLSL()) {
+			program = ShaderToolkit.createProgram(gl, VERTEX_SHADER, FRAGMENT_SHADER, ATTRIBUTES);
+		}
+		if(program == 0) {
+			System.err.println("Shaders not available, falling back to TextRenderer labels");
+			fallback = new RenderNodeLabelsProcedure();
+			fallback.initialize(graphicsData);
+			return;
+		}
+
+		viewportSizeLocation = gl.glGetUniformLocation(program, "viewportSize");
+		atlasLocation = gl.glGetUniformLocation(program, "atlas");
+	}
+
+
+	@Override
+	public void execute(GraphicsData graphicsData) {
+		if(fallback != null) {
+			fallback.execute(graphicsData);
+			return;
+		}
+		if(!graphicsData.getShowLabels())
+			return;
+
+		GL2 gl = graphicsData.getGlContext();
+		atlasCache.deleteEvicted(gl);
+
+		boolean updated = false;
+		if(snapshotVersion != graphicsData.getSnapshotVersion() || !batchesValid()) {
+			snapshotVersion = graphicsData.getSnapshotVersion();
+			boolean labelsChanged = updateLabels(graphicsData.getNodeBuffer());
+			if(labelsChanged || !batchesValid()) {
+				rebuildBatches(gl);
+			}
+			updateAnchors(gl);
+			updated = true;
+		}
+
+		// The tiles of an image share the placement of the first tile, which is done on the whole image
+		ImageTile tile = graphicsData.getImageTile();
+		if(tile == null || tile.isFirst() || updated) {
+			cullLabels(gl, tile);
+		}
+		if(batches.isEmpty())
+			return;
+
+		gl.glPushAttrib(GL2.GL_ENABLE_BIT | GL2.GL_COLOR_BUFFER_BIT | GL2.GL_TEXTURE_BIT);
+		gl.glDisable(GL2.GL_DEPTH_TEST);
+		gl.glDisable(GL2.GL_LIGHTING);
+		gl.glEnable(GL2.GL_BLEND);
+		gl.glBlendFunc(GL2.GL_SRC_ALPHA, GL2.GL_ONE_MINUS_SRC_ALPHA);
+		gl.glActiveTexture(GL2.GL_TEXTURE0);
+
+		gl.glUseProgram(program);
+		gl.glUniform2f(viewportSizeLocation, graphicsData.getScreenWidth(), graphicsData.getScreenHeight());
+		gl.glUniform1i(atlasLocation, 0);
+		gl.glEnableVertexAttribArray(ANCHOR_ATTRIB);
+		gl.glEnableVertexAttribArray(OFFSET_ATTRIB);
+		gl.glEnableVertexAttribArray(TEXCOORD_ATTRIB);
+		gl.glEnableVertexAttribArray(COLOR_ATTRIB);
+
+		int stride = LAYOUT_FLOATS_PER_VERTEX * Buffers.SIZEOF_FLOAT;
+		for(LabelBatch batch : batches.values()) {
+			batch.atlas.bind(gl);
+			gl.glBindBuffer(GL2.GL_ARRAY_BUFFER, batch.anchorVbo);
+			gl.glVertexAttribPointer(ANCHOR_ATTRIB, 3, GL2.GL_FLOAT, false, 0, 0);
+			gl.glBindBuffer(GL2.GL_ARRAY_BUFFER, batch.layoutVbo);
+			gl.glVertexAttribPointer(OFFSET_ATTRIB,   2, GL2.GL_FLOAT, false, stride, 0);
+			gl.glVertexAttribPointer(TEXCOORD_ATTRIB, 2, GL2.GL_FLOAT, false, stride, 2 * Buffers.SIZEOF_FLOAT);
+			gl.glVertexAttribPointer(COLOR_ATTRIB,    4, GL2.GL_FLOAT, false, stride, 4 * Buffers.SIZEOF_FLOAT);
+			if(batch.indexCount > 0) {
+				gl.glBindBuffer(GL2.GL_ELEMENT_ARRAY_BUFFER, batch.indexVbo);
+				gl.glDrawElements(GL2.GL_QUADS, batch.indexCount, GL2.GL_UNSIGNED_INT, 0);
+				graphicsData.getFrameMetrics().addDrawCalls(1);
+			}
+		}
+
+		gl.glDisableVertexAttribArray(ANCHOR_ATTRIB);
+		gl.glDisableVertexAttribArray(OFFSET_ATTRIB);
+		gl.glDisableVertexAttribArray(TEXCOORD_ATTRIB);
+		gl.glDisableVertexAttribArray(COLOR_ATTRIB);
+		gl.glBindBuffer(GL2.GL_ARRAY_BUFFER, 0);
+		gl.glBindBuffer(GL2.GL_ELEMENT_ARRAY_BUFFER, 0);
+		gl.glBindTexture(GL2.GL_TEXTURE_2D, 0);
+		gl.glUseProgram(0);
+		gl.glPopAttrib();
+	}
+
+
+	/**
+	 * Reads the labels from the snapshot and stores their positions.
+	 * Returns true if anything other than the positions changed since the last call.
+	 */
+	private boolean updateLabels(NodeRenderBuffer nodes) {
+		boolean changed = false;
+		int count = 0;
+
+		for(int i = 0; i < nodes.getCount(); i++) {
+			// The buffer only has the text of visible nodes
+			String text = nodes.getLabelText(i);
+			if(text == null)
+				continue;
+
+			long suid = nodes.getViewSUID(i);
+			Font font = getLabelFont(nodes, i);
+			Color color = getLabelColor(nodes, i);
+
+			if(count == labelStates.length) {
+				int capacity = Math.max(256, count * 2);
+				labelStates = Arrays.copyOf(labelStates, capacity);
+				labelPositions = Arrays.copyOf(labelPositions, capacity * 3);
+				labelSelected = Arrays.copyOf(labelSelected, capacity);
+			}
+			LabelState state = labelStates[count];
+			if(count >= labelCount || state == null || !state.matches(suid, text, font, color)) {
+				labelStates[count] = new LabelState(suid, text, font, color);
+				changed = true;
+			}
+
+			int p = count * 3;
+			labelPositions[p]   = nodes.getSceneX(i);
+			labelPositions[p+1] = nodes.getSceneY(i);
+			labelPositions[p+2] = nodes.getSceneZ(i);
+			labelSelected[count] = nodes.isSelected(i);
+			count++;
+		}
+
+		if(count != labelCount) {
+			changed = true;
+			Arrays.fill(labelStates, count, labelStates.length, null);
+		}
+		labelCount = count;
+		return changed;
+	}
+
+
+	private boolean batchesValid() {
+		for(LabelBatch batch : batches.values()) {
+			if(!atlasCache.contains(batch.atlas))
+				return false;
+		}
+		return true;
+	}
+
+
+	private void rebuildBatches(GL2 gl) {
+		for(LabelBatch batch : batches.values()) {
+			batch.vertexCount = 0;
+		}
+		if(labelBatches.length < labelCount) {
+			int capacity = labelStates.length;
+			labelBatches = new LabelBatch[capacity];
+			labelFirstVertex = new int[capacity];
+			labelVertexCount = new int[capacity];
+			labelWidths = new int[capacity];
+			labelHeights = new int[capacity];
+		}
+
+		atlasCache.beginUpdate();
+		for(int label = 0; label < labelCount; label++) {
+			LabelState state = labelStates[label];
+			GlyphAtlas atlas = atlasCache.get(state.font);
+			LabelBatch batch = batches.get(atlas);
+			if(batch == null) {
+				int[] vbos = new int[3];
+				gl.glGenBuffers(3, vbos, 0);
+				batch = new LabelBatch(atlas, vbos[0], vbos[1], vbos[2]);
+				batches.put(atlas, batch);
+			}
+			batch.layoutDirty = true;
+
+			String text = state.text;
+			int width = atlas.getTextWidth(text);
+			labelBatches[label] = batch;
+			labelFirstVertex[label] = batch.vertexCount;
+			labelWidths[label] = width;
+			labelHeights[label] = state.font.getSize();
+
+			int pen = -width / 2;
+			for(int i = 0; i < text.length(); ) {
+				int codePoint = text.codePointAt(i);
+				i += Character.charCount(codePoint);
+				Glyph glyph = atlas.getGlyph(codePoint);
+				if(glyph == null)
+					continue;
+
+				float x0 = pen + glyph.left;
+				float x1 = x0 + glyph.width;
+				float y0 = glyph.bottom;
+				float y1 = y0 + glyph.height;
+				batch.addVertex(label, x0, y0, glyph.u0, glyph.v0, state.color);
+				batch.addVertex(label, x1, y0, glyph.u1, glyph.v0, state.color);
+				batch.addVertex(label, x1, y1, glyph.u1, glyph.v1, state.color);
+				batch.addVertex(label, x0, y1, glyph.u0, glyph.v1, state.color);
+				pen += glyph.advance;
+			}
+			labelVertexCount[label] = batch.vertexCount - labelFirstVertex[label];
+		}
+		atlasCache.endUpdate();
+
+		// Free the buffers of fonts that are no longer used, or whose atlas has been evicted
+		Iterator<LabelBatch> iter = batches.values().iterator();
+		while(iter.hasNext()) {
+			LabelBatch batch = iter.next();
+			if(batch.vertexCount == 0 || !atlasCache.contains(batch.atlas)) {
+				gl.glDeleteBuffers(3, new int[] { batch.layoutVbo, batch.anchorVbo, batch.indexVbo }, 0);
+				iter.remove();
+			}
+		}
+
+		for(LabelBatch batch : batches.values()) {
+			if(batch.layoutDirty) {
+				int length = batch.vertexCount * LAYOUT_FLOATS_PER_VERTEX;
+				gl.glBindBuffer(GL2.GL_ARRAY_BUFFER, batch.layoutVbo);
+				gl.glBufferData(GL2.GL_ARRAY_BUFFER, (long) length * Buffers.SIZEOF_FLOAT, FloatBuffer.wrap(batch.layout, 0, length), GL2.GL_STATIC_DRAW);
+				batch.layoutDirty = false;
+			}
+		}
+		gl.glBindBuffer(GL2.GL_ARRAY_BUFFER, 0);
+	}
+
+
+	private void updateAnchors(GL2 gl) {
+		for(LabelBatch batch : batches.values()) {
+			float[] anchors = batch.anchors;
+			for(int v = 0; v < batch.vertexCount; v++) {
+				int p = batch.vertexLabels[v] * 3;
+				int a = v * ANCHOR_FLOATS_PER_VERTEX;
+				anchors[a]   = labelPositions[p];
+				anchors[a+1] = labelPositions[p+1];
+				anchors[a+2] = labelPositions[p+2];
+			}
+			int length = batch.vertexCount * ANCHOR_FLOATS_PER_VERTEX;
+			gl.glBindBuffer(GL2.GL_ARRAY_BUFFER, batch.anchorVbo);
+			gl.glBufferData(GL2.GL_ARRAY_BUFFER, (long) length * Buffers.SIZEOF_FLOAT, FloatBuffer.wrap(anchors, 0, length), GL2.GL_DYNAMIC_DRAW);
+		}
+		gl.glBindBuffer(GL2.GL_ARRAY_BUFFER, 0);
+	}
+
+
+	/**
+	 * Chooses which labels to draw this frame and uploads the indices of their quads.
+	 */
+	private void cullLabels(GL2 gl, ImageTile tile) {
+		labelCuller.begin(gl, tile);
+		for(int label = 0; label < labelCount; label++) {
+			int p = label * 3;
+			labelCuller.add(label, labelPositions[p], labelPositions[p+1], labelPositions[p+2], labelWidths[label], labelHeights[label], labelSelected[label]);
+		}
+		int placed = labelCuller.place();
+
+		for(LabelBatch batch : batches.values()) {
+			batch.indexCount = 0;
+		}
+		for(int i = 0; i < placed; i++) {
+			int label = labelCuller.getPlacedId(i);
+			labelBatches[label].addQuads(labelFirstVertex[label], labelVertexCount[label]);
+		}
+		for(LabelBatch batch : batches.values()) {
+			gl.glBindBuffer(GL2.GL_ELEMENT_ARRAY_BUFFER, batch.indexVbo);
+			gl.glBufferData(GL2.GL_ELEMENT_ARRAY_BUFFER, (long) batch.indexCount * Buffers.SIZEOF_INT, IntBuffer.wrap(batch.indices, 0, batch.indexCount), GL2.GL_STREAM_DRAW);
+		}
+		gl.glBindBuffer(GL2.GL_ELEMENT_ARRAY_BUFFER, 0);
+	}
+
+
+	private static Color getLabelColor(NodeRenderBuffer nodes, int i) {
+		Color color = nodes.getLabelColor(i);
+		if(color != null) {
+			return color;
+		}
+		return TEXT_DEFAULT_COLOR;
+	}
+
+	private Font getLabelFont(NodeRenderBuffer nodes, int i) {
+		Font font = nodes.getLabelFontFace(i);
+		if(font == null)
+			return TEXT_DEFAULT_FONT;
+		return fontCache.get(font, nodes.getLabelFontSize(i));
+	}
+}
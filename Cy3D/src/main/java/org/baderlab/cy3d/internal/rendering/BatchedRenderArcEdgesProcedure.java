@@ -0,0 +1,324 @@
+package org.baderlab.cy3d.internal.rendering;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.baderlab.cy3d.internal.cytoscape.edges.AugmentedEdgeContainer;
+import org.baderlab.cy3d.internal.cytoscape.edges.EdgeAnalysis;
+import org.baderlab.cy3d.internal.cytoscape.view.Cy3DVisualLexicon;
+import org.baderlab.cy3d.internal.data.GraphicsData;
+import org.baderlab.cy3d.internal.rendering.shapes.EdgeMesh;
+import org.baderlab.cy3d.internal.rendering.shapes.EdgeShapeDrawer.EdgeShapeType;
+import org.baderlab.cy3d.internal.spatial.CullingGrid;
+import org.cytoscape.view.presentation.property.LineTypeVisualProperty;
+
+import com.jogamp.opengl.GL2;
+
+/**
+ * Renders the edges from vertex buffers. The geometry of all edges of the same line type
+ * (regular, dashed or dotted) is tessellated into one {@link EdgeMesh}, so all edges are
+ * drawn with a few draw calls. The meshes are only rebuilt and uploaded when the network
+ * snapshot changes, not on every frame.
+ *
+ * Edges are added to the meshes in the cell order of the {@link EdgeCuller}'s grid, so the
+ * geometry of each grid cell is a contiguous range of indices. Only the ranges of cells that
+ * are inside the viewing volume are drawn, adjacent visible cells are merged into one draw call.
+ *
+ * When the snapshot changes and the culler updates the changed edges in place, only those edges
+ * are tessellated again. They are the edges whose coordinates or style changed, which includes
+ * the edges of the nodes that moved (see {@link EdgeAnalysis}). Their vertices are replaced in
+ * place and uploaded with glBufferSubData, as long as the new geometry has the same number of
+ * vertices, otherwise the meshes are rebuilt. The meshes are also rebuilt when the culler's grid is.
+ *
+ * When the detail level is automatic, every edge is also added to a mesh of GL lines, and
+ * the cells whose edges are thinner than a pixel on screen (according to the {@link LevelOfDetail})
+ * are drawn from the line mesh instead of the solid meshes.
+ *
+ * The shapes have the same dimensions as the ones drawn by {@link RenderArcEdgesProcedure}.
+ * Falls back to {@link RenderArcEdgesProcedure} if vertex buffer objects are not supported.
+ *
+ * This procedure does not push names for GL_SELECT picking, the picking processor
+ * uses its own {@link RenderArcEdgesProcedure}.
+ *
+ * @author mkucera
+ */
+public class BatchedRenderArcEdgesProcedure implements GraphicsProcedure {
+
+	private static final float[] SPECULAR_REFLECTION = { 0.1f, 0.1f, 0.1f, 1.0f };
+	private static final int REGULAR_SLICES = 3;
+	private static final int DASHED_SLICES = 3;
+	private static final int DOTTED_SLICES = 4;
+	private static final int DOTTED_STACKS = 4;
+
+	// the display list shapes have radius 0.5 before being scaled
+	private static final double REGULAR_RADIUS = RenderArcEdgesProcedure.SEGMENT_RADIUS / 2;
+	private static final double DASHED_RADIUS = RenderArcEdgesProcedure.DASHED_EDGE_RADIUS / 2;
+	private static final double DOTTED_RADIUS = RenderArcEdgesProcedure.DOTTED_EDGE_RADIUS / Math.sqrt(2) / 2;
+
+	private RenderArcEdgesProcedure fallback;
+	private final Map<EdgeShapeType, EdgeMesh> meshes = new EnumMap<>(EdgeShapeType.class);
+	private final Map<EdgeShapeType, int[]> cellRanges = new EnumMap<>(EdgeShapeType.class);
+	private final EdgeMesh lines = new EdgeMesh(GL2.GL_LINES);
+	private int[] lineRanges = new int[1];
+	private boolean[] solidCells = new boolean[0];
+	private boolean[] lineCells = new boolean[0];
+	private final double[] cellBounds = new double[6];
+
+	// The position of each grid item in the meshes, and the shape each edge was tessellated with
+	private int[] meshSlots = new int[0];
+	private EdgeShapeType[] edgeTypes = new EdgeShapeType[0];
+	// first and end vertex and first and end index in the solid mesh, then the same in the line mesh
+	private int[] edgeRanges = new int[0];
+	private int[] patchedEdges = new int[0];
+	private final EdgeCuller culler = new EdgeCuller();
+
+
+	@Override
+	public void initialize(GraphicsData graphicsData) {
+		GL2 gl = graphicsData.getGlContext();
+
+		if(!gl.isFunctionAvailable("glGenBuffers")) {
+			System.err.println("Vertex buffer objects not available, falling back to display list edges");
+			fallback = new RenderArcEdgesProcedure();
+			fallback.initialize(graphicsData);
+			return;
+		}
+
+		for(EdgeShapeType type : new EdgeShapeType[] { EdgeShapeType.REGULAR, EdgeShapeType.DASHED, EdgeShapeType.DOTTED }) {
+			EdgeMesh mesh = new EdgeMesh();
+			mesh.initialize(gl);
+			meshes.put(type, mesh);
+		}
+		lines.initialize(gl);
+	}
+
+
+	@Override
+	public void execute(GraphicsData graphicsData) {
+		if(fallback != null) {
+			fallback.execute(graphicsData);
+			return;
+		}
+
+		GL2 gl = graphicsData.getGlContext();
+
+		if(culler.build(graphicsData) && (culler.isRebuilt() || !patchMeshes(gl))) {
+			buildMeshes();
+			for(EdgeMesh mesh : meshes.values()) {
+				mesh.upload(gl);
+			}
+			lines.upload(gl);
+		}
+		graphicsData.getFrameMetrics().setVisibleEdgeCount(culler.cull(graphicsData));
+		boolean automatic = LevelOfDetail.isAutomatic(graphicsData.getNetworkSnapshot().getVisualProperty(Cy3DVisualLexicon.DETAIL_LEVEL));
+		chooseCells(graphicsData.getLevelOfDetail(), automatic);
+
+		gl.glMaterialfv(GL2.GL_FRONT, GL2.GL_SPECULAR, SPECULAR_REFLECTION, 0);
+		gl.glMateriali(GL2.GL_FRONT, GL2.GL_SHININESS, 1);
+
+		gl.glEnableClientState(GL2.GL_VERTEX_ARRAY);
+		gl.glEnableClientState(GL2.GL_NORMAL_ARRAY);
+		gl.glEnableClientState(GL2.GL_COLOR_ARRAY);
+
+		int drawCalls = 0;
+		for(Map.Entry<EdgeShapeType, EdgeMesh> entry : meshes.entrySet()) {
+			drawCalls += drawCells(gl, entry.getValue(), cellRanges.get(entry.getKey()), solidCells);
+		}
+		gl.glDisableClientState(GL2.GL_NORMAL_ARRAY);
+
+		if(automatic) {
+			gl.glDisable(GL2.GL_LIGHTING);
+			drawCalls += drawCells(gl, lines, lineRanges, lineCells);
+			gl.glEnable(GL2.GL_LIGHTING);
+		}
+
+		gl.glDisableClientState(GL2.GL_VERTEX_ARRAY);
+		gl.glDisableClientState(GL2.GL_COLOR_ARRAY);
+		graphicsData.getFrameMetrics().addDrawCalls(drawCalls);
+	}
+
+	/**
+	 * Decides which visible cells are drawn with solid geometry and which with lines.
+	 */
+	private void chooseCells(LevelOfDetail levelOfDetail, boolean automatic) {
+		CullingGrid grid = culler.getGrid();
+		int cellCount = grid.getCellCount();
+		if(solidCells.length < cellCount) {
+			solidCells = new boolean[cellCount];
+			lineCells = new boolean[cellCount];
+		}
+		for(int cell = 0; cell < cellCount; cell++) {
+			boolean line = false;
+			if(automatic && grid.isCellVisible(cell)) {
+				grid.getCellBounds(cell, cellBounds);
+				double[] b = cellBounds;
+				line = levelOfDetail.isLine(levelOfDetail.projectedRadius(b[0], b[1], b[2], b[3], b[4], b[5], REGULAR_RADIUS));
+			}
+			solidCells[cell] = grid.isCellVisible(cell) && !line;
+			lineCells[cell] = line;
+		}
+	}
+
+	/**
+	 * Draws the ranges of the cells that are selected, adjacent cells are merged into one draw call.
+	 * @return the number of draw calls made
+	 */
+	private int drawCells(GL2 gl, EdgeMesh mesh, int[] ranges, boolean[] selected) {
+		int cellCount = culler.getGrid().getCellCount();
+		int drawCalls = 0;
+		mesh.bind(gl);
+		for(int cell = 0; cell < cellCount; cell++) {
+			if(selected[cell]) {
+				int first = cell;
+				while(cell + 1 < cellCount && selected[cell + 1]) {
+					cell++;
+				}
+				mesh.drawRange(gl, ranges[first], ranges[cell + 1]);
+				drawCalls++;
+			}
+		}
+		mesh.unbind(gl);
+		return drawCalls;
+	}
+
+
+	private void buildMeshes() {
+		CullingGrid grid = culler.getGrid();
+		int cellCount = grid.getCellCount();
+		for(EdgeShapeType type : meshes.keySet()) {
+			meshes.get(type).clear();
+			int[] ranges = cellRanges.get(type);
+			if(ranges == null || ranges.length < cellCount + 1) {
+				ranges = new int[cellCount + 1];
+				cellRanges.put(type, ranges);
+			}
+			Arrays.fill(ranges, 0);
+		}
+		lines.clear();
+		if(lineRanges.length < cellCount + 1) {
+			lineRanges = new int[cellCount + 1];
+		}
+		Arrays.fill(lineRanges, 0);
+
+		int edgeCount = grid.size();
+		if(meshSlots.length < edgeCount) {
+			meshSlots = new int[edgeCount];
+			edgeTypes = new EdgeShapeType[edgeCount];
+			edgeRanges = new int[edgeCount * 8];
+		}
+
+		for(int cell = 0; cell < cellCount; cell++) {
+			for(int k = grid.getCellStart(cell); k < grid.getCellStart(cell + 1); k++) {
+				meshSlots[grid.getItem(k)] = k;
+				addEdge(k, culler.getEdge(grid.getItem(k)));
+			}
+			// the index ranges of the cell end here
+			for(EdgeShapeType type : meshes.keySet()) {
+				cellRanges.get(type)[cell + 1] = meshes.get(type).getIndexCount();
+			}
+			lineRanges[cell + 1] = lines.getIndexCount();
+		}
+	}
+
+	/**
+	 * Re-tessellates only the edges the culler updated in place.
+	 * @return false if the meshes must be rebuilt
+	 */
+	private boolean patchMeshes(GL2 gl) {
+		int patchedCount = 0;
+		for(int u = 0; u < culler.getUpdatedCount(); u++) {
+			int id = culler.getUpdated(u);
+			int k = meshSlots[id];
+			AugmentedEdgeContainer container = culler.getEdge(id);
+			EdgeShapeType type = getShapeType(container);
+			if(type != edgeTypes[k])
+				return false;
+
+			EdgeMesh mesh = meshes.get(type);
+			int r = k * 8;
+			mesh.rewind(edgeRanges[r], edgeRanges[r+2]);
+			lines.rewind(edgeRanges[r+4], edgeRanges[r+6]);
+			addGeometry(k, container, type);
+			// both must be ended, a mesh that doesn't fit is cleared
+			boolean fits = mesh.endRewrite(edgeRanges[r+1], edgeRanges[r+3]);
+			fits &= lines.endRewrite(edgeRanges[r+5], edgeRanges[r+7]);
+			if(!fits)
+				return false;
+
+			if(patchedCount == patchedEdges.length) {
+				patchedEdges = Arrays.copyOf(patchedEdges, Math.max(64, patchedCount * 2));
+			}
+			patchedEdges[patchedCount++] = k;
+		}
+
+		if(patchedCount > culler.getGrid().size() / 4) {
+			// fewer calls to upload everything
+			for(EdgeMesh mesh : meshes.values()) {
+				mesh.upload(gl);
+			}
+			lines.upload(gl);
+		} else {
+			for(int i = 0; i < patchedCount; i++) {
+				int k = patchedEdges[i];
+				int r = k * 8;
+				meshes.get(edgeTypes[k]).uploadRange(gl, edgeRanges[r], edgeRanges[r+1], edgeRanges[r+2], edgeRanges[r+3]);
+				lines.uploadRange(gl, edgeRanges[r+4], edgeRanges[r+5], edgeRanges[r+6], edgeRanges[r+7]);
+			}
+		}
+		return true;
+	}
+
+	private static EdgeShapeType getShapeType(AugmentedEdgeContainer container) {
+		if(container.getLineType() == LineTypeVisualProperty.EQUAL_DASH)
+			return EdgeShapeType.DASHED;
+		if(container.getLineType() == LineTypeVisualProperty.DOT)
+			return EdgeShapeType.DOTTED;
+		return EdgeShapeType.REGULAR; // Draw regular edges for the catch-all case
+	}
+
+	/**
+	 * Adds the k-th edge to the meshes and records where its geometry is.
+	 */
+	private void addEdge(int k, AugmentedEdgeContainer container) {
+		EdgeShapeType type = getShapeType(container);
+		EdgeMesh mesh = meshes.get(type);
+		int r = k * 8;
+		edgeRanges[r]   = mesh.getVertexCount();
+		edgeRanges[r+2] = mesh.getIndexCount();
+		edgeRanges[r+4] = lines.getVertexCount();
+		edgeRanges[r+6] = lines.getIndexCount();
+		addGeometry(k, container, type);
+		edgeRanges[r+1] = mesh.getVertexCount();
+		edgeRanges[r+3] = mesh.getIndexCount();
+		edgeRanges[r+5] = lines.getVertexCount();
+		edgeRanges[r+7] = lines.getIndexCount();
+	}
+
+	private void addGeometry(int k, AugmentedEdgeContainer container, EdgeShapeType type) {
+		float[] points = container.getCoordinates();
+		double radiusFactor = container.getRadiusFactor();
+		edgeTypes[k] = type;
+
+		lines.setColor(container.getColor());
+		lines.addLineStrip(points);
+
+		EdgeMesh mesh = meshes.get(type);
+		mesh.setColor(container.getColor());
+		if(type == EdgeShapeType.DASHED) {
+			for(int p = 3; p + 3 < points.length; p += 3) {
+				// facing from the previous point to the next
+				mesh.addCylinder(points[p], points[p+1], points[p+2], 
+						points[p+3] - points[p-3], points[p+4] - points[p-2], points[p+5] - points[p-1], 
+						RenderArcEdgesProcedure.DASHED_EDGE_LENGTH, DASHED_RADIUS * radiusFactor, DASHED_SLICES);
+			}
+		} else if(type == EdgeShapeType.DOTTED) {
+			for(int p = 3; p + 3 < points.length; p += 3) {
+				mesh.addSphere(points[p], points[p+1], points[p+2], DOTTED_RADIUS * radiusFactor, DOTTED_SLICES, DOTTED_STACKS);
+			}
+		} else {
+			mesh.addTube(points, REGULAR_RADIUS * radiusFactor, REGULAR_SLICES);
+		}
+	}
+
+}
@@ -0,0 +1,200 @@
+package org.baderlab.cy3d.internal.rendering;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.baderlab.cy3d.internal.cytoscape.edges.AugmentedEdgeContainer;
+import org.baderlab.cy3d.internal.cytoscape.edges.EdgeAnalysis;
+import org.baderlab.cy3d.internal.data.GraphicsData;
+import org.baderlab.cy3d.internal.spatial.CullingGrid;
+
+/**
+ * Finds the visible edges that are inside the viewing volume, using the bounds of the
+ * edge segments. The edge bounds are put into a {@link CullingGrid} which is only updated
+ * when the network snapshot changes.
+ *
+ * When the {@link EdgeAnalysis} of the new snapshot only has changed edges, the bounds of those
+ * edges are updated in place and the other cells are left alone. The grid is rebuilt when edges
+ * were added or removed, became visible or invisible, or when many edges have been updated
+ * since the grid was built.
+ *
+ * @author mkucera
+ */
+public class EdgeCuller {
+
+	/** The widest edge shape is a dotted edge sphere. */
+	private static final double EDGE_RADIUS = RenderArcEdgesProcedure.DOTTED_EDGE_RADIUS;
+
+	/** The grid is rebuilt when more than this fraction of its edges were updated in place since it was built. */
+	private static final double MAX_UPDATED_FRACTION = 0.25;
+
+	private final CullingGrid grid = new CullingGrid();
+	private final List<AugmentedEdgeContainer> edges = new ArrayList<>();
+	private long analysisVersion = -1;
+
+	// the grid id of each edge of the analysis, -1 if the edge is not in the grid
+	private int[] gridIds = new int[0];
+
+	// what the last build did
+	private boolean rebuilt;
+	private int[] updated = new int[0];
+	private int updatedCount;
+	private int updatedSinceRebuild;
+
+	private final double[] edgeBounds = new double[6];
+
+
+	/**
+	 * Culls the edges against the viewing volume of the current frame.
+	 * @return the number of edges that are inside the viewing volume
+	 */
+	public int cull(GraphicsData graphicsData) {
+		build(graphicsData);
+		return grid.cull(graphicsData.getViewingVolume());
+	}
+
+	public int getVisibleCount() {
+		return grid.getVisibleCount();
+	}
+
+	public AugmentedEdgeContainer getVisible(int i) {
+		return edges.get(grid.getVisible(i));
+	}
+
+	/**
+	 * Returns the grid the edges were added to, the item ids are the indices into {@link #getEdge(int)}.
+	 */
+	public CullingGrid getGrid() {
+		return grid;
+	}
+
+	public AugmentedEdgeContainer getEdge(int id) {
+		return edges.get(id);
+	}
+
+
+	/**
+	 * Updates the grid if the network snapshot has changed.
+	 * @return true if the grid was rebuilt or edges were updated
+	 */
+	public boolean build(GraphicsData graphicsData) {
+		EdgeAnalysis analysis = graphicsData.getEdgeAnalyser().analyze(graphicsData.getNodeBuffer(), GraphicsData.DISTANCE_SCALE);
+		if(analysis.getVersion() == analysisVersion)
+			return false;
+
+		boolean incremental = analysis.getBaseVersion() == analysisVersion && !analysis.isStructureChanged() && update(analysis);
+		analysisVersion = analysis.getVersion();
+		rebuilt = !incremental;
+		if(rebuilt) {
+			rebuild(analysis);
+		}
+		return rebuilt || updatedCount > 0;
+	}
+
+	/**
+	 * Returns true if the last {@link #build(GraphicsData)} rebuilt the grid, the edges
+	 * may be in different cells and have different ids.
+	 */
+	public boolean isRebuilt() {
+		return rebuilt;
+	}
+
+	/**
+	 * Number of edges whose bounds were updated in place by the last {@link #build(GraphicsData)},
+	 * only valid if the grid was not rebuilt.
+	 */
+	public int getUpdatedCount() {
+		return updatedCount;
+	}
+
+	/**
+	 * Returns the grid id of the k-th updated edge.
+	 */
+	public int getUpdated(int k) {
+		return updated[k];
+	}
+
+
+	/**
+	 * Updates the bounds of the changed edges.
+	 * @return false if the grid must be rebuilt
+	 */
+	private boolean update(EdgeAnalysis analysis) {
+		updatedCount = 0;
+		List<AugmentedEdgeContainer> containers = analysis.getEdges();
+		for(int k = 0; k < analysis.getChangedCount(); k++) {
+			int i = analysis.getChanged(k);
+			int id = gridIds[i];
+			if(findBounds(containers.get(i)) != id >= 0)
+				return false;
+			if(id < 0)
+				continue;
+
+			double[] b = edgeBounds;
+			grid.update(id, b[0], b[1], b[2], b[3], b[4], b[5]);
+			if(updatedCount == updated.length) {
+				updated = Arrays.copyOf(updated, Math.max(64, updatedCount * 2));
+			}
+			updated[updatedCount++] = id;
+		}
+		updatedSinceRebuild += updatedCount;
+		return updatedSinceRebuild <= grid.size() * MAX_UPDATED_FRACTION;
+	}
+
+	private void rebuild(EdgeAnalysis analysis) {
+		grid.clear();
+		edges.clear();
+		updatedCount = 0;
+		updatedSinceRebuild = 0;
+
+		List<AugmentedEdgeContainer> containers = analysis.getEdges();
+		if(gridIds.length < containers.size()) {
+			gridIds = new int[containers.size()];
+		}
+		for(int i = 0; i < containers.size(); i++) {
+			AugmentedEdgeContainer container = containers.get(i);
+			if(findBounds(container)) {
+				double[] b = edgeBounds;
+				gridIds[i] = grid.add(b[0], b[1], b[2], b[3], b[4], b[5]);
+				edges.add(container);
+			} else {
+				gridIds[i] = -1;
+			}
+		}
+		grid.build();
+	}
+
+	/**
+	 * Puts the bounds of the edge into edgeBounds.
+	 * @return false if the edge is not drawn
+	 */
+	private boolean findBounds(AugmentedEdgeContainer container) {
+		if(!container.isSufficientLength() || !container.isVisible())
+			return false;
+
+		float[] points = container.getCoordinates();
+		if(points == null || points.length < 6)
+			return false;
+
+		double radius = EDGE_RADIUS * Math.max(1.0, container.getRadiusFactor());
+
+		double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY, minZ = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
+		for(int p = 0; p < points.length; p += 3) {
+			minX = Math.min(minX, points[p]);
+			minY = Math.min(minY, points[p+1]);
+			minZ = Math.min(minZ, points[p+2]);
+			maxX = Math.max(maxX, points[p]);
+			maxY = Math.max(maxY, points[p+1]);
+			maxZ = Math.max(maxZ, points[p+2]);
+		}
+		edgeBounds[0] = minX - radius;
+		edgeBounds[1] = minY - radius;
+		edgeBounds[2] = minZ - radius;
+		edgeBounds[3] = maxX + radius;
+		edgeBounds[4] = maxY + radius;
+		edgeBounds[5] = maxZ + radius;
+		return true;
+	}
+}
@@ -0,0 +1,302 @@
+package org.baderlab.cy3d.internal.rendering;
+
+import java.nio.FloatBuffer;
+import java.util.Map;
+
+import org.baderlab.cy3d.internal.cytoscape.view.Cy3DVisualLexicon;
+import org.baderlab.cy3d.internal.cytoscape.view.DetailLevel;
+import org.baderlab.cy3d.internal.data.GraphicsData;
+import org.baderlab.cy3d.internal.data.NodeRenderBuffer;
+import org.baderlab.cy3d.internal.rendering.shapes.PointBatch;
+import org.baderlab.cy3d.internal.rendering.shapes.ScalableShapeDrawer;
+import org.baderlab.cy3d.internal.rendering.shapes.ScalableShapeDrawer.Detail;
+import org.baderlab.cy3d.internal.rendering.shapes.ScalableShapeDrawer.Shape;
+import org.baderlab.cy3d.internal.tools.RenderColor;
+import org.baderlab.cy3d.internal.tools.ShaderToolkit;
+import org.cytoscape.view.model.CyNetworkViewSnapshot;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableTable;
+import com.google.common.collect.Table;
+import com.jogamp.common.nio.Buffers;
+import com.jogamp.opengl.GL2;
+
+/**
+ * Renders the nodes using instanced drawing. The per-node position, scale and color
+ * are packed into a vertex buffer for each shape, and each shape is then drawn with a
+ * single call to glDrawArraysInstanced(), instead of the several GL calls per node
+ * made by {@link RenderNodesProcedure}.
+ *
+ * Falls back to {@link RenderNodesProcedure} if the GL context does not support
+ * shaders or instancing.
+ *
+ * When the detail level is automatic the sphere tessellation is chosen per node by the
+ * {@link LevelOfDetail}, and nodes that are tiny on screen are drawn as points.
+ *
+ * This procedure does not push names for GL_SELECT picking, the picking processor
+ * uses its own {@link RenderNodesProcedure}.
+ *
+ * @author mkucera
+ */
+public class InstancedRenderNodesProcedure implements GraphicsProcedure {
+
+	private static final float[] SPECULAR_REFLECTION = { 0.46f, 0.46f, 0.46f, 1.0f };
+	private static final int POSITION_ATTRIB = 0;
+	private static final int NORMAL_ATTRIB   = 1;
+	private static final int OFFSET_ATTRIB   = 2;
+	private static final int SCALE_ATTRIB    = 3;
+	private static final int COLOR_ATTRIB    = 4;
+
+	/** Offset(3), scale(3), color(3) */
+	private static final int FLOATS_PER_INSTANCE = 9;
+	private static final int FLOATS_PER_VERTEX = 6;
+
+	// Same lighting model as the fixed function pipeline with GL_LIGHT0 and GL_COLOR_MATERIAL
+	private static final String VERTEX_SHADER =
+		"#version 120\n" +
+		"attribute vec3 vertexPosition;\n" +
+		"attribute vec3 vertexNormal;\n" +
+		"attribute vec3 instanceOffset;\n" +
+		"attribute vec3 instanceScale;\n" +
+		"attribute vec3 instanceColor;\n" +
+		"varying vec4 color;\n" +
+		"void main() {\n" +
+		"  vec4 position = vec4(vertexPosition * instanceScale + instanceOffset, 1.0);\n" +
+		"  vec3 normal = normalize(gl_NormalMatrix * (vertexNormal / max(abs(instanceScale), vec3(0.000001))));\n" +
+		"  vec3 light = normalize(gl_LightSource[0].position.xyz);\n" +
+		"  float diffuse = max(dot(normal, light), 0.0);\n" +
+		"  vec3 eye = -normalize((gl_ModelViewMatrix * position).xyz);\n" +
+		"  float specular = diffuse > 0.0 ? pow(max(dot(normal, normalize(light + eye)), 0.0), gl_FrontMaterial.shininess) : 0.0;\n" +
+		"  vec3 rgb = (gl_LightModel.ambient.rgb + gl_LightSource[0].ambient.rgb + gl_LightSource[0].diffuse.rgb * diffuse) * instanceColor\n" +
+		"          + gl_FrontMaterial.specular.rgb * gl_LightSource[0].specular.rgb * specular;\n" +
+		"  color = vec4(rgb, 1.0);\n" +
+		"  gl_Position = gl_ModelViewProjectionMatrix * position;\n" +
+		"}\n";
+
+	private static final String FRAGMENT_SHADER =
+		"#version 120\n" +
+		"varying vec4 color;\n" +
+		"void main() {\n" +
+		"  gl_FragColor = color;\n" +
+		"}\n";
+
+	private static final Map<String,Integer> ATTRIBUTES = ImmutableMap.of(
+		"vertexPosition", POSITION_ATTRIB,
+		"vertexNormal",   NORMAL_ATTRIB,
+		"instanceOffset", OFFSET_ATTRIB,
+		"instanceScale",  SCALE_ATTRIB,
+		"instanceColor",  COLOR_ATTRIB
+	);
+
+
+	private static class Mesh {
+		final int vbo;
+		final int vertexCount;
+
+		Mesh(int vbo, int vertexCount) {
+			this.vbo = vbo;
+			this.vertexCount = vertexCount;
+		}
+	}
+
+	/** Per-shape and detail instance data, rebuilt every frame. */
+	private static class InstanceBucket {
+		final int vbo;
+		float[] data = new float[FLOATS_PER_INSTANCE * 256];
+		int count;
+
+		InstanceBucket(int vbo) {
+			this.vbo = vbo;
+		}
+
+		void add(float x, float y, float z, float sx, float sy, float sz, RenderColor color) {
+			int i = count * FLOATS_PER_INSTANCE;
+			if(i + FLOATS_PER_INSTANCE > data.length) {
+				float[] newData = new float[data.length * 2];
+				System.arraycopy(data, 0, newData, 0, i);
+				data = newData;
+			}
+			data[i++] = x;
+			data[i++] = y;
+			data[i++] = z;
+			data[i++] = sx;
+			data[i++] = sy;
+			data[i++] = sz;
+			data[i++] = (float) color.getRed();
+			data[i++] = (float) color.getGreen();
+			data[i++] = (float) color.getBlue();
+			count++;
+		}
+	}
+
+
+	private RenderNodesProcedure fallback;
+	private int program;
+	private Table<Shape, Detail, Mesh> meshes = ImmutableTable.of();
+	private Table<Shape, Detail, InstanceBucket> buckets = ImmutableTable.of();
+	private final PointBatch points = new PointBatch();
+	private FloatBuffer uploadBuffer = Buffers.newDirectFloatBuffer(FLOATS_PER_INSTANCE * 256);
+	private final RenderColor color = new RenderColor();
+	private final NodeCuller culler = new NodeCuller();
+
+
+	@Override
+	public void initialize(GraphicsData graphicsData) {
+		GL2 gl = graphicsData.getGlContext();
+
+		if(ShaderToolkit.isInstancingSupported(gl)) {
+			program = ShaderToolkit.createProgram(gl, VERTEX_SHADER, FRAGMENT_SHADER, ATTRIBUTES);
+		}
+		if(program == 0) {
+			System.err.println("Instanced rendering not available, falling back to display lists");
+			fallback = new RenderNodesProcedure();
+			fallback.initialize(graphicsData);
+			return;
+		}
+
+		int[] vbos = new int[Shape.values().length * Detail.values().length * 2];
+		gl.glGenBuffers(vbos.length, vbos, 0);
+		int v = 0;
+
+		ImmutableTable.Builder<Shape, Detail, Mesh> builder = ImmutableTable.builder();
+		ImmutableTable.Builder<Shape, Detail, InstanceBucket> bucketBuilder = ImmutableTable.builder();
+		for(Shape shape : Shape.values()) {
+			for(Detail detail : Detail.values()) {
+				float[] mesh = ScalableShapeDrawer.createTriangleMesh(shape, detail);
+				int vbo = vbos[v++];
+				gl.glBindBuffer(GL2.GL_ARRAY_BUFFER, vbo);
+				gl.glBufferData(GL2.GL_ARRAY_BUFFER, (long) mesh.length * Buffers.SIZEOF_FLOAT, FloatBuffer.wrap(mesh), GL2.GL_STATIC_DRAW);
+				builder.put(shape, detail, new Mesh(vbo, mesh.length / FLOATS_PER_VERTEX));
+				bucketBuilder.put(shape, detail, new InstanceBucket(vbos[v++]));
+			}
+		}
+		gl.glBindBuffer(GL2.GL_ARRAY_BUFFER, 0);
+		meshes = builder.build();
+		buckets = bucketBuilder.build();
+	}
+
+
+	@Override
+	public void execute(GraphicsData graphicsData) {
+		if(fallback != null) {
+			fallback.execute(graphicsData);
+			return;
+		}
+
+		GL2 gl = graphicsData.getGlContext();
+
+		gl.glMaterialfv(GL2.GL_FRONT, GL2.GL_SPECULAR, SPECULAR_REFLECTION, 0);
+		gl.glMateriali(GL2.GL_FRONT, GL2.GL_SHININESS, 13);
+
+		CyNetworkViewSnapshot networkView = graphicsData.getNetworkSnapshot();
+		DetailLevel detailLevel = networkView.getVisualProperty(Cy3DVisualLexicon.DETAIL_LEVEL);
+		boolean automatic = LevelOfDetail.isAutomatic(detailLevel);
+		Detail detail = RenderNodesProcedure.mapDetailLevel(detailLevel);
+
+		fillBuckets(graphicsData, automatic ? null : detail);
+
+		gl.glUseProgram(program);
+		gl.glEnableVertexAttribArray(POSITION_ATTRIB);
+		gl.glEnableVertexAttribArray(NORMAL_ATTRIB);
+		gl.glEnableVertexAttribArray(OFFSET_ATTRIB);
+		gl.glEnableVertexAttribArray(SCALE_ATTRIB);
+		gl.glEnableVertexAttribArray(COLOR_ATTRIB);
+		gl.glVertexAttribDivisor(OFFSET_ATTRIB, 1);
+		gl.glVertexAttribDivisor(SCALE_ATTRIB, 1);
+		gl.glVertexAttribDivisor(COLOR_ATTRIB, 1);
+
+		int drawCalls = 0;
+		for(Table.Cell<Shape, Detail, InstanceBucket> cell : buckets.cellSet()) {
+			InstanceBucket bucket = cell.getValue();
+			if(bucket.count > 0) {
+				drawBucket(gl, meshes.get(cell.getRowKey(), cell.getColumnKey()), bucket);
+				drawCalls++;
+			}
+		}
+
+		gl.glVertexAttribDivisor(OFFSET_ATTRIB, 0);
+		gl.glVertexAttribDivisor(SCALE_ATTRIB, 0);
+		gl.glVertexAttribDivisor(COLOR_ATTRIB, 0);
+		gl.glDisableVertexAttribArray(POSITION_ATTRIB);
+		gl.glDisableVertexAttribArray(NORMAL_ATTRIB);
+		gl.glDisableVertexAttribArray(OFFSET_ATTRIB);
+		gl.glDisableVertexAttribArray(SCALE_ATTRIB);
+		gl.glDisableVertexAttribArray(COLOR_ATTRIB);
+		gl.glBindBuffer(GL2.GL_ARRAY_BUFFER, 0);
+		gl.glUseProgram(0);
+
+		drawCalls += points.draw(gl);
+		graphicsData.getFrameMetrics().addDrawCalls(drawCalls);
+	}
+
+
+	/**
+	 * @param detail The detail level for all nodes, or null to choose it per node
+	 */
+	private void fillBuckets(GraphicsData graphicsData, Detail detail) {
+		for(InstanceBucket bucket : buckets.values()) {
+			bucket.count = 0;
+		}
+		points.clear();
+		LevelOfDetail levelOfDetail = graphicsData.getLevelOfDetail();
+
+		NodeRenderBuffer nodes = graphicsData.getNodeBuffer();
+		float sizeScale = RenderNodesProcedure.NODE_SIZE_RADIUS / RenderNodesProcedure.NODE_SIZE_SCALE;
+
+		// Only the nodes inside the viewing volume are drawn
+		int visibleCount = culler.cull(graphicsData);
+		graphicsData.getFrameMetrics().setVisibleNodeCount(visibleCount);
+		for(int i = 0; i < visibleCount; i++) {
+			int node = culler.getVisibleIndex(i);
+
+			float x = nodes.getSceneX(node);
+			float y = nodes.getSceneY(node);
+			float z = nodes.getSceneZ(node);
+
+			float sx = nodes.getWidth(node)  * sizeScale;
+			float sy = nodes.getHeight(node) * sizeScale;
+			float sz = nodes.getDepth(node)  * sizeScale;
+
+			RenderNodesProcedure.chooseColor(color, nodes, node, graphicsData);
+
+			Detail nodeDetail = detail;
+			if(nodeDetail == null) {
+				double screenRadius = levelOfDetail.projectedRadius(x, y, z, nodes.getBoundingRadius(node));
+				if(levelOfDetail.isPoint(screenRadius)) {
+					points.add(x, y, z, levelOfDetail.getPointDiameter(screenRadius), color);
+					continue;
+				}
+				nodeDetail = levelOfDetail.getDetail(screenRadius);
+			}
+
+			Shape shape = nodes.getShape(node);
+			buckets.get(shape, nodeDetail).add(x, y, z, sx, sy, sz, color);
+		}
+	}
+
+
+	private void drawBucket(GL2 gl, Mesh mesh, InstanceBucket bucket) {
+		int stride = FLOATS_PER_VERTEX * Buffers.SIZEOF_FLOAT;
+		gl.glBindBuffer(GL2.GL_ARRAY_BUFFER, mesh.vbo);
+		gl.glVertexAttribPointer(NORMAL_ATTRIB,   3, GL2.GL_FLOAT, false, stride, 0);
+		gl.glVertexAttribPointer(POSITION_ATTRIB, 3, GL2.GL_FLOAT, false, stride, 3 * Buffers.SIZEOF_FLOAT);
+
+		int length = bucket.count * FLOATS_PER_INSTANCE;
+		if(uploadBuffer.capacity() < length) {
+			uploadBuffer = Buffers.newDirectFloatBuffer(Math.max(length, uploadBuffer.capacity() * 2));
+		}
+		uploadBuffer.clear();
+		uploadBuffer.put(bucket.data, 0, length);
+		uploadBuffer.flip();
+
+		stride = FLOATS_PER_INSTANCE * Buffers.SIZEOF_FLOAT;
+		gl.glBindBuffer(GL2.GL_ARRAY_BUFFER, bucket.vbo);
+		gl.glBufferData(GL2.GL_ARRAY_BUFFER, (long) length * Buffers.SIZEOF_FLOAT, uploadBuffer, GL2.GL_STREAM_DRAW);
+		gl.glVertexAttribPointer(OFFSET_ATTRIB, 3, GL2.GL_FLOAT, false, stride, 0);
+		gl.glVertexAttribPointer(SCALE_ATTRIB,  3, GL2.GL_FLOAT, false, stride, 3 * Buffers.SIZEOF_FLOAT);
+		gl.glVertexAttribPointer(COLOR_ATTRIB,  3, GL2.GL_FLOAT, false, stride, 6 * Buffers.SIZEOF_FLOAT);
+
+		gl.glDrawArraysInstanced(GL2.GL_TRIANGLES, 0, mesh.vertexCount, bucket.count);
+	}
+
+}
@@ -0,0 +1,160 @@
+package org.baderlab.cy3d.internal.rendering;
+
+import java.util.concurrent.TimeUnit;
+
+import org.baderlab.cy3d.internal.camera.CameraPosition;
+import org.baderlab.cy3d.internal.cytoscape.view.DetailLevel;
+import org.baderlab.cy3d.internal.cytoscape.view.DetailLevelVisualProperty;
+import org.baderlab.cy3d.internal.data.GraphicsData;
+import org.baderlab.cy3d.internal.geometric.Vector3;
+import org.baderlab.cy3d.internal.rendering.shapes.ScalableShapeDrawer.Detail;
+
+/**
+ * Chooses how much detail to draw nodes and edges with when the DETAIL_LEVEL visual property
+ * is set to automatic, based on how large they appear on screen.
+ *
+ * Nodes smaller than a few pixels are drawn as points, larger nodes use more sphere slices
+ * the larger they are. Edges thinner than a pixel are drawn as GL lines.
+ *
+ * The size thresholds are multiplied by a bias that is adjusted after every frame to keep
+ * the frame time within a budget, if frames are too slow the bias grows and less detail is drawn.
+ * The budget can be set in milliseconds with the system property "cy3d.frameBudget".
+ *
+ * @author mkucera
+ */
+public class LevelOfDetail {
+
+	public static final double DEFAULT_FRAME_BUDGET_MILLIS = 1000.0 / 30;
+
+	// Thresholds on the radius of a shape on screen, in pixels
+	private static final double POINT_RADIUS = 1.5;
+	private static final double LOW_RADIUS = 6;
+	private static final double MED_RADIUS = 20;
+	private static final double LINE_RADIUS = 0.75;
+
+	private static final double MIN_BIAS = 1.0;
+	private static final double MAX_BIAS = 8.0;
+
+	private final double frameBudgetNanos;
+	private double bias = MIN_BIAS;
+	private double averageFrameNanos = 0;
+	private long frameStart;
+
+	// camera of the current frame
+	private double cameraX, cameraY, cameraZ;
+	private double directionX, directionY, directionZ;
+	private double pixelsPerUnit;
+
+
+	public LevelOfDetail() {
+		double budget = DEFAULT_FRAME_BUDGET_MILLIS;
+		String property = System.getProperty("cy3d.frameBudget");
+		if(property != null) {
+			try {
+				budget = Double.parseDouble(property);
+			} catch(NumberFormatException e) {
+				System.err.println("Invalid cy3d.frameBudget: " + property);
+			}
+		}
+		frameBudgetNanos = budget * TimeUnit.MILLISECONDS.toNanos(1);
+	}
+
+
+	public static boolean isAutomatic(DetailLevel detailLevel) {
+		return DetailLevelVisualProperty.DETAIL_AUTO.equals(detailLevel);
+	}
+
+
+	/**
+	 * Records the camera for the frame that is about to be drawn.
+	 */
+	public void beginFrame(CameraPosition camera, int screenHeight) {
+		// same as camera.getDirection(), which allocates a vector for the orbit camera
+		Vector3 position = camera.getPosition();
+		Vector3 target = camera.getTarget();
+		cameraX = position.x();
+		cameraY = position.y();
+		cameraZ = position.z();
+		double dx = target.x() - cameraX, dy = target.y() - cameraY, dz = target.z() - cameraZ;
+		double length = Math.sqrt(dx * dx + dy * dy + dz * dz);
+		directionX = dx / length;
+		directionY = dy / length;
+		directionZ = dz / length;
+		// pixels covered by one unit at distance 1
+		pixelsPerUnit = screenHeight / (2 * Math.tan(Math.toRadians(GraphicsData.VERTICAL_VOF) / 2));
+		frameStart = System.nanoTime();
+	}
+
+	/**
+	 * Adjusts the bias according to how long the frame took to draw.
+	 */
+	public void endFrame() {
+		long frameNanos = System.nanoTime() - frameStart;
+		averageFrameNanos = averageFrameNanos == 0 ? frameNanos : averageFrameNanos * 0.8 + frameNanos * 0.2;
+
+		if(averageFrameNanos > frameBudgetNanos) {
+			bias = Math.min(MAX_BIAS, bias * 1.2);
+		} else if(averageFrameNanos < frameBudgetNanos * 0.5) {
+			bias = Math.max(MIN_BIAS, bias / 1.1);
+		}
+	}
+
+	public double getBias() {
+		return bias;
+	}
+
+
+	/**
+	 * Returns the approximate radius on screen, in pixels, of a sphere at the given location.
+	 */
+	public double projectedRadius(double x, double y, double z, double radius) {
+		double depth = (x - cameraX) * directionX + (y - cameraY) * directionY + (z - cameraZ) * directionZ;
+		if(depth <= GraphicsData.NEAR_Z)
+			return Double.POSITIVE_INFINITY;
+		return radius * pixelsPerUnit / depth;
+	}
+
+	/**
+	 * Returns the approximate radius on screen of a sphere at the point of the box closest to the camera.
+	 */
+	public double projectedRadius(double minX, double minY, double minZ, double maxX, double maxY, double maxZ, double radius) {
+		double x = Math.max(minX, Math.min(maxX, cameraX));
+		double y = Math.max(minY, Math.min(maxY, cameraY));
+		double z = Math.max(minZ, Math.min(maxZ, cameraZ));
+		return projectedRadius(x, y, z, radius);
+	}
+
+	/**
+	 * Returns true if a node with the given radius on screen should be drawn as a point.
+	 */
+	public boolean isPoint(double screenRadius) {
+		return screenRadius < POINT_RADIUS * bias;
+	}
+
+	/**
+	 * Returns the diameter in pixels of the point a node with the given radius on screen is drawn as.
+	 * The radius must be the drawn radius of the node ({@link org.baderlab.cy3d.internal.data.NodeRenderBuffer#getBoundingRadius})
+	 * so that the node keeps its size on screen when it switches between a mesh and a point.
+	 */
+	public double getPointDiameter(double screenRadius) {
+		return 2 * screenRadius;
+	}
+
+	/**
+	 * Returns the sphere detail for a node with the given radius on screen.
+	 */
+	public Detail getDetail(double screenRadius) {
+		if(screenRadius < LOW_RADIUS * bias)
+			return Detail.DETAIL_LOW;
+		if(screenRadius < MED_RADIUS * bias)
+			return Detail.DETAIL_MED;
+		return Detail.DETAIL_HIGH;
+	}
+
+	/**
+	 * Returns true if an edge with the given radius on screen should be drawn with GL lines.
+	 */
+	public boolean isLine(double screenRadius) {
+		return screenRadius < LINE_RADIUS * bias;
+	}
+}
@@ -0,0 +1,74 @@
+package org.baderlab.cy3d.internal.rendering;
+
+import org.baderlab.cy3d.internal.data.GraphicsData;
+import org.baderlab.cy3d.internal.data.NodeRenderBuffer;
+import org.baderlab.cy3d.internal.spatial.CullingGrid;
+
+/**
+ * Finds the visible nodes that are inside the viewing volume. The node bounds are 
+ * put into a {@link CullingGrid} which is only rebuilt when the network snapshot changes.
+ * 
+ * The visible nodes are returned as indices into the {@link NodeRenderBuffer} of the snapshot.
+ * If only the colors or labels of the nodes changed since the buffer the grid was built from,
+ * the grid is kept.
+ * 
+ * @author mkucera
+ */
+public class NodeCuller {
+
+	private final CullingGrid grid = new CullingGrid();
+	private int[] nodeIndices = new int[0];
+	private int snapshotVersion = -1;
+	private long bufferVersion = -1;
+	
+	
+	/**
+	 * Culls the nodes against the viewing volume of the current frame.
+	 * @return the number of nodes that are inside the viewing volume
+	 */
+	public int cull(GraphicsData graphicsData) {
+		if(snapshotVersion != graphicsData.getSnapshotVersion()) {
+			snapshotVersion = graphicsData.getSnapshotVersion();
+			NodeRenderBuffer nodes = graphicsData.getNodeBuffer();
+			if(bufferVersion < 0 || nodes.getBaseVersion() != bufferVersion || nodes.isGeometryChanged()) {
+				build(nodes);
+			}
+			bufferVersion = nodes.getVersion();
+		}
+		return grid.cull(graphicsData.getViewingVolume());
+	}
+	
+	public int getVisibleCount() {
+		return grid.getVisibleCount();
+	}
+	
+	/**
+	 * Returns the node buffer index of the i-th visible node.
+	 */
+	public int getVisibleIndex(int i) {
+		return nodeIndices[grid.getVisible(i)];
+	}
+	
+	
+	private void build(NodeRenderBuffer nodes) {
+		grid.clear();
+		if(nodeIndices.length < nodes.getCount()) {
+			nodeIndices = new int[nodes.getCount()];
+		}
+		
+		float distanceScale = GraphicsData.DISTANCE_SCALE;
+		int count = 0;
+		for(int i = 0; i < nodes.getCount(); i++) {
+			if(!nodes.isVisible(i))
+				continue;
+			double x = nodes.getX(i) / distanceScale;
+			double y = nodes.getY(i) / distanceScale;
+			double z = nodes.getZ(i) / distanceScale;
+			
+			// Cytoscape measures Y down from the top, OpenGL measures Y up from the bottom
+			grid.addSphere(x, -y, z, nodes.getBoundingRadius(i));
+			nodeIndices[count++] = i;
+		}
+		grid.build();
+	}
+}
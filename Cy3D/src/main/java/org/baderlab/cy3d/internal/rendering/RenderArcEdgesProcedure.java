@@ -1,17 +1,16 @@
 package org.baderlab.cy3d.internal.rendering;
 
 import java.awt.Color;
-import java.nio.FloatBuffer;
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.List;
 
 import com.jogamp.opengl.GL2;
 
 import org.baderlab.cy3d.internal.cytoscape.edges.AugmentedEdgeContainer;
+import org.baderlab.cy3d.internal.cytoscape.view.Cy3DVisualLexicon;
 import org.baderlab.cy3d.internal.data.GraphicsData;
-import org.baderlab.cy3d.internal.geometric.Vector3;
 import org.baderlab.cy3d.internal.rendering.shapes.EdgeShapeDrawer;
 import org.baderlab.cy3d.internal.rendering.shapes.EdgeShapeDrawer.EdgeShapeType;
-import org.baderlab.cy3d.internal.tools.GeometryToolkit;
 import org.baderlab.cy3d.internal.tools.RenderColor;
 import org.baderlab.cy3d.internal.tools.RenderToolkit;
 import org.baderlab.cy3d.internal.tools.SUIDToolkit;
@@ -23,7 +22,7 @@ import org.cytoscape.view.presentation.property.LineTypeVisualProperty;
 
 public class RenderArcEdgesProcedure implements GraphicsProcedure {
 
-	private static final float SEGMENT_RADIUS = 0.013f; // 0.007 default
+	public static final float SEGMENT_RADIUS = 0.013f; // 0.007 default
 	private static final int SEGMENT_SLICES = 4;
 	private static final int SEGMENT_STACKS = 1;
 	
@@ -32,10 +31,12 @@ public class RenderArcEdgesProcedure implements GraphicsProcedure {
 	private static final RenderColor DEFAULT_COLOR = 
 		new RenderColor(0.67, 0.67, 0.67);
 	
-	private static final float DASHED_EDGE_RADIUS = 0.012f;
-	private static final float DASHED_EDGE_LENGTH = 0.05f;
+	private static final float[] SPECULAR_REFLECTION = { 0.1f, 0.1f, 0.1f, 1.0f };
 	
-	private static final float DOTTED_EDGE_RADIUS = 0.017f;
+	static final float DASHED_EDGE_RADIUS = 0.012f;
+	static final float DASHED_EDGE_LENGTH = 0.05f;
+	
+	static final float DOTTED_EDGE_RADIUS = 0.017f;
 
 	
 	/**
@@ -44,6 +45,11 @@ public class RenderArcEdgesProcedure implements GraphicsProcedure {
 	private static final int NUM_SEGMENTS = 8;
 	
 	private EdgeShapeDrawer shapeDrawer;
+	private EdgeCuller culler = new EdgeCuller();
+	private List<AugmentedEdgeContainer> lineEdges = new ArrayList<>();
+	
+	// Reused for every edge so that drawing a frame does not allocate
+	private final RenderColor color = new RenderColor();
 	
 	private float edgeRadiusFactor = 1.0f;
 		
@@ -61,65 +67,120 @@ public class RenderArcEdgesProcedure implements GraphicsProcedure {
 		CyNetworkViewSnapshot networkView = graphicsData.getNetworkSnapshot();
 		GL2 gl = graphicsData.getGlContext();
 		
-		float[] specularReflection = { 0.1f, 0.1f, 0.1f, 1.0f };
-		gl.glMaterialfv(GL2.GL_FRONT, GL2.GL_SPECULAR, FloatBuffer.wrap(specularReflection));
+		gl.glMaterialfv(GL2.GL_FRONT, GL2.GL_SPECULAR, SPECULAR_REFLECTION, 0);
 		gl.glMateriali(GL2.GL_FRONT, GL2.GL_SHININESS, 1);
 		
-		Collection<AugmentedEdgeContainer> edgeContainers = graphicsData.getEdgeAnalyser().getAnalyzedEdges(networkView, GraphicsData.DISTANCE_SCALE);
 		View<CyEdge> edgeView;
 
 		Number edgeWidth;
 		
-		for (AugmentedEdgeContainer container : edgeContainers) {
+		LevelOfDetail levelOfDetail = graphicsData.getLevelOfDetail();
+		boolean automatic = LevelOfDetail.isAutomatic(networkView.getVisualProperty(Cy3DVisualLexicon.DETAIL_LEVEL));
+		lineEdges.clear();
+		
+		// Only the edges inside the viewing volume are drawn
+		int visibleCount = culler.cull(graphicsData);
+		graphicsData.getFrameMetrics().setVisibleEdgeCount(visibleCount);
+		int drawCalls = 0;
+		for (int i = 0; i < visibleCount; i++) {
+			AugmentedEdgeContainer container = culler.getVisible(i);
 			edgeView = container.getEdgeView();
 			
-			if (container.isSufficientLength() && edgeView.getVisualProperty(BasicVisualLexicon.EDGE_VISIBLE)) {
-				
-				edgeWidth = edgeView.getVisualProperty(BasicVisualLexicon.EDGE_WIDTH);
-				
-				if (edgeWidth != null) {
-					edgeRadiusFactor = edgeWidth.floatValue() / 2;
-				} else {
-					edgeRadiusFactor = 1.0f;
-				}
-				
-				// Set color
-				chooseColor(gl, edgeView, graphicsData);
-				
-				// Load name for edge picking
-				long suid = networkView.getEdgeInfo(edgeView).getModelSUID();
-				
-				int upper = SUIDToolkit.upperInt(suid);
-				int lower = SUIDToolkit.lowerInt(suid);
-				
-				gl.glLoadName(upper);
-				gl.glPushName(lower);
-				
-				// General points along the arc
-				Vector3[] points = container.getCoordinates();
-				GeometryToolkit.negateYCoords(points);
-				
-				// Draw the correct type of edge depending on the visual property
-				if (edgeView.getVisualProperty(BasicVisualLexicon.EDGE_LINE_TYPE) == LineTypeVisualProperty.EQUAL_DASH) {
-					drawDashedArc(gl, points);
-				} else if (edgeView.getVisualProperty(BasicVisualLexicon.EDGE_LINE_TYPE) == LineTypeVisualProperty.DOT) {
-					drawDottedArc(gl, points);
-				} else { // Draw regular edges for the catch-all case
-					drawRegularArc(gl, points);
-				}
-				
-				gl.glPopName();
-				
+			edgeWidth = edgeView.getVisualProperty(BasicVisualLexicon.EDGE_WIDTH);
+			
+			if (edgeWidth != null) {
+				edgeRadiusFactor = edgeWidth.floatValue() / 2;
+			} else {
+				edgeRadiusFactor = 1.0f;
+			}
+			
+			// Edges that are thinner than a pixel on screen are drawn as lines after the others
+			if (automatic && isLine(levelOfDetail, container.getCoordinates())) {
+				lineEdges.add(container);
+				drawCalls++;
+				continue;
+			}
+			
+			// Set color
+			chooseColor(color, edgeView);
+			RenderColor.setNonAlphaColors(gl, color);
+			
+			// Load name for edge picking
+			long suid = networkView.getEdgeInfo(edgeView).getModelSUID();
+			
+			int upper = SUIDToolkit.upperInt(suid);
+			int lower = SUIDToolkit.lowerInt(suid);
+			
+			gl.glLoadName(upper);
+			gl.glPushName(lower);
+			
+			// General points along the arc, packed as x, y, z
+			float[] points = container.getCoordinates();
+			
+			// Draw the correct type of edge depending on the visual property, there is one draw call per segment
+			if (edgeView.getVisualProperty(BasicVisualLexicon.EDGE_LINE_TYPE) == LineTypeVisualProperty.EQUAL_DASH) {
+				drawDashedArc(gl, points);
+				drawCalls += Math.max(0, points.length / 3 - 2);
+			} else if (edgeView.getVisualProperty(BasicVisualLexicon.EDGE_LINE_TYPE) == LineTypeVisualProperty.DOT) {
+				drawDottedArc(gl, points);
+				drawCalls += Math.max(0, points.length / 3 - 2);
+			} else { // Draw regular edges for the catch-all case
+				drawRegularArc(gl, points);
+				drawCalls += Math.max(0, points.length / 3 - 1);
+			}
+			
+			gl.glPopName();
+		}
+		
+		if (!lineEdges.isEmpty()) {
+			drawLines(gl, networkView);
+		}
+		graphicsData.getFrameMetrics().addDrawCalls(drawCalls);
+	}
+	
+	private boolean isLine(LevelOfDetail levelOfDetail, float[] points) {
+		double radius = SEGMENT_RADIUS * edgeRadiusFactor / 2;
+		for (int i = 0; i < points.length; i += 3) {
+			if (!levelOfDetail.isLine(levelOfDetail.projectedRadius(points[i], points[i+1], points[i+2], radius))) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private void drawLines(GL2 gl, CyNetworkViewSnapshot networkView) {
+		gl.glDisable(GL2.GL_LIGHTING);
+		
+		for (AugmentedEdgeContainer container : lineEdges) {
+			View<CyEdge> edgeView = container.getEdgeView();
+			chooseColor(color, edgeView);
+			gl.glColor3d(color.getRed(), color.getGreen(), color.getBlue());
+			
+			long suid = networkView.getEdgeInfo(edgeView).getModelSUID();
+			gl.glLoadName(SUIDToolkit.upperInt(suid));
+			gl.glPushName(SUIDToolkit.lowerInt(suid));
+			
+			float[] points = container.getCoordinates();
+			gl.glBegin(GL2.GL_LINE_STRIP);
+			for (int i = 0; i < points.length; i += 3) {
+				gl.glVertex3f(points[i], points[i+1], points[i+2]);
 			}
+			gl.glEnd();
+			
+			gl.glPopName();
 		}
+		
+		gl.glEnable(GL2.GL_LIGHTING);
 	}
 	
-	// Picks a color according to the edgeView and passes it to OpenGL
-	private void chooseColor(GL2 gl, View<CyEdge> edgeView, GraphicsData graphicsData) {
+	/**
+	 * Sets the color to the one that the edge should be drawn with.
+	 */
+	public static void chooseColor(RenderColor color, View<CyEdge> edgeView) {
 		Color visualPropertyColor = null;
 		visualPropertyColor = (Color) edgeView.getVisualProperty(BasicVisualLexicon.EDGE_STROKE_UNSELECTED_PAINT);
 		
-		RenderColor color = new RenderColor(DEFAULT_COLOR);
+		color.set(DEFAULT_COLOR.getRed(), DEFAULT_COLOR.getGreen(), DEFAULT_COLOR.getBlue());
 		
 		if (visualPropertyColor != null) {
 			color.set((double) visualPropertyColor.getRed() / 255, 
@@ -143,22 +204,21 @@ public class RenderArcEdgesProcedure implements GraphicsProcedure {
 //			color.multiplyBlue(1.5, 0.5, 1);
 //		}
 //		
-		RenderColor.setNonAlphaColors(gl, color);
 	}
 	
-	private void drawRegularArc(GL2 gl, Vector3[] points) {
-		Vector3 displacement;
-		
-		for (int i = 0; i < points.length - 1; i++) {
-			displacement = points[i + 1].subtract(points[i]);
+	private void drawRegularArc(GL2 gl, float[] points) {
+		for (int i = 0; i < points.length - 3; i += 3) {
+			float dx = points[i+3] - points[i];
+			float dy = points[i+4] - points[i+1];
+			float dz = points[i+5] - points[i+2];
 			
 			gl.glPushMatrix();
 			
 			// Setup transformations to draw the shape
-			RenderToolkit.setUpFacingTransformation(gl, points[i], displacement);
+			RenderToolkit.setUpFacingTransformation(gl, points[i], points[i+1], points[i+2], dx, dy, dz);
 			gl.glScalef(SEGMENT_RADIUS * edgeRadiusFactor, 
 					SEGMENT_RADIUS * edgeRadiusFactor, 
-					(float) displacement.magnitude());
+					(float) Math.sqrt(dx * dx + dy * dy + dz * dz));
 			
 			// Perform drawing
 			shapeDrawer.drawSegment(gl, EdgeShapeType.REGULAR);
@@ -167,15 +227,13 @@ public class RenderArcEdgesProcedure implements GraphicsProcedure {
 		}
 	}
 	
-	private void drawDashedArc(GL2 gl, Vector3[] points) {
-		Vector3 facing;
-		
-		for (int i = 1; i < points.length - 1; i++) {
-			facing = points[i + 1].subtract(points[i - 1]);
-			
+	private void drawDashedArc(GL2 gl, float[] points) {
+		for (int i = 3; i < points.length - 3; i += 3) {
 			gl.glPushMatrix();
 			
-			RenderToolkit.setUpFacingTransformation(gl, points[i], facing);
+			// Face from the previous point to the next one
+			RenderToolkit.setUpFacingTransformation(gl, points[i], points[i+1], points[i+2], 
+					points[i+3] - points[i-3], points[i+4] - points[i-2], points[i+5] - points[i-1]);
 			gl.glTranslatef(0, 0, -DASHED_EDGE_LENGTH / 2);
 			
 			gl.glScalef(DASHED_EDGE_RADIUS * edgeRadiusFactor,
@@ -189,15 +247,12 @@ public class RenderArcEdgesProcedure implements GraphicsProcedure {
 		}
 	}
 	
-	private void drawDottedArc(GL2 gl, Vector3[] points) {
-		Vector3 facing;
-		
-		for (int i = 1; i < points.length - 1; i++) {
-			facing = points[i + 1].subtract(points[i - 1]);
-			
+	private void drawDottedArc(GL2 gl, float[] points) {
+		for (int i = 3; i < points.length - 3; i += 3) {
 			gl.glPushMatrix();
 			
-			RenderToolkit.setUpFacingTransformation(gl, points[i], facing);
+			RenderToolkit.setUpFacingTransformation(gl, points[i], points[i+1], points[i+2], 
+					points[i+3] - points[i-3], points[i+4] - points[i-2], points[i+5] - points[i-1]);
 			gl.glScalef(DOTTED_EDGE_RADIUS  * edgeRadiusFactor,
 					DOTTED_EDGE_RADIUS * edgeRadiusFactor,
 					DOTTED_EDGE_RADIUS * edgeRadiusFactor);
@@ -0,0 +1,57 @@
+package org.baderlab.cy3d.internal.rendering;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.util.List;
+
+import org.baderlab.cy3d.internal.data.GraphicsData;
+import org.baderlab.cy3d.internal.metrics.FrameMetrics;
+
+import com.jogamp.opengl.util.awt.TextRenderer;
+
+/**
+ * Draws the frame metrics in the top left corner of the view when the overlay is enabled,
+ * see {@link FrameMetrics}. The overlay shows the metrics up to the previous frame.
+ * 
+ * @author mkucera
+ */
+public class RenderMetricsOverlayProcedure implements GraphicsProcedure {
+
+	private static final Font FONT = new Font(Font.MONOSPACED, Font.PLAIN, 12);
+	private static final Color TEXT_COLOR = new Color(255, 255, 0);
+	private static final int MARGIN = 8;
+	
+	private TextRenderer textRenderer;
+	private float scale;
+	
+	@Override
+	public void initialize(GraphicsData graphicsData) {
+		scale = graphicsData.getPixelConverter().getPixelsPerWindowUnitRatio();
+	}
+
+	@Override
+	public void execute(GraphicsData graphicsData) {
+		FrameMetrics metrics = graphicsData.getFrameMetrics();
+		if(!metrics.isOverlayVisible())
+			return;
+		
+		if(textRenderer == null) {
+			textRenderer = new TextRenderer(FONT.deriveFont(FONT.getSize2D() * scale));
+		}
+		
+		List<String> lines = metrics.getReport();
+		int width = graphicsData.getScreenWidth();
+		int height = graphicsData.getScreenHeight();
+		int lineHeight = (int) Math.ceil(FONT.getSize() * scale * 1.3);
+		
+		textRenderer.beginRendering(width, height);
+		textRenderer.setColor(TEXT_COLOR);
+		int y = height - MARGIN - lineHeight;
+		for(String line : lines) {
+			textRenderer.draw(line, MARGIN, y);
+			y -= lineHeight;
+		}
+		textRenderer.endRendering();
+	}
+
+}
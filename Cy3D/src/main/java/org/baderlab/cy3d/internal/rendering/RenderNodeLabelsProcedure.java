@@ -1,25 +1,20 @@
 package org.baderlab.cy3d.internal.rendering;
 
-import static org.cytoscape.view.presentation.property.BasicVisualLexicon.NODE_LABEL_FONT_FACE;
-import static org.cytoscape.view.presentation.property.BasicVisualLexicon.NODE_LABEL_FONT_SIZE;
 
 import java.awt.Color;
 import java.awt.Font;
-import java.awt.Paint;
-import java.awt.font.FontRenderContext;
-import java.awt.font.GlyphVector;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import com.jogamp.opengl.GL2;
 
 import org.baderlab.cy3d.internal.data.GraphicsData;
-import org.baderlab.cy3d.internal.geometric.Vector3;
-import org.baderlab.cy3d.internal.tools.RenderToolkit;
-import org.cytoscape.model.CyNode;
-import org.cytoscape.view.model.CyNetworkViewSnapshot;
-import org.cytoscape.view.model.View;
-import org.cytoscape.view.presentation.property.BasicVisualLexicon;
+import org.baderlab.cy3d.internal.data.ImageTile;
+import org.baderlab.cy3d.internal.data.NodeRenderBuffer;
+import org.baderlab.cy3d.internal.rendering.text.DerivedFontCache;
+import org.baderlab.cy3d.internal.rendering.text.LabelCuller;
 
 import com.jogamp.opengl.util.awt.TextRenderer;
 
@@ -40,6 +35,13 @@ public class RenderNodeLabelsProcedure implements GraphicsProcedure {
 	private static final Font TEXT_DEFAULT_FONT = new Font(DEFAULT_FONT_NAME, Font.PLAIN, TEXT_FONT_SIZE);
 	
 	private final TextRendererCache textRendererCache = new TextRendererCache();
+	private final DerivedFontCache fontCache = new DerivedFontCache();
+	private final Map<Font,List<Label>> labelsByFont = new HashMap<>();
+	
+	// The labels are reused from frame to frame, only the first candidateCount are current
+	private final List<Label> candidates = new ArrayList<>();
+	private int candidateCount = 0;
+	private final LabelCuller labelCuller = new LabelCuller();
 	
 	
 	public RenderNodeLabelsProcedure() {		
@@ -56,52 +58,36 @@ public class RenderNodeLabelsProcedure implements GraphicsProcedure {
 		
 		GL2 gl = graphicsData.getGlContext();
 		
-		CyNetworkViewSnapshot networkView = graphicsData.getNetworkSnapshot();
-		float distanceScale = GraphicsData.DISTANCE_SCALE;
-
-		// Store the current modelview, projection, and viewport matrices
-		double modelView[] = new double[16];
-		double projection[] = new double[16];
-		int viewPort[] = new int[4];
+		// The tiles of an image share the placement of the first tile, which is done on the whole image
+		ImageTile tile = graphicsData.getImageTile();
+		if(tile == null || tile.isFirst()) {
+			placeLabels(gl, graphicsData.getNodeBuffer(), tile);
+		}
 		
-        gl.glGetDoublev(GL2.GL_MODELVIEW_MATRIX, modelView, 0);
-        gl.glGetDoublev(GL2.GL_PROJECTION_MATRIX, projection, 0);
-        gl.glGetIntegerv(GL2.GL_VIEWPORT, viewPort, 0);
+		// Move the labels from image to tile coordinates, GL measures y from the bottom
+		int offsetX = tile == null ? 0 : -tile.getX();
+		int offsetY = tile == null ? 0 : -(tile.getImageHeight() - tile.getY() - tile.getHeight());
 		
 		gl.glPushMatrix();
 		
-		
-		for(View<CyNode> nodeView : networkView.getNodeViews()) {
-			// Draw it only if the visual property says it is visible
-			if (nodeView.getVisualProperty(BasicVisualLexicon.NODE_VISIBLE)) {
-				float x = nodeView.getVisualProperty(BasicVisualLexicon.NODE_X_LOCATION).floatValue() / distanceScale;
-				float y = nodeView.getVisualProperty(BasicVisualLexicon.NODE_Y_LOCATION).floatValue() / distanceScale;
-				float z = nodeView.getVisualProperty(BasicVisualLexicon.NODE_Z_LOCATION).floatValue() / distanceScale;
-				y = -y; // Cytoscape measures Y down from the top, OpenGL measures Y up from the bottom
-
-				String text = nodeView.getVisualProperty(BasicVisualLexicon.NODE_LABEL);
-				if(text != null) {
-					Vector3 text3dPosition = new Vector3(x, y, z);
-					Vector3 screenCoordinates = RenderToolkit.convert3dToScreen(gl, text3dPosition, modelView, projection, viewPort);
-					Vector3 offsetFromCamera = text3dPosition.subtract(graphicsData.getCamera().getPosition());
-					
-					// Only draw the text if the front side of the camera faces it
-					if (offsetFromCamera.magnitudeSquared() > Double.MIN_NORMAL && graphicsData.getViewingVolume().inside(text3dPosition, GraphicsData.NEAR_Z / 2)) {
-						Font font = getLabelFont(nodeView);
-						Color color = getLabelColor(nodeView);
-						
-						TextRenderer textRenderer = textRendererCache.get(font);
-						textRenderer.beginRendering(graphicsData.getScreenWidth(), graphicsData.getScreenHeight(), true);
-						try {
-							textRenderer.setColor(color);
-							int width = findTextScreenWidth(textRenderer, font, text);
-							textRenderer.draw(text, (int) screenCoordinates.x() - width / 2, (int) screenCoordinates.y());
-						} finally {
-							// textRenderer.flush();
-							textRenderer.endRendering();
-						}
+		for(Map.Entry<Font,List<Label>> entry : labelsByFont.entrySet()) {
+			List<Label> labels = entry.getValue();
+			
+			TextRenderer textRenderer = textRendererCache.get(entry.getKey());
+			// the TextRenderer batches the glyphs, count about one draw call per font
+			graphicsData.getFrameMetrics().addDrawCalls(1);
+			textRenderer.beginRendering(graphicsData.getScreenWidth(), graphicsData.getScreenHeight(), true);
+			try {
+				Color currentColor = null;
+				for(Label label : labels) {
+					if(!label.color.equals(currentColor)) {
+						textRenderer.setColor(label.color);
+						currentColor = label.color;
 					}
+					textRenderer.draw(label.text, label.x + offsetX, label.y + offsetY);
 				}
+			} finally {
+				textRenderer.endRendering();
 			}
 		}
 		
@@ -109,54 +95,82 @@ public class RenderNodeLabelsProcedure implements GraphicsProcedure {
 	}
 	
 	
-	private static Color getLabelColor(View<CyNode> nodeView) {
-		Paint textPaint = nodeView.getVisualProperty(BasicVisualLexicon.NODE_LABEL_COLOR);
-		if(textPaint instanceof Color) {
-			return (Color) textPaint;
+	/**
+	 * Projects the anchors once with the current matrices, decides which labels fit on the screen
+	 * (or the whole image when drawing a tile) and groups the placed labels by font.
+	 */
+	private void placeLabels(GL2 gl, NodeRenderBuffer nodes, ImageTile tile) {
+		labelCuller.begin(gl, tile);
+		candidateCount = 0;
+		
+		for(int i = 0; i < nodes.getCount(); i++) {
+			// The buffer only has the text of visible nodes
+			String text = nodes.getLabelText(i);
+			if(text != null) {
+				float x = nodes.getSceneX(i);
+				float y = nodes.getSceneY(i);
+				float z = nodes.getSceneZ(i);
+				
+				Font font = getLabelFont(nodes, i);
+				Color color = getLabelColor(nodes, i);
+				Label label = nextCandidate();
+				// The same node is usually at the same candidate index as in the last frame
+				if(!text.equals(label.text) || !font.equals(label.font)) {
+					label.width = textRendererCache.getTextWidth(font, text);
+				}
+				label.text = text;
+				label.font = font;
+				label.color = color;
+				
+				labelCuller.add(candidateCount - 1, x, y, z, label.width, font.getSize(), nodes.isSelected(i));
+			}
 		}
-		return TEXT_DEFAULT_COLOR; // Use black as default if no node label color was found
-	}
-	
-	private static Font getLabelFont(View<CyNode> nodeView) {
-		Font font = nodeView.getVisualProperty(NODE_LABEL_FONT_FACE);
-		if(font == null)
-			return TEXT_DEFAULT_FONT;
-		Number size = nodeView.getVisualProperty(NODE_LABEL_FONT_SIZE);
-		if(size == null)
-			return font;
-		return font.deriveFont(size.floatValue());
+		
+		// Group the labels by font so that each TextRenderer only needs one begin/end block
+		labelsByFont.values().forEach(List::clear);
+		
+		int placed = labelCuller.place();
+		for(int i = 0; i < placed; i++) {
+			Label label = candidates.get(labelCuller.getPlacedId(i));
+			label.x = labelCuller.getScreenX(i) - label.width / 2;
+			label.y = labelCuller.getScreenY(i);
+			labelsByFont.computeIfAbsent(label.font, f -> new ArrayList<>()).add(label);
+		}
+		
+		// Don't hold on to fonts that are no longer used
+		labelsByFont.values().removeIf(List::isEmpty);
 	}
 	
-	private static int findTextScreenWidth(TextRenderer textRenderer, Font font, String text) {
-		int width = 0;
-		for(int i = 0; i < text.length(); i++) {
-			char c = text.charAt(i);
-			try {
-				width += fastGetWidth(textRenderer, font, c);
-			} catch (InternalError e) {
-				// workaround for bug in jogl, see http://forum.jogamp.org/FontRenderContext-td4035841.html
-				width += slowGetWidth(textRenderer, font, c);
-			}
+	private Label nextCandidate() {
+		if(candidateCount == candidates.size()) {
+			candidates.add(new Label());
 		}
-		return width;
+		return candidates.get(candidateCount++);
 	}
 	
-	private static int fastGetWidth(TextRenderer textRenderer, Font font, char c) {
-		return (int) textRenderer.getCharWidth(c);
+	
+	private static class Label {
+		String text;
+		Font font;
+		Color color;
+		int width;
+		int x;
+		int y;
 	}
 	
-	private static int slowGetWidth(TextRenderer textRenderer, Font font, char c) {
-		FontRenderContext fontRenderContext;
-		try {
-			Method method = textRenderer.getClass().getDeclaredMethod("getFontRenderContext");
-			method.setAccessible(true);
-			fontRenderContext = (FontRenderContext) method.invoke(textRenderer);
-		} catch (NoSuchMethodException | SecurityException | IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
-			return 10;
+	
+	private static Color getLabelColor(NodeRenderBuffer nodes, int i) {
+		Color color = nodes.getLabelColor(i);
+		if(color != null) {
+			return color;
 		}
-		
-		int[] singleUnicode = { c };
-		GlyphVector gv = font.createGlyphVector(fontRenderContext, singleUnicode);
-		return (int) gv.getGlyphMetrics(0).getAdvance();
+		return TEXT_DEFAULT_COLOR; // Use black as default if no node label color was found
+	}
+	
+	private Font getLabelFont(NodeRenderBuffer nodes, int i) {
+		Font font = nodes.getLabelFontFace(i);
+		if(font == null)
+			return TEXT_DEFAULT_FONT;
+		return fontCache.get(font, nodes.getLabelFontSize(i));
 	}
 }
@@ -1,22 +1,19 @@
 package org.baderlab.cy3d.internal.rendering;
 
-import java.awt.Color;
-import java.nio.FloatBuffer;
+import java.util.Arrays;
 
 import org.baderlab.cy3d.internal.cytoscape.view.Cy3DVisualLexicon;
 import org.baderlab.cy3d.internal.cytoscape.view.DetailLevel;
 import org.baderlab.cy3d.internal.cytoscape.view.DetailLevelVisualProperty;
 import org.baderlab.cy3d.internal.data.GraphicsData;
-import org.baderlab.cy3d.internal.geometric.Vector3;
+import org.baderlab.cy3d.internal.data.NodeRenderBuffer;
+import org.baderlab.cy3d.internal.rendering.shapes.PointBatch;
 import org.baderlab.cy3d.internal.rendering.shapes.ScalableShapeDrawer;
 import org.baderlab.cy3d.internal.rendering.shapes.ScalableShapeDrawer.Detail;
 import org.baderlab.cy3d.internal.rendering.shapes.ScalableShapeDrawer.Shape;
 import org.baderlab.cy3d.internal.tools.RenderColor;
 import org.baderlab.cy3d.internal.tools.SUIDToolkit;
-import org.cytoscape.model.CyNode;
 import org.cytoscape.view.model.CyNetworkViewSnapshot;
-import org.cytoscape.view.model.View;
-import org.cytoscape.view.presentation.property.BasicVisualLexicon;
 import org.cytoscape.view.presentation.property.NodeShapeVisualProperty;
 import org.cytoscape.view.presentation.property.values.NodeShape;
 
@@ -28,10 +25,25 @@ public class RenderNodesProcedure implements GraphicsProcedure {
 	private static final RenderColor DEFAULT_SELECTED_COLOR = new RenderColor(0.73, 0.73, 0.6);
 	private static final RenderColor DEFAULT_HOVER_COLOR = new RenderColor(0.5, 0.5, 0.7);
 	
+	private static final float[] SPECULAR_REFLECTION = { 0.46f, 0.46f, 0.46f, 1.0f };
+	
 	/** The default radius of the spherical nodes */
-	private static final float NODE_SIZE_RADIUS = 0.322f; // 0.015f
+	public static final float NODE_SIZE_RADIUS = 0.322f; // 0.015f
+	
+	/** Node sizes from the visual style are divided by this value */
+	public static final float NODE_SIZE_SCALE = 60;
 	
 	private ScalableShapeDrawer shapeDrawer = new ScalableShapeDrawer();
+	private NodeCuller culler = new NodeCuller();
+	// nodes drawn as points are batched by size, except in the GL_SELECT pass where every point needs its own name
+	private final PointBatch points = new PointBatch();
+	private final int[] renderMode = new int[1];
+	// buffer indices of the nodes that are drawn as points in the GL_SELECT pass
+	private int[] pointNodes = new int[0];
+	private int pointCount = 0;
+	
+	// Reused for every node so that drawing a frame does not allocate
+	private final RenderColor color = new RenderColor();
 	
 	
 	
@@ -42,7 +54,7 @@ public class RenderNodesProcedure implements GraphicsProcedure {
 	}
 	
 	
-	private static Shape mapNodeShape(NodeShape nodeShape) {
+	public static Shape mapNodeShape(NodeShape nodeShape) {
 		if(NodeShapeVisualProperty.TRIANGLE.equals(nodeShape))
 			return Shape.SHAPE_TETRAHEDRON;
 		if(NodeShapeVisualProperty.ELLIPSE.equals(nodeShape))
@@ -50,11 +62,13 @@ public class RenderNodesProcedure implements GraphicsProcedure {
 		return Shape.SHAPE_CUBE;
 	}
 
-	private static Detail mapDetailLevel(DetailLevel detailLevel) {
+	public static Detail mapDetailLevel(DetailLevel detailLevel) {
 		if(DetailLevelVisualProperty.DETAIL_MED.equals(detailLevel))
 			return Detail.DETAIL_MED;
 		if(DetailLevelVisualProperty.DETAIL_HIGH.equals(detailLevel))
 			return Detail.DETAIL_HIGH;
+		if(DetailLevelVisualProperty.DETAIL_AUTO.equals(detailLevel))
+			return Detail.DETAIL_MED; // used when a procedure does not support automatic detail
 		return Detail.DETAIL_LOW;
 	}
 	
@@ -62,106 +76,150 @@ public class RenderNodesProcedure implements GraphicsProcedure {
 	public void execute(GraphicsData graphicsData) {
 		GL2 gl = graphicsData.getGlContext();
 
-		float[] specularReflection = { 0.46f, 0.46f, 0.46f, 1.0f };
-		gl.glMaterialfv(GL2.GL_FRONT, GL2.GL_SPECULAR, FloatBuffer.wrap(specularReflection));
+		gl.glMaterialfv(GL2.GL_FRONT, GL2.GL_SPECULAR, SPECULAR_REFLECTION, 0);
 		gl.glMateriali(GL2.GL_FRONT, GL2.GL_SHININESS, 13);
 		
 		CyNetworkViewSnapshot networkView = graphicsData.getNetworkSnapshot();
+		NodeRenderBuffer nodes = graphicsData.getNodeBuffer();
 		
-		float distanceScale = GraphicsData.DISTANCE_SCALE;
-		float nodeSizeScale = 60;
+		float nodeSizeScale = NODE_SIZE_SCALE;
+		
+		DetailLevel detailLevel = networkView.getVisualProperty(Cy3DVisualLexicon.DETAIL_LEVEL);
+		boolean automatic = LevelOfDetail.isAutomatic(detailLevel);
+		LevelOfDetail levelOfDetail = graphicsData.getLevelOfDetail();
+		gl.glGetIntegerv(GL2.GL_RENDER_MODE, renderMode, 0);
+		boolean selecting = renderMode[0] == GL2.GL_SELECT;
+		points.clear();
+		pointCount = 0;
+		int drawCalls = 0;
 
-		// networkView.updateView();
-		for (View<CyNode> nodeView : networkView.getNodeViews()) {
-			if(nodeView == null) {
-				// MKTODO why does this happen?
-				System.err.println("nodeView is null: networkView.getNodeViews() returns: " + networkView.getNodeViews());
-				continue;
+		// Only the nodes inside the viewing volume are drawn
+		int visibleCount = culler.cull(graphicsData);
+		graphicsData.getFrameMetrics().setVisibleNodeCount(visibleCount);
+		for (int i = 0; i < visibleCount; i++) {
+			int node = culler.getVisibleIndex(i);
+			
+			float x = nodes.getSceneX(node);
+			float y = nodes.getSceneY(node);
+			float z = nodes.getSceneZ(node);
+			
+			Detail detail = mapDetailLevel(detailLevel);
+			if (automatic) {
+				double screenRadius = levelOfDetail.projectedRadius(x, y, z, nodes.getBoundingRadius(node));
+				if (levelOfDetail.isPoint(screenRadius)) {
+					// Nodes that are only a few pixels on screen are drawn as points after the others
+					if (selecting) {
+						if (pointCount == pointNodes.length) {
+							pointNodes = Arrays.copyOf(pointNodes, Math.max(256, pointCount * 2));
+						}
+						pointNodes[pointCount++] = node;
+					} else {
+						chooseColor(color, nodes, node, graphicsData);
+						points.add(x, y, z, levelOfDetail.getPointDiameter(screenRadius), color);
+					}
+					continue;
+				}
+				detail = levelOfDetail.getDetail(screenRadius);
 			}
 			
-			float x = nodeView.getVisualProperty(BasicVisualLexicon.NODE_X_LOCATION).floatValue() / distanceScale;
-			float y = nodeView.getVisualProperty(BasicVisualLexicon.NODE_Y_LOCATION).floatValue() / distanceScale;
-			float z = nodeView.getVisualProperty(BasicVisualLexicon.NODE_Z_LOCATION).floatValue() / distanceScale;
+			long suid = nodes.getModelSUID(node);
 			
-//			System.out.println("x = " + x);
+			// glLoadName() and glPushName() only support int, so we need to break the long SUID into two parts
+			int upper = SUIDToolkit.upperInt(suid);
+			int lower = SUIDToolkit.lowerInt(suid);
 			
-			y = -y; // Cytoscape measures Y down from the top, OpenGL measures Y up from the bottom
-
-			Double width  = nodeView.getVisualProperty(BasicVisualLexicon.NODE_WIDTH);
-			Double height = nodeView.getVisualProperty(BasicVisualLexicon.NODE_HEIGHT);
-			Double depth  = nodeView.getVisualProperty(BasicVisualLexicon.NODE_DEPTH);
+			gl.glPushMatrix();
+			gl.glTranslatef(x, y, z);
+			gl.glLoadName(upper);
+			gl.glPushName(lower);
 			
-			// Avoid flat pancake nodes
-			if(depth == null || depth.doubleValue() == 0.0) {
-				depth = width;
-			}
+			chooseColor(color, nodes, node, graphicsData);
+			RenderColor.setNonAlphaColors(gl, color);
 			
-			// Draw it only if the visual property says it is visible
-			if (nodeView.getVisualProperty(BasicVisualLexicon.NODE_VISIBLE) && graphicsData.getViewingVolume().inside(new Vector3(x, y, z), 1)) {
-				
-				long suid = networkView.getNodeInfo(nodeView).getModelSUID();
-				
-				// glLoadName() and glPushName() only support int, so we need to break the long SUID into two parts
-				int upper = SUIDToolkit.upperInt(suid);
-				int lower = SUIDToolkit.lowerInt(suid);
-				
-				gl.glPushMatrix();
-				gl.glTranslatef(x, y, z);
-				gl.glLoadName(upper);
-				gl.glPushName(lower);
-				
-				chooseColor(gl, nodeView, graphicsData);
-				//gl.glCallList(nodeListIndex);
-				
-				gl.glScalef(NODE_SIZE_RADIUS, NODE_SIZE_RADIUS, NODE_SIZE_RADIUS);
-				
-				
-				
-				if (width != null && height != null && depth != null) {
-					gl.glScalef(width.floatValue() / nodeSizeScale, 
-							height.floatValue() / nodeSizeScale, 
-							depth.floatValue() / nodeSizeScale);
-				}
-				
-				Shape shapeType = mapNodeShape(nodeView.getVisualProperty(BasicVisualLexicon.NODE_SHAPE));
-				Detail detail = mapDetailLevel(networkView.getVisualProperty(Cy3DVisualLexicon.DETAIL_LEVEL)); 
-				
-				shapeDrawer.drawShape(gl, shapeType, detail);
-				
-				gl.glPopName();
-				gl.glPopMatrix();
-			}
+			gl.glScalef(NODE_SIZE_RADIUS, NODE_SIZE_RADIUS, NODE_SIZE_RADIUS);
+			gl.glScalef(nodes.getWidth(node) / nodeSizeScale, 
+					nodes.getHeight(node) / nodeSizeScale, 
+					nodes.getDepth(node) / nodeSizeScale);
+			
+			shapeDrawer.drawShape(gl, nodes.getShape(node), detail);
+			drawCalls++;
+			
+			gl.glPopName();
+			gl.glPopMatrix();
+		}
+		
+		if (pointCount > 0) {
+			drawPoints(gl, nodes, graphicsData);
+			drawCalls += pointCount;
 		}
+		drawCalls += points.draw(gl);
+		graphicsData.getFrameMetrics().addDrawCalls(drawCalls);
 	}
 	
-	private void chooseColor(GL2 gl, View<CyNode> nodeView, GraphicsData graphicsData) {
-		Color visualPropertyColor = null;
-		visualPropertyColor = (Color) nodeView.getVisualProperty(BasicVisualLexicon.NODE_FILL_COLOR);
+	/**
+	 * Draws the nodes as smooth GL points in the GL_SELECT pass, each with its own name so that they can still be picked.
+	 */
+	private void drawPoints(GL2 gl, NodeRenderBuffer nodes, GraphicsData graphicsData) {
+		LevelOfDetail levelOfDetail = graphicsData.getLevelOfDetail();
 		
-		RenderColor color = new RenderColor(DEFAULT_COLOR);
+		gl.glDisable(GL2.GL_LIGHTING);
+		gl.glEnable(GL2.GL_POINT_SMOOTH);
+		
+		for (int i = 0; i < pointCount; i++) {
+			int node = pointNodes[i];
+			float x = nodes.getSceneX(node);
+			float y = nodes.getSceneY(node);
+			float z = nodes.getSceneZ(node);
+			
+			double screenRadius = levelOfDetail.projectedRadius(x, y, z, nodes.getBoundingRadius(node));
+			chooseColor(color, nodes, node, graphicsData);
+			
+			long suid = nodes.getModelSUID(node);
+			gl.glLoadName(SUIDToolkit.upperInt(suid));
+			gl.glPushName(SUIDToolkit.lowerInt(suid));
+			
+			gl.glPointSize((float) Math.max(1, levelOfDetail.getPointDiameter(screenRadius)));
+			gl.glColor3d(color.getRed(), color.getGreen(), color.getBlue());
+			gl.glBegin(GL2.GL_POINTS);
+			gl.glVertex3f(x, y, z);
+			gl.glEnd();
+			
+			gl.glPopName();
+		}
 		
-		if (visualPropertyColor != null) {
-			color.set((double) visualPropertyColor.getRed() / 255, 
-					(double) visualPropertyColor.getGreen() / 255, 
-					(double) visualPropertyColor.getBlue() / 255);
+		gl.glPointSize(1);
+		gl.glDisable(GL2.GL_POINT_SMOOTH);
+		gl.glEnable(GL2.GL_LIGHTING);
+	}
+	
+	/**
+	 * Computes the fill color of the node, including the selection and hover highlights.
+	 * The result is stored in the given color object.
+	 */
+	static void chooseColor(RenderColor color, NodeRenderBuffer nodes, int node, GraphicsData graphicsData) {
+		if (!nodes.hasFillColor(node)) {
+			color.set(DEFAULT_COLOR.getRed(), DEFAULT_COLOR.getGreen(), DEFAULT_COLOR.getBlue());
+		} else {
+			int rgb = nodes.getFillColor(node);
+			color.set((double) ((rgb >> 16) & 0xFF) / 255, 
+					(double) ((rgb >> 8) & 0xFF) / 255, 
+					(double) (rgb & 0xFF) / 255);
 		}
 		
-		Long suid = nodeView.getSUID();
+		long suid = nodes.getViewSUID(node);
 		
-		if (nodeView.getVisualProperty(BasicVisualLexicon.NODE_SELECTED)) {
+		if (nodes.isSelected(node)) {
 			// Make selected nodes appear greener
 			color.multiplyRed(0.7, 0, 0.3);
 			color.multiplyGreen(1.5, 0.5, 1);
 			color.multiplyBlue(0.7, 0, 0.3);
 		} 
-		else if (suid.equals(graphicsData.getSelectionData().getHoverNodeIndex()) || graphicsData.getPickingData().getPickedNodeIndices().contains(suid)) {
+		else if (suid == graphicsData.getSelectionData().getHoverNodeIndex() || graphicsData.getPickingData().getPickedNodeIndices().contains(suid)) {
 			// Make hovered nodes appear bluer
 			color.multiplyRed(0.7, 0, 0.7);
 			color.multiplyGreen(0.7, 0, 0.7);
 			color.multiplyBlue(1.5, 0.5, 1);
 		}
-		
-		RenderColor.setNonAlphaColors(gl, color);
 	}
 
 }
@@ -1,31 +1,36 @@
 package org.baderlab.cy3d.internal.rendering;
 
-import java.nio.FloatBuffer;
-import java.util.HashSet;
-import java.util.Set;
-
 import com.jogamp.opengl.GL2;
 
 import org.baderlab.cy3d.internal.data.GraphicsData;
-import org.baderlab.cy3d.internal.geometric.Vector3;
+import org.baderlab.cy3d.internal.data.NodeRenderBuffer;
 import org.baderlab.cy3d.internal.rendering.shapes.EdgeShapeDrawer;
 import org.baderlab.cy3d.internal.rendering.shapes.EdgeShapeDrawer.EdgeShapeType;
-import org.baderlab.cy3d.internal.tools.NetworkToolkit;
-import org.baderlab.cy3d.internal.tools.PairIdentifier;
+import org.baderlab.cy3d.internal.tools.PairCountMap;
 import org.baderlab.cy3d.internal.tools.RenderToolkit;
 import org.cytoscape.model.CyEdge;
-import org.cytoscape.model.CyNode;
 import org.cytoscape.view.model.CyNetworkViewSnapshot;
 import org.cytoscape.view.model.SnapshotEdgeInfo;
 import org.cytoscape.view.model.View;
 
 /**
  * This procedure renders edges in a simplified form for the bird's eye view.
+ * 
+ * Only one edge is drawn between each pair of nodes. The segments are collected into an array
+ * of packed coordinates when the network snapshot changes, drawing a frame does not allocate.
  */
 public class RenderSimplifiedEdgesProcedure implements GraphicsProcedure {
 
+	private static final float[] SPECULAR_REFLECTION = { 0.1f, 0.1f, 0.1f, 1.0f };
+	
 	private EdgeShapeDrawer shapeDrawer;
 	
+	// start and end points of each segment, 6 floats per segment
+	private float[] segments = new float[0];
+	private int segmentCount = 0;
+	private final PairCountMap drawnPairs = new PairCountMap();
+	private int snapshotVersion = -1;
+	
 	@Override
 	public void initialize(GraphicsData graphicsData) {
 		shapeDrawer = new EdgeShapeDrawer();
@@ -34,48 +39,66 @@ public class RenderSimplifiedEdgesProcedure implements GraphicsProcedure {
 
 	@Override
 	public void execute(GraphicsData graphicsData) {
-		CyNetworkViewSnapshot networkView = graphicsData.getNetworkSnapshot();
 		GL2 gl = graphicsData.getGlContext();
 		
-		float[] specularReflection = { 0.1f, 0.1f, 0.1f, 1.0f };
-		gl.glMaterialfv(GL2.GL_FRONT, GL2.GL_SPECULAR, FloatBuffer.wrap(specularReflection));
+		if (snapshotVersion != graphicsData.getSnapshotVersion()) {
+			snapshotVersion = graphicsData.getSnapshotVersion();
+			buildSegments(graphicsData.getNodeBuffer());
+		}
+		
+		gl.glMaterialfv(GL2.GL_FRONT, GL2.GL_SPECULAR, SPECULAR_REFLECTION, 0);
 		gl.glMateriali(GL2.GL_FRONT, GL2.GL_SHININESS, 1);
 		
-		// A set containing all pairs of nodes that have had an edge drawn between them
-		Set<PairIdentifier> drawnPairs = new HashSet<PairIdentifier>();
-		View<CyNode> source, target;
+		for (int i = 0; i < segmentCount * 6; i += 6) {
+			float dx = segments[i+3] - segments[i];
+			float dy = segments[i+4] - segments[i+1];
+			float dz = segments[i+5] - segments[i+2];
+			
+			gl.glPushMatrix();
+			
+			// Setup transformations to draw the shape
+			RenderToolkit.setUpFacingTransformation(gl, segments[i], segments[i+1], segments[i+2], dx, dy, dz);
+			gl.glScalef(1.0f, 1.0f, (float) Math.sqrt(dx * dx + dy * dy + dz * dz));
+			
+			// Perform drawing
+			shapeDrawer.drawSegment(gl, EdgeShapeType.REGULAR_LINE_BASED);
+			
+			gl.glPopMatrix();
+		}
+		graphicsData.getFrameMetrics().addDrawCalls(segmentCount);
+	}
+	
+	private void buildSegments(NodeRenderBuffer nodes) {
+		CyNetworkViewSnapshot networkView = nodes.getSnapshot();
+		
+		// All pairs of nodes that have had an edge drawn between them
+		drawnPairs.clear(networkView.getEdgeCount());
+		
+		segmentCount = 0;
+		if (segments.length < networkView.getEdgeCount() * 6) {
+			segments = new float[networkView.getEdgeCount() * 6];
+		}
 		
 		for (View<CyEdge> edgeView : networkView.getEdgeViews()) {
 			SnapshotEdgeInfo edgeInfo = networkView.getEdgeInfo(edgeView);
-			source = edgeInfo.getSourceNodeView();
-			target = edgeInfo.getTargetNodeView();
-			
-			PairIdentifier pairIdentifier = new PairIdentifier(source.getSUID(), target.getSUID());
+			long sourceSUID = edgeInfo.getSourceViewSUID();
+			long targetSUID = edgeInfo.getTargetViewSUID();
 			
 			// Only draw an edge between this source-target pair if one has not been drawn already
-			if (!drawnPairs.contains(pairIdentifier)) {
-			
-				Vector3 start = NetworkToolkit.obtainNodeCoordinates(source, networkView, (double) GraphicsData.DISTANCE_SCALE);
-				Vector3 end   = NetworkToolkit.obtainNodeCoordinates(target, networkView, (double) GraphicsData.DISTANCE_SCALE);
-				
-				// Cytoscape measures Y down from the top, OpenGL measures Y up from the bottom
-				start.set(start.x(), -start.y(), start.z());
-				end.set(end.x(), -end.y(), end.z());
-				
-				Vector3 displacement = end.subtract(start);
-				
-				gl.glPushMatrix();
-				
-				// Setup transformations to draw the shape
-				RenderToolkit.setUpFacingTransformation(gl, start, displacement);
-				gl.glScalef(1.0f, 1.0f, (float) displacement.magnitude());
-				
-				// Perform drawing
-				shapeDrawer.drawSegment(gl, EdgeShapeType.REGULAR_LINE_BASED);
-				
-				gl.glPopMatrix();
+			if (drawnPairs.increment(sourceSUID, targetSUID) == 1) {
+				int source = nodes.indexOf(sourceSUID);
+				int target = nodes.indexOf(targetSUID);
+				if (source < 0 || target < 0)
+					continue;
 				
-				drawnPairs.add(pairIdentifier);
+				int s = segmentCount * 6;
+				segments[s]   = nodes.getSceneX(source);
+				segments[s+1] = nodes.getSceneY(source);
+				segments[s+2] = nodes.getSceneZ(source);
+				segments[s+3] = nodes.getSceneX(target);
+				segments[s+4] = nodes.getSceneY(target);
+				segments[s+5] = nodes.getSceneZ(target);
+				segmentCount++;
 			}
 		}
 	}
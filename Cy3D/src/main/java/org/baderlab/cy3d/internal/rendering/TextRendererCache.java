@@ -1,9 +1,15 @@
 package org.baderlab.cy3d.internal.rendering;
 
 import java.awt.Font;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Objects;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
@@ -12,8 +18,10 @@ import com.jogamp.opengl.util.awt.TextRenderer;
 public class TextRendererCache {
 	
 	private static final int CACHE_SIZE = 100;
+	private static final int WIDTH_CACHE_SIZE = 50000;
 	
 	private final LoadingCache<Font,TextRenderer> cache;
+	private final Cache<TextKey,Integer> widthCache;
 	
 	
 	public TextRendererCache() {
@@ -21,6 +29,11 @@ public class TextRendererCache {
 				.maximumSize(CACHE_SIZE)
 				.expireAfterWrite(10, TimeUnit.MINUTES)
 				.build(CacheLoader.from(TextRenderer::new));
+		
+		widthCache = CacheBuilder.newBuilder()
+				.maximumSize(WIDTH_CACHE_SIZE)
+				.expireAfterAccess(10, TimeUnit.MINUTES)
+				.build();
 	}
 	
 	public TextRenderer get(Font font) {
@@ -32,5 +45,80 @@ public class TextRendererCache {
 		}
 	}
 	
+	/**
+	 * Returns the width of the text in pixels when drawn with the given font.
+	 * Widths are cached per font and string.
+	 */
+	public int getTextWidth(Font font, String text) {
+		TextKey key = new TextKey(font, text);
+		Integer width = widthCache.getIfPresent(key);
+		if(width == null) {
+			TextRenderer textRenderer = get(font);
+			if(textRenderer == null)
+				return 0;
+			width = findTextScreenWidth(textRenderer, font, text);
+			widthCache.put(key, width);
+		}
+		return width;
+	}
+	
 	
+	private static int findTextScreenWidth(TextRenderer textRenderer, Font font, String text) {
+		int width = 0;
+		for(int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			try {
+				width += fastGetWidth(textRenderer, font, c);
+			} catch (InternalError e) {
+				// workaround for bug in jogl, see http://forum.jogamp.org/FontRenderContext-td4035841.html
+				width += slowGetWidth(textRenderer, font, c);
+			}
+		}
+		return width;
+	}
+	
+	private static int fastGetWidth(TextRenderer textRenderer, Font font, char c) {
+		return (int) textRenderer.getCharWidth(c);
+	}
+	
+	private static int slowGetWidth(TextRenderer textRenderer, Font font, char c) {
+		FontRenderContext fontRenderContext;
+		try {
+			Method method = textRenderer.getClass().getDeclaredMethod("getFontRenderContext");
+			method.setAccessible(true);
+			fontRenderContext = (FontRenderContext) method.invoke(textRenderer);
+		} catch (NoSuchMethodException | SecurityException | IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
+			return 10;
+		}
+		
+		int[] singleUnicode = { c };
+		GlyphVector gv = font.createGlyphVector(fontRenderContext, singleUnicode);
+		return (int) gv.getGlyphMetrics(0).getAdvance();
+	}
+	
+	
+	private static class TextKey {
+		private final Font font;
+		private final String text;
+		
+		TextKey(Font font, String text) {
+			this.font = font;
+			this.text = text;
+		}
+		
+		@Override
+		public int hashCode() {
+			return 31 * font.hashCode() + text.hashCode();
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if(this == obj)
+				return true;
+			if(!(obj instanceof TextKey))
+				return false;
+			TextKey other = (TextKey) obj;
+			return Objects.equals(font, other.font) && Objects.equals(text, other.text);
+		}
+	}
 }
@@ -0,0 +1,414 @@
+package org.baderlab.cy3d.internal.rendering.shapes;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+import org.baderlab.cy3d.internal.tools.RenderColor;
+
+import com.jogamp.common.nio.Buffers;
+import com.jogamp.opengl.GL2;
+
+/**
+ * A mesh of edge geometry in a vertex buffer and an index buffer, drawn with a single call
+ * to glDrawElements() using the fixed function pipeline. The mesh is either made of triangles
+ * or, for edges that are drawn as thin lines, of line segments.
+ *
+ * Vertices are interleaved: position as 3 floats, normal as 3 signed bytes (plus padding),
+ * color as 4 unsigned bytes, 20 bytes in total.
+ *
+ * Tubes, dashes and dots are added with the same proportions as the display lists in
+ * {@link EdgeShapeDrawer}, a radius 0.5 cylinder or sphere that is then scaled.
+ *
+ * The geometry of a single edge can be replaced in place with {@link #rewind(int, int)} and 
+ * {@link #endRewrite(int, int)} as long as it has the same number of vertices and indices,
+ * and then be uploaded with {@link #uploadRange(GL2, int, int, int, int)}.
+ *
+ * @author mkucera
+ */
+public class EdgeMesh {
+
+	private static final int VERTEX_SIZE = 20;
+	private static final int NORMAL_OFFSET = 12;
+	private static final int COLOR_OFFSET = 16;
+
+	private ByteBuffer vertices = Buffers.newDirectByteBuffer(VERTEX_SIZE * 1024);
+	private IntBuffer indices = Buffers.newDirectIntBuffer(1024);
+	private int vertexCount;
+
+	private final int mode;
+	private int vertexBuffer;
+	private int indexBuffer;
+
+	// current color, packed as bytes
+	private byte red, green, blue;
+
+	// the end of the mesh while a range is being rewritten
+	private int savedVertexCount = -1;
+	private int savedIndexPosition;
+
+	// ring frame of the shape being added, reused so that tessellating does not allocate
+	private final double[] tangent = new double[3];
+	private final double[] nextTangent = new double[3];
+	private final double[] ringU = new double[3];
+	private final double[] ringV = new double[3];
+	private static final double[] X_AXIS = { 1, 0, 0 };
+	private static final double[] Y_AXIS = { 0, 1, 0 };
+
+
+	public EdgeMesh() {
+		this(GL2.GL_TRIANGLES);
+	}
+
+	/**
+	 * @param mode GL_TRIANGLES for tubes, dashes and dots, or GL_LINES for line strips
+	 */
+	public EdgeMesh(int mode) {
+		this.mode = mode;
+	}
+
+
+	public void initialize(GL2 gl) {
+		int[] ids = new int[2];
+		gl.glGenBuffers(2, ids, 0);
+		vertexBuffer = ids[0];
+		indexBuffer = ids[1];
+	}
+
+	public void clear() {
+		vertices.clear();
+		indices.clear();
+		vertexCount = 0;
+	}
+
+	public int getVertexCount() {
+		return vertexCount;
+	}
+
+	/**
+	 * Number of indices added so far, can be used to record where the geometry of an edge starts.
+	 */
+	public int getIndexCount() {
+		return indices.position();
+	}
+
+	/**
+	 * Moves the write position back to the given vertex and index, the geometry added
+	 * next replaces the geometry that starts there. Must be followed by {@link #endRewrite(int, int)}.
+	 */
+	public void rewind(int vertex, int index) {
+		savedVertexCount = vertexCount;
+		savedIndexPosition = indices.position();
+		vertexCount = vertex;
+		vertices.position(vertex * VERTEX_SIZE);
+		indices.position(index);
+	}
+
+	/**
+	 * Moves the write position back to the end of the mesh.
+	 * @return true if the replacing geometry ended exactly at the given vertex and index, 
+	 * otherwise the following geometry has been overwritten and the mesh is cleared.
+	 */
+	public boolean endRewrite(int endVertex, int endIndex) {
+		boolean fits = vertexCount == endVertex && indices.position() == endIndex;
+		if(fits) {
+			vertexCount = savedVertexCount;
+			vertices.position(savedVertexCount * VERTEX_SIZE);
+			indices.position(savedIndexPosition);
+		} else {
+			clear();
+		}
+		savedVertexCount = -1;
+		return fits;
+	}
+
+	/**
+	 * Packed RGB of the color, as it will be stored in the vertices.
+	 */
+	public static int packColor(RenderColor color) {
+		return (int) Math.round(color.getRed() * 255) << 16 | (int) Math.round(color.getGreen() * 255) << 8 | (int) Math.round(color.getBlue() * 255);
+	}
+
+	/**
+	 * Sets the color from packed RGB, see {@link #packColor(RenderColor)}.
+	 */
+	public void setColor(int rgb) {
+		red   = (byte) (rgb >> 16);
+		green = (byte) (rgb >> 8);
+		blue  = (byte) rgb;
+	}
+
+
+	/**
+	 * Adds a tube along the points, packed as x, y, z. Consecutive segments share their rings of vertices, 
+	 * the rings are oriented by parallel transport so that the tube does not twist.
+	 */
+	public void addTube(float[] points, double radius, int slices) {
+		int n = points.length / 3;
+		if(n < 2)
+			return;
+
+		ensureCapacity(n * slices, (n - 1) * slices * 6);
+
+		// first ring frame, any vector perpendicular to the first tangent
+		double[] t = tangent, u = ringU, v = ringV, next = nextTangent;
+		tangent(points, 0, t);
+		perpendicular(t, u);
+
+		int firstVertex = vertexCount;
+		for(int i = 0; i < n; i++) {
+			if(i > 0) {
+				tangent(points, i, next);
+				if(normalize(next)) {
+					System.arraycopy(next, 0, t, 0, 3);
+				}
+				// transport u onto the plane perpendicular to the new tangent
+				double d = u[0]*t[0] + u[1]*t[1] + u[2]*t[2];
+				u[0] -= t[0] * d;
+				u[1] -= t[1] * d;
+				u[2] -= t[2] * d;
+				if(!normalize(u)) {
+					perpendicular(t, u);
+				}
+			}
+			cross(t, u, v);
+			addRing(points[i*3], points[i*3+1], points[i*3+2], u, v, radius, slices);
+		}
+
+		for(int i = 0; i < n - 1; i++) {
+			int ring = firstVertex + i * slices;
+			int nextRing = ring + slices;
+			for(int k = 0; k < slices; k++) {
+				int k1 = (k + 1) % slices;
+				addTriangle(ring + k, ring + k1, nextRing + k1);
+				addTriangle(ring + k, nextRing + k1, nextRing + k);
+			}
+		}
+	}
+
+	/**
+	 * Adds an open cylinder of the given length centered on the point and facing the direction.
+	 */
+	public void addCylinder(double x, double y, double z, double dx, double dy, double dz, double length, double radius, int slices) {
+		double[] t = tangent, u = ringU, v = ringV;
+		t[0] = dx;
+		t[1] = dy;
+		t[2] = dz;
+		if(!normalize(t)) {
+			t[0] = 0;
+			t[1] = 0;
+			t[2] = 1;
+		}
+		perpendicular(t, u);
+		cross(t, u, v);
+
+		ensureCapacity(2 * slices, slices * 6);
+		int ring = vertexCount;
+		double h = length / 2;
+		addRing(x - t[0] * h, y - t[1] * h, z - t[2] * h, u, v, radius, slices);
+		addRing(x + t[0] * h, y + t[1] * h, z + t[2] * h, u, v, radius, slices);
+
+		for(int k = 0; k < slices; k++) {
+			int k1 = (k + 1) % slices;
+			addTriangle(ring + k, ring + k1, ring + slices + k1);
+			addTriangle(ring + k, ring + slices + k1, ring + slices + k);
+		}
+	}
+
+	/**
+	 * Adds a sphere with the given number of slices and stacks.
+	 */
+	public void addSphere(double cx, double cy, double cz, double radius, int slices, int stacks) {
+		ensureCapacity((stacks + 1) * (slices + 1), stacks * slices * 6);
+		int first = vertexCount;
+		for(int i = 0; i <= stacks; i++) {
+			double phi = Math.PI * i / stacks;
+			double z = Math.cos(phi), r = Math.sin(phi);
+			for(int k = 0; k <= slices; k++) {
+				double theta = 2 * Math.PI * k / slices;
+				double x = r * Math.cos(theta), y = r * Math.sin(theta);
+				addVertex(cx + x * radius, cy + y * radius, cz + z * radius, x, y, z);
+			}
+		}
+		for(int i = 0; i < stacks; i++) {
+			for(int k = 0; k < slices; k++) {
+				int a = first + i * (slices + 1) + k;
+				int b = a + slices + 1;
+				addTriangle(a, b, b + 1);
+				addTriangle(a, b + 1, a + 1);
+			}
+		}
+	}
+
+
+	/**
+	 * Adds a line through the points, packed as x, y, z. Only for meshes created with GL_LINES.
+	 */
+	public void addLineStrip(float[] points) {
+		int n = points.length / 3;
+		if(n < 2)
+			return;
+
+		ensureCapacity(n, (n - 1) * 2);
+		int first = vertexCount;
+		for(int p = 0; p < points.length; p += 3) {
+			addVertex(points[p], points[p+1], points[p+2], 0, 0, 1);
+		}
+		for(int i = 0; i < n - 1; i++) {
+			indices.put(first + i);
+			indices.put(first + i + 1);
+		}
+	}
+
+
+	private void addRing(double x, double y, double z, double[] u, double[] v, double radius, int slices) {
+		for(int k = 0; k < slices; k++) {
+			double angle = 2 * Math.PI * k / slices;
+			double c = Math.cos(angle), s = Math.sin(angle);
+			double nx = c * u[0] + s * v[0];
+			double ny = c * u[1] + s * v[1];
+			double nz = c * u[2] + s * v[2];
+			addVertex(x + nx * radius, y + ny * radius, z + nz * radius, nx, ny, nz);
+		}
+	}
+
+	private void addVertex(double x, double y, double z, double nx, double ny, double nz) {
+		vertices.putFloat((float) x);
+		vertices.putFloat((float) y);
+		vertices.putFloat((float) z);
+		vertices.put((byte) Math.round(nx * 127));
+		vertices.put((byte) Math.round(ny * 127));
+		vertices.put((byte) Math.round(nz * 127));
+		vertices.put((byte) 0);
+		vertices.put(red);
+		vertices.put(green);
+		vertices.put(blue);
+		vertices.put((byte) 255);
+		vertexCount++;
+	}
+
+	private void addTriangle(int a, int b, int c) {
+		indices.put(a);
+		indices.put(b);
+		indices.put(c);
+	}
+
+	private void ensureCapacity(int moreVertices, int moreIndices) {
+		if(vertices.remaining() < moreVertices * VERTEX_SIZE) {
+			int capacity = Math.max(vertices.capacity() * 2, vertices.position() + moreVertices * VERTEX_SIZE);
+			ByteBuffer larger = Buffers.newDirectByteBuffer(capacity);
+			vertices.flip();
+			larger.put(vertices);
+			vertices = larger;
+		}
+		if(indices.remaining() < moreIndices) {
+			int capacity = Math.max(indices.capacity() * 2, indices.position() + moreIndices);
+			IntBuffer larger = Buffers.newDirectIntBuffer(capacity);
+			indices.flip();
+			larger.put(indices);
+			indices = larger;
+		}
+	}
+
+
+	private static void tangent(float[] points, int i, double[] result) {
+		int a = Math.max(0, i - 1) * 3;
+		int b = Math.min(points.length / 3 - 1, i + 1) * 3;
+		result[0] = points[b]   - points[a];
+		result[1] = points[b+1] - points[a+1];
+		result[2] = points[b+2] - points[a+2];
+		if(!normalize(result)) {
+			result[0] = 0;
+			result[1] = 0;
+			result[2] = 1;
+		}
+	}
+
+	private static void perpendicular(double[] t, double[] result) {
+		// cross with the axis the tangent is least aligned with
+		double[] axis = Math.abs(t[0]) < 0.9 ? X_AXIS : Y_AXIS;
+		cross(t, axis, result);
+		normalize(result);
+	}
+
+	private static void cross(double[] a, double[] b, double[] result) {
+		double x = a[1] * b[2] - a[2] * b[1];
+		double y = a[2] * b[0] - a[0] * b[2];
+		double z = a[0] * b[1] - a[1] * b[0];
+		result[0] = x;
+		result[1] = y;
+		result[2] = z;
+	}
+
+	private static boolean normalize(double[] v) {
+		double length = Math.sqrt(v[0]*v[0] + v[1]*v[1] + v[2]*v[2]);
+		if(length < Double.MIN_NORMAL)
+			return false;
+		v[0] /= length;
+		v[1] /= length;
+		v[2] /= length;
+		return true;
+	}
+
+
+	/**
+	 * Uploads the mesh to the GPU, should be called after the geometry has changed.
+	 */
+	public void upload(GL2 gl) {
+		ByteBuffer vertexData = vertices.duplicate();
+		vertexData.flip();
+		IntBuffer indexData = indices.duplicate();
+		indexData.flip();
+
+		gl.glBindBuffer(GL2.GL_ARRAY_BUFFER, vertexBuffer);
+		gl.glBufferData(GL2.GL_ARRAY_BUFFER, vertexData.remaining(), vertexData, GL2.GL_STATIC_DRAW);
+		gl.glBindBuffer(GL2.GL_ARRAY_BUFFER, 0);
+		gl.glBindBuffer(GL2.GL_ELEMENT_ARRAY_BUFFER, indexBuffer);
+		gl.glBufferData(GL2.GL_ELEMENT_ARRAY_BUFFER, (long) indexData.remaining() * Buffers.SIZEOF_INT, indexData, GL2.GL_STATIC_DRAW);
+		gl.glBindBuffer(GL2.GL_ELEMENT_ARRAY_BUFFER, 0);
+	}
+
+	/**
+	 * Uploads a range of vertices and indices to the GPU, the mesh must have been 
+	 * uploaded before and the range must not have grown since.
+	 */
+	public void uploadRange(GL2 gl, int firstVertex, int endVertex, int firstIndex, int endIndex) {
+		ByteBuffer vertexData = vertices.duplicate();
+		vertexData.limit(endVertex * VERTEX_SIZE);
+		vertexData.position(firstVertex * VERTEX_SIZE);
+		IntBuffer indexData = indices.duplicate();
+		indexData.limit(endIndex);
+		indexData.position(firstIndex);
+
+		gl.glBindBuffer(GL2.GL_ARRAY_BUFFER, vertexBuffer);
+		gl.glBufferSubData(GL2.GL_ARRAY_BUFFER, (long) firstVertex * VERTEX_SIZE, vertexData.remaining(), vertexData);
+		gl.glBindBuffer(GL2.GL_ARRAY_BUFFER, 0);
+		gl.glBindBuffer(GL2.GL_ELEMENT_ARRAY_BUFFER, indexBuffer);
+		gl.glBufferSubData(GL2.GL_ELEMENT_ARRAY_BUFFER, (long) firstIndex * Buffers.SIZEOF_INT, (long) indexData.remaining() * Buffers.SIZEOF_INT, indexData);
+		gl.glBindBuffer(GL2.GL_ELEMENT_ARRAY_BUFFER, 0);
+	}
+
+	/**
+	 * Binds the buffers so that ranges of the mesh can be drawn with {@link #drawRange(GL2, int, int)}.
+	 */
+	public void bind(GL2 gl) {
+		gl.glBindBuffer(GL2.GL_ARRAY_BUFFER, vertexBuffer);
+		gl.glVertexPointer(3, GL2.GL_FLOAT, VERTEX_SIZE, 0);
+		gl.glNormalPointer(GL2.GL_BYTE, VERTEX_SIZE, NORMAL_OFFSET);
+		gl.glColorPointer(4, GL2.GL_UNSIGNED_BYTE, VERTEX_SIZE, COLOR_OFFSET);
+		gl.glBindBuffer(GL2.GL_ELEMENT_ARRAY_BUFFER, indexBuffer);
+	}
+
+	/**
+	 * Draws the primitives from firstIndex (inclusive) to endIndex (exclusive), as returned by {@link #getIndexCount()}.
+	 */
+	public void drawRange(GL2 gl, int firstIndex, int endIndex) {
+		if(endIndex > firstIndex) {
+			gl.glDrawElements(mode, endIndex - firstIndex, GL2.GL_UNSIGNED_INT, (long) firstIndex * Buffers.SIZEOF_INT);
+		}
+	}
+
+	public void unbind(GL2 gl) {
+		gl.glBindBuffer(GL2.GL_ELEMENT_ARRAY_BUFFER, 0);
+		gl.glBindBuffer(GL2.GL_ARRAY_BUFFER, 0);
+	}
+}
@@ -0,0 +1,97 @@
+package org.baderlab.cy3d.internal.rendering.shapes;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+import org.baderlab.cy3d.internal.tools.RenderColor;
+
+import com.jogamp.common.nio.Buffers;
+import com.jogamp.opengl.GL2;
+
+/**
+ * Collects unlit colored points and draws them with one glDrawArrays() call per point size.
+ * Used to draw nodes that are too small on screen to be worth tessellating.
+ *
+ * @author mkucera
+ */
+public class PointBatch {
+
+	public static final int MAX_SIZE = 32;
+
+	/** Color(3), position(3), the GL_C3F_V3F format */
+	private static final int FLOATS_PER_POINT = 6;
+
+	private final float[][] data = new float[MAX_SIZE + 1][];
+	private final int[] counts = new int[MAX_SIZE + 1];
+	private FloatBuffer buffer = Buffers.newDirectFloatBuffer(FLOATS_PER_POINT * 256);
+
+
+	public void clear() {
+		Arrays.fill(counts, 0);
+	}
+
+	/**
+	 * @param diameter The size of the point in pixels, rounded and clamped to [1, MAX_SIZE]
+	 */
+	public void add(float x, float y, float z, double diameter, RenderColor color) {
+		int size = (int) Math.max(1, Math.min(MAX_SIZE, Math.round(diameter)));
+		float[] points = data[size];
+		int i = counts[size] * FLOATS_PER_POINT;
+		if(points == null || i + FLOATS_PER_POINT > points.length) {
+			points = data[size] = points == null ? new float[FLOATS_PER_POINT * 64] : Arrays.copyOf(points, points.length * 2);
+		}
+		points[i++] = (float) color.getRed();
+		points[i++] = (float) color.getGreen();
+		points[i++] = (float) color.getBlue();
+		points[i++] = x;
+		points[i++] = y;
+		points[i++] = z;
+		counts[size]++;
+	}
+
+	public boolean isEmpty() {
+		for(int count : counts) {
+			if(count > 0)
+				return false;
+		}
+		return true;
+	}
+
+
+	/**
+	 * @return the number of draw calls made
+	 */
+	public int draw(GL2 gl) {
+		if(isEmpty())
+			return 0;
+		int drawCalls = 0;
+
+		gl.glDisable(GL2.GL_LIGHTING);
+		gl.glEnable(GL2.GL_POINT_SMOOTH);
+
+		for(int size = 1; size <= MAX_SIZE; size++) {
+			int length = counts[size] * FLOATS_PER_POINT;
+			if(length == 0)
+				continue;
+
+			if(buffer.capacity() < length) {
+				buffer = Buffers.newDirectFloatBuffer(Math.max(length, buffer.capacity() * 2));
+			}
+			buffer.clear();
+			buffer.put(data[size], 0, length);
+			buffer.flip();
+
+			gl.glPointSize(size);
+			gl.glInterleavedArrays(GL2.GL_C3F_V3F, 0, buffer);
+			gl.glDrawArrays(GL2.GL_POINTS, 0, counts[size]);
+			drawCalls++;
+		}
+
+		gl.glDisableClientState(GL2.GL_COLOR_ARRAY);
+		gl.glDisableClientState(GL2.GL_VERTEX_ARRAY);
+		gl.glPointSize(1);
+		gl.glDisable(GL2.GL_POINT_SMOOTH);
+		gl.glEnable(GL2.GL_LIGHTING);
+		return drawCalls;
+	}
+}
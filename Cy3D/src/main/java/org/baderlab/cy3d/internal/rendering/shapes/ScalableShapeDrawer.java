@@ -13,6 +13,12 @@ import com.jogamp.opengl.util.gl2.GLUT;
 
 public class ScalableShapeDrawer {
 	
+	/**
+	 * Every unit shape fits inside a sphere of this radius: the sphere has this radius, the
+	 * vertices of the tetrahedron are on it and the corners of the cube are inside it.
+	 */
+	public static final float UNIT_SHAPE_RADIUS = 0.5f;
+	
 	public static enum Shape {
 		SHAPE_SPHERE,
 		SHAPE_CUBE, 
@@ -65,7 +71,7 @@ public class ScalableShapeDrawer {
 		glu.gluQuadricNormals(quadric, GLU.GLU_SMOOTH);
 		
 		gl.glNewList(shapeListIndex, GL2.GL_COMPILE);
-		glu.gluSphere(quadric, 0.5, detailLevel.sphereDetail, detailLevel.sphereDetail); 
+		glu.gluSphere(quadric, UNIT_SHAPE_RADIUS, detailLevel.sphereDetail, detailLevel.sphereDetail); 
 		gl.glEndList();
 		
 		return shapeListIndex;
@@ -109,7 +115,7 @@ public class ScalableShapeDrawer {
 	private int initializeTetrahedron(GL2 gl) {
 		int shapeListIndex = gl.glGenLists(1);
 
-		double radius = 0.5;
+		double radius = UNIT_SHAPE_RADIUS;
 		Vector3 yAxisDirection = new Vector3(0, 1, 0);
 		Vector3 zAxisDirection = new Vector3(0, 0, 1);
 		
@@ -160,6 +166,131 @@ public class ScalableShapeDrawer {
 	}
 	
 	
+	/**
+	 * Returns the triangles for the given shape as an interleaved array of normals and
+	 * vertices (the GL_N3F_V3F layout, 6 floats per vertex). The geometry matches the 
+	 * display lists created by {@link #initialize(GL2)} so the shapes can be uploaded 
+	 * into vertex buffers.
+	 */
+	public static float[] createTriangleMesh(Shape shapeType, Detail detailLevel) {
+		switch(shapeType) {
+			case SHAPE_SPHERE:      return createSphereMesh(detailLevel.sphereDetail);
+			case SHAPE_TETRAHEDRON: return createTetrahedronMesh();
+			default:                return createCubeMesh();
+		}
+	}
+	
+	// Diameter 1 sphere, same tessellation as gluSphere()
+	private static float[] createSphereMesh(int detail) {
+		float[] mesh = new float[detail * detail * 6 * 6];
+		int i = 0;
+		for(int stack = 0; stack < detail; stack++) {
+			double phi0 = Math.PI * stack / detail;
+			double phi1 = Math.PI * (stack + 1) / detail;
+			for(int slice = 0; slice < detail; slice++) {
+				double theta0 = 2 * Math.PI * slice / detail;
+				double theta1 = 2 * Math.PI * (slice + 1) / detail;
+				i = putSphereVertex(mesh, i, phi0, theta0);
+				i = putSphereVertex(mesh, i, phi1, theta0);
+				i = putSphereVertex(mesh, i, phi1, theta1);
+				i = putSphereVertex(mesh, i, phi0, theta0);
+				i = putSphereVertex(mesh, i, phi1, theta1);
+				i = putSphereVertex(mesh, i, phi0, theta1);
+			}
+		}
+		return mesh;
+	}
+	
+	private static int putSphereVertex(float[] mesh, int i, double phi, double theta) {
+		float nx = (float) (Math.sin(phi) * Math.cos(theta));
+		float ny = (float) (Math.sin(phi) * Math.sin(theta));
+		float nz = (float) Math.cos(phi);
+		return putVertex(mesh, i, nx, ny, nz, nx * UNIT_SHAPE_RADIUS, ny * UNIT_SHAPE_RADIUS, nz * UNIT_SHAPE_RADIUS);
+	}
+	
+	// Same size as glutSolidCube(0.5f)
+	private static float[] createCubeMesh() {
+		float[] mesh = new float[6 * 6 * 6];
+		int i = 0;
+		i = putCubeFace(mesh, i,  1, 0, 0,  0, 1, 0,  0, 0, 1);
+		i = putCubeFace(mesh, i, -1, 0, 0,  0, 0, 1,  0, 1, 0);
+		i = putCubeFace(mesh, i,  0, 1, 0,  0, 0, 1,  1, 0, 0);
+		i = putCubeFace(mesh, i,  0,-1, 0,  1, 0, 0,  0, 0, 1);
+		i = putCubeFace(mesh, i,  0, 0, 1,  1, 0, 0,  0, 1, 0);
+		i = putCubeFace(mesh, i,  0, 0,-1,  0, 1, 0,  1, 0, 0);
+		return mesh;
+	}
+	
+	// u x v must equal the normal n so that the triangles are counter-clockwise when viewed from outside
+	private static int putCubeFace(float[] mesh, int i, float nx, float ny, float nz, float ux, float uy, float uz, float vx, float vy, float vz) {
+		float h = 0.25f;
+		float[][] corners = {{-1,-1}, {1,-1}, {1,1}, {-1,-1}, {1,1}, {-1,1}};
+		for(float[] c : corners) {
+			i = putVertex(mesh, i, nx, ny, nz, 
+					h * (nx + c[0]*ux + c[1]*vx), 
+					h * (ny + c[0]*uy + c[1]*vy), 
+					h * (nz + c[0]*uz + c[1]*vz));
+		}
+		return i;
+	}
+	
+	// Tetrahedron inscribed in circle with radius 0.5, see initializeTetrahedron()
+	private static float[] createTetrahedronMesh() {
+		double radius = UNIT_SHAPE_RADIUS;
+		Vector3 yAxisDirection = new Vector3(0, 1, 0);
+		Vector3 zAxisDirection = new Vector3(0, 0, 1);
+		
+		Vector3 topPoint = new Vector3(0, radius, 0);
+		Vector3 nearLeftPoint = topPoint.rotate(zAxisDirection, Math.toRadians(120));
+		nearLeftPoint = nearLeftPoint.rotate(yAxisDirection, Math.toRadians(30));
+		
+		Vector3 farPoint = nearLeftPoint.rotate(yAxisDirection, Math.toRadians(240));
+		Vector3 nearRightPoint = nearLeftPoint.rotate(yAxisDirection, Math.toRadians(120));
+		
+		Vector3 frontNormal = topPoint.plus(nearLeftPoint).plus(nearRightPoint);
+		frontNormal.normalizeLocal();
+		
+		Vector3 leftBackNormal = frontNormal.rotate(yAxisDirection, Math.toRadians(240));
+		Vector3 rightBackNormal = frontNormal.rotate(yAxisDirection, Math.toRadians(120));
+		Vector3 bottomNormal = new Vector3(0, -1, 0);
+		
+		Vector3[] triangles = {
+			frontNormal,     topPoint,       nearRightPoint, nearLeftPoint,
+			leftBackNormal,  topPoint,       farPoint,       nearLeftPoint,
+			rightBackNormal, topPoint,       nearRightPoint, farPoint,
+			bottomNormal,    nearRightPoint, farPoint,       nearLeftPoint
+		};
+		
+		float[] mesh = new float[4 * 3 * 6];
+		int i = 0;
+		for(int t = 0; t < triangles.length; t += 4) {
+			Vector3 n = triangles[t].normalize();
+			Vector3 a = triangles[t+1], b = triangles[t+2], c = triangles[t+3];
+			
+			// Make the winding counter-clockwise when viewed from outside, so the faces survive back face culling
+			if(b.subtract(a).cross(c.subtract(a)).dot(n) < 0) {
+				Vector3 temp = b;
+				b = c;
+				c = temp;
+			}
+			for(Vector3 p : new Vector3[] { a, b, c }) {
+				i = putVertex(mesh, i, (float) n.x(), (float) n.y(), (float) n.z(), (float) p.x(), (float) p.y(), (float) p.z());
+			}
+		}
+		return mesh;
+	}
+	
+	private static int putVertex(float[] mesh, int i, float nx, float ny, float nz, float x, float y, float z) {
+		mesh[i++] = nx;
+		mesh[i++] = ny;
+		mesh[i++] = nz;
+		mesh[i++] = x;
+		mesh[i++] = y;
+		mesh[i++] = z;
+		return i;
+	}
+	
+	
 	public void drawShape(GL2 gl, Shape shapeType, Detail detailLevel) {
 		Integer listIndex = shapeLists.get(shapeType, detailLevel);
 		
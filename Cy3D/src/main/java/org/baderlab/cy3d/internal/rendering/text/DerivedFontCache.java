@@ -0,0 +1,60 @@
+package org.baderlab.cy3d.internal.rendering.text;
+
+import java.awt.Font;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Caches the fonts derived from a font face with a different size. Font.deriveFont() creates a
+ * new font every time, and the labels ask for the same few sizes of the same few faces every frame.
+ *
+ * Not thread safe, used on the GL thread only.
+ *
+ * @author mkucera
+ */
+public class DerivedFontCache {
+
+	/** The sizes of one face, there are usually only a few. */
+	private static class Sizes {
+		float[] sizes = new float[4];
+		Font[] fonts = new Font[4];
+		int count;
+	}
+
+	private final Map<Font,Sizes> faces = new HashMap<>();
+
+
+	/**
+	 * Returns the face with the given size, the face itself if the size is NaN or the same as the face's.
+	 */
+	public Font get(Font face, float size) {
+		if(Float.isNaN(size) || size == face.getSize2D())
+			return face;
+
+		Sizes sizes = faces.get(face);
+		if(sizes == null) {
+			sizes = new Sizes();
+			faces.put(face, sizes);
+		}
+		for(int i = 0; i < sizes.count; i++) {
+			if(sizes.sizes[i] == size) {
+				return sizes.fonts[i];
+			}
+		}
+
+		Font font = face.deriveFont(size);
+		if(sizes.count == sizes.sizes.length) {
+			sizes.sizes = Arrays.copyOf(sizes.sizes, sizes.count * 2);
+			sizes.fonts = Arrays.copyOf(sizes.fonts, sizes.count * 2);
+		}
+		sizes.sizes[sizes.count] = size;
+		sizes.fonts[sizes.count] = font;
+		sizes.count++;
+		return font;
+	}
+
+	public void clear() {
+		faces.clear();
+	}
+}
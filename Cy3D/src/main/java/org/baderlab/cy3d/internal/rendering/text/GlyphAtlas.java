@@ -0,0 +1,199 @@
+package org.baderlab.cy3d.internal.rendering.text;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.jogamp.opengl.GL2;
+
+/**
+ * A texture that holds the rasterized glyphs of a single font. Glyphs are rasterized
+ * with AWT the first time they are requested and packed into rows (shelves) of the atlas.
+ * The texture is only uploaded when new glyphs have been added.
+ *
+ * The texture stores coverage in the alpha channel only, the color is applied when drawing.
+ *
+ * @author mkucera
+ */
+public class GlyphAtlas {
+
+	public static final int ATLAS_SIZE = 1024;
+	private static final int PADDING = 1;
+
+	/** Position of a glyph in the atlas, and how to place it relative to the pen position. */
+	public static class Glyph {
+		public final float u0, v0, u1, v1;
+		public final int width;
+		public final int height;
+		public final int advance;
+		/** Distance from the pen position to the left of the glyph's quad, in pixels. */
+		public final int left;
+		/** Distance from the baseline to the bottom of the glyph's quad, in pixels, usually negative. */
+		public final int bottom;
+
+		Glyph(float u0, float v0, float u1, float v1, int width, int height, int advance, int left, int bottom) {
+			this.u0 = u0;
+			this.v0 = v0;
+			this.u1 = u1;
+			this.v1 = v1;
+			this.width = width;
+			this.height = height;
+			this.advance = advance;
+			this.left = left;
+			this.bottom = bottom;
+		}
+	}
+
+	private final Font font;
+	private final BufferedImage image;
+	private final Graphics2D graphics;
+	private final FontMetrics metrics;
+	private final Map<Integer,Glyph> glyphs = new HashMap<>();
+
+	private int shelfX = 0;
+	private int shelfY = 0;
+	private int shelfHeight = 0;
+	private boolean full = false;
+
+	private int texture = 0;
+	private int dirtyMinY = Integer.MAX_VALUE;
+	private int dirtyMaxY = -1;
+
+
+	public GlyphAtlas(Font font) {
+		this.font = font;
+		this.image = new BufferedImage(ATLAS_SIZE, ATLAS_SIZE, BufferedImage.TYPE_BYTE_GRAY);
+		this.graphics = image.createGraphics();
+		graphics.setFont(font);
+		graphics.setColor(Color.WHITE);
+		graphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+		graphics.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_OFF);
+		this.metrics = graphics.getFontMetrics();
+	}
+
+
+	public Font getFont() {
+		return font;
+	}
+
+	/**
+	 * Returns the glyph for the code point, rasterizing it if necessary.
+	 * Returns null if the atlas is full.
+	 */
+	public Glyph getGlyph(int codePoint) {
+		Glyph glyph = glyphs.get(codePoint);
+		if(glyph == null && !full) {
+			glyph = rasterize(codePoint);
+			if(glyph != null) {
+				glyphs.put(codePoint, glyph);
+			}
+		}
+		return glyph;
+	}
+
+	/**
+	 * Returns the width of the text in pixels.
+	 */
+	public int getTextWidth(String text) {
+		int width = 0;
+		for(int i = 0; i < text.length(); ) {
+			int codePoint = text.codePointAt(i);
+			Glyph glyph = getGlyph(codePoint);
+			width += glyph == null ? metrics.charWidth(codePoint) : glyph.advance;
+			i += Character.charCount(codePoint);
+		}
+		return width;
+	}
+
+
+	private Glyph rasterize(int codePoint) {
+		int advance = metrics.charWidth(codePoint);
+		int width  = Math.max(1, advance) + 2 * PADDING;
+		int height = metrics.getAscent() + metrics.getDescent() + 2 * PADDING;
+
+		if(shelfX + width > ATLAS_SIZE) {
+			shelfX = 0;
+			shelfY += shelfHeight;
+			shelfHeight = 0;
+		}
+		if(width > ATLAS_SIZE || shelfY + height > ATLAS_SIZE) {
+			System.err.println("Glyph atlas full for font " + font);
+			full = true;
+			return null;
+		}
+
+		int x = shelfX;
+		int y = shelfY;
+		if(!Character.isWhitespace(codePoint)) {
+			graphics.drawString(new String(Character.toChars(codePoint)), x + PADDING, y + PADDING + metrics.getAscent());
+			dirtyMinY = Math.min(dirtyMinY, y);
+			dirtyMaxY = Math.max(dirtyMaxY, y + height);
+		}
+
+		shelfX += width;
+		shelfHeight = Math.max(shelfHeight, height);
+
+		// the image is uploaded top row first, so v grows downwards in the image
+		float u0 = (float) x / ATLAS_SIZE;
+		float u1 = (float) (x + width) / ATLAS_SIZE;
+		float v0 = (float) (y + height) / ATLAS_SIZE;
+		float v1 = (float) y / ATLAS_SIZE;
+		int bottom = -(metrics.getDescent() + PADDING);
+		return new Glyph(u0, v0, u1, v1, width, height, advance, -PADDING, bottom);
+	}
+
+
+	/**
+	 * Binds the atlas texture, uploading any glyphs that were added since the last call.
+	 */
+	public void bind(GL2 gl) {
+		if(texture == 0) {
+			int[] ids = new int[1];
+			gl.glGenTextures(1, ids, 0);
+			texture = ids[0];
+			gl.glBindTexture(GL2.GL_TEXTURE_2D, texture);
+			gl.glTexParameteri(GL2.GL_TEXTURE_2D, GL2.GL_TEXTURE_MIN_FILTER, GL2.GL_LINEAR);
+			gl.glTexParameteri(GL2.GL_TEXTURE_2D, GL2.GL_TEXTURE_MAG_FILTER, GL2.GL_LINEAR);
+			gl.glTexParameteri(GL2.GL_TEXTURE_2D, GL2.GL_TEXTURE_WRAP_S, GL2.GL_CLAMP_TO_EDGE);
+			gl.glTexParameteri(GL2.GL_TEXTURE_2D, GL2.GL_TEXTURE_WRAP_T, GL2.GL_CLAMP_TO_EDGE);
+			gl.glPixelStorei(GL2.GL_UNPACK_ALIGNMENT, 1);
+			gl.glTexImage2D(GL2.GL_TEXTURE_2D, 0, GL2.GL_ALPHA, ATLAS_SIZE, ATLAS_SIZE, 0, GL2.GL_ALPHA, GL2.GL_UNSIGNED_BYTE, pixels(0, ATLAS_SIZE));
+			dirtyMinY = Integer.MAX_VALUE;
+			dirtyMaxY = -1;
+			return;
+		}
+
+		gl.glBindTexture(GL2.GL_TEXTURE_2D, texture);
+		if(dirtyMaxY > dirtyMinY) {
+			int rows = dirtyMaxY - dirtyMinY;
+			gl.glPixelStorei(GL2.GL_UNPACK_ALIGNMENT, 1);
+			gl.glTexSubImage2D(GL2.GL_TEXTURE_2D, 0, 0, dirtyMinY, ATLAS_SIZE, rows, GL2.GL_ALPHA, GL2.GL_UNSIGNED_BYTE, pixels(dirtyMinY, rows));
+			dirtyMinY = Integer.MAX_VALUE;
+			dirtyMaxY = -1;
+		}
+	}
+
+	private ByteBuffer pixels(int firstRow, int rows) {
+		byte[] data = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+		return ByteBuffer.wrap(data, firstRow * ATLAS_SIZE, rows * ATLAS_SIZE).slice();
+	}
+
+
+	/**
+	 * Returns the texture id so that it can be deleted on the GL thread, 0 if there is no texture.
+	 */
+	int getTexture() {
+		return texture;
+	}
+
+	void dispose() {
+		graphics.dispose();
+	}
+}
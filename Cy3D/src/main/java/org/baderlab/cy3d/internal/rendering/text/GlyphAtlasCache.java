@@ -0,0 +1,122 @@
+package org.baderlab.cy3d.internal.rendering.text;
+
+import java.awt.Font;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.jogamp.opengl.GL2;
+
+/**
+ * Holds one {@link GlyphAtlas} per font (a derived font is a different key, so this is
+ * per font face and size).
+ *
+ * The atlases of the fonts used by the current labels are never evicted, so that labels with
+ * many different fonts don't keep evicting each other's atlases. The fonts in use are the ones
+ * passed to {@link #get(Font)} between {@link #beginUpdate()} and {@link #endUpdate()}. Atlases
+ * that are no longer in use are kept in case the fonts come back, and are evicted when there are
+ * too many of them or they have not been used for a while.
+ *
+ * Eviction may happen on any thread, so the textures of evicted atlases are deleted
+ * the next time {@link #deleteEvicted(GL2)} is called on the GL thread.
+ *
+ * @author mkucera
+ */
+public class GlyphAtlasCache {
+
+	/** Number of atlases that are not in use that are kept. */
+	private static final int UNUSED_CACHE_SIZE = 16;
+
+	private Map<Font,GlyphAtlas> inUse = new HashMap<>();
+	private Map<Font,GlyphAtlas> lastInUse = new HashMap<>();
+	private final Cache<Font,GlyphAtlas> unused;
+	private final List<GlyphAtlas> evicted = new ArrayList<>();
+
+
+	public GlyphAtlasCache() {
+		RemovalListener<Font,GlyphAtlas> removalListener = notification -> {
+			// the atlas is also removed from this cache when it is used again
+			if(notification.wasEvicted()) {
+				synchronized(evicted) {
+					evicted.add(notification.getValue());
+				}
+			}
+		};
+
+		unused = CacheBuilder.newBuilder()
+				.maximumSize(UNUSED_CACHE_SIZE)
+				.expireAfterAccess(10, TimeUnit.MINUTES)
+				.removalListener(removalListener)
+				.build();
+	}
+
+
+	/**
+	 * Starts collecting the fonts that are in use.
+	 */
+	public void beginUpdate() {
+		Map<Font,GlyphAtlas> temp = lastInUse;
+		lastInUse = inUse;
+		inUse = temp;
+		inUse.clear();
+	}
+
+	/**
+	 * Returns the atlas for the font, the font is in use until the next update.
+	 */
+	public GlyphAtlas get(Font font) {
+		GlyphAtlas atlas = inUse.get(font);
+		if(atlas == null) {
+			atlas = lastInUse.remove(font);
+			if(atlas == null) {
+				atlas = unused.getIfPresent(font);
+				if(atlas == null) {
+					atlas = new GlyphAtlas(font);
+				} else {
+					unused.invalidate(font);
+				}
+			}
+			inUse.put(font, atlas);
+		}
+		return atlas;
+	}
+
+	/**
+	 * The fonts that were not used since {@link #beginUpdate()} are no longer in use,
+	 * their atlases may be evicted.
+	 */
+	public void endUpdate() {
+		unused.putAll(lastInUse);
+		lastInUse.clear();
+	}
+
+	/**
+	 * Returns true if the atlas for the font is still cached.
+	 */
+	public boolean contains(GlyphAtlas atlas) {
+		Font font = atlas.getFont();
+		return inUse.get(font) == atlas || lastInUse.get(font) == atlas || unused.getIfPresent(font) == atlas;
+	}
+
+
+	/**
+	 * Deletes the textures of atlases that have been evicted. Must be called with a current GL context.
+	 */
+	public void deleteEvicted(GL2 gl) {
+		synchronized(evicted) {
+			for(GlyphAtlas atlas : evicted) {
+				int texture = atlas.getTexture();
+				if(texture != 0) {
+					gl.glDeleteTextures(1, new int[] { texture }, 0);
+				}
+				atlas.dispose();
+			}
+			evicted.clear();
+		}
+	}
+}
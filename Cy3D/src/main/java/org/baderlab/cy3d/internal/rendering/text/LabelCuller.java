@@ -0,0 +1,260 @@
+package org.baderlab.cy3d.internal.rendering.text;
+
+import java.util.Arrays;
+
+import org.baderlab.cy3d.internal.data.ImageTile;
+
+import com.jogamp.opengl.GL2;
+
+/**
+ * Decides which labels to draw in a frame. Label anchors are projected to the screen with
+ * the modelview and projection matrices read once in {@link #begin(GL2)}, then labels are
+ * placed in priority order (selected nodes first, then nearest to the camera) and any label
+ * that overlaps an already placed label is rejected. At most {@link #getMaxLabels()} labels
+ * are placed per frame.
+ *
+ * Overlap is tested against a screen-space grid of the placed label rectangles.
+ *
+ * When an image is drawn in tiles the labels are placed once on the whole image with
+ * {@link #begin(GL2, ImageTile)} and the placement is reused for the other tiles.
+ *
+ * Usage: call begin(), then add() for every candidate, then place(). The placed labels
+ * are available from getPlacedCount(), getPlacedId(), getScreenX() and getScreenY().
+ *
+ * @author mkucera
+ */
+public class LabelCuller {
+
+	public static final int DEFAULT_MAX_LABELS = 1000;
+	private static final int CELL_SIZE = 64;
+
+	private int maxLabels = DEFAULT_MAX_LABELS;
+
+	private final double[] modelView = new double[16];
+	private final double[] projection = new double[16];
+	private final double[] mvp = new double[16];
+	private final int[] viewport = new int[4];
+
+	// candidates
+	private int count;
+	private int[] ids = new int[256];
+	private float[] screenX = new float[256];
+	private float[] screenY = new float[256];
+	private int[] widths = new int[256];
+	private int[] heights = new int[256];
+	private long[] sortKeys = new long[256];
+
+	// placed labels, indices into the candidate arrays
+	private int placedCount;
+	private int[] placed = new int[256];
+
+	// grid of placed labels, each cell is a linked list of entries
+	private int gridColumns;
+	private int gridRows;
+	private int[] cellHeads = new int[0];
+	private int[] entryLabel = new int[256];
+	private int[] entryNext = new int[256];
+	private int entryCount;
+
+
+	public int getMaxLabels() {
+		return maxLabels;
+	}
+
+	public void setMaxLabels(int maxLabels) {
+		this.maxLabels = maxLabels;
+	}
+
+
+	/**
+	 * Reads the current matrices and viewport, and clears the candidates from the last frame.
+	 */
+	public void begin(GL2 gl) {
+		gl.glGetDoublev(GL2.GL_MODELVIEW_MATRIX, modelView, 0);
+		gl.glGetDoublev(GL2.GL_PROJECTION_MATRIX, projection, 0);
+		gl.glGetIntegerv(GL2.GL_VIEWPORT, viewport, 0);
+		begin(modelView, projection, viewport);
+	}
+
+	/**
+	 * Same as {@link #begin(GL2)}, but when a tile of a larger image is drawn the labels are placed 
+	 * on the whole image, so that the tiles agree on which labels are drawn. The screen coordinates 
+	 * of the placed labels are then image coordinates, with the origin at the bottom left of the image.
+	 */
+	public void begin(GL2 gl, ImageTile tile) {
+		if(tile == null) {
+			begin(gl);
+			return;
+		}
+		gl.glGetDoublev(GL2.GL_MODELVIEW_MATRIX, modelView, 0);
+		tile.getImageProjection(projection);
+		viewport[0] = 0;
+		viewport[1] = 0;
+		viewport[2] = tile.getImageWidth();
+		viewport[3] = tile.getImageHeight();
+		begin(modelView, projection, viewport);
+	}
+
+	/**
+	 * Same as {@link #begin(GL2)} but with the matrices given in column major order.
+	 */
+	public void begin(double[] modelView, double[] projection, int[] viewport) {
+		// mvp = projection * modelView
+		for(int col = 0; col < 4; col++) {
+			for(int row = 0; row < 4; row++) {
+				double sum = 0;
+				for(int k = 0; k < 4; k++) {
+					sum += projection[k * 4 + row] * modelView[col * 4 + k];
+				}
+				mvp[col * 4 + row] = sum;
+			}
+		}
+		if(viewport != this.viewport) {
+			System.arraycopy(viewport, 0, this.viewport, 0, 4);
+		}
+		count = 0;
+		placedCount = 0;
+	}
+
+
+	/**
+	 * Adds a candidate label anchored at the given position. The label is centered horizontally
+	 * on the anchor with its baseline at the anchor. Labels behind the camera or off screen are
+	 * rejected immediately.
+	 *
+	 * @param id Returned by {@link #getPlacedId(int)} if the label is placed.
+	 * @param width Width of the label in pixels.
+	 * @param height Height of the label in pixels.
+	 * @param selected Selected labels are placed before all others.
+	 */
+	public void add(int id, double x, double y, double z, int width, int height, boolean selected) {
+		double cx = mvp[0] * x + mvp[4] * y + mvp[8]  * z + mvp[12];
+		double cy = mvp[1] * x + mvp[5] * y + mvp[9]  * z + mvp[13];
+		double cz = mvp[2] * x + mvp[6] * y + mvp[10] * z + mvp[14];
+		double cw = mvp[3] * x + mvp[7] * y + mvp[11] * z + mvp[15];
+		if(cw <= 0 || cz < -cw || cz > cw)
+			return;
+
+		float sx = (float) (viewport[0] + (cx / cw + 1) * viewport[2] / 2);
+		float sy = (float) (viewport[1] + (cy / cw + 1) * viewport[3] / 2);
+		if(sx + width / 2 < viewport[0] || sx - width / 2 > viewport[0] + viewport[2] || sy + height < viewport[1] || sy - height > viewport[1] + viewport[3])
+			return;
+
+		if(count == ids.length) {
+			int capacity = count * 2;
+			ids = Arrays.copyOf(ids, capacity);
+			screenX = Arrays.copyOf(screenX, capacity);
+			screenY = Arrays.copyOf(screenY, capacity);
+			widths = Arrays.copyOf(widths, capacity);
+			heights = Arrays.copyOf(heights, capacity);
+			sortKeys = Arrays.copyOf(sortKeys, capacity);
+		}
+		ids[count] = id;
+		screenX[count] = sx;
+		screenY[count] = sy;
+		widths[count] = width;
+		heights[count] = height;
+
+		// clip w is the distance along the view direction, positive floats sort the same as their bits
+		long depthBits = Float.floatToIntBits((float) cw);
+		sortKeys[count] = (selected ? 0L : 1L << 62) | (depthBits << 31) | count;
+		count++;
+	}
+
+
+	/**
+	 * Places the candidates in priority order, skipping labels that overlap already placed labels.
+	 * @return the number of placed labels
+	 */
+	public int place() {
+		resetGrid();
+		Arrays.sort(sortKeys, 0, count);
+
+		for(int i = 0; i < count && placedCount < maxLabels; i++) {
+			int label = (int) (sortKeys[i] & 0x7FFFFFFF);
+			if(!overlaps(label)) {
+				insert(label);
+				if(placedCount == placed.length) {
+					placed = Arrays.copyOf(placed, placedCount * 2);
+				}
+				placed[placedCount++] = label;
+			}
+		}
+		return placedCount;
+	}
+
+	public int getPlacedCount() {
+		return placedCount;
+	}
+
+	public int getPlacedId(int i) {
+		return ids[placed[i]];
+	}
+
+	/** Screen x of the placed label's anchor, in window coordinates with the origin at the bottom left. */
+	public int getScreenX(int i) {
+		return (int) screenX[placed[i]];
+	}
+
+	/** Screen y of the placed label's anchor, in window coordinates with the origin at the bottom left. */
+	public int getScreenY(int i) {
+		return (int) screenY[placed[i]];
+	}
+
+
+	private void resetGrid() {
+		gridColumns = Math.max(1, (viewport[2] + CELL_SIZE - 1) / CELL_SIZE);
+		gridRows = Math.max(1, (viewport[3] + CELL_SIZE - 1) / CELL_SIZE);
+		int cells = gridColumns * gridRows;
+		if(cellHeads.length < cells) {
+			cellHeads = new int[cells];
+		}
+		Arrays.fill(cellHeads, 0, cells, -1);
+		entryCount = 0;
+	}
+
+	private int column(float x) {
+		return Math.max(0, Math.min(gridColumns - 1, (int) ((x - viewport[0]) / CELL_SIZE)));
+	}
+
+	private int row(float y) {
+		return Math.max(0, Math.min(gridRows - 1, (int) ((y - viewport[1]) / CELL_SIZE)));
+	}
+
+	private boolean overlaps(int label) {
+		float left = screenX[label] - widths[label] / 2f, right = left + widths[label];
+		float bottom = screenY[label], top = bottom + heights[label];
+
+		for(int r = row(bottom); r <= row(top); r++) {
+			for(int c = column(left); c <= column(right); c++) {
+				for(int e = cellHeads[r * gridColumns + c]; e != -1; e = entryNext[e]) {
+					int other = entryLabel[e];
+					float otherLeft = screenX[other] - widths[other] / 2f;
+					float otherBottom = screenY[other];
+					if(left < otherLeft + widths[other] && otherLeft < right && bottom < otherBottom + heights[other] && otherBottom < top) {
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	private void insert(int label) {
+		float left = screenX[label] - widths[label] / 2f, right = left + widths[label];
+		float bottom = screenY[label], top = bottom + heights[label];
+
+		for(int r = row(bottom); r <= row(top); r++) {
+			for(int c = column(left); c <= column(right); c++) {
+				if(entryCount == entryLabel.length) {
+					entryLabel = Arrays.copyOf(entryLabel, entryCount * 2);
+					entryNext = Arrays.copyOf(entryNext, entryCount * 2);
+				}
+				int cell = r * gridColumns + c;
+				entryLabel[entryCount] = label;
+				entryNext[entryCount] = cellHeads[cell];
+				cellHeads[cell] = entryCount++;
+			}
+		}
+	}
+}
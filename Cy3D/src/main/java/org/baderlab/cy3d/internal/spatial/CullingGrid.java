@@ -0,0 +1,327 @@
+package org.baderlab.cy3d.internal.spatial;
+
+import java.util.Arrays;
+
+import org.baderlab.cy3d.internal.geometric.ViewingVolume;
+
+/**
+ * A two level grid of axis aligned boxes used for view frustum culling.
+ *
+ * Items are bucketed into cells by the center of their box, and cells are grouped into
+ * blocks of BLOCK_SIZE<sup>3</sup> cells. Each cell and block keeps the bounds of the items
+ * it contains. Culling tests blocks first, then cells, and only tests individual items in
+ * cells that straddle the edge of the viewing volume, so the work done is proportional to
+ * the number of visible items rather than the size of the network.
+ *
+ * Usage: call clear(), add() every item, then build(). Items are identified by the order in
+ * which they were added. The grid only needs to be rebuilt when the items move, cull() can
+ * be called every frame. Items that moved a little can be updated in place with update(),
+ * the item stays in its cell and the bounds of the cell and its block grow to contain it.
+ *
+ * Items are stored in cell order, {@link #getCellStart(int)} and {@link #getItem(int)} can be
+ * used to process them cell by cell.
+ *
+ * @author mkucera
+ */
+public class CullingGrid {
+
+	private static final int ITEMS_PER_CELL = 16;
+	private static final int BLOCK_SIZE = 4;
+	private static final int MAX_CELLS_PER_AXIS = 64;
+
+	// item bounds: minX, minY, minZ, maxX, maxY, maxZ
+	private int count = 0;
+	private double[] bounds = new double[64 * 6];
+
+	// cells, items are sorted by cell
+	private int cellsX, cellsY, cellsZ;
+	private int[] cellStart = new int[1];
+	private int[] items = new int[0];
+	private int[] itemCells = new int[0];
+	private double[] cellBounds = new double[0];
+
+	// blocks of cells
+	private int blocksX, blocksY, blocksZ;
+	private double[] blockBounds = new double[0];
+
+	// results of the last cull
+	private boolean[] cellVisible = new boolean[0];
+	private int visibleCount = 0;
+	private int[] visible = new int[0];
+
+
+	public void clear() {
+		count = 0;
+		cellsX = cellsY = cellsZ = 0;
+		blocksX = blocksY = blocksZ = 0;
+		visibleCount = 0;
+	}
+
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Adds an item and returns its id.
+	 */
+	public int add(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+		if(count * 6 == bounds.length) {
+			bounds = Arrays.copyOf(bounds, bounds.length * 2);
+		}
+		int b = count * 6;
+		bounds[b]   = minX;
+		bounds[b+1] = minY;
+		bounds[b+2] = minZ;
+		bounds[b+3] = maxX;
+		bounds[b+4] = maxY;
+		bounds[b+5] = maxZ;
+		return count++;
+	}
+
+	/**
+	 * Adds an item with the bounds of a sphere and returns its id.
+	 */
+	public int addSphere(double x, double y, double z, double radius) {
+		return add(x - radius, y - radius, z - radius, x + radius, y + radius, z + radius);
+	}
+
+
+	public void build() {
+		if(count == 0) {
+			clear();
+			return;
+		}
+
+		double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY, minZ = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
+		for(int i = 0; i < count; i++) {
+			int b = i * 6;
+			minX = Math.min(minX, centerX(b));
+			minY = Math.min(minY, centerY(b));
+			minZ = Math.min(minZ, centerZ(b));
+			maxX = Math.max(maxX, centerX(b));
+			maxY = Math.max(maxY, centerY(b));
+			maxZ = Math.max(maxZ, centerZ(b));
+		}
+
+		// cubic cells, sized so that there are about ITEMS_PER_CELL items per occupied cell in a uniform network
+		double sizeX = maxX - minX, sizeY = maxY - minY, sizeZ = maxZ - minZ;
+		double volume = Math.max(sizeX, 1e-9) * Math.max(sizeY, 1e-9) * Math.max(sizeZ, 1e-9);
+		double maxSize = Math.max(sizeX, Math.max(sizeY, sizeZ));
+		double cellSize = Math.cbrt(volume * ITEMS_PER_CELL / count);
+		cellSize = Math.max(cellSize, maxSize / MAX_CELLS_PER_AXIS);
+		if(!(cellSize > 0)) {
+			cellSize = 1;
+		}
+
+		cellsX = cellCount(sizeX, cellSize);
+		cellsY = cellCount(sizeY, cellSize);
+		cellsZ = cellCount(sizeZ, cellSize);
+		int cells = cellsX * cellsY * cellsZ;
+
+		// counting sort of the items by cell
+		int[] itemCell = new int[count];
+		itemCells = itemCell;
+		cellStart = new int[cells + 1];
+		for(int i = 0; i < count; i++) {
+			int b = i * 6;
+			int cx = Math.min(cellsX - 1, (int) ((centerX(b) - minX) / cellSize));
+			int cy = Math.min(cellsY - 1, (int) ((centerY(b) - minY) / cellSize));
+			int cz = Math.min(cellsZ - 1, (int) ((centerZ(b) - minZ) / cellSize));
+			int cell = (cz * cellsY + cy) * cellsX + cx;
+			itemCell[i] = cell;
+			cellStart[cell + 1]++;
+		}
+		for(int c = 0; c < cells; c++) {
+			cellStart[c + 1] += cellStart[c];
+		}
+		items = new int[count];
+		int[] next = Arrays.copyOf(cellStart, cells);
+		for(int i = 0; i < count; i++) {
+			items[next[itemCell[i]]++] = i;
+		}
+
+		// bounds of the items in each cell, empty cells have inverted bounds
+		cellBounds = new double[cells * 6];
+		for(int c = 0; c < cells; c++) {
+			initBounds(cellBounds, c);
+			for(int k = cellStart[c]; k < cellStart[c + 1]; k++) {
+				includeBounds(cellBounds, c, bounds, items[k]);
+			}
+		}
+
+		blocksX = (cellsX + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		blocksY = (cellsY + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		blocksZ = (cellsZ + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		blockBounds = new double[blocksX * blocksY * blocksZ * 6];
+		for(int block = 0; block < blocksX * blocksY * blocksZ; block++) {
+			initBounds(blockBounds, block);
+		}
+		for(int cz = 0; cz < cellsZ; cz++) {
+			for(int cy = 0; cy < cellsY; cy++) {
+				for(int cx = 0; cx < cellsX; cx++) {
+					int cell = (cz * cellsY + cy) * cellsX + cx;
+					if(cellStart[cell] < cellStart[cell + 1]) {
+						includeBounds(blockBounds, block(cx, cy, cz), cellBounds, cell);
+					}
+				}
+			}
+		}
+
+		cellVisible = new boolean[cells];
+		if(visible.length < count) {
+			visible = new int[count];
+		}
+		visibleCount = 0;
+	}
+
+	/**
+	 * Replaces the bounds of an item of the built grid. The item is not moved to another cell,
+	 * so the grid should be rebuilt when many items have moved far.
+	 */
+	public void update(int id, double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+		int b = id * 6;
+		bounds[b]   = minX;
+		bounds[b+1] = minY;
+		bounds[b+2] = minZ;
+		bounds[b+3] = maxX;
+		bounds[b+4] = maxY;
+		bounds[b+5] = maxZ;
+
+		int cell = itemCells[id];
+		includeBounds(cellBounds, cell, bounds, id);
+		int cx = cell % cellsX;
+		int cy = (cell / cellsX) % cellsY;
+		int cz = cell / (cellsX * cellsY);
+		includeBounds(blockBounds, block(cx, cy, cz), cellBounds, cell);
+	}
+
+	private static int cellCount(double size, double cellSize) {
+		return Math.max(1, Math.min(MAX_CELLS_PER_AXIS, (int) Math.ceil(size / cellSize)));
+	}
+
+	private int block(int cx, int cy, int cz) {
+		return ((cz / BLOCK_SIZE) * blocksY + (cy / BLOCK_SIZE)) * blocksX + (cx / BLOCK_SIZE);
+	}
+
+	private double centerX(int b) {
+		return (bounds[b] + bounds[b+3]) / 2;
+	}
+
+	private double centerY(int b) {
+		return (bounds[b+1] + bounds[b+4]) / 2;
+	}
+
+	private double centerZ(int b) {
+		return (bounds[b+2] + bounds[b+5]) / 2;
+	}
+
+	private static void initBounds(double[] target, int index) {
+		int t = index * 6;
+		target[t] = target[t+1] = target[t+2] = Double.POSITIVE_INFINITY;
+		target[t+3] = target[t+4] = target[t+5] = Double.NEGATIVE_INFINITY;
+	}
+
+	private static void includeBounds(double[] target, int index, double[] source, int sourceIndex) {
+		int t = index * 6, s = sourceIndex * 6;
+		target[t]   = Math.min(target[t],   source[s]);
+		target[t+1] = Math.min(target[t+1], source[s+1]);
+		target[t+2] = Math.min(target[t+2], source[s+2]);
+		target[t+3] = Math.max(target[t+3], source[s+3]);
+		target[t+4] = Math.max(target[t+4], source[s+4]);
+		target[t+5] = Math.max(target[t+5], source[s+5]);
+	}
+
+	private static int classify(ViewingVolume volume, double[] source, int index) {
+		int b = index * 6;
+		if(source[b] > source[b+3])
+			return ViewingVolume.OUTSIDE; // empty
+		return volume.classifyBox(source[b], source[b+1], source[b+2], source[b+3], source[b+4], source[b+5]);
+	}
+
+
+	/**
+	 * Finds the items that are at least partly inside the viewing volume.
+	 * @return the number of visible items
+	 */
+	public int cull(ViewingVolume volume) {
+		visibleCount = 0;
+		Arrays.fill(cellVisible, false);
+
+		for(int bz = 0; bz < blocksZ; bz++) {
+			for(int by = 0; by < blocksY; by++) {
+				for(int bx = 0; bx < blocksX; bx++) {
+					int block = (bz * blocksY + by) * blocksX + bx;
+					int blockResult = classify(volume, blockBounds, block);
+					if(blockResult == ViewingVolume.OUTSIDE)
+						continue;
+
+					int maxX = Math.min(cellsX, (bx + 1) * BLOCK_SIZE);
+					int maxY = Math.min(cellsY, (by + 1) * BLOCK_SIZE);
+					int maxZ = Math.min(cellsZ, (bz + 1) * BLOCK_SIZE);
+					for(int cz = bz * BLOCK_SIZE; cz < maxZ; cz++) {
+						for(int cy = by * BLOCK_SIZE; cy < maxY; cy++) {
+							for(int cx = bx * BLOCK_SIZE; cx < maxX; cx++) {
+								int cell = (cz * cellsY + cy) * cellsX + cx;
+								int cellResult = blockResult == ViewingVolume.INSIDE ? ViewingVolume.INSIDE : classify(volume, cellBounds, cell);
+								if(cellResult != ViewingVolume.OUTSIDE) {
+									cullCell(volume, cell, cellResult == ViewingVolume.INSIDE);
+								}
+							}
+						}
+					}
+				}
+			}
+		}
+		return visibleCount;
+	}
+
+	private void cullCell(ViewingVolume volume, int cell, boolean inside) {
+		int before = visibleCount;
+		for(int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+			int item = items[k];
+			if(inside || classify(volume, bounds, item) != ViewingVolume.OUTSIDE) {
+				visible[visibleCount++] = item;
+			}
+		}
+		cellVisible[cell] = visibleCount > before;
+	}
+
+
+	/** Number of items visible after the last call to {@link #cull(ViewingVolume)}. */
+	public int getVisibleCount() {
+		return visibleCount;
+	}
+
+	/** Id of the i-th visible item. */
+	public int getVisible(int i) {
+		return visible[i];
+	}
+
+	public int getCellCount() {
+		return cellsX * cellsY * cellsZ;
+	}
+
+	/** True if at least one item in the cell was visible after the last call to {@link #cull(ViewingVolume)}. */
+	public boolean isCellVisible(int cell) {
+		return cellVisible[cell];
+	}
+
+	/**
+	 * Copies the bounds of the items in the cell into the result as minX, minY, minZ, maxX, maxY, maxZ.
+	 * The bounds of an empty cell are inverted.
+	 */
+	public void getCellBounds(int cell, double[] result) {
+		System.arraycopy(cellBounds, cell * 6, result, 0, 6);
+	}
+
+	/** Index into {@link #getItem(int)} of the first item in the cell, the items of a cell end where the next cell starts. */
+	public int getCellStart(int cell) {
+		return cellStart[cell];
+	}
+
+	/** Id of the k-th item in cell order. */
+	public int getItem(int k) {
+		return items[k];
+	}
+}
@@ -0,0 +1,139 @@
+package org.baderlab.cy3d.internal.spatial;
+
+import org.baderlab.cy3d.internal.camera.CameraPosition;
+import org.baderlab.cy3d.internal.geometric.Vector3;
+import org.baderlab.cy3d.internal.tools.GeometryToolkit;
+
+/**
+ * A convex volume bounded by planes, used for box selection queries on a {@link SpatialIndex}.
+ *
+ * Planes are stored in the format Ax + By + Cz + D = 0 with the normal (A, B, C) pointing
+ * out of the volume, the same convention as {@link org.baderlab.cy3d.internal.geometric.ViewingVolume}.
+ *
+ * @author mkucera
+ */
+public class Frustum {
+
+	// 4 doubles per plane: A, B, C, D
+	private final double[] planes;
+
+
+	private Frustum(double[] planes) {
+		this.planes = planes;
+	}
+
+
+	/**
+	 * Creates the volume that is visible through the given rectangle on the screen.
+	 * The rectangle is given in window coordinates, (0, 0) is the top left of the screen.
+	 */
+	public static Frustum fromScreenRectangle(int x1, int y1, int x2, int y2, int screenWidth, int screenHeight,
+			double nearDistance, double farDistance, CameraPosition camera) {
+
+		int left   = Math.min(x1, x2);
+		int right  = Math.max(x1, x2);
+		int top    = Math.min(y1, y2);
+		int bottom = Math.max(y1, y2);
+
+		Vector3 eye = camera.getPosition();
+		Vector3 topLeft     = GeometryToolkit.convertScreenTo3d(left,  top,    screenWidth, screenHeight, 1, camera);
+		Vector3 topRight    = GeometryToolkit.convertScreenTo3d(right, top,    screenWidth, screenHeight, 1, camera);
+		Vector3 bottomLeft  = GeometryToolkit.convertScreenTo3d(left,  bottom, screenWidth, screenHeight, 1, camera);
+		Vector3 bottomRight = GeometryToolkit.convertScreenTo3d(right, bottom, screenWidth, screenHeight, 1, camera);
+
+		Vector3 direction = camera.getDirection();
+		Vector3 center = topLeft.plus(bottomRight).multiply(0.5);
+
+		double[] planes = new double[6 * 4];
+		int i = 0;
+		i = setPlaneThrough(planes, i, eye, topLeft,     topRight,    center);
+		i = setPlaneThrough(planes, i, eye, topRight,    bottomRight, center);
+		i = setPlaneThrough(planes, i, eye, bottomRight, bottomLeft,  center);
+		i = setPlaneThrough(planes, i, eye, bottomLeft,  topLeft,     center);
+
+		// near plane, normal points back towards the camera
+		Vector3 nearPoint = eye.plus(direction.multiply(nearDistance));
+		i = setPlane(planes, i, direction.invert(), nearPoint);
+
+		// far plane
+		Vector3 farPoint = eye.plus(direction.multiply(farDistance));
+		i = setPlane(planes, i, direction, farPoint);
+
+		return new Frustum(planes);
+	}
+
+
+	/**
+	 * Sets the plane through the three points, with the normal facing away from the inside point.
+	 */
+	private static int setPlaneThrough(double[] planes, int i, Vector3 a, Vector3 b, Vector3 c, Vector3 inside) {
+		Vector3 normal = b.subtract(a).cross(c.subtract(a));
+		if(normal.dot(inside.subtract(a)) > 0) {
+			normal = normal.invert();
+		}
+		return setPlane(planes, i, normal, a);
+	}
+
+	private static int setPlane(double[] planes, int i, Vector3 normal, Vector3 point) {
+		Vector3 n = normal.normalize();
+		planes[i++] = n.x();
+		planes[i++] = n.y();
+		planes[i++] = n.z();
+		planes[i++] = -n.dot(point);
+		return i;
+	}
+
+
+	/**
+	 * Returns true if the sphere is at least partly inside the volume.
+	 */
+	public boolean intersectsSphere(double x, double y, double z, double radius) {
+		for(int i = 0; i < planes.length; i += 4) {
+			if(planes[i] * x + planes[i+1] * y + planes[i+2] * z + planes[i+3] > radius) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns true if any part of the axis aligned box may be inside the volume.
+	 * This test is conservative, it may return true for some boxes that are just outside.
+	 */
+	public boolean intersectsBox(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+		for(int i = 0; i < planes.length; i += 4) {
+			// test the corner that is furthest inside the plane
+			double x = planes[i]   > 0 ? minX : maxX;
+			double y = planes[i+1] > 0 ? minY : maxY;
+			double z = planes[i+2] > 0 ? minZ : maxZ;
+			if(planes[i] * x + planes[i+1] * y + planes[i+2] * z + planes[i+3] > 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns true if any part of the capsule (a line segment with a radius) is inside the volume.
+	 * The segment is clipped against each plane in turn, the capsule is inside if anything remains.
+	 */
+	public boolean intersectsCapsule(double ax, double ay, double az, double bx, double by, double bz, double radius) {
+		double t0 = 0, t1 = 1;
+		for(int i = 0; i < planes.length; i += 4) {
+			double da = planes[i] * ax + planes[i+1] * ay + planes[i+2] * az + planes[i+3] - radius;
+			double db = planes[i] * bx + planes[i+1] * by + planes[i+2] * bz + planes[i+3] - radius;
+			if(da > 0 && db > 0) {
+				return false;
+			}
+			if(da > 0) {
+				t0 = Math.max(t0, da / (da - db));
+			} else if(db > 0) {
+				t1 = Math.min(t1, da / (da - db));
+			}
+			if(t0 > t1) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
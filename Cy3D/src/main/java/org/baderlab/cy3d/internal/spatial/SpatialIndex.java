@@ -0,0 +1,372 @@
+package org.baderlab.cy3d.internal.spatial;
+
+import java.util.Arrays;
+import java.util.Set;
+
+import org.baderlab.cy3d.internal.geometric.Vector3;
+
+/**
+ * A bounding volume hierarchy over node bounding spheres and edge segment capsules,
+ * used for picking without a render pass.
+ *
+ * Nodes and edge segments are added with {@link #addNode} and {@link #addEdgeSegment}
+ * in OpenGL coordinates, then {@link #build()} must be called before querying. An edge
+ * may be made up of several segments, they all report the SUID of the edge.
+ *
+ * This class does not depend on OpenGL and can be used headless.
+ *
+ * @author mkucera
+ */
+public class SpatialIndex {
+
+	public static final int NODE = 0;
+	public static final int EDGE = 1;
+
+	private static final int LEAF_SIZE = 4;
+
+	// Primitive data, a node is a sphere with a == b
+	private int count = 0;
+	private int[] types = new int[64];
+	private long[] suids = new long[64];
+	private double[] segments = new double[64 * 6]; // ax, ay, az, bx, by, bz
+	private double[] radii = new double[64];
+
+	// BVH, stored as flat arrays. Leaves have a negative child index, -(first + 1), into primitiveOrder
+	private int[] primitiveOrder = new int[0];
+	private double[] nodeBounds = new double[0]; // minX, minY, minZ, maxX, maxY, maxZ
+	private int[] nodeLeft = new int[0];
+	private int[] nodeRight = new int[0];
+	private int[] leafCount = new int[0];
+	private int nodeCount = 0;
+
+	// scratch space for sorting primitives during build
+	private double[] centroids = new double[0];
+
+
+	/**
+	 * The result of a ray cast.
+	 */
+	public static class RayHit {
+		private final int type;
+		private final long suid;
+		private final double distance;
+
+		RayHit(int type, long suid, double distance) {
+			this.type = type;
+			this.suid = suid;
+			this.distance = distance;
+		}
+
+		/** Either {@link SpatialIndex#NODE} or {@link SpatialIndex#EDGE} */
+		public int getType() {
+			return type;
+		}
+
+		public long getSuid() {
+			return suid;
+		}
+
+		/** Distance along the ray, in multiples of the ray direction length */
+		public double getDistance() {
+			return distance;
+		}
+	}
+
+
+	public void clear() {
+		count = 0;
+		nodeCount = 0;
+	}
+
+	public int size() {
+		return count;
+	}
+
+	public void addNode(long suid, double x, double y, double z, double radius) {
+		add(NODE, suid, x, y, z, x, y, z, radius);
+	}
+
+	public void addEdgeSegment(long suid, Vector3 a, Vector3 b, double radius) {
+		add(EDGE, suid, a.x(), a.y(), a.z(), b.x(), b.y(), b.z(), radius);
+	}
+
+	public void addEdgeSegment(long suid, double ax, double ay, double az, double bx, double by, double bz, double radius) {
+		add(EDGE, suid, ax, ay, az, bx, by, bz, radius);
+	}
+
+	private void add(int type, long suid, double ax, double ay, double az, double bx, double by, double bz, double radius) {
+		if(count == types.length) {
+			int capacity = count * 2;
+			types = Arrays.copyOf(types, capacity);
+			suids = Arrays.copyOf(suids, capacity);
+			segments = Arrays.copyOf(segments, capacity * 6);
+			radii = Arrays.copyOf(radii, capacity);
+		}
+		types[count] = type;
+		suids[count] = suid;
+		int s = count * 6;
+		segments[s]   = ax;
+		segments[s+1] = ay;
+		segments[s+2] = az;
+		segments[s+3] = bx;
+		segments[s+4] = by;
+		segments[s+5] = bz;
+		radii[count] = radius;
+		count++;
+	}
+
+
+	/**
+	 * Builds the hierarchy over the primitives that have been added. Splits at the median
+	 * of the longest axis.
+	 */
+	public void build() {
+		primitiveOrder = new int[count];
+		centroids = new double[count * 3];
+		for(int i = 0; i < count; i++) {
+			primitiveOrder[i] = i;
+			int s = i * 6;
+			centroids[i*3]   = (segments[s]   + segments[s+3]) / 2;
+			centroids[i*3+1] = (segments[s+1] + segments[s+4]) / 2;
+			centroids[i*3+2] = (segments[s+2] + segments[s+5]) / 2;
+		}
+
+		int maxNodes = Math.max(1, 2 * count);
+		nodeBounds = new double[maxNodes * 6];
+		nodeLeft = new int[maxNodes];
+		nodeRight = new int[maxNodes];
+		leafCount = new int[maxNodes];
+		nodeCount = 0;
+
+		if(count > 0) {
+			buildNode(0, count);
+		}
+		centroids = null;
+	}
+
+	private int buildNode(int start, int end) {
+		int node = nodeCount++;
+		computeBounds(node, start, end);
+
+		if(end - start <= LEAF_SIZE) {
+			nodeLeft[node] = -(start + 1);
+			leafCount[node] = end - start;
+			return node;
+		}
+
+		int b = node * 6;
+		double dx = nodeBounds[b+3] - nodeBounds[b];
+		double dy = nodeBounds[b+4] - nodeBounds[b+1];
+		double dz = nodeBounds[b+5] - nodeBounds[b+2];
+		int axis = dx >= dy && dx >= dz ? 0 : dy >= dz ? 1 : 2;
+
+		int mid = (start + end) >>> 1;
+		select(start, end - 1, mid, axis);
+
+		nodeLeft[node] = buildNode(start, mid);
+		nodeRight[node] = buildNode(mid, end);
+		return node;
+	}
+
+	private void computeBounds(int node, int start, int end) {
+		double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY, minZ = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
+		for(int i = start; i < end; i++) {
+			int p = primitiveOrder[i];
+			int s = p * 6;
+			double r = radii[p];
+			minX = Math.min(minX, Math.min(segments[s],   segments[s+3]) - r);
+			minY = Math.min(minY, Math.min(segments[s+1], segments[s+4]) - r);
+			minZ = Math.min(minZ, Math.min(segments[s+2], segments[s+5]) - r);
+			maxX = Math.max(maxX, Math.max(segments[s],   segments[s+3]) + r);
+			maxY = Math.max(maxY, Math.max(segments[s+1], segments[s+4]) + r);
+			maxZ = Math.max(maxZ, Math.max(segments[s+2], segments[s+5]) + r);
+		}
+		int b = node * 6;
+		nodeBounds[b]   = minX;
+		nodeBounds[b+1] = minY;
+		nodeBounds[b+2] = minZ;
+		nodeBounds[b+3] = maxX;
+		nodeBounds[b+4] = maxY;
+		nodeBounds[b+5] = maxZ;
+	}
+
+	// Quickselect on primitive centroids so that primitiveOrder[k] is in its sorted position
+	private void select(int left, int right, int k, int axis) {
+		while(right > left) {
+			double pivot = centroids[primitiveOrder[(left + right) >>> 1] * 3 + axis];
+			int i = left, j = right;
+			while(i <= j) {
+				while(centroids[primitiveOrder[i] * 3 + axis] < pivot) i++;
+				while(centroids[primitiveOrder[j] * 3 + axis] > pivot) j--;
+				if(i <= j) {
+					int temp = primitiveOrder[i];
+					primitiveOrder[i] = primitiveOrder[j];
+					primitiveOrder[j] = temp;
+					i++;
+					j--;
+				}
+			}
+			if(k <= j)
+				right = j;
+			else if(k >= i)
+				left = i;
+			else
+				return;
+		}
+	}
+
+
+	/**
+	 * Finds the closest primitive of the given type hit by the ray.
+	 *
+	 * @param type {@link #NODE} or {@link #EDGE}
+	 * @return The closest hit, or null if the ray does not hit anything of that type
+	 */
+	public RayHit rayCast(Vector3 origin, Vector3 direction, int type) {
+		if(nodeCount == 0)
+			return null;
+
+		double ox = origin.x(), oy = origin.y(), oz = origin.z();
+		double dx = direction.x(), dy = direction.y(), dz = direction.z();
+		double invX = 1 / dx, invY = 1 / dy, invZ = 1 / dz;
+
+		double closest = Double.POSITIVE_INFINITY;
+		int closestPrimitive = -1;
+
+		int[] stack = new int[64];
+		int top = 0;
+		stack[top++] = 0;
+
+		while(top > 0) {
+			int node = stack[--top];
+			double entry = rayBoxEntry(node, ox, oy, oz, invX, invY, invZ);
+			if(entry > closest)
+				continue;
+
+			if(nodeLeft[node] < 0) {
+				int first = -(nodeLeft[node] + 1);
+				for(int i = first; i < first + leafCount[node]; i++) {
+					int p = primitiveOrder[i];
+					if(types[p] != type)
+						continue;
+					double t = rayPrimitive(p, ox, oy, oz, dx, dy, dz);
+					if(t < closest) {
+						closest = t;
+						closestPrimitive = p;
+					}
+				}
+			} else {
+				if(top + 2 > stack.length) {
+					stack = Arrays.copyOf(stack, stack.length * 2);
+				}
+				stack[top++] = nodeLeft[node];
+				stack[top++] = nodeRight[node];
+			}
+		}
+
+		return closestPrimitive < 0 ? null : new RayHit(type, suids[closestPrimitive], closest);
+	}
+
+	/**
+	 * Returns the ray parameter where the ray enters the node's box, or infinity if it misses.
+	 */
+	private double rayBoxEntry(int node, double ox, double oy, double oz, double invX, double invY, double invZ) {
+		int b = node * 6;
+		double t1 = (nodeBounds[b]   - ox) * invX, t2 = (nodeBounds[b+3] - ox) * invX;
+		double tmin = Math.min(t1, t2), tmax = Math.max(t1, t2);
+		t1 = (nodeBounds[b+1] - oy) * invY;
+		t2 = (nodeBounds[b+4] - oy) * invY;
+		tmin = Math.max(tmin, Math.min(t1, t2));
+		tmax = Math.min(tmax, Math.max(t1, t2));
+		t1 = (nodeBounds[b+2] - oz) * invZ;
+		t2 = (nodeBounds[b+5] - oz) * invZ;
+		tmin = Math.max(tmin, Math.min(t1, t2));
+		tmax = Math.min(tmax, Math.max(t1, t2));
+
+		// NaN comparisons are false, which treats rays parallel to a box face as hitting it
+		if(tmax < Math.max(tmin, 0))
+			return Double.POSITIVE_INFINITY;
+		return Math.max(tmin, 0);
+	}
+
+	/**
+	 * Returns the ray parameter of the hit, or infinity if the ray misses. For capsules
+	 * this is the point on the ray closest to the segment.
+	 */
+	private double rayPrimitive(int p, double ox, double oy, double oz, double dx, double dy, double dz) {
+		int s = p * 6;
+		double ax = segments[s],   ay = segments[s+1], az = segments[s+2];
+		double ux = segments[s+3] - ax, uy = segments[s+4] - ay, uz = segments[s+5] - az;
+		double r = radii[p];
+
+		// closest points between the ray o + t*d and the segment a + s*u
+		double wx = ox - ax, wy = oy - ay, wz = oz - az;
+		double dd = dx*dx + dy*dy + dz*dz;
+		double du = dx*ux + dy*uy + dz*uz;
+		double uu = ux*ux + uy*uy + uz*uz;
+		double dw = dx*wx + dy*wy + dz*wz;
+		double uw = ux*wx + uy*wy + uz*wz;
+
+		double denominator = dd * uu - du * du;
+		double sc = denominator > 1e-12 ? (dd * uw - du * dw) / denominator : 0;
+		sc = Math.max(0, Math.min(1, sc));
+
+		// closest point on the segment, then the closest point on the ray to that
+		double px = ax + sc * ux, py = ay + sc * uy, pz = az + sc * uz;
+		double t = (dx*(px - ox) + dy*(py - oy) + dz*(pz - oz)) / dd;
+		if(t < 0)
+			return Double.POSITIVE_INFINITY;
+
+		double cx = ox + t * dx - px, cy = oy + t * dy - py, cz = oz + t * dz - pz;
+		double distanceSquared = cx*cx + cy*cy + cz*cz;
+		if(distanceSquared > r * r)
+			return Double.POSITIVE_INFINITY;
+
+		// move back to the surface of the sphere around the closest point
+		return Math.max(0, t - Math.sqrt((r * r - distanceSquared) / dd));
+	}
+
+
+	/**
+	 * Adds the SUIDs of all nodes and edges that are at least partly inside the frustum to the given sets.
+	 */
+	public void queryFrustum(Frustum frustum, Set<Long> nodeSuids, Set<Long> edgeSuids) {
+		if(nodeCount == 0)
+			return;
+
+		int[] stack = new int[64];
+		int top = 0;
+		stack[top++] = 0;
+
+		while(top > 0) {
+			int node = stack[--top];
+			int b = node * 6;
+			if(!frustum.intersectsBox(nodeBounds[b], nodeBounds[b+1], nodeBounds[b+2], nodeBounds[b+3], nodeBounds[b+4], nodeBounds[b+5]))
+				continue;
+
+			if(nodeLeft[node] < 0) {
+				int first = -(nodeLeft[node] + 1);
+				for(int i = first; i < first + leafCount[node]; i++) {
+					int p = primitiveOrder[i];
+					int s = p * 6;
+					if(types[p] == NODE) {
+						if(frustum.intersectsSphere(segments[s], segments[s+1], segments[s+2], radii[p])) {
+							nodeSuids.add(suids[p]);
+						}
+					} else if(!edgeSuids.contains(suids[p])) {
+						if(frustum.intersectsCapsule(segments[s], segments[s+1], segments[s+2], segments[s+3], segments[s+4], segments[s+5], radii[p])) {
+							edgeSuids.add(suids[p]);
+						}
+					}
+				}
+			} else {
+				if(top + 2 > stack.length) {
+					stack = Arrays.copyOf(stack, stack.length * 2);
+				}
+				stack[top++] = nodeLeft[node];
+				stack[top++] = nodeRight[node];
+			}
+		}
+	}
+}
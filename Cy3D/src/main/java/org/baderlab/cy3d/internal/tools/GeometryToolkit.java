@@ -341,4 +341,17 @@ public class GeometryToolkit {
 			point.set(point.x(), -point.y(), point.z());
 		}
 	}
+	
+	/**
+	 * Returns the points packed into an array as x, y, z values, 3 floats per point.
+	 */
+	public static float[] pack(Vector3 ... points) {
+		float[] packed = new float[points.length * 3];
+		for(int i = 0; i < points.length; i++) {
+			packed[i*3]   = (float) points[i].x();
+			packed[i*3+1] = (float) points[i].y();
+			packed[i*3+2] = (float) points[i].z();
+		}
+		return packed;
+	}
 }
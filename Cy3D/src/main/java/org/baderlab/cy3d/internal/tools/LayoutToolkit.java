@@ -1,8 +1,8 @@
 package org.baderlab.cy3d.internal.tools;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 
 import org.baderlab.cy3d.internal.geometric.Vector3;
 import org.cytoscape.model.CyNode;
@@ -11,6 +11,19 @@ import org.cytoscape.view.presentation.property.BasicVisualLexicon;
 
 public class LayoutToolkit {
 	
+	/**
+	 * The average position of a set of nodes and the distance from it to the farthest node.
+	 */
+	public static class Bounds {
+		public final Vector3 center;
+		public final double radius;
+		
+		public Bounds(Vector3 center, double radius) {
+			this.center = center;
+			this.radius = radius;
+		}
+	}
+	
 	/**
 	 * Arranges the given partitions in a 3D cube-like grid with equal spacing. The spacing between partitions is proportional
 	 * to the radius of the largest partition.
@@ -20,14 +33,46 @@ public class LayoutToolkit {
 	 * @param partitions The graph partitions to arrange.
 	 */
 	public static void arrangePartitions(Collection<Collection<View<CyNode>>> partitions) {
-		// Consider sorting partitions in order of decreasing radius?
+		List<Collection<View<CyNode>>> partitionList = new ArrayList<>(partitions);
+		int[] nodeOffsets = new int[partitionList.size() + 1];
+		Bounds[] bounds = new Bounds[partitionList.size()];
+		for (int i = 0; i < bounds.length; i++) {
+			nodeOffsets[i + 1] = nodeOffsets[i] + partitionList.get(i).size();
+			bounds[i] = findBounds(partitionList.get(i));
+		}
 		
-		Map<Collection<View<CyNode>>, Double> partitionRadii = new HashMap<Collection<View<CyNode>>, Double>(partitions.size());
+		Vector3[] displacements = findDisplacements(nodeOffsets, bounds);
+		for (int i = 0; i < displacements.length; i++) {
+			translateNodes(partitionList.get(i), displacements[i]);
+		}
+	}
+	
+	/**
+	 * Same as {@link #arrangePartitions(Collection)} for node positions that are stored in arrays
+	 * instead of the views. The nodes of partition i are at the indices nodeOffsets[i] to nodeOffsets[i+1].
+	 * 
+	 * @param bounds The bounds of each partition, in the same order as the partitions
+	 */
+	public static void arrangePartitions(int[] nodeOffsets, Bounds[] bounds, double[] x, double[] y, double[] z) {
+		Vector3[] displacements = findDisplacements(nodeOffsets, bounds);
+		for (int i = 0; i < displacements.length; i++) {
+			Vector3 d = displacements[i];
+			for (int node = nodeOffsets[i]; node < nodeOffsets[i + 1]; node++) {
+				x[node] += d.x();
+				y[node] += d.y();
+				z[node] += d.z();
+			}
+		}
+	}
+	
+	/**
+	 * Finds how far each partition has to move to be in its place in the grid of partitions.
+	 */
+	private static Vector3[] findDisplacements(int[] nodeOffsets, Bounds[] bounds) {
+		// Consider sorting partitions in order of decreasing radius?
 		
 		// Basic approach: 1 partition per cube
-		int cubeLength = (int) Math.ceil(Math.pow(partitions.size(), 1.0/3));
-		
-		// System.out.println("cubeLength: " + cubeLength);
+		int cubeLength = (int) Math.ceil(Math.pow(bounds.length, 1.0/3));
 		
 		// Average position of all nodes
 		Vector3 averageTotalNodePosition = new Vector3();
@@ -35,16 +80,11 @@ public class LayoutToolkit {
 		
 		double largestRadius = -1;
 		
-		for (Collection<View<CyNode>> partition : partitions) {
-			averageTotalNodePosition.addLocal(findCenter(partition).multiply(partition.size()));
-			totalNodeCount += partition.size();
-			
-			double partitionRadius = findSubgraphRadius(partition);
-			partitionRadii.put(partition, partitionRadius);
-			
-			if (partitionRadius > largestRadius) {
-				largestRadius = partitionRadius;
-			}
+		for (int i = 0; i < bounds.length; i++) {
+			int size = nodeOffsets[i + 1] - nodeOffsets[i];
+			averageTotalNodePosition.addLocal(bounds[i].center.multiply(size));
+			totalNodeCount += size;
+			largestRadius = Math.max(largestRadius, bounds[i].radius);
 		}
 		
 		largestRadius = Math.max(largestRadius, 50);
@@ -53,8 +93,8 @@ public class LayoutToolkit {
 		// Calculate the average position of all nodes by using the average position of partitions weighted by their node count
 		averageTotalNodePosition.divideLocal(totalNodeCount);
 		
-		int count = 0;
-		for (Collection<View<CyNode>> partition : partitions) {
+		Vector3[] displacements = new Vector3[bounds.length];
+		for (int count = 0; count < bounds.length; count++) {
 			int x = count % cubeLength;
 			int y = count / cubeLength % cubeLength;
 			int z = count / cubeLength / cubeLength;
@@ -64,11 +104,9 @@ public class LayoutToolkit {
 			double halfCubeActualLength = (double) (cubeLength - 1) / 2 * largestRadius;
 			offset.subtractLocal(halfCubeActualLength, halfCubeActualLength, halfCubeActualLength);
 			
-			displaceNodes(partition, offset.plus(averageTotalNodePosition));
-			
-			// System.out.println(new Vector3(x, y, z));
-			count++;
+			displacements[count] = offset.plus(averageTotalNodePosition).subtract(bounds[count].center);
 		}
+		return displacements;
 	}
 	
 	/**
@@ -80,8 +118,13 @@ public class LayoutToolkit {
 	 */
 	public static void displaceNodes(Collection<View<CyNode>> nodeViews, Vector3 target) {
 		Vector3 currentCenter = findCenter(nodeViews);
-		Vector3 displacement = target.subtract(currentCenter);
-		
+		translateNodes(nodeViews, target.subtract(currentCenter));
+	}
+	
+	/**
+	 * Move a set of nodes by the given displacement.
+	 */
+	public static void translateNodes(Collection<View<CyNode>> nodeViews, Vector3 displacement) {
 		for (View<CyNode> nodeView : nodeViews) {
 			nodeView.setVisualProperty(BasicVisualLexicon.NODE_X_LOCATION,
 					nodeView.getVisualProperty(BasicVisualLexicon.NODE_X_LOCATION) + displacement.x());
@@ -115,6 +158,73 @@ public class LayoutToolkit {
 		return center;
 	}
 	
+	/**
+	 * Find the average position of a set of nodes and the distance to the farthest node. Each
+	 * position is only read once from the view.
+	 */
+	public static Bounds findBounds(Collection<View<CyNode>> nodeViews) {
+		int n = nodeViews.size();
+		double[] coords = new double[n * 3];
+		double x = 0;
+		double y = 0;
+		double z = 0;
+		
+		int i = 0;
+		for (View<CyNode> nodeView : nodeViews) {
+			x += coords[i++] = nodeView.getVisualProperty(BasicVisualLexicon.NODE_X_LOCATION);
+			y += coords[i++] = nodeView.getVisualProperty(BasicVisualLexicon.NODE_Y_LOCATION);
+			z += coords[i++] = nodeView.getVisualProperty(BasicVisualLexicon.NODE_Z_LOCATION);
+		}
+		x /= n;
+		y /= n;
+		z /= n;
+		
+		double maxDistanceSquared = 0;
+		for (i = 0; i < coords.length; i += 3) {
+			double dx = coords[i] - x;
+			double dy = coords[i + 1] - y;
+			double dz = coords[i + 2] - z;
+			maxDistanceSquared = Math.max(maxDistanceSquared, dx * dx + dy * dy + dz * dz);
+		}
+		
+		return new Bounds(new Vector3(x, y, z), Math.sqrt(maxDistanceSquared));
+	}
+	
+	/**
+	 * Find the average position of the nodes at the indices start to end of the position arrays.
+	 */
+	public static Vector3 findCenter(double[] x, double[] y, double[] z, int start, int end) {
+		double sumX = 0;
+		double sumY = 0;
+		double sumZ = 0;
+		
+		for (int i = start; i < end; i++) {
+			sumX += x[i];
+			sumY += y[i];
+			sumZ += z[i];
+		}
+		
+		int n = end - start;
+		return new Vector3(sumX / n, sumY / n, sumZ / n);
+	}
+	
+	/**
+	 * Same as {@link #findBounds(Collection)} for the nodes at the indices start to end of the position arrays.
+	 */
+	public static Bounds findBounds(double[] x, double[] y, double[] z, int start, int end) {
+		Vector3 center = findCenter(x, y, z, start, end);
+		
+		double maxDistanceSquared = 0;
+		for (int i = start; i < end; i++) {
+			double dx = x[i] - center.x();
+			double dy = y[i] - center.y();
+			double dz = z[i] - center.z();
+			maxDistanceSquared = Math.max(maxDistanceSquared, dx * dx + dy * dy + dz * dz);
+		}
+		
+		return new Bounds(center, Math.sqrt(maxDistanceSquared));
+	}
+	
 	/**
 	 * Find the radius of the subgraph formed by the given set of nodes. This radius can be useful
 	 * for determining the spacing between graph partitions.
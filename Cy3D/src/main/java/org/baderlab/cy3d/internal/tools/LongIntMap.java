@@ -0,0 +1,127 @@
+package org.baderlab.cy3d.internal.tools;
+
+import java.util.Arrays;
+
+/**
+ * Maps SUIDs to non-negative int values, like a Map&lt;Long,Integer&gt; but without boxing.
+ * Used to find the dense index of a node from its SUID.
+ *
+ * Open addressing with linear probing, like {@link PairCountMap}.
+ * Values are stored plus one so that 0 marks an empty slot.
+ *
+ * @author mkucera
+ */
+public class LongIntMap {
+
+	private static final int MIN_CAPACITY = 16;
+
+	private long[] keys;
+	private int[] values;
+	private int size;
+	private int mask;
+
+
+	public LongIntMap() {
+		this(MIN_CAPACITY / 2);
+	}
+
+	/**
+	 * @param expectedSize the number of keys that can be added without resizing
+	 */
+	public LongIntMap(int expectedSize) {
+		allocate(capacityFor(expectedSize));
+	}
+
+	private static int capacityFor(int size) {
+		// keep the load factor at most 1/2
+		int capacity = MIN_CAPACITY;
+		while(capacity < size * 2L && capacity < (1 << 30)) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new int[capacity];
+		mask = capacity - 1;
+		size = 0;
+	}
+
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+
+	/**
+	 * Associates the value with the key, replacing the previous value.
+	 * @param value must not be negative
+	 */
+	public void put(long key, int value) {
+		int slot = hash(key) & mask;
+		while(values[slot] != 0) {
+			if(keys[slot] == key) {
+				values[slot] = value + 1;
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		keys[slot] = key;
+		values[slot] = value + 1;
+		if(++size * 2 > values.length) {
+			grow();
+		}
+	}
+
+	/**
+	 * Returns the value of the key, -1 if the key hasn't been added.
+	 */
+	public int get(long key) {
+		int slot = hash(key) & mask;
+		while(values[slot] != 0) {
+			if(keys[slot] == key) {
+				return values[slot] - 1;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Removes all the keys and makes sure the map can hold the expected number of keys without resizing,
+	 * the arrays are kept like in {@link PairCountMap#clear(int)}.
+	 */
+	public void clear(int expectedSize) {
+		int capacity = capacityFor(expectedSize);
+		if(capacity > values.length) {
+			allocate(capacity);
+		} else if(size > 0) {
+			Arrays.fill(values, 0);
+			size = 0;
+		}
+	}
+
+	private void grow() {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		allocate(oldValues.length * 2);
+
+		for(int i = 0; i < oldValues.length; i++) {
+			if(oldValues[i] != 0) {
+				int slot = hash(oldKeys[i]) & mask;
+				while(values[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+				size++;
+			}
+		}
+	}
+}
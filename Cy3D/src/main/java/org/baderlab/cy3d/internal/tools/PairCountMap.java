@@ -0,0 +1,140 @@
+package org.baderlab.cy3d.internal.tools;
+
+import java.util.Arrays;
+
+/**
+ * Counts unordered pairs of SUIDs, like a Map&lt;PairIdentifier,Integer&gt; but without 
+ * allocating a key object or boxing the count for every pair.
+ * 
+ * Open addressing with linear probing, the two SUIDs of a pair are stored in parallel arrays.
+ * The arrays are kept when the map is cleared so that a map reused for every frame doesn't
+ * allocate once it has grown to the size of the network.
+ * 
+ * @author mkucera
+ */
+public class PairCountMap {
+
+	private static final int MIN_CAPACITY = 16;
+	
+	private long[] keys1;
+	private long[] keys2;
+	private int[] counts; // 0 marks an empty slot
+	private int size;
+	private int mask;
+	
+	
+	public PairCountMap() {
+		this(MIN_CAPACITY / 2);
+	}
+	
+	/**
+	 * @param expectedSize the number of pairs that can be added without resizing
+	 */
+	public PairCountMap(int expectedSize) {
+		allocate(capacityFor(expectedSize));
+	}
+	
+	private static int capacityFor(int size) {
+		// keep the load factor at most 1/2
+		int capacity = MIN_CAPACITY;
+		while(capacity < size * 2L && capacity < (1 << 30)) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+	
+	private void allocate(int capacity) {
+		keys1 = new long[capacity];
+		keys2 = new long[capacity];
+		counts = new int[capacity];
+		mask = capacity - 1;
+		size = 0;
+	}
+	
+	private static int hash(long suid1, long suid2) {
+		long h = suid1 * 0x9E3779B97F4A7C15L + suid2;
+		h ^= h >>> 32;
+		h *= 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 29));
+	}
+	
+	
+	/**
+	 * Increments the count of the pair, the order of the SUIDs doesn't matter.
+	 * @return the new count, 1 the first time the pair is added
+	 */
+	public int increment(long id1, long id2) {
+		long suid1 = Math.max(id1, id2);
+		long suid2 = Math.min(id1, id2);
+		
+		int slot = hash(suid1, suid2) & mask;
+		while(counts[slot] != 0) {
+			if(keys1[slot] == suid1 && keys2[slot] == suid2) {
+				return ++counts[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+		
+		keys1[slot] = suid1;
+		keys2[slot] = suid2;
+		counts[slot] = 1;
+		if(++size * 2 > counts.length) {
+			grow();
+		}
+		return 1;
+	}
+	
+	/**
+	 * Returns the count of the pair, 0 if the pair hasn't been added.
+	 */
+	public int get(long id1, long id2) {
+		long suid1 = Math.max(id1, id2);
+		long suid2 = Math.min(id1, id2);
+		
+		int slot = hash(suid1, suid2) & mask;
+		while(counts[slot] != 0) {
+			if(keys1[slot] == suid1 && keys2[slot] == suid2) {
+				return counts[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+		return 0;
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Removes all the pairs and makes sure the map can hold the expected number of pairs without resizing.
+	 */
+	public void clear(int expectedSize) {
+		int capacity = capacityFor(expectedSize);
+		if(capacity > counts.length) {
+			allocate(capacity);
+		} else if(size > 0) {
+			Arrays.fill(counts, 0);
+			size = 0;
+		}
+	}
+	
+	private void grow() {
+		long[] oldKeys1 = keys1;
+		long[] oldKeys2 = keys2;
+		int[] oldCounts = counts;
+		allocate(oldCounts.length * 2);
+		
+		for(int i = 0; i < oldCounts.length; i++) {
+			if(oldCounts[i] != 0) {
+				int slot = hash(oldKeys1[i], oldKeys2[i]) & mask;
+				while(counts[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+				keys1[slot] = oldKeys1[i];
+				keys2[slot] = oldKeys2[i];
+				counts[slot] = oldCounts[i];
+				size++;
+			}
+		}
+	}
+}
@@ -0,0 +1,27 @@
+package org.baderlab.cy3d.internal.tools;
+
+/**
+ * Reads the -Dcy3d.xxx system properties that select between implementations.
+ *
+ * @author mkucera
+ */
+public class PropertyToolkit {
+
+	private PropertyToolkit() {}
+
+	/**
+	 * Returns the constant whose name matches the value of the system property, ignoring case,
+	 * or the fallback if the property is not set or doesn't match any constant.
+	 */
+	public static <E extends Enum<E>> E fromProperty(String name, Class<E> type, E fallback) {
+		String value = System.getProperty(name);
+		if(value != null) {
+			for(E constant : type.getEnumConstants()) {
+				if(constant.name().equalsIgnoreCase(value.trim())) {
+					return constant;
+				}
+			}
+		}
+		return fallback;
+	}
+}
@@ -19,17 +19,22 @@ public class RenderToolkit {
 	 * 			
 	 */
 	public static void setUpFacingTransformation(GL2 gl, Vector3 location, Vector3 direction) {
-		gl.glTranslatef((float) location.x(), (float) location.y(), (float) location.z());
-		
-		Vector3 current = new Vector3(0, 0, 1);
-		Vector3 rotateAxis = current.cross(direction);
+		setUpFacingTransformation(gl, location.x(), location.y(), location.z(), direction.x(), direction.y(), direction.z());
+	}
+	
+	/**
+	 * Same as {@link #setUpFacingTransformation(GL2, Vector3, Vector3)} but does not allocate.
+	 */
+	public static void setUpFacingTransformation(GL2 gl, double x, double y, double z, double dx, double dy, double dz) {
+		gl.glTranslatef((float) x, (float) y, (float) z);
 		
 		// Make sure the given normal has nonzero length
-		if (direction.magnitudeSquared() > Double.MIN_NORMAL) {
-			gl.glRotatef((float) Math.toDegrees(direction.angle(current)), 
-					(float) rotateAxis.x(),
-					(float) rotateAxis.y(),
-					(float) rotateAxis.z());
+		double magnitudeSquared = dx * dx + dy * dy + dz * dz;
+		if (magnitudeSquared > Double.MIN_NORMAL) {
+			// The rotation axis is (0, 0, 1) cross direction, the angle is between (0, 0, 1) and the direction
+			double cos = dz / Math.sqrt(magnitudeSquared);
+			double angle = cos >= 1 ? 0 : cos <= -1 ? Math.PI : Math.acos(cos);
+			gl.glRotatef((float) Math.toDegrees(angle), (float) -dy, (float) dx, 0);
 		}
 	}
 	
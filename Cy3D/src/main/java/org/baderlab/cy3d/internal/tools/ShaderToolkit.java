@@ -0,0 +1,98 @@
+package org.baderlab.cy3d.internal.tools;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import com.jogamp.opengl.GL2;
+
+/**
+ * Helper methods for compiling and linking GLSL programs.
+ *
+ * @author mkucera
+ */
+public class ShaderToolkit {
+
+	/**
+	 * Returns true if the context supports shaders and instanced drawing, which
+	 * is required by the instanced rendering procedures.
+	 */
+	public static boolean isInstancingSupported(GL2 gl) {
+		return gl.hasGLSL()
+			&& gl.isFunctionAvailable("glDrawArraysInstanced")
+			&& gl.isFunctionAvailable("glVertexAttribDivisor");
+	}
+
+
+	/**
+	 * Compiles and links a program from the given vertex and fragment shader sources.
+	 *
+	 * @param attributeLocations Generic vertex attributes to bind before linking, may be empty.
+	 * @return The program id, or 0 if the program could not be compiled or linked.
+	 */
+	public static int createProgram(GL2 gl, String vertexSource, String fragmentSource, Map<String,Integer> attributeLocations) {
+		int vertexShader = compileShader(gl, GL2.GL_VERTEX_SHADER, vertexSource);
+		int fragmentShader = compileShader(gl, GL2.GL_FRAGMENT_SHADER, fragmentSource);
+		if(vertexShader == 0 || fragmentShader == 0) {
+			gl.glDeleteShader(vertexShader);
+			gl.glDeleteShader(fragmentShader);
+			return 0;
+		}
+
+		int program = gl.glCreateProgram();
+		gl.glAttachShader(program, vertexShader);
+		gl.glAttachShader(program, fragmentShader);
+		for(Map.Entry<String,Integer> attribute : attributeLocations.entrySet()) {
+			gl.glBindAttribLocation(program, attribute.getValue(), attribute.getKey());
+		}
+		gl.glLinkProgram(program);
+
+		// the shaders are flagged for deletion, they are freed when the program is deleted
+		gl.glDeleteShader(vertexShader);
+		gl.glDeleteShader(fragmentShader);
+
+		int[] status = new int[1];
+		gl.glGetProgramiv(program, GL2.GL_LINK_STATUS, status, 0);
+		if(status[0] == 0) {
+			System.err.println("Shader program link failed: " + getProgramInfoLog(gl, program));
+			gl.glDeleteProgram(program);
+			return 0;
+		}
+		return program;
+	}
+
+
+	private static int compileShader(GL2 gl, int type, String source) {
+		int shader = gl.glCreateShader(type);
+		gl.glShaderSource(shader, 1, new String[] { source }, new int[] { source.length() }, 0);
+		gl.glCompileShader(shader);
+
+		int[] status = new int[1];
+		gl.glGetShaderiv(shader, GL2.GL_COMPILE_STATUS, status, 0);
+		if(status[0] == 0) {
+			System.err.println("Shader compile failed: " + getShaderInfoLog(gl, shader));
+			gl.glDeleteShader(shader);
+			return 0;
+		}
+		return shader;
+	}
+
+	private static String getShaderInfoLog(GL2 gl, int shader) {
+		int[] length = new int[1];
+		gl.glGetShaderiv(shader, GL2.GL_INFO_LOG_LENGTH, length, 0);
+		if(length[0] <= 0)
+			return "";
+		byte[] log = new byte[length[0]];
+		gl.glGetShaderInfoLog(shader, log.length, length, 0, log, 0);
+		return new String(log, 0, length[0], StandardCharsets.US_ASCII);
+	}
+
+	private static String getProgramInfoLog(GL2 gl, int program) {
+		int[] length = new int[1];
+		gl.glGetProgramiv(program, GL2.GL_INFO_LOG_LENGTH, length, 0);
+		if(length[0] <= 0)
+			return "";
+		byte[] log = new byte[length[0]];
+		gl.glGetProgramInfoLog(program, log.length, length, 0, log, 0);
+		return new String(log, 0, length[0], StandardCharsets.US_ASCII);
+	}
+}
@@ -0,0 +1,91 @@
+package org.baderlab.cy3d.internal.graphics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeNoException;
+import static org.junit.Assume.assumeNotNull;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GLAutoDrawable;
+import com.jogamp.opengl.GLEventListener;
+import com.jogamp.opengl.GLProfile;
+
+/**
+ * Smoke test of offscreen rendering, it runs on headless machines with a software renderer, eg:
+ * <pre>LIBGL_ALWAYS_SOFTWARE=1 xvfb-run mvn test</pre>
+ * The test is skipped if there is no OpenGL implementation at all.
+ */
+public class OffscreenRendererTest {
+
+	private static final Color CLEAR_COLOR = new Color(255, 0, 0);
+
+	private OffscreenRenderer renderer;
+
+
+	@Before
+	public void setUp() {
+		GLProfile profile = null;
+		try {
+			GLProfile.initSingleton();
+			profile = GLProfile.getDefault();
+		} catch(RuntimeException | LinkageError e) {
+			assumeNoException("OpenGL is not available", e);
+		}
+		assumeNotNull(profile);
+		renderer = new OffscreenRenderer(new ClearListener());
+	}
+
+	@After
+	public void tearDown() {
+		if(renderer != null) {
+			renderer.dispose();
+		}
+	}
+
+
+	@Test
+	public void testRenderAndResize() {
+		BufferedImage image = renderer.render(64, 48);
+		assumeNotNull(image); // no offscreen drawable, not even a software one
+		assertImage(image, 64, 48);
+
+		// the drawable is resized
+		assertImage(renderer.render(20, 30), 20, 30);
+	}
+
+
+	private static void assertImage(BufferedImage image, int width, int height) {
+		assertEquals(width, image.getWidth());
+		assertEquals(height, image.getHeight());
+		assertEquals(CLEAR_COLOR.getRGB() & 0xFFFFFF, image.getRGB(width / 2, height / 2) & 0xFFFFFF);
+	}
+
+
+	private static class ClearListener implements GLEventListener {
+
+		@Override
+		public void init(GLAutoDrawable drawable) {
+		}
+
+		@Override
+		public void display(GLAutoDrawable drawable) {
+			GL gl = drawable.getGL();
+			gl.glClearColor(CLEAR_COLOR.getRed() / 255f, CLEAR_COLOR.getGreen() / 255f, CLEAR_COLOR.getBlue() / 255f, 1);
+			gl.glClear(GL.GL_COLOR_BUFFER_BIT | GL.GL_DEPTH_BUFFER_BIT);
+		}
+
+		@Override
+		public void reshape(GLAutoDrawable drawable, int x, int y, int width, int height) {
+		}
+
+		@Override
+		public void dispose(GLAutoDrawable drawable) {
+		}
+	}
+}
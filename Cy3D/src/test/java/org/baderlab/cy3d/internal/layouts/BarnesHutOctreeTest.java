@@ -0,0 +1,61 @@
+package org.baderlab.cy3d.internal.layouts;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class BarnesHutOctreeTest {
+
+	@Test
+	public void testCoincidentMass() {
+		// three nodes at the same position and one far away
+		double[] x = { 1, 1, 1, 100 };
+		double[] y = { 2, 2, 2, 0 };
+		double[] z = { 3, 3, 3, 0 };
+		double[] m = { 1, 2, 1, 1 };
+
+		BarnesHutOctree tree = new BarnesHutOctree();
+		tree.build(x, y, z, m, x.length);
+		int[] stack = new int[BarnesHutOctree.STACK_SIZE];
+
+		double[] force = new double[3];
+		assertEquals(4, tree.addRepulsion(1, 2, 3, 0, stack, force), 1e-9);
+		// only the far node pushes, away from it
+		assertTrue(force[0] < 0);
+
+		force = new double[3];
+		assertEquals(1, tree.addRepulsion(100, 0, 0, 0, stack, force), 1e-9);
+		assertTrue(force[0] > 0);
+	}
+
+	@Test
+	public void testJitterIsDeterministic() {
+		double[][] directions = new double[10][];
+		for(int node = 0; node < directions.length; node++) {
+			double[] force = new double[3];
+			BarnesHutForceLayout.addJitter(42, node, 2, force);
+			assertEquals(2, Math.sqrt(force[0] * force[0] + force[1] * force[1] + force[2] * force[2]), 1e-9);
+
+			double[] again = new double[3];
+			BarnesHutForceLayout.addJitter(42, node, 2, again);
+			assertArrayEquals(force, again, 0);
+			directions[node] = force;
+		}
+
+		// coincident nodes are pushed apart
+		for(int i = 0; i < directions.length; i++) {
+			for(int j = i + 1; j < directions.length; j++) {
+				double dx = directions[i][0] - directions[j][0];
+				double dy = directions[i][1] - directions[j][1];
+				double dz = directions[i][2] - directions[j][2];
+				assertTrue(dx * dx + dy * dy + dz * dz > 1e-6);
+			}
+		}
+
+		double[] other = new double[3];
+		BarnesHutForceLayout.addJitter(43, 0, 2, other);
+		assertTrue(other[0] != directions[0][0]);
+	}
+}
@@ -0,0 +1,101 @@
+package org.baderlab.cy3d.internal.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.baderlab.cy3d.internal.camera.SimpleCamera;
+import org.baderlab.cy3d.internal.data.GraphicsData;
+import org.baderlab.cy3d.internal.data.NodeRenderBuffer;
+import org.baderlab.cy3d.internal.geometric.Vector3;
+import org.baderlab.cy3d.internal.rendering.shapes.ScalableShapeDrawer;
+import org.baderlab.cy3d.internal.rendering.shapes.ScalableShapeDrawer.Detail;
+import org.baderlab.cy3d.internal.rendering.shapes.ScalableShapeDrawer.Shape;
+import org.junit.Test;
+
+public class LevelOfDetailTest {
+
+	private static final int SCREEN_HEIGHT = 600;
+	private static final float NODE_SIZE = 40;
+
+	/**
+	 * At the distance where a sphere node switches to a point the point must cover
+	 * the same pixels as the mesh it replaces.
+	 */
+	@Test
+	public void testPointDiameterMatchesMeshAtThreshold() {
+		float radius = NodeRenderBuffer.computeBoundingRadius(NODE_SIZE, NODE_SIZE, NODE_SIZE);
+		LevelOfDetail levelOfDetail = new LevelOfDetail();
+
+		// find the distance where the node becomes a point
+		double near = 1, far = 1e5;
+		for(int i = 0; i < 100; i++) {
+			double middle = (near + far) / 2;
+			if(isPoint(levelOfDetail, radius, middle))
+				far = middle;
+			else
+				near = middle;
+		}
+		assertFalse(isPoint(levelOfDetail, radius, near));
+		assertTrue(isPoint(levelOfDetail, radius, far));
+
+		double screenRadius = projectedRadius(levelOfDetail, radius, far);
+		double pointDiameter = levelOfDetail.getPointDiameter(screenRadius);
+		double meshDiameter = projectedMeshHeight(far);
+
+		assertEquals(meshDiameter, pointDiameter, meshDiameter * 1e-6);
+	}
+
+	@Test
+	public void testBoundingRadiusIsDrawnRadius() {
+		float radius = NodeRenderBuffer.computeBoundingRadius(NODE_SIZE, NODE_SIZE, NODE_SIZE);
+		float scale = RenderNodesProcedure.NODE_SIZE_RADIUS * NODE_SIZE / RenderNodesProcedure.NODE_SIZE_SCALE;
+
+		float[] mesh = ScalableShapeDrawer.createTriangleMesh(Shape.SHAPE_SPHERE, Detail.DETAIL_HIGH);
+		double max = 0;
+		for(int i = 0; i < mesh.length; i += 6) {
+			max = Math.max(max, Math.sqrt(mesh[i+3]*mesh[i+3] + mesh[i+4]*mesh[i+4] + mesh[i+5]*mesh[i+5]));
+		}
+		assertEquals(max * scale, radius, 1e-6);
+	}
+
+
+	/**
+	 * Camera on the x axis looking at the origin with z up, the node is at the origin.
+	 */
+	private static void beginFrame(LevelOfDetail levelOfDetail, double distance) {
+		SimpleCamera camera = new SimpleCamera(new Vector3(distance, 0, 0), new Vector3(0, 0, 0), new Vector3(0, 0, 1));
+		levelOfDetail.beginFrame(camera, SCREEN_HEIGHT);
+	}
+
+	private static double projectedRadius(LevelOfDetail levelOfDetail, float radius, double distance) {
+		beginFrame(levelOfDetail, distance);
+		return levelOfDetail.projectedRadius(0, 0, 0, radius);
+	}
+
+	private static boolean isPoint(LevelOfDetail levelOfDetail, float radius, double distance) {
+		return levelOfDetail.isPoint(projectedRadius(levelOfDetail, radius, distance));
+	}
+
+	/**
+	 * Projects the sphere mesh with the perspective of the renderer (gluPerspective) and
+	 * returns its height in pixels.
+	 */
+	private static double projectedMeshHeight(double distance) {
+		float scale = RenderNodesProcedure.NODE_SIZE_RADIUS * NODE_SIZE / RenderNodesProcedure.NODE_SIZE_SCALE;
+		double f = 1 / Math.tan(Math.toRadians(GraphicsData.VERTICAL_VOF) / 2);
+
+		float[] mesh = ScalableShapeDrawer.createTriangleMesh(Shape.SHAPE_SPHERE, Detail.DETAIL_HIGH);
+		double minY = Double.POSITIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		for(int i = 0; i < mesh.length; i += 6) {
+			// eye space: up is world z, depth is the distance along -x
+			double eyeY = mesh[i+5] * scale;
+			double depth = distance - mesh[i+3] * scale;
+			double ndcY = f * eyeY / depth;
+			double pixelY = (ndcY + 1) / 2 * SCREEN_HEIGHT;
+			minY = Math.min(minY, pixelY);
+			maxY = Math.max(maxY, pixelY);
+		}
+		return maxY - minY;
+	}
+}
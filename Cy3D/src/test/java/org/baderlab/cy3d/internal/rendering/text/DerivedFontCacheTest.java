@@ -0,0 +1,35 @@
+package org.baderlab.cy3d.internal.rendering.text;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.awt.Font;
+
+import org.junit.Test;
+
+public class DerivedFontCacheTest {
+
+	@Test
+	public void testDerivedFontsAreReused() {
+		DerivedFontCache cache = new DerivedFontCache();
+		Font face = new Font("SansSerif", Font.PLAIN, 12);
+
+		assertSame(face, cache.get(face, Float.NaN));
+		assertSame(face, cache.get(face, 12));
+
+		Font[] fonts = new Font[10];
+		for(int i = 0; i < fonts.length; i++) {
+			fonts[i] = cache.get(face, 13 + i);
+			assertEquals(13 + i, fonts[i].getSize2D(), 0);
+		}
+		for(int i = 0; i < fonts.length; i++) {
+			assertSame(fonts[i], cache.get(face, 13 + i));
+		}
+
+		// a different face with the same size is a different font
+		Font bold = new Font("SansSerif", Font.BOLD, 12);
+		assertNotSame(fonts[0], cache.get(bold, 13));
+		assertEquals(Font.BOLD, cache.get(bold, 13).getStyle());
+	}
+}
@@ -0,0 +1,80 @@
+package org.baderlab.cy3d.internal.rendering.text;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Font;
+
+import org.junit.Test;
+
+public class GlyphAtlasCacheTest {
+
+	private static final int FONT_COUNT = 40;
+
+	/**
+	 * Labels that use more fonts than the cache keeps when they are unused must not evict each other.
+	 */
+	@Test
+	public void testFontsInUseAreNotEvicted() {
+		GlyphAtlasCache cache = new GlyphAtlasCache();
+		GlyphAtlas[] atlases = new GlyphAtlas[FONT_COUNT];
+
+		for(int update = 0; update < 3; update++) {
+			cache.beginUpdate();
+			for(int i = 0; i < FONT_COUNT; i++) {
+				GlyphAtlas atlas = cache.get(font(i));
+				if(update > 0)
+					assertSame(atlases[i], atlas);
+				atlases[i] = atlas;
+			}
+			cache.endUpdate();
+
+			for(GlyphAtlas atlas : atlases) {
+				assertTrue(cache.contains(atlas));
+			}
+		}
+	}
+
+	@Test
+	public void testUnusedFontsAreEvicted() {
+		GlyphAtlasCache cache = new GlyphAtlasCache();
+		GlyphAtlas[] atlases = new GlyphAtlas[FONT_COUNT];
+
+		cache.beginUpdate();
+		for(int i = 0; i < FONT_COUNT; i++) {
+			atlases[i] = cache.get(font(i));
+		}
+		cache.endUpdate();
+
+		// only the first font is still used
+		cache.beginUpdate();
+		assertSame(atlases[0], cache.get(font(0)));
+		cache.endUpdate();
+
+		assertTrue(cache.contains(atlases[0]));
+		int cached = 0;
+		for(int i = 1; i < FONT_COUNT; i++) {
+			if(cache.contains(atlases[i]))
+				cached++;
+		}
+		assertTrue(cached < FONT_COUNT - 1);
+
+		// an evicted atlas is created again
+		for(int i = 1; i < FONT_COUNT; i++) {
+			if(!cache.contains(atlases[i])) {
+				cache.beginUpdate();
+				GlyphAtlas atlas = cache.get(font(i));
+				cache.endUpdate();
+				assertNotSame(atlases[i], atlas);
+				assertFalse(cache.contains(atlases[i]));
+				return;
+			}
+		}
+	}
+
+	private static Font font(int i) {
+		return new Font("SansSerif", Font.PLAIN, 8 + i);
+	}
+}
@@ -0,0 +1,64 @@
+package org.baderlab.cy3d.internal.rendering.text;
+
+import static org.junit.Assert.assertEquals;
+
+import org.baderlab.cy3d.internal.data.GraphicsData;
+import org.baderlab.cy3d.internal.data.ImageTile;
+import org.junit.Test;
+
+public class LabelCullerTest {
+
+	private static final double[] IDENTITY = {
+		1, 0, 0, 0,
+		0, 1, 0, 0,
+		0, 0, 1, 0,
+		0, 0, 0, 1
+	};
+
+	/**
+	 * Every tile places the labels on the whole image, with the projection of gluPerspective().
+	 */
+	@Test
+	public void testImageProjectionMatchesPerspective() {
+		int width = 3000, height = 2000;
+		double f = 1 / Math.tan(Math.toRadians(GraphicsData.VERTICAL_VOF) / 2);
+		double near = GraphicsData.NEAR_Z, far = GraphicsData.FAR_Z;
+
+		for(ImageTile tile : new ImageTile[] { new ImageTile(0, 0, 2048, 2048, width, height), new ImageTile(2048, 0, 952, 2000, width, height) }) {
+			double[] matrix = new double[16];
+			tile.getImageProjection(matrix);
+			assertEquals(f * height / width, matrix[0], 1e-9);
+			assertEquals(f, matrix[5], 1e-9);
+			assertEquals((far + near) / (near - far), matrix[10], 1e-6);
+			assertEquals(-1, matrix[11], 0);
+			assertEquals(2 * far * near / (near - far), matrix[14], 1e-6);
+			assertEquals(0, matrix[15], 0);
+		}
+	}
+
+	@Test
+	public void testPlacementIsInImageCoordinates() {
+		int width = 3000, height = 2000;
+		ImageTile tile = new ImageTile(2048, 0, 952, 2000, width, height);
+		double[] projection = new double[16];
+		tile.getImageProjection(projection);
+
+		LabelCuller culler = new LabelCuller();
+		culler.begin(IDENTITY, projection, new int[] { 0, 0, width, height });
+		// on the view axis, and at the top right corner of the image
+		double top = Math.tan(Math.toRadians(GraphicsData.VERTICAL_VOF) / 2);
+		culler.add(1, 0, 0, -10, 40, 10, false);
+		culler.add(2, 0.99 * 10 * top * width / height, 0.99 * 10 * top, -10, 4, 4, false);
+		assertEquals(2, culler.place());
+
+		for(int i = 0; i < 2; i++) {
+			if(culler.getPlacedId(i) == 1) {
+				assertEquals(width / 2, culler.getScreenX(i));
+				assertEquals(height / 2, culler.getScreenY(i));
+			} else {
+				assertEquals(width - 15, culler.getScreenX(i), 1);
+				assertEquals(height - 10, culler.getScreenY(i), 1);
+			}
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package org.baderlab.cy3d.internal.spatial;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.baderlab.cy3d.internal.geometric.Vector3;
+import org.baderlab.cy3d.internal.geometric.ViewingVolume;
+import org.junit.Test;
+
+public class CullingGridTest {
+
+	private static final int COUNT = 2000;
+	private static final double SIZE = 0.5;
+
+	/**
+	 * Items updated in place stay in their cell, the cull must still find exactly the items that are inside.
+	 */
+	@Test
+	public void testCullAfterUpdate() {
+		Random random = new Random(42);
+		double[] bounds = new double[COUNT * 6];
+		CullingGrid grid = new CullingGrid();
+		for(int i = 0; i < COUNT; i++) {
+			randomBounds(random, bounds, i);
+			int b = i * 6;
+			assertEquals(i, grid.add(bounds[b], bounds[b+1], bounds[b+2], bounds[b+3], bounds[b+4], bounds[b+5]));
+		}
+		grid.build();
+
+		ViewingVolume volume = new ViewingVolume();
+		volume.calculateViewingVolume(new Vector3(0, 0, 30), new Vector3(0, 0, -1), new Vector3(0, 1, 0), 0.2, 500, 45, 45);
+		assertEquals(bruteForce(volume, bounds), cull(grid, volume));
+
+		// move a quarter of the items anywhere, including far from their cell
+		for(int k = 0; k < COUNT / 4; k++) {
+			int i = random.nextInt(COUNT);
+			randomBounds(random, bounds, i);
+			int b = i * 6;
+			grid.update(i, bounds[b], bounds[b+1], bounds[b+2], bounds[b+3], bounds[b+4], bounds[b+5]);
+		}
+		assertEquals(bruteForce(volume, bounds), cull(grid, volume));
+	}
+
+	private static void randomBounds(Random random, double[] bounds, int i) {
+		int b = i * 6;
+		for(int axis = 0; axis < 3; axis++) {
+			double center = (random.nextDouble() - 0.5) * 100;
+			bounds[b + axis] = center - SIZE;
+			bounds[b + axis + 3] = center + SIZE;
+		}
+	}
+
+	private static Set<Integer> cull(CullingGrid grid, ViewingVolume volume) {
+		Set<Integer> result = new HashSet<>();
+		int count = grid.cull(volume);
+		for(int i = 0; i < count; i++) {
+			result.add(grid.getVisible(i));
+		}
+		return result;
+	}
+
+	private static Set<Integer> bruteForce(ViewingVolume volume, double[] bounds) {
+		Set<Integer> result = new HashSet<>();
+		for(int i = 0; i < COUNT; i++) {
+			int b = i * 6;
+			if(volume.classifyBox(bounds[b], bounds[b+1], bounds[b+2], bounds[b+3], bounds[b+4], bounds[b+5]) != ViewingVolume.OUTSIDE) {
+				result.add(i);
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,185 @@
+package org.baderlab.cy3d.internal.spatial;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.baderlab.cy3d.internal.camera.SimpleCamera;
+import org.baderlab.cy3d.internal.geometric.Vector3;
+import org.baderlab.cy3d.internal.spatial.SpatialIndex.RayHit;
+import org.junit.Test;
+
+public class SpatialIndexTest {
+
+	private static final Vector3 DOWN_Z = new Vector3(0, 0, -1);
+
+	@Test
+	public void testRayHitsClosestSphere() {
+		SpatialIndex index = new SpatialIndex();
+		index.addNode(1, 0, 0, 0, 0.5);
+		index.addNode(2, 0, 0, -3, 0.5);
+		index.build();
+
+		RayHit hit = index.rayCast(new Vector3(0, 0, 5), DOWN_Z, SpatialIndex.NODE);
+		assertNotNull(hit);
+		assertEquals(1, hit.getSuid());
+		assertEquals(SpatialIndex.NODE, hit.getType());
+		assertEquals(4.5, hit.getDistance(), 1e-9);
+	}
+
+	@Test
+	public void testRayMissesOutsideSphereRadius() {
+		SpatialIndex index = new SpatialIndex();
+		index.addNode(1, 0, 0, 0, 0.5);
+		index.build();
+
+		assertNotNull(index.rayCast(new Vector3(0.49, 0, 5), DOWN_Z, SpatialIndex.NODE));
+		assertNull(index.rayCast(new Vector3(0.51, 0, 5), DOWN_Z, SpatialIndex.NODE));
+		assertNull(index.rayCast(new Vector3(0, 0, 5), new Vector3(0, 0, 1), SpatialIndex.NODE)); // pointing away
+	}
+
+	@Test
+	public void testRayHitsCapsule() {
+		SpatialIndex index = new SpatialIndex();
+		index.addEdgeSegment(7, new Vector3(-2, 1, 0), new Vector3(2, 1, 0), 0.1);
+		index.build();
+
+		RayHit hit = index.rayCast(new Vector3(1, 1.05, 5), DOWN_Z, SpatialIndex.EDGE);
+		assertNotNull(hit);
+		assertEquals(7, hit.getSuid());
+		assertEquals(SpatialIndex.EDGE, hit.getType());
+
+		assertNull(index.rayCast(new Vector3(1, 1.2, 5), DOWN_Z, SpatialIndex.EDGE));
+		assertNull(index.rayCast(new Vector3(2.2, 1, 5), DOWN_Z, SpatialIndex.EDGE)); // past the end cap
+		assertNotNull(index.rayCast(new Vector3(2.05, 1, 5), DOWN_Z, SpatialIndex.EDGE)); // inside the end cap
+	}
+
+	@Test
+	public void testRayCastFiltersByType() {
+		SpatialIndex index = new SpatialIndex();
+		index.addNode(1, 0, 0, 0, 0.5);
+		index.addEdgeSegment(2, new Vector3(-1, 0, -1), new Vector3(1, 0, -1), 0.1);
+		index.build();
+
+		assertEquals(1, index.rayCast(new Vector3(0, 0, 5), DOWN_Z, SpatialIndex.NODE).getSuid());
+		assertEquals(2, index.rayCast(new Vector3(0, 0, 5), DOWN_Z, SpatialIndex.EDGE).getSuid());
+	}
+
+	@Test
+	public void testRayCastMatchesBruteForce() {
+		Random random = new Random(1);
+		int n = 2000;
+		double[][] spheres = new double[n][];
+		SpatialIndex index = new SpatialIndex();
+		for(int i = 0; i < n; i++) {
+			spheres[i] = new double[] { random.nextDouble() * 20 - 10, random.nextDouble() * 20 - 10, random.nextDouble() * 20 - 10, 0.05 + random.nextDouble() * 0.3 };
+			index.addNode(i, spheres[i][0], spheres[i][1], spheres[i][2], spheres[i][3]);
+		}
+		index.build();
+
+		for(int r = 0; r < 200; r++) {
+			Vector3 origin = new Vector3(random.nextDouble() * 20 - 10, random.nextDouble() * 20 - 10, 15);
+			Vector3 direction = new Vector3(random.nextDouble() - 0.5, random.nextDouble() - 0.5, -1);
+
+			// closest intersection by testing every sphere
+			double closest = Double.POSITIVE_INFINITY;
+			for(double[] s : spheres) {
+				Vector3 w = origin.subtract(s[0], s[1], s[2]);
+				double a = direction.dot(direction);
+				double b = 2 * direction.dot(w);
+				double c = w.dot(w) - s[3] * s[3];
+				double discriminant = b * b - 4 * a * c;
+				if(discriminant >= 0) {
+					double t = (-b - Math.sqrt(discriminant)) / (2 * a);
+					if(t >= 0) {
+						closest = Math.min(closest, t);
+					}
+				}
+			}
+
+			RayHit hit = index.rayCast(origin, direction, SpatialIndex.NODE);
+			if(closest == Double.POSITIVE_INFINITY) {
+				assertNull(hit);
+			} else {
+				assertNotNull(hit);
+				assertEquals(closest, hit.getDistance(), 1e-9);
+			}
+		}
+	}
+
+	@Test
+	public void testEmptyIndex() {
+		SpatialIndex index = new SpatialIndex();
+		index.build();
+		assertNull(index.rayCast(new Vector3(0, 0, 5), DOWN_Z, SpatialIndex.NODE));
+
+		Set<Long> nodes = new HashSet<>(), edges = new HashSet<>();
+		index.queryFrustum(createCenterBox(), nodes, edges);
+		assertTrue(nodes.isEmpty());
+		assertTrue(edges.isEmpty());
+	}
+
+	/**
+	 * The camera is at z = 10 looking at the origin. The box is the middle third of an 800x600 screen,
+	 * at the origin that is about 1.38 to each side of the center.
+	 */
+	private static Frustum createCenterBox() {
+		SimpleCamera camera = new SimpleCamera(new Vector3(0, 0, 10), new Vector3(0, 0, 0), new Vector3(0, 1, 0));
+		return Frustum.fromScreenRectangle(300, 200, 500, 400, 800, 600, 0.2, 1000, camera);
+	}
+
+	@Test
+	public void testBoxSelectsNodes() {
+		SpatialIndex index = new SpatialIndex();
+		index.addNode(1, 0, 0, 0, 0.1);     // center
+		index.addNode(2, 1.0, 0, 0, 0.1);   // inside
+		index.addNode(3, 1.45, 0, 0, 0.1);  // center outside, shape crosses the side
+		index.addNode(4, 2.0, 0, 0, 0.1);   // outside
+		index.addNode(5, 0, 1.6, 0, 0.1);   // above
+		index.addNode(6, 0, 0, -5, 0.1);    // hidden behind node 1
+		index.addNode(7, 0, 0, 12, 0.1);    // behind the camera
+		index.build();
+
+		Set<Long> nodes = new HashSet<>(), edges = new HashSet<>();
+		index.queryFrustum(createCenterBox(), nodes, edges);
+
+		assertEquals(Set.of(1L, 2L, 3L, 6L), nodes);
+		assertTrue(edges.isEmpty());
+	}
+
+	@Test
+	public void testBoxSelectsEdges() {
+		SpatialIndex index = new SpatialIndex();
+		index.addEdgeSegment(1, new Vector3(-10, 0, 0), new Vector3(10, 0, 0), 0.05); // crosses the box, both ends outside
+		index.addEdgeSegment(2, new Vector3(3, 3, 0), new Vector3(4, 3, 0), 0.05);    // outside
+		index.addEdgeSegment(3, new Vector3(0.5, 0.5, 0), new Vector3(3, 3, 0), 0.05); // starts inside
+		index.addEdgeSegment(3, new Vector3(3, 3, 0), new Vector3(5, 5, 0), 0.05);     // second segment of the same edge
+		index.build();
+
+		Set<Long> nodes = new HashSet<>(), edges = new HashSet<>();
+		index.queryFrustum(createCenterBox(), nodes, edges);
+
+		assertTrue(nodes.isEmpty());
+		assertEquals(Set.of(1L, 3L), edges);
+		assertFalse(edges.contains(2L));
+	}
+
+	@Test
+	public void testClearAndRebuild() {
+		SpatialIndex index = new SpatialIndex();
+		index.addNode(1, 0, 0, 0, 0.5);
+		index.build();
+		index.clear();
+		index.addNode(2, 0, 0, 0, 0.5);
+		index.build();
+
+		assertEquals(1, index.size());
+		assertEquals(2, index.rayCast(new Vector3(0, 0, 5), DOWN_Z, SpatialIndex.NODE).getSuid());
+	}
+}